@@ -22,6 +22,11 @@ public class ChargingOptimization {
      * Minimize average distance from all nodes to nearest charging station
      */
     public static OptimizationResult optimizeChargingStations(DroneNetwork network, int k) {
+        return optimizeChargingStations(network, k, ProgressMonitor.NONE);
+    }
+    
+    /** Same as above; progress counts evaluated candidates, and the monitor is checked for every node scored. */
+    public static OptimizationResult optimizeChargingStations(DroneNetwork network, int k, ProgressMonitor monitor) {
         List<String> optimalStations = new ArrayList<>();
         Set<String> nonChargingNodes = new HashSet<>();
         
@@ -41,16 +46,19 @@ public class ChargingOptimization {
         }
         
         // Greedy: select k nodes that minimize average distance
+        long evaluations = (long) k * nonChargingNodes.size();
+        long evaluated = 0;
         for (int i = 0; i < k && !nonChargingNodes.isEmpty(); i++) {
             String best = null;
             double bestScore = Double.MAX_VALUE;
             
             for (String candidate : nonChargingNodes) {
+                monitor.checkpoint(evaluated++, evaluations);
                 Set<String> allStations = new HashSet<>(existingCharging);
                 allStations.addAll(optimalStations);
                 allStations.add(candidate);
                 
-                double avgDist = calculateAverageDistanceToCharging(network, allStations);
+                double avgDist = calculateAverageDistanceToCharging(network, allStations, monitor);
                 
                 if (avgDist < bestScore) {
                     bestScore = avgDist;
@@ -66,7 +74,7 @@ public class ChargingOptimization {
         
         Set<String> finalStations = new HashSet<>(existingCharging);
         finalStations.addAll(optimalStations);
-        double finalAvgDist = calculateAverageDistanceToCharging(network, finalStations);
+        double finalAvgDist = calculateAverageDistanceToCharging(network, finalStations, monitor);
         
         StringBuilder details = new StringBuilder();
         details.append("CHARGING STATION OPTIMIZATION\n");
@@ -85,11 +93,13 @@ public class ChargingOptimization {
     }
     
     private static double calculateAverageDistanceToCharging(DroneNetwork network, 
-                                                             Set<String> chargingStations) {
+                                                             Set<String> chargingStations,
+                                                             ProgressMonitor monitor) {
         double totalDist = 0;
         int count = 0;
         
         for (Node node : network.getNodes().values()) {
+            monitor.checkCancelled();
             if (!chargingStations.contains(node.getId())) {
                 int minDist = Integer.MAX_VALUE;
                 
@@ -27,6 +27,11 @@ public class CommunicationNetwork {
      * Uses Kruskal's algorithm with Union-Find
      */
     public static MSTResult buildCommunicationNetwork(DroneNetwork network) {
+        return buildCommunicationNetwork(network, ProgressMonitor.NONE);
+    }
+    
+    /** Same as above; progress counts the candidate links examined. */
+    public static MSTResult buildCommunicationNetwork(DroneNetwork network, ProgressMonitor monitor) {
         // Create list of edges with their costs (using energy as cost)
         List<EdgeWithCost> edgeList = new ArrayList<>();
         
@@ -50,8 +55,12 @@ public class CommunicationNetwork {
         int edgesAdded = 0;
         int requiredEdges = network.getNodes().size() - 1;
         
+        int examined = 0;
         for (EdgeWithCost edge : edgeList) {
             if (edgesAdded >= requiredEdges) break;
+            if ((examined++ & 1023) == 0) {
+                monitor.checkpoint(examined, edgeList.size());
+            }
             
             if (uf.union(edge.from, edge.to)) {
                 mstEdges.add(edge.from + " <-> " + edge.to + " (cost: " + edge.cost + ")");
@@ -0,0 +1,357 @@
+package com.dronedelivery.algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dronedelivery.backend.DroneNetwork;
+
+public class DeltaStepping {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Frontier slices smaller than this are relaxed by a single task
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    public static class TreeResult {
+        public String source;
+        // distances[node index]: cheapest energy from the source, or UNREACHABLE
+        public int[] distances;
+        // predecessors[node index]: previous node on a cheapest path, or -1
+        public int[] predecessors;
+        public int delta;
+        public int bucketsProcessed;
+        public int phases;
+        public int parallelism;
+        public String details;
+
+        private final DroneNetwork network;
+
+        TreeResult(DroneNetwork network) {
+            this.network = network;
+        }
+
+        public int distanceTo(String targetId) {
+            return network.getNode(targetId) != null ? distances[network.indexOf(targetId)] : UNREACHABLE;
+        }
+
+        /** Node ids from the source to targetId, or null if it is unreachable. */
+        public List<String> getPath(String targetId) {
+            if (distanceTo(targetId) == UNREACHABLE) {
+                return null;
+            }
+            List<String> path = new ArrayList<>();
+            for (int current = network.indexOf(targetId); current != -1; current = predecessors[current]) {
+                path.add(network.getRegistry().idOf(current));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+
+    /** One-to-all energy tree on the common ForkJoin pool with an auto-tuned delta. */
+    public static TreeResult computeTree(DroneNetwork network, String sourceId) {
+        return computeTree(network, sourceId, 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * One-to-all energy tree from sourceId by delta-stepping (Meyer and
+     * Sanders), skipping restricted corridors like DroneNetwork.findShortestPath.
+     *
+     * Nodes are kept in buckets of width delta by tentative distance. The
+     * lowest non-empty bucket is emptied by repeatedly relaxing the light
+     * arcs (energy <= delta) of all its nodes in parallel, which may refill
+     * it; the heavy arcs of everything removed from it are then relaxed once.
+     * Relaxation is an atomic min on a packed (distance, predecessor) long per
+     * node, so the distances are exactly Dijkstra's. Among equally cheap paths
+     * the first one found is kept, so predecessors may differ from run to run.
+     *
+     * A delta of 0 or less is chosen from the energy distribution.
+     */
+    public static TreeResult computeTree(DroneNetwork network, String sourceId, int delta, ForkJoinPool pool) {
+        if (network.getNode(sourceId) == null) {
+            throw new IllegalArgumentException("Unknown source node " + sourceId);
+        }
+        long start = System.nanoTime();
+        RoutingGraph graph = RoutingGraph.of(network);
+        Engine engine = new Engine(graph, delta > 0 ? delta : chooseDelta(graph), pool);
+        engine.run(network.indexOf(sourceId));
+
+        TreeResult result = new TreeResult(network);
+        result.source = sourceId;
+        result.distances = new int[graph.nodeCount];
+        result.predecessors = new int[graph.nodeCount];
+        for (int v = 0; v < graph.nodeCount; v++) {
+            long packed = engine.tentative[v];
+            result.distances[v] = packed == Long.MAX_VALUE ? UNREACHABLE : (int) (packed >>> 32);
+            result.predecessors[v] = packed == Long.MAX_VALUE ? -1 : (int) packed;
+        }
+        result.delta = engine.delta;
+        result.bucketsProcessed = engine.bucketsProcessed;
+        result.phases = engine.phases;
+        result.parallelism = pool.getParallelism();
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder details = new StringBuilder();
+        details.append("Delta-stepping tree from ").append(sourceId).append(":\n");
+        details.append("Delta: ").append(result.delta).append("\n");
+        details.append("Buckets: ").append(result.bucketsProcessed)
+            .append(", light phases: ").append(result.phases).append("\n");
+        details.append("Parallelism: ").append(result.parallelism).append("\n");
+        details.append("Time: ").append(elapsedMs).append(" ms");
+        result.details = details.toString();
+        return result;
+    }
+
+    /**
+     * Bucket width for a graph: the maximum arc energy divided by the average
+     * out-degree (the Meyer-Sanders choice), so a node has about one light arc
+     * per unit of maximum weight, kept between the smallest positive and the
+     * largest energy.
+     */
+    public static int chooseDelta(RoutingGraph graph) {
+        int arcs = graph.arcCount();
+        if (arcs == 0) {
+            return 1;
+        }
+        int max = 0;
+        int minPositive = Integer.MAX_VALUE;
+        for (int a = 0; a < arcs; a++) {
+            int energy = graph.energy[a];
+            if (energy < 0) {
+                throw new IllegalArgumentException("Delta-stepping needs non-negative energies, found " + energy);
+            }
+            max = Math.max(max, energy);
+            if (energy > 0) {
+                minPositive = Math.min(minPositive, energy);
+            }
+        }
+        if (max == 0) {
+            return 1;
+        }
+        double averageDegree = (double) arcs / Math.max(1, graph.nodeCount);
+        int delta = (int) Math.ceil(max / Math.max(1.0, averageDegree));
+        return Math.max(minPositive, Math.min(max, delta));
+    }
+
+    /** Per-run state; the bucket structure is only touched by the calling thread. */
+    private static final class Engine {
+        final RoutingGraph graph;
+        final int delta;
+        final ForkJoinPool pool;
+
+        // Arcs of each node reordered light first: lightEnd[u] splits first[u] .. first[u + 1]
+        final int[] head;
+        final int[] energy;
+        final int[] lightEnd;
+
+        // (distance << 32 | predecessor), Long.MAX_VALUE while unreached
+        final long[] tentative;
+        // Absolute bucket a node currently sits in, or -1
+        final int[] bucketOf;
+        // Phase stamp so a node is reported at most once per relaxation round
+        final int[] reported;
+        final int[][] buckets;
+        final int[] bucketSize;
+
+        // Nodes whose distance dropped in the current round
+        final int[] changed;
+        final AtomicInteger changedCount = new AtomicInteger();
+
+        int round;
+        int bucketsProcessed;
+        int phases;
+
+        Engine(RoutingGraph graph, int delta, ForkJoinPool pool) {
+            this.graph = graph;
+            this.delta = delta;
+            this.pool = pool;
+            int n = graph.nodeCount;
+
+            head = new int[graph.arcCount()];
+            energy = new int[graph.arcCount()];
+            lightEnd = new int[n];
+            int maxEnergy = 0;
+            for (int u = 0; u < n; u++) {
+                int light = graph.first[u];
+                int heavy = graph.first[u + 1];
+                for (int a = graph.first[u]; a < graph.first[u + 1]; a++) {
+                    int slot = graph.energy[a] <= delta ? light++ : --heavy;
+                    head[slot] = graph.head[a];
+                    energy[slot] = graph.energy[a];
+                    maxEnergy = Math.max(maxEnergy, graph.energy[a]);
+                }
+                lightEnd[u] = light;
+            }
+
+            tentative = new long[n];
+            bucketOf = new int[n];
+            reported = new int[n];
+            changed = new int[n];
+            Arrays.fill(tentative, Long.MAX_VALUE);
+            Arrays.fill(bucketOf, -1);
+            // Live entries span at most maxEnergy / delta + 1 consecutive buckets, so a ring suffices
+            int ring = maxEnergy / delta + 2;
+            buckets = new int[ring][];
+            bucketSize = new int[ring];
+        }
+
+        void run(int source) {
+            tentative[source] = 0xFFFFFFFFL; // distance 0, predecessor -1
+            insert(source, 0);
+            int[] removed = new int[16];
+
+            for (int current = 0; current >= 0; current = nextBucket(current)) {
+                bucketsProcessed++;
+                int removedCount = 0;
+                int slot = current % buckets.length;
+                while (bucketSize[slot] > 0) {
+                    // Take the bucket's live entries as the frontier of this phase
+                    int[] entries = buckets[slot];
+                    int size = bucketSize[slot];
+                    bucketSize[slot] = 0;
+                    int frontierStart = removedCount;
+                    for (int i = 0; i < size; i++) {
+                        int v = entries[i];
+                        if (bucketOf[v] == current) {
+                            bucketOf[v] = -1;
+                            if (removedCount == removed.length) {
+                                removed = Arrays.copyOf(removed, removedCount * 2);
+                            }
+                            removed[removedCount++] = v;
+                        }
+                    }
+                    if (removedCount == frontierStart) {
+                        break;
+                    }
+                    phases++;
+                    relax(removed, frontierStart, removedCount, true);
+                }
+                relax(removed, 0, removedCount, false);
+            }
+        }
+
+        /** Relaxes the light or heavy arcs of frontier[from .. to) and buckets the improved nodes. */
+        void relax(int[] frontier, int from, int to, boolean light) {
+            if (from == to) {
+                return;
+            }
+            round++;
+            changedCount.set(0);
+            Relaxation task = new Relaxation(this, frontier, from, to, light);
+            if (to - from <= SPLIT_THRESHOLD) {
+                task.compute();
+            } else {
+                pool.invoke(task);
+            }
+            int count = changedCount.get();
+            for (int i = 0; i < count; i++) {
+                int v = changed[i];
+                int bucket = (int) (tentative[v] >>> 32) / delta;
+                if (bucketOf[v] != bucket) {
+                    insert(v, bucket);
+                }
+            }
+        }
+
+        void insert(int v, int bucket) {
+            int slot = bucket % buckets.length;
+            int[] entries = buckets[slot];
+            if (entries == null) {
+                entries = buckets[slot] = new int[16];
+            } else if (bucketSize[slot] == entries.length) {
+                entries = buckets[slot] = Arrays.copyOf(entries, entries.length * 2);
+            }
+            entries[bucketSize[slot]++] = v;
+            bucketOf[v] = bucket;
+        }
+
+        /** Next non-empty bucket after current within one turn of the ring, or -1. */
+        int nextBucket(int current) {
+            for (int step = 1; step <= buckets.length; step++) {
+                int bucket = current + step;
+                int slot = bucket % buckets.length;
+                for (int i = 0; i < bucketSize[slot]; i++) {
+                    if (bucketOf[buckets[slot][i]] == bucket) {
+                        return bucket;
+                    }
+                }
+                bucketSize[slot] = 0; // only stale entries
+            }
+            return -1;
+        }
+
+        /** Scans the arcs of one node; safe to call from any worker thread. */
+        void relaxNode(int u, boolean light) {
+            int base = (int) ((long) LONGS.getVolatile(tentative, u) >>> 32);
+            int from = light ? graph.first[u] : lightEnd[u];
+            int to = light ? lightEnd[u] : graph.first[u + 1];
+            for (int a = from; a < to; a++) {
+                int v = head[a];
+                long candidate = ((long) (base + energy[a]) << 32) | u;
+                if (atomicMin(v, candidate)) {
+                    report(v);
+                }
+            }
+        }
+
+        /** Installs candidate if its distance is strictly lower; the predecessor rides along. */
+        private boolean atomicMin(int v, long candidate) {
+            long current = (long) LONGS.getVolatile(tentative, v);
+            while ((candidate >>> 32) < (current >>> 32)) {
+                if (LONGS.compareAndSet(tentative, v, current, candidate)) {
+                    return true;
+                }
+                current = (long) LONGS.getVolatile(tentative, v);
+            }
+            return false;
+        }
+
+        private void report(int v) {
+            int stamp = (int) INTS.getVolatile(reported, v);
+            if (stamp != round && INTS.compareAndSet(reported, v, stamp, round)) {
+                changed[changedCount.getAndIncrement()] = v;
+            }
+        }
+    }
+
+    /** Splits a frontier slice in halves until it is small enough to scan directly. */
+    private static final class Relaxation extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Engine engine;
+        private final int[] frontier;
+        private final int from;
+        private final int to;
+        private final boolean light;
+
+        Relaxation(Engine engine, int[] frontier, int from, int to, boolean light) {
+            this.engine = engine;
+            this.frontier = frontier;
+            this.from = from;
+            this.to = to;
+            this.light = light;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    engine.relaxNode(frontier[i], light);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Relaxation(engine, frontier, from, mid, light),
+                new Relaxation(engine, frontier, mid, to, light));
+        }
+    }
+}
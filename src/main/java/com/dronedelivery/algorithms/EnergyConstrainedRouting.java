@@ -0,0 +1,277 @@
+package com.dronedelivery.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Node;
+
+public class EnergyConstrainedRouting {
+
+    public static class RouteResult {
+        public boolean feasible;
+        public List<String> path;
+        public int totalEnergy;
+        // Nodes on the path where the drone has to recharge (a subset of the CHARGING nodes on it)
+        public List<String> chargingStops;
+        public int batteryCapacity;
+        public int labelsCreated;
+        public String details;
+    }
+
+    /**
+     * Cheapest route (total energy) from startId to endId that a drone with
+     * the given battery capacity can actually fly: no leg between two
+     * recharges may use more than batteryCapacity. The drone starts fully
+     * charged and can recharge to full at any CHARGING node. Restricted
+     * corridors are skipped.
+     *
+     * Label-setting search over (node, energy used, battery left) labels kept
+     * in primitive pools. A label is discarded when another label at the same
+     * node is at least as cheap and has at least as much battery left (Pareto
+     * dominance), which keeps the state space small. Labels are settled in
+     * order of energy used, so the first label settled at the target is
+     * optimal. Charging stops are then placed as late as possible along the
+     * route, which gives the fewest stops for it.
+     */
+    public static RouteResult findRoute(DroneNetwork network, String startId, String endId, int batteryCapacity) {
+        RouteResult result = new RouteResult();
+        result.batteryCapacity = batteryCapacity;
+        result.chargingStops = new ArrayList<>();
+        if (network.getNode(startId) == null || network.getNode(endId) == null) {
+            result.details = "Unknown start or destination";
+            return result;
+        }
+
+        RoutingGraph graph = RoutingGraph.cached(network);
+        if (graph.minEnergy < 0) {
+            // Labels are settled in order of energy used, packed into the heap key as an unsigned value
+            result.details = "Energy-constrained routing needs non-negative energies, found " + graph.minEnergy;
+            return result;
+        }
+        int start = network.indexOf(startId);
+        int end = network.indexOf(endId);
+        boolean[] charging = new boolean[graph.nodeCount];
+        for (Node node : network.getChargingPoints()) {
+            charging[node.getIndex()] = true;
+        }
+
+        LabelPool labels = new LabelPool(graph.nodeCount);
+        LabelHeap heap = new LabelHeap();
+        heap.push(0, labels.add(start, 0, batteryCapacity, -1));
+
+        int found = -1;
+        while (!heap.isEmpty()) {
+            int label = heap.pop();
+            if (labels.dead[label]) {
+                continue;
+            }
+            int node = labels.node[label];
+            if (node == end) {
+                found = label;
+                break;
+            }
+            int cost = labels.cost[label];
+            int battery = labels.battery[label];
+
+            for (int a = graph.first[node]; a < graph.first[node + 1]; a++) {
+                int energy = graph.energy[a];
+                if (energy > battery) {
+                    continue; // not enough charge for this corridor
+                }
+                int next = graph.head[a];
+                int nextCost = cost + energy;
+                // Arriving at a CHARGING node recharges to full
+                int nextBattery = charging[next] ? batteryCapacity : battery - energy;
+                if (labels.isDominated(next, nextCost, nextBattery)) {
+                    continue;
+                }
+                labels.removeDominatedBy(next, nextCost, nextBattery);
+                heap.push(nextCost, labels.add(next, nextCost, nextBattery, label));
+            }
+        }
+
+        result.labelsCreated = labels.size;
+        if (found < 0) {
+            result.details = "No route from " + startId + " to " + endId
+                + " within a battery capacity of " + batteryCapacity
+                + " (" + labels.size + " labels explored)";
+            return result;
+        }
+
+        int length = 0;
+        for (int label = found; label != -1; label = labels.parent[label]) {
+            length++;
+        }
+        int[] route = new int[length];
+        for (int label = found; label != -1; label = labels.parent[label]) {
+            route[--length] = labels.node[label];
+        }
+
+        result.feasible = true;
+        result.totalEnergy = labels.cost[found];
+        result.path = new ArrayList<>();
+        for (int node : route) {
+            result.path.add(network.getRegistry().idOf(node));
+        }
+        for (int i : placeChargingStops(route, labels, found, charging, batteryCapacity)) {
+            result.chargingStops.add(result.path.get(i));
+        }
+
+        StringBuilder details = new StringBuilder();
+        details.append("Energy-constrained route (battery ").append(batteryCapacity).append("):\n");
+        details.append(String.join(" → ", result.path)).append("\n");
+        details.append("Total Energy: ").append(result.totalEnergy).append("\n");
+        details.append("Charging stops: ")
+            .append(result.chargingStops.isEmpty() ? "none" : String.join(", ", result.chargingStops)).append("\n");
+        details.append("Labels explored: ").append(labels.size);
+        result.details = details.toString();
+        return result;
+    }
+
+    /**
+     * Positions on the route where the drone recharges: at each CHARGING node,
+     * only if the remaining battery cannot cover the way to the next CHARGING
+     * node (or the destination).
+     */
+    private static List<Integer> placeChargingStops(int[] route, LabelPool labels, int found,
+                                                    boolean[] charging, int batteryCapacity) {
+        // Energy used up to each position, read back from the label chain
+        int[] used = new int[route.length];
+        int position = route.length - 1;
+        for (int label = found; label != -1; label = labels.parent[label]) {
+            used[position--] = labels.cost[label];
+        }
+
+        List<Integer> stops = new ArrayList<>();
+        int battery = batteryCapacity;
+        for (int i = 1; i < route.length - 1; i++) {
+            battery -= used[i] - used[i - 1];
+            if (!charging[route[i]]) {
+                continue;
+            }
+            int nextStop = i + 1;
+            while (nextStop < route.length - 1 && !charging[route[nextStop]]) {
+                nextStop++;
+            }
+            if (used[nextStop] - used[i] > battery) {
+                stops.add(i);
+                battery = batteryCapacity;
+            }
+        }
+        return stops;
+    }
+
+    /** Struct-of-arrays label storage with a per-node list of non-dominated labels. */
+    private static class LabelPool {
+        int[] node = new int[256];
+        int[] cost = new int[256];
+        int[] battery = new int[256];
+        int[] parent = new int[256];
+        int[] nextAtNode = new int[256];
+        boolean[] dead = new boolean[256];
+        final int[] firstAtNode;
+        int size;
+
+        LabelPool(int nodeCount) {
+            firstAtNode = new int[nodeCount];
+            Arrays.fill(firstAtNode, -1);
+        }
+
+        int add(int at, int labelCost, int labelBattery, int labelParent) {
+            if (size == node.length) {
+                int length = size * 2;
+                node = Arrays.copyOf(node, length);
+                cost = Arrays.copyOf(cost, length);
+                battery = Arrays.copyOf(battery, length);
+                parent = Arrays.copyOf(parent, length);
+                nextAtNode = Arrays.copyOf(nextAtNode, length);
+                dead = Arrays.copyOf(dead, length);
+            }
+            int label = size++;
+            node[label] = at;
+            cost[label] = labelCost;
+            battery[label] = labelBattery;
+            parent[label] = labelParent;
+            nextAtNode[label] = firstAtNode[at];
+            firstAtNode[at] = label;
+            return label;
+        }
+
+        boolean isDominated(int at, int labelCost, int labelBattery) {
+            for (int l = firstAtNode[at]; l != -1; l = nextAtNode[l]) {
+                if (cost[l] <= labelCost && battery[l] >= labelBattery) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Drops labels at the node that the new label dominates; they stay in the heap as dead entries. */
+        void removeDominatedBy(int at, int labelCost, int labelBattery) {
+            int previous = -1;
+            for (int l = firstAtNode[at]; l != -1; l = nextAtNode[l]) {
+                if (cost[l] >= labelCost && battery[l] <= labelBattery) {
+                    dead[l] = true;
+                    if (previous == -1) {
+                        firstAtNode[at] = nextAtNode[l];
+                    } else {
+                        nextAtNode[previous] = nextAtNode[l];
+                    }
+                } else {
+                    previous = l;
+                }
+            }
+        }
+    }
+
+    /** Binary min-heap of labels keyed by energy used, packed as (cost << 32 | label) longs. */
+    private static class LabelHeap {
+        private long[] heap = new long[256];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(int cost, int label) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            long entry = ((long) cost << 32) | label;
+            int pos = size++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (heap[parent] <= entry) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                pos = parent;
+            }
+            heap[pos] = entry;
+        }
+
+        int pop() {
+            int label = (int) heap[0];
+            long last = heap[--size];
+            int pos = 0;
+            int half = size >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[pos] = heap[child];
+                pos = child;
+            }
+            if (size > 0) {
+                heap[pos] = last;
+            }
+            return label;
+        }
+    }
+}
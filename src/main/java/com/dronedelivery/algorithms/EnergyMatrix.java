@@ -0,0 +1,193 @@
+package com.dronedelivery.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.IndexedMinHeap;
+import com.dronedelivery.backend.Node;
+
+public class EnergyMatrix {
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    public static class MatrixResult {
+        public String[] sources;
+        public String[] targets;
+        // energy[i][j]: cheapest energy from sources[i] to targets[j], or UNREACHABLE
+        public int[][] energy;
+        // predecessors[i][node index]: previous node on the path from sources[i], or -1; null unless requested
+        public int[][] predecessors;
+        public String details;
+
+        private final DroneNetwork network;
+
+        MatrixResult(DroneNetwork network) {
+            this.network = network;
+        }
+
+        /** Node ids of the path from sources[i] to targets[j], or null if unreachable or not recorded. */
+        public List<String> getPath(int i, int j) {
+            if (predecessors == null || energy[i][j] == UNREACHABLE) {
+                return null;
+            }
+            List<String> path = new ArrayList<>();
+            for (int current = network.indexOf(targets[j]); current != -1; current = predecessors[i][current]) {
+                path.add(network.getRegistry().idOf(current));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+
+    /**
+     * Distributor × delivery-point energy matrix (both sorted by id), using all
+     * available processors.
+     */
+    public static MatrixResult computeHubDeliveryMatrix(DroneNetwork network, boolean withPredecessors) {
+        List<String> hubs = new ArrayList<>();
+        for (Node node : network.getDistributors()) {
+            hubs.add(node.getId());
+        }
+        List<String> deliveries = new ArrayList<>();
+        for (Node node : network.getDeliveryPoints()) {
+            deliveries.add(node.getId());
+        }
+        hubs.sort(null);
+        deliveries.sort(null);
+        return computeMatrix(network, hubs, deliveries, withPredecessors,
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Many-to-many energy matrix: one one-to-all Dijkstra per source over a
+     * shared RoutingGraph, spread over a fixed pool of threads. Each thread
+     * reuses its own primitive scratch arrays and stops a search as soon as
+     * every target is settled. Restricted corridors are skipped, as in
+     * DroneNetwork.findShortestPath, and the energies are identical to it.
+     */
+    public static MatrixResult computeMatrix(DroneNetwork network, List<String> sourceIds,
+                                             List<String> targetIds, boolean withPredecessors, int threads) {
+        long start = System.nanoTime();
+        RoutingGraph graph = RoutingGraph.of(network);
+        int n = graph.nodeCount;
+
+        MatrixResult result = new MatrixResult(network);
+        result.sources = sourceIds.toArray(new String[0]);
+        result.targets = targetIds.toArray(new String[0]);
+        result.energy = new int[result.sources.length][];
+        if (withPredecessors) {
+            result.predecessors = new int[result.sources.length][];
+        }
+
+        int[] sources = toIndices(network, result.sources);
+        int[] targets = toIndices(network, result.targets);
+        // Distinct target nodes, so a search knows when all of them are settled
+        boolean[] isTarget = new boolean[n];
+        int distinctTargets = 0;
+        for (int target : targets) {
+            if (target >= 0 && !isTarget[target]) {
+                isTarget[target] = true;
+                distinctTargets++;
+            }
+        }
+        final int targetCount = distinctTargets;
+
+        int workers = Math.max(1, Math.min(threads, sources.length));
+        AtomicInteger nextSource = new AtomicInteger();
+        Runnable worker = () -> {
+            int[] distances = new int[n];
+            int[] previous = new int[n];
+            int[] touched = new int[n];
+            Arrays.fill(distances, UNREACHABLE);
+            Arrays.fill(previous, -1);
+            IndexedMinHeap heap = new IndexedMinHeap(n);
+
+            for (int i = nextSource.getAndIncrement(); i < sources.length; i = nextSource.getAndIncrement()) {
+                int touchedCount = 0;
+                int source = sources[i];
+                if (source >= 0 && targetCount > 0) {
+                    distances[source] = 0;
+                    touched[touchedCount++] = source;
+                    heap.insertOrDecrease(source, 0);
+                }
+                int remaining = targetCount;
+                while (!heap.isEmpty()) {
+                    int current = heap.poll();
+                    if (isTarget[current] && --remaining == 0) {
+                        break;
+                    }
+                    int currentDist = distances[current];
+                    for (int a = graph.first[current]; a < graph.first[current + 1]; a++) {
+                        int neighbor = graph.head[a];
+                        int newDist = currentDist + graph.energy[a];
+                        if (newDist < distances[neighbor]) {
+                            if (distances[neighbor] == UNREACHABLE) {
+                                touched[touchedCount++] = neighbor;
+                            }
+                            distances[neighbor] = newDist;
+                            previous[neighbor] = current;
+                            heap.insertOrDecrease(neighbor, newDist);
+                        }
+                    }
+                }
+                heap.clear();
+
+                int[] row = new int[targets.length];
+                for (int j = 0; j < targets.length; j++) {
+                    row[j] = targets[j] >= 0 ? distances[targets[j]] : UNREACHABLE;
+                }
+                result.energy[i] = row;
+                if (result.predecessors != null) {
+                    result.predecessors[i] = previous.clone();
+                }
+                for (int k = 0; k < touchedCount; k++) {
+                    distances[touched[k]] = UNREACHABLE;
+                    previous[touched[k]] = -1;
+                }
+            }
+        };
+
+        if (workers == 1) {
+            worker.run();
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(workers);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < workers; t++) {
+                    futures.add(pool.submit(worker));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException("Energy matrix computation failed", e);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder details = new StringBuilder();
+        details.append("Many-to-many energy matrix:\n");
+        details.append("Sources: ").append(sources.length).append("\n");
+        details.append("Targets: ").append(targets.length).append("\n");
+        details.append("Threads: ").append(workers).append("\n");
+        details.append("Time: ").append(elapsedMs).append(" ms");
+        result.details = details.toString();
+        return result;
+    }
+
+    private static int[] toIndices(DroneNetwork network, String[] ids) {
+        int[] indices = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            indices[i] = network.getNode(ids[i]) != null ? network.indexOf(ids[i]) : -1;
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,765 @@
+package com.dronedelivery.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.IndexedMinHeap;
+import com.dronedelivery.backend.Node;
+
+/**
+ * Discrete-event simulation of a delivery fleet flying the network, to see
+ * how it behaves under load: where orders pile up, how busy the drones are
+ * and which corridors become the bottleneck.
+ *
+ * Orders arrive as a Poisson stream at random DELIVERY nodes. Each is queued
+ * (first come, first served) at the DISTRIBUTOR it is cheapest to reach from,
+ * and flown by the next idle drone there, out and back along the cheapest
+ * corridors; the drone then rejoins that hub's pool. Drones leave a hub with
+ * a full battery and drain it by the corridors' energy; at a CHARGING node
+ * they recharge to full when the battery would not last to the next charging
+ * point (or the end of the trip). A corridor holds at most its capacity of
+ * drones at a time, both directions together; a drone finding it full waits
+ * at the node, first come, first served. Orders whose route cannot be flown
+ * even with recharging are rejected.
+ *
+ * Time runs in whole milliseconds. Every drone has at most one pending event
+ * (its arrival at the next node, or the end of a recharge), so the event
+ * queue is a binary heap of (time, drone) packed into longs, with no objects
+ * per event; ties are taken in drone order, which keeps runs reproducible
+ * for a given seed. Routes are built per destination on first use and
+ * shared by all later orders to it.
+ */
+public class FleetSimulation {
+
+    /** Simulation parameters; times in seconds, distances in map units, energy in corridor energy units. */
+    public static class Config {
+        public double duration = 8 * 3600;
+        public double ordersPerHour = 120;
+        public int dronesPerDistributor = 5;
+        // Map units per second
+        public double droneSpeed = 10;
+        public int batteryCapacity = 500;
+        // Energy units recharged per second
+        public double chargeRate = 5;
+        public long seed = 1;
+    }
+
+    public static class SimulationResult {
+        public long ordersArrived;
+        public long ordersDelivered;
+        // No route a drone can fly with its battery
+        public long ordersRejected;
+        // Still waiting for a drone when the simulation ended
+        public long ordersQueued;
+        public double throughputPerHour;
+        // Seconds from arrival to dispatch
+        public double meanQueueDelay;
+        public double maxQueueDelay;
+        // Seconds from arrival to delivery
+        public double meanDeliveryTime;
+        // Seconds spent waiting for full corridors, per dispatched order
+        public double meanCorridorWait;
+        // Share of drone time spent away from a hub
+        public double droneUtilization;
+        // Occupancy over capacity, averaged over the corridors that were used
+        public double meanCorridorUtilization;
+        public double busiestCorridorUtilization;
+        public String busiestCorridor;
+        public long chargingStops;
+        public long events;
+        public double eventsPerSecond;
+        public String details;
+    }
+
+    public static SimulationResult simulate(DroneNetwork network, Config config) {
+        return simulate(network, config, ProgressMonitor.NONE);
+    }
+
+    public static SimulationResult simulate(DroneNetwork network, Config config, ProgressMonitor monitor) {
+        SimulationResult result = new SimulationResult();
+        List<Node> hubs = network.getDistributors();
+        List<Node> deliveries = network.getDeliveryPoints();
+        if (hubs.isEmpty() || deliveries.isEmpty()) {
+            result.details = "Network must have distributors and delivery points";
+            return result;
+        }
+        long fleet = (long) hubs.size() * config.dronesPerDistributor;
+        if (fleet < 1 || fleet >= ORDER_EVENT) {
+            result.details = "Fleet size must be between 1 and " + (ORDER_EVENT - 1) + " drones";
+            return result;
+        }
+        if (config.duration <= 0 || config.ordersPerHour <= 0 || config.droneSpeed <= 0
+                || config.batteryCapacity <= 0 || config.chargeRate <= 0) {
+            result.details = "Duration, order rate, speed, battery and charge rate must be positive";
+            return result;
+        }
+        RoutingGraph graph = RoutingGraph.cached(network);
+        if (graph.minEnergy < 0) {
+            // Trips are planned by Dijkstra, and a negative corridor would also charge the battery
+            result.details = "Fleet simulation needs non-negative energies, found " + graph.minEnergy;
+            return result;
+        }
+
+        Simulator simulator = new Simulator(network, graph, config, hubs, deliveries);
+        long startTime = System.nanoTime();
+        simulator.run(monitor);
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        simulator.report(result, elapsed);
+        return result;
+    }
+
+    // ===== Event queue =====
+
+    // Low bits of an event hold the drone; this id is the next order arrival
+    private static final int ID_BITS = 24;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final int ORDER_EVENT = (int) ID_MASK;
+    private static final long TICKS_PER_SECOND = 1000;
+
+    /** Binary min-heap of events packed as (time << ID_BITS | id) longs. */
+    private static class EventQueue {
+        private long[] heap = new long[256];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peek() {
+            return heap[0];
+        }
+
+        void push(long time, int id) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            long entry = (time << ID_BITS) | id;
+            int pos = size++;
+            while (pos > 0) {
+                int parent = (pos - 1) >>> 1;
+                if (heap[parent] <= entry) {
+                    break;
+                }
+                heap[pos] = heap[parent];
+                pos = parent;
+            }
+            heap[pos] = entry;
+        }
+
+        void pop() {
+            long last = heap[--size];
+            int pos = 0;
+            int half = size >>> 1;
+            while (pos < half) {
+                int child = 2 * pos + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (last <= heap[child]) {
+                    break;
+                }
+                heap[pos] = heap[child];
+                pos = child;
+            }
+            if (size > 0) {
+                heap[pos] = last;
+            }
+        }
+    }
+
+    // ===== Simulation state =====
+
+    private static final int NONE = -1;
+    private static final int UNPLANNED = -2;
+
+    private static final int IDLE = 0;
+    private static final int FLYING = 1;
+    private static final int WAITING = 2;
+    private static final int CHARGING = 3;
+
+    /**
+     * All state in primitive arrays. A trip is a run of steps: step s is at
+     * node stepNode[s] and leaves it through corridor stepCorridor[s] (NONE at
+     * the hub the trip ends at). Corridors are EdgeStore ids, with both
+     * directions of a bidirectional corridor counted on the forward edge.
+     */
+    private static final class Simulator {
+        private final DroneNetwork network;
+        private final EdgeStore store;
+        private final RoutingGraph graph;
+        private final Config config;
+        private final long horizon;
+        private final int battery;
+        private final Random random;
+        private final EventQueue events = new EventQueue();
+        private long now;
+
+        // Network
+        private final double[] x;
+        private final double[] y;
+        private final boolean[] charging;
+        private final int[] hubSlot;
+        private final int[] hubNodes;
+        private final int[] deliveryNodes;
+        // Cheapest way out from a hub: the arc into each node and the hub it starts at
+        private final int[] outArc;
+        private final int[] outHub;
+        // Scratch for the searches back to a hub
+        private final int[] backDist;
+        private final int[] backArc;
+        private final IndexedMinHeap backHeap;
+        private int[] touched = new int[64];
+
+        // Trips, built on first use per destination
+        private final int[] tripOf;
+        private int tripCount;
+        private int[] tripFirst = new int[64];
+        private int[] tripDelivery = new int[64];
+        private int stepCount;
+        private int[] stepNode = new int[256];
+        private int[] stepCorridor = new int[256];
+        private long[] stepTicks = new long[256];
+        private int[] stepEnergy = new int[256];
+        // Energy from the step to the next charging point or the end of the trip
+        private int[] stepNeed = new int[256];
+
+        // Corridors
+        private final int[] capacity;
+        private final int[] occupancy;
+        private final int[] waitHead;
+        private final int[] waitTail;
+        private final long[] lastChange;
+        private final long[] occupiedTicks;
+
+        // Drones; next links a drone into its hub's idle stack or a corridor's wait queue
+        private final int[] state;
+        private final int[] trip;
+        private final int[] step;
+        private final int[] charge;
+        private final int[] next;
+        private final long[] orderTime;
+        private final long[] busySince;
+        private final long[] waitSince;
+
+        // Orders queued at each hub, in pooled linked lists
+        private final int[] idleHead;
+        private final int[] queueHead;
+        private final int[] queueTail;
+        private int[] orderTrip = new int[256];
+        private long[] orderArrival = new long[256];
+        private int[] orderNext = new int[256];
+        private int orderCount;
+        private int freeOrder = NONE;
+
+        // Metrics
+        private long arrived;
+        private long rejected;
+        private long dispatched;
+        private long delivered;
+        private long queueDelayTicks;
+        private long maxQueueDelayTicks;
+        private long deliveryTicks;
+        private long corridorWaitTicks;
+        private long chargingStops;
+        private long chargingTicks;
+        private long busyTicks;
+        private long eventCount;
+
+        Simulator(DroneNetwork network, RoutingGraph graph, Config config, List<Node> hubs, List<Node> deliveries) {
+            this.network = network;
+            this.store = network.getEdgeStore();
+            this.graph = graph;
+            this.config = config;
+            this.horizon = Math.round(config.duration * TICKS_PER_SECOND);
+            this.battery = config.batteryCapacity;
+            this.random = new Random(config.seed);
+
+            int n = graph.nodeCount;
+            x = new double[n];
+            y = new double[n];
+            for (int i = 0; i < n; i++) {
+                Node node = network.getNode(i);
+                if (node != null) {
+                    x[i] = node.getX();
+                    y[i] = node.getY();
+                }
+            }
+            charging = new boolean[n];
+            for (Node node : network.getChargingPoints()) {
+                charging[node.getIndex()] = true;
+            }
+            hubSlot = new int[n];
+            Arrays.fill(hubSlot, NONE);
+            hubNodes = new int[hubs.size()];
+            for (int h = 0; h < hubNodes.length; h++) {
+                hubNodes[h] = hubs.get(h).getIndex();
+                hubSlot[hubNodes[h]] = h;
+            }
+            deliveryNodes = new int[deliveries.size()];
+            for (int i = 0; i < deliveryNodes.length; i++) {
+                deliveryNodes[i] = deliveries.get(i).getIndex();
+            }
+
+            outArc = new int[n];
+            outHub = new int[n];
+            searchFromHubs();
+            backDist = new int[n];
+            Arrays.fill(backDist, Integer.MAX_VALUE);
+            backArc = new int[n];
+            backHeap = new IndexedMinHeap(n);
+            tripOf = new int[n];
+            Arrays.fill(tripOf, UNPLANNED);
+
+            int corridors = store.size();
+            capacity = new int[corridors];
+            for (int e = 0; e < corridors; e++) {
+                capacity[e] = Math.max(1, store.capacity(e));
+            }
+            occupancy = new int[corridors];
+            waitHead = new int[corridors];
+            waitTail = new int[corridors];
+            Arrays.fill(waitHead, NONE);
+            lastChange = new long[corridors];
+            occupiedTicks = new long[corridors];
+
+            int fleet = hubNodes.length * config.dronesPerDistributor;
+            state = new int[fleet];
+            trip = new int[fleet];
+            step = new int[fleet];
+            charge = new int[fleet];
+            next = new int[fleet];
+            orderTime = new long[fleet];
+            busySince = new long[fleet];
+            waitSince = new long[fleet];
+            idleHead = new int[hubNodes.length];
+            queueHead = new int[hubNodes.length];
+            queueTail = new int[hubNodes.length];
+            Arrays.fill(idleHead, NONE);
+            Arrays.fill(queueHead, NONE);
+            for (int drone = fleet - 1; drone >= 0; drone--) {
+                int h = drone / config.dronesPerDistributor;
+                next[drone] = idleHead[h];
+                idleHead[h] = drone;
+            }
+        }
+
+        /** Multi-source Dijkstra (energy) from all hubs over outgoing arcs. */
+        private void searchFromHubs() {
+            int n = graph.nodeCount;
+            int[] dist = new int[n];
+            Arrays.fill(dist, Integer.MAX_VALUE);
+            Arrays.fill(outArc, NONE);
+            Arrays.fill(outHub, NONE);
+            IndexedMinHeap heap = new IndexedMinHeap(n);
+            for (int h : hubNodes) {
+                dist[h] = 0;
+                outHub[h] = h;
+                heap.insertOrDecrease(h, 0);
+            }
+            while (!heap.isEmpty()) {
+                int u = heap.poll();
+                for (int a = graph.first[u]; a < graph.first[u + 1]; a++) {
+                    int v = graph.head[a];
+                    int d = dist[u] + graph.energy[a];
+                    if (d < dist[v]) {
+                        dist[v] = d;
+                        outArc[v] = a;
+                        outHub[v] = outHub[u];
+                        heap.insertOrDecrease(v, d);
+                    }
+                }
+            }
+        }
+
+        // ===== Event loop =====
+
+        void run(ProgressMonitor monitor) {
+            events.push(nextArrival(), ORDER_EVENT);
+            while (!events.isEmpty()) {
+                long entry = events.peek();
+                long time = entry >>> ID_BITS;
+                if (time > horizon) {
+                    break;
+                }
+                events.pop();
+                now = time;
+                int id = (int) (entry & ID_MASK);
+                if (id == ORDER_EVENT) {
+                    orderArrived();
+                    events.push(nextArrival(), ORDER_EVENT);
+                } else if (state[id] == CHARGING) {
+                    charge[id] = battery;
+                    enterCorridor(id);
+                } else {
+                    arrive(id);
+                }
+                if ((++eventCount & 0xFFFF) == 0) {
+                    monitor.checkpoint(now, horizon);
+                }
+            }
+
+            // Close the books at the horizon
+            now = horizon;
+            for (int drone = 0; drone < state.length; drone++) {
+                if (state[drone] != IDLE) {
+                    busyTicks += now - busySince[drone];
+                }
+            }
+            for (int c = 0; c < occupancy.length; c++) {
+                account(c);
+            }
+        }
+
+        private long nextArrival() {
+            double gap = -Math.log(1 - random.nextDouble()) * 3600 / config.ordersPerHour;
+            return now + Math.round(gap * TICKS_PER_SECOND);
+        }
+
+        private void orderArrived() {
+            arrived++;
+            int destination = deliveryNodes[random.nextInt(deliveryNodes.length)];
+            int t = tripOf[destination];
+            if (t == UNPLANNED) {
+                t = planTrip(destination);
+                tripOf[destination] = t;
+            }
+            if (t == NONE) {
+                rejected++;
+                return;
+            }
+
+            int h = hubSlot[stepNode[tripFirst[t]]];
+            int order = newOrder();
+            orderTrip[order] = t;
+            orderArrival[order] = now;
+            orderNext[order] = NONE;
+            if (queueHead[h] == NONE) {
+                queueHead[h] = order;
+            } else {
+                orderNext[queueTail[h]] = order;
+            }
+            queueTail[h] = order;
+            dispatch(h);
+        }
+
+        /** Sends idle drones of hub h after its queued orders, oldest first. */
+        private void dispatch(int h) {
+            while (idleHead[h] != NONE && queueHead[h] != NONE) {
+                int drone = idleHead[h];
+                idleHead[h] = next[drone];
+                int order = queueHead[h];
+                queueHead[h] = orderNext[order];
+
+                long delay = now - orderArrival[order];
+                queueDelayTicks += delay;
+                maxQueueDelayTicks = Math.max(maxQueueDelayTicks, delay);
+                dispatched++;
+
+                trip[drone] = orderTrip[order];
+                step[drone] = tripFirst[trip[drone]];
+                charge[drone] = battery;
+                orderTime[drone] = orderArrival[order];
+                busySince[drone] = now;
+                orderNext[order] = freeOrder;
+                freeOrder = order;
+                enterCorridor(drone);
+            }
+        }
+
+        /** Takes off through the drone's next corridor, or joins its wait queue when it is full. */
+        private void enterCorridor(int drone) {
+            int c = stepCorridor[step[drone]];
+            if (occupancy[c] < capacity[c]) {
+                occupy(c, drone);
+                return;
+            }
+            state[drone] = WAITING;
+            waitSince[drone] = now;
+            next[drone] = NONE;
+            if (waitHead[c] == NONE) {
+                waitHead[c] = drone;
+            } else {
+                next[waitTail[c]] = drone;
+            }
+            waitTail[c] = drone;
+        }
+
+        private void occupy(int c, int drone) {
+            account(c);
+            occupancy[c]++;
+            state[drone] = FLYING;
+            events.push(now + stepTicks[step[drone]], drone);
+        }
+
+        /** Adds the occupancy since the last change to the corridor's total. */
+        private void account(int c) {
+            occupiedTicks[c] += occupancy[c] * (now - lastChange[c]);
+            lastChange[c] = now;
+        }
+
+        /** The drone reached the end of its current corridor. */
+        private void arrive(int drone) {
+            int s = step[drone];
+            int c = stepCorridor[s];
+            account(c);
+            occupancy[c]--;
+            int waiting = waitHead[c];
+            if (waiting != NONE) {
+                waitHead[c] = next[waiting];
+                corridorWaitTicks += now - waitSince[waiting];
+                occupy(c, waiting);
+            }
+
+            charge[drone] -= stepEnergy[s];
+            step[drone] = ++s;
+            if (s == tripDelivery[trip[drone]]) {
+                delivered++;
+                deliveryTicks += now - orderTime[drone];
+            }
+            if (stepCorridor[s] == NONE) {
+                // Back at a hub
+                int h = hubSlot[stepNode[s]];
+                state[drone] = IDLE;
+                busyTicks += now - busySince[drone];
+                next[drone] = idleHead[h];
+                idleHead[h] = drone;
+                dispatch(h);
+                return;
+            }
+            if (charging[stepNode[s]] && charge[drone] < stepNeed[s]) {
+                long ticks = (long) Math.ceil((battery - charge[drone]) * TICKS_PER_SECOND / config.chargeRate);
+                state[drone] = CHARGING;
+                chargingStops++;
+                chargingTicks += ticks;
+                events.push(now + ticks, drone);
+                return;
+            }
+            enterCorridor(drone);
+        }
+
+        private int newOrder() {
+            if (freeOrder != NONE) {
+                int order = freeOrder;
+                freeOrder = orderNext[order];
+                return order;
+            }
+            if (orderCount == orderTrip.length) {
+                int length = orderCount * 2;
+                orderTrip = Arrays.copyOf(orderTrip, length);
+                orderArrival = Arrays.copyOf(orderArrival, length);
+                orderNext = Arrays.copyOf(orderNext, length);
+            }
+            return orderCount++;
+        }
+
+        // ===== Trips =====
+
+        /**
+         * Builds the trip to a destination: hub → destination → same hub along
+         * the cheapest corridors. Returns its id, or NONE when there is no way
+         * there and back or the battery does not last between charging points.
+         */
+        private int planTrip(int destination) {
+            int hub = outHub[destination];
+            if (hub == NONE) {
+                return NONE;
+            }
+            int[] back = arcsBack(destination, hub);
+            if (back == null) {
+                return NONE;
+            }
+            int outLength = 0;
+            for (int v = destination; v != hub; v = graph.tail(outArc[v])) {
+                outLength++;
+            }
+            int length = outLength + back.length + 1;
+            int[] arcs = new int[length - 1];
+            int v = destination;
+            for (int i = outLength - 1; i >= 0; i--) {
+                arcs[i] = outArc[v];
+                v = graph.tail(arcs[i]);
+            }
+            System.arraycopy(back, 0, arcs, outLength, back.length);
+
+            ensureSteps(stepCount + length);
+            int first = stepCount;
+            stepNode[first] = hub;
+            for (int i = 0; i < length - 1; i++) {
+                int a = arcs[i];
+                int s = first + i;
+                int e = graph.edgeId[a];
+                int to = graph.head[a];
+                stepCorridor[s] = store.isMirror(e) ? store.reverse(e) : e;
+                stepEnergy[s] = graph.energy[a];
+                double distance = Math.hypot(x[to] - x[stepNode[s]], y[to] - y[stepNode[s]]);
+                stepTicks[s] = Math.max(1, Math.round(distance * TICKS_PER_SECOND / config.droneSpeed));
+                stepNode[s + 1] = to;
+            }
+            int last = first + length - 1;
+            stepCorridor[last] = NONE;
+            stepEnergy[last] = 0;
+            stepNeed[last] = 0;
+            for (int s = last - 1; s >= first; s--) {
+                boolean stopsNext = s + 1 < last && charging[stepNode[s + 1]];
+                stepNeed[s] = stepEnergy[s] + (stopsNext ? 0 : stepNeed[s + 1]);
+            }
+
+            // Fly it once with the recharge rule the drones use
+            int left = battery;
+            for (int s = first; s < last; s++) {
+                if (s > first && charging[stepNode[s]] && left < stepNeed[s]) {
+                    left = battery;
+                }
+                left -= stepEnergy[s];
+                if (left < 0) {
+                    return NONE;
+                }
+            }
+
+            if (tripCount == tripFirst.length) {
+                tripFirst = Arrays.copyOf(tripFirst, tripCount * 2);
+                tripDelivery = Arrays.copyOf(tripDelivery, tripCount * 2);
+            }
+            tripFirst[tripCount] = first;
+            tripDelivery[tripCount] = first + outLength;
+            stepCount += length;
+            return tripCount++;
+        }
+
+        /** Cheapest arcs from a node to the hub, by a Dijkstra stopped at the hub; null if it is unreachable. */
+        private int[] arcsBack(int from, int hub) {
+            int touchedCount = 0;
+            backDist[from] = 0;
+            touched[touchedCount++] = from;
+            backHeap.insertOrDecrease(from, 0);
+            boolean found = false;
+            while (!backHeap.isEmpty()) {
+                int u = backHeap.poll();
+                if (u == hub) {
+                    found = true;
+                    break;
+                }
+                for (int a = graph.first[u]; a < graph.first[u + 1]; a++) {
+                    int v = graph.head[a];
+                    int d = backDist[u] + graph.energy[a];
+                    if (d < backDist[v]) {
+                        if (backDist[v] == Integer.MAX_VALUE) {
+                            if (touchedCount == touched.length) {
+                                touched = Arrays.copyOf(touched, touchedCount * 2);
+                            }
+                            touched[touchedCount++] = v;
+                        }
+                        backDist[v] = d;
+                        backArc[v] = a;
+                        backHeap.insertOrDecrease(v, d);
+                    }
+                }
+            }
+            backHeap.clear();
+
+            int[] arcs = null;
+            if (found) {
+                int length = 0;
+                for (int v = hub; v != from; v = graph.tail(backArc[v])) {
+                    length++;
+                }
+                arcs = new int[length];
+                for (int v = hub; v != from; v = graph.tail(backArc[v])) {
+                    arcs[--length] = backArc[v];
+                }
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                backDist[touched[i]] = Integer.MAX_VALUE;
+            }
+            return arcs;
+        }
+
+        private void ensureSteps(int size) {
+            if (size <= stepNode.length) {
+                return;
+            }
+            int length = Math.max(size, stepNode.length * 2);
+            stepNode = Arrays.copyOf(stepNode, length);
+            stepCorridor = Arrays.copyOf(stepCorridor, length);
+            stepTicks = Arrays.copyOf(stepTicks, length);
+            stepEnergy = Arrays.copyOf(stepEnergy, length);
+            stepNeed = Arrays.copyOf(stepNeed, length);
+        }
+
+        // ===== Report =====
+
+        void report(SimulationResult result, double elapsedSeconds) {
+            double seconds = (double) horizon / TICKS_PER_SECOND;
+            result.ordersArrived = arrived;
+            result.ordersDelivered = delivered;
+            result.ordersRejected = rejected;
+            result.ordersQueued = arrived - rejected - dispatched;
+            result.throughputPerHour = delivered * 3600 / seconds;
+            result.meanQueueDelay = dispatched == 0 ? 0 : queueDelayTicks / (double) dispatched / TICKS_PER_SECOND;
+            result.maxQueueDelay = (double) maxQueueDelayTicks / TICKS_PER_SECOND;
+            result.meanDeliveryTime = delivered == 0 ? 0 : deliveryTicks / (double) delivered / TICKS_PER_SECOND;
+            result.meanCorridorWait = dispatched == 0 ? 0 : corridorWaitTicks / (double) dispatched / TICKS_PER_SECOND;
+            result.droneUtilization = busyTicks / ((double) state.length * horizon);
+
+            int busiest = NONE;
+            int used = 0;
+            double total = 0;
+            for (int c = 0; c < occupiedTicks.length; c++) {
+                if (occupiedTicks[c] == 0) {
+                    continue;
+                }
+                double utilization = occupiedTicks[c] / ((double) capacity[c] * horizon);
+                used++;
+                total += utilization;
+                if (busiest == NONE || utilization > result.busiestCorridorUtilization) {
+                    busiest = c;
+                    result.busiestCorridorUtilization = utilization;
+                }
+            }
+            result.meanCorridorUtilization = used == 0 ? 0 : total / used;
+            if (busiest != NONE) {
+                result.busiestCorridor = network.getRegistry().idOf(store.from(busiest))
+                    + (store.isBidirectional(busiest) ? " ↔ " : " → ")
+                    + network.getRegistry().idOf(store.to(busiest));
+            }
+            result.chargingStops = chargingStops;
+            result.events = eventCount;
+            result.eventsPerSecond = elapsedSeconds > 0 ? eventCount / elapsedSeconds : 0;
+
+            StringBuilder details = new StringBuilder();
+            details.append("FLEET SIMULATION\n");
+            details.append("================\n\n");
+            details.append("Simulated: ").append(String.format("%.1f", seconds / 3600)).append(" h, ")
+                .append(hubNodes.length).append(" hubs × ").append(config.dronesPerDistributor).append(" drones, ")
+                .append(String.format("%.0f", config.ordersPerHour)).append(" orders/h\n");
+            details.append("Orders: ").append(arrived).append(" arrived, ")
+                .append(delivered).append(" delivered, ")
+                .append(rejected).append(" rejected, ")
+                .append(result.ordersQueued).append(" still queued\n");
+            details.append("Throughput: ").append(String.format("%.1f", result.throughputPerHour))
+                .append(" deliveries/h\n");
+            details.append("Queueing delay: mean ").append(String.format("%.1f", result.meanQueueDelay))
+                .append(" s, max ").append(String.format("%.1f", result.maxQueueDelay)).append(" s\n");
+            details.append("Delivery time: mean ").append(String.format("%.1f", result.meanDeliveryTime)).append(" s\n");
+            details.append("Corridor waits: ").append(String.format("%.1f", result.meanCorridorWait))
+                .append(" s per order\n");
+            details.append("Drone utilization: ").append(String.format("%.1f%%", 100 * result.droneUtilization)).append("\n");
+            details.append("Corridor utilization: mean ")
+                .append(String.format("%.1f%%", 100 * result.meanCorridorUtilization));
+            if (busiest != NONE) {
+                details.append(", busiest ").append(result.busiestCorridor).append(" at ")
+                    .append(String.format("%.1f%%", 100 * result.busiestCorridorUtilization));
+            }
+            details.append("\n");
+            details.append("Charging stops: ").append(chargingStops).append(" (")
+                .append(String.format("%.1f", chargingTicks / 3600.0 / TICKS_PER_SECOND)).append(" h charging)\n");
+            details.append("Events: ").append(eventCount).append(" in ")
+                .append(String.format("%.2f", elapsedSeconds)).append(" s (")
+                .append(String.format("%.1f", result.eventsPerSecond / 1e6)).append(" M/s)");
+            result.details = details.toString();
+        }
+    }
+}
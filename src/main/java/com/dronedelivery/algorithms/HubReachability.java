@@ -0,0 +1,317 @@
+package com.dronedelivery.algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Node;
+
+public class HubReachability {
+    // Switching parameters from Beamer et al.: go bottom-up once the frontier's
+    // arcs exceed 1/ALPHA of the unexplored ones, back when it drops below n/BETA nodes
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    // Bitmap words (64 nodes each) scanned by one task before splitting stops
+    private static final int WORDS_PER_TASK = 64;
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    public static class ReachabilityResult {
+        public String source;
+        public int reachableCount;
+        public int levels;
+        public int topDownSteps;
+        public int bottomUpSteps;
+        public String details;
+
+        private final DroneNetwork network;
+        private final long[] visited;
+
+        ReachabilityResult(DroneNetwork network, long[] visited) {
+            this.network = network;
+            this.visited = visited;
+        }
+
+        /** Same answer as DroneNetwork.isReachable(source, targetId). */
+        public boolean isReachable(String targetId) {
+            if (network.getNode(targetId) == null) {
+                return false;
+            }
+            int target = network.indexOf(targetId);
+            return (visited[target >>> 6] & (1L << target)) != 0;
+        }
+    }
+
+    public static class SweepResult {
+        public List<String> hubs;
+        // unreachableDeliveries.get(hub): delivery points that hub cannot reach, sorted by id
+        public Map<String, List<String>> unreachableDeliveries;
+        public int deliveryCount;
+        public String details;
+
+        public boolean allReachable() {
+            for (List<String> missing : unreachableDeliveries.values()) {
+                if (!missing.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static ReachabilityResult reachableFrom(DroneNetwork network, String sourceId) {
+        return reachableFrom(network, sourceId, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Every node reachable from sourceId over non-restricted corridors, by a
+     * direction-optimizing BFS (Beamer et al.). Frontier and visited sets are
+     * bitmaps over node indices. Small frontiers are expanded top-down along
+     * outgoing arcs; once the frontier's arcs are a large share of the
+     * unexplored ones, each unvisited node instead looks for a parent in the
+     * frontier along its incoming arcs (bottom-up) and stops at the first
+     * one. Both kinds of step split the bitmap into word ranges on the pool.
+     */
+    public static ReachabilityResult reachableFrom(DroneNetwork network, String sourceId, ForkJoinPool pool) {
+        RoutingGraph graph = RoutingGraph.cached(network);
+        ReachabilityResult result = search(network, graph, sourceId, pool);
+        result.details = "Reachable from " + sourceId + ": " + result.reachableCount + " nodes in "
+            + result.levels + " levels (" + result.topDownSteps + " top-down, "
+            + result.bottomUpSteps + " bottom-up steps)";
+        return result;
+    }
+
+    /**
+     * Reachability of every delivery point from every distributor, for the
+     * sweep run at each shift change. The routing graph and its reverse
+     * adjacency are built once and shared by all the searches.
+     */
+    public static SweepResult sweepHubs(DroneNetwork network) {
+        long start = System.nanoTime();
+        RoutingGraph graph = RoutingGraph.cached(network);
+        List<Node> deliveries = network.getDeliveryPoints();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        SweepResult result = new SweepResult();
+        result.hubs = new ArrayList<>();
+        result.unreachableDeliveries = new LinkedHashMap<>();
+        result.deliveryCount = deliveries.size();
+        int missingTotal = 0;
+        for (Node hub : network.getDistributors()) {
+            ReachabilityResult reach = search(network, graph, hub.getId(), pool);
+            List<String> missing = new ArrayList<>();
+            for (Node delivery : deliveries) {
+                if (!reach.isReachable(delivery.getId())) {
+                    missing.add(delivery.getId());
+                }
+            }
+            missing.sort(null);
+            missingTotal += missing.size();
+            result.hubs.add(hub.getId());
+            result.unreachableDeliveries.put(hub.getId(), missing);
+        }
+
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        StringBuilder details = new StringBuilder();
+        details.append("Hub reachability sweep:\n");
+        details.append("Hubs: ").append(result.hubs.size())
+            .append(", delivery points: ").append(result.deliveryCount).append("\n");
+        details.append("Unreachable hub/delivery pairs: ").append(missingTotal).append("\n");
+        details.append("Time: ").append(elapsedMs).append(" ms");
+        result.details = details.toString();
+        return result;
+    }
+
+    private static ReachabilityResult search(DroneNetwork network, RoutingGraph graph, String sourceId,
+                                             ForkJoinPool pool) {
+        int n = graph.nodeCount;
+        long[] visited = new long[(n + 63) >>> 6];
+        ReachabilityResult result = new ReachabilityResult(network, visited);
+        result.source = sourceId;
+        if (network.getNode(sourceId) == null) {
+            return result;
+        }
+
+        Bfs bfs = new Bfs(graph, visited, pool);
+        bfs.run(network.indexOf(sourceId));
+        result.reachableCount = bfs.visitedCount;
+        result.levels = bfs.topDownSteps + bfs.bottomUpSteps;
+        result.topDownSteps = bfs.topDownSteps;
+        result.bottomUpSteps = bfs.bottomUpSteps;
+        return result;
+    }
+
+    /** Level-synchronous search state; steps are driven from the calling thread. */
+    private static final class Bfs {
+        final RoutingGraph graph;
+        final int[] reverseFirst;
+        final int[] reverseTail;
+        final ForkJoinPool pool;
+        final int nodeCount;
+        final long[] visited;
+        long[] frontier;
+        long[] next;
+
+        // Totals of the step in progress, added once per task
+        final AtomicLong found = new AtomicLong();
+        final AtomicLong foundArcs = new AtomicLong();
+
+        int visitedCount;
+        int topDownSteps;
+        int bottomUpSteps;
+
+        Bfs(RoutingGraph graph, long[] visited, ForkJoinPool pool) {
+            this.graph = graph;
+            int[][] reverse = graph.reverse();
+            this.reverseFirst = reverse[0];
+            this.reverseTail = reverse[2];
+            this.pool = pool;
+            this.nodeCount = graph.nodeCount;
+            this.visited = visited;
+            this.frontier = new long[visited.length];
+            this.next = new long[visited.length];
+        }
+
+        void run(int source) {
+            visited[source >>> 6] |= 1L << source;
+            frontier[source >>> 6] |= 1L << source;
+            visitedCount = 1;
+            long frontierCount = 1;
+            long frontierArcs = outDegree(source);
+            long unexploredArcs = graph.arcCount() - frontierArcs;
+            boolean bottomUp = false;
+
+            while (frontierCount > 0) {
+                if (!bottomUp && frontierArcs > unexploredArcs / ALPHA) {
+                    bottomUp = true;
+                } else if (bottomUp && frontierCount < nodeCount / BETA) {
+                    bottomUp = false;
+                }
+                if (bottomUp) {
+                    bottomUpSteps++;
+                } else {
+                    topDownSteps++;
+                }
+
+                Arrays.fill(next, 0L);
+                found.set(0);
+                foundArcs.set(0);
+                Step step = new Step(this, bottomUp, 0, visited.length);
+                if (visited.length <= WORDS_PER_TASK) {
+                    step.compute();
+                } else {
+                    pool.invoke(step);
+                }
+
+                long[] swap = frontier;
+                frontier = next;
+                next = swap;
+                frontierCount = found.get();
+                frontierArcs = foundArcs.get();
+                unexploredArcs -= frontierArcs;
+                visitedCount += (int) frontierCount;
+            }
+        }
+
+        int outDegree(int node) {
+            return graph.first[node + 1] - graph.first[node];
+        }
+
+        /** Expands the frontier nodes in words [from, to) along outgoing arcs. */
+        void topDown(int from, int to) {
+            long count = 0;
+            long arcs = 0;
+            for (int w = from; w < to; w++) {
+                for (long bits = frontier[w]; bits != 0; bits &= bits - 1) {
+                    int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    for (int a = graph.first[u]; a < graph.first[u + 1]; a++) {
+                        int v = graph.head[a];
+                        long mask = 1L << v;
+                        if (((long) WORDS.getOpaque(visited, v >>> 6) & mask) != 0) {
+                            continue;
+                        }
+                        // Several tasks may reach v at once; only the one that sets the bit claims it
+                        long before = (long) WORDS.getAndBitwiseOr(visited, v >>> 6, mask);
+                        if ((before & mask) == 0) {
+                            WORDS.getAndBitwiseOr(next, v >>> 6, mask);
+                            count++;
+                            arcs += outDegree(v);
+                        }
+                    }
+                }
+            }
+            found.addAndGet(count);
+            foundArcs.addAndGet(arcs);
+        }
+
+        /** Lets each unvisited node in words [from, to) look for a parent in the frontier. */
+        void bottomUp(int from, int to) {
+            long count = 0;
+            long arcs = 0;
+            for (int w = from; w < to; w++) {
+                long unvisited = ~visited[w];
+                if (w == visited.length - 1 && (nodeCount & 63) != 0) {
+                    unvisited &= (1L << nodeCount) - 1; // bits past the last node
+                }
+                long reached = 0;
+                for (long bits = unvisited; bits != 0; bits &= bits - 1) {
+                    int v = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    for (int i = reverseFirst[v]; i < reverseFirst[v + 1]; i++) {
+                        int u = reverseTail[i];
+                        if ((frontier[u >>> 6] & (1L << u)) != 0) {
+                            reached |= 1L << v;
+                            count++;
+                            arcs += outDegree(v);
+                            break;
+                        }
+                    }
+                }
+                // Word w belongs to this task alone during a bottom-up step
+                visited[w] |= reached;
+                next[w] = reached;
+            }
+            found.addAndGet(count);
+            foundArcs.addAndGet(arcs);
+        }
+    }
+
+    /** Splits a word range of the bitmaps in halves down to WORDS_PER_TASK. */
+    private static final class Step extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Bfs bfs;
+        private final boolean bottomUp;
+        private final int from;
+        private final int to;
+
+        Step(Bfs bfs, boolean bottomUp, int from, int to) {
+            this.bfs = bfs;
+            this.bottomUp = bottomUp;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= WORDS_PER_TASK) {
+                if (bottomUp) {
+                    bfs.bottomUp(from, to);
+                } else {
+                    bfs.topDown(from, to);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Step(bfs, bottomUp, from, mid), new Step(bfs, bottomUp, mid, to));
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.dronedelivery.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.IndexedMinHeap;
+import com.dronedelivery.backend.PathResult;
+
+public class KShortestPaths {
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    // Give up after this many accepted paths per requested path when the diversity filter rejects most of them
+    private static final int MAX_PATHS_PER_RESULT = 20;
+
+    public static class PathsResult {
+        public List<PathResult> paths;
+        public int pathsExamined;
+        public int spurSearches;
+        public int treeShortcuts;
+        public String details;
+    }
+
+    /** The k cheapest loopless routes from startId to endId, cheapest first. */
+    public static PathsResult findKShortestPaths(DroneNetwork network, String startId, String endId, int k) {
+        return findKShortestPaths(network, startId, endId, k, 1.0);
+    }
+
+    /**
+     * Ranked loopless alternatives (Yen's algorithm with Lawler's deviation
+     * rule), skipping restricted corridors like findShortestPath.
+     *
+     * One reverse shortest-path tree towards endId is computed up front and
+     * reused by every spur search: if the tree path from the spur node avoids
+     * the banned corridors and the root path it is taken directly, otherwise
+     * an A* search guided by the tree distances finds the spur path. Each
+     * search therefore touches only a small part of the network.
+     *
+     * The diversity filter keeps a route only if it shares at most
+     * maxSharedFraction of its corridors with every route kept before it
+     * (1.0 keeps all of them).
+     */
+    public static PathsResult findKShortestPaths(DroneNetwork network, String startId, String endId,
+                                                 int k, double maxSharedFraction) {
+        PathsResult result = new PathsResult();
+        result.paths = new ArrayList<>();
+        if (network.getNode(startId) == null || network.getNode(endId) == null || k <= 0) {
+            result.details = "Unknown start or destination";
+            return result;
+        }
+
+        RoutingGraph graph = RoutingGraph.cached(network);
+        if (graph.minEnergy < 0) {
+            result.details = "K shortest paths needs non-negative energies, found " + graph.minEnergy;
+            return result;
+        }
+        int source = network.indexOf(startId);
+        int target = network.indexOf(endId);
+        Search search = new Search(graph, target);
+        if (search.toTarget[source] == INFINITY) {
+            result.details = "No path from " + startId + " to " + endId;
+            return result;
+        }
+
+        List<Route> accepted = new ArrayList<>();
+        PriorityQueue<Route> candidates = new PriorityQueue<>();
+        Set<Route> seen = new HashSet<>();
+        List<Route> kept = new ArrayList<>();
+
+        Route best = search.treeRoute(null, 0, source);
+        seen.add(best);
+        candidates.add(best);
+        long sequence = 0;
+
+        while (!candidates.isEmpty() && kept.size() < k && accepted.size() < k * MAX_PATHS_PER_RESULT) {
+            Route route = candidates.poll();
+            accepted.add(route);
+            if (isDiverse(route, kept, maxSharedFraction)) {
+                kept.add(route);
+                result.paths.add(toPathResult(network, route));
+            }
+            if (kept.size() == k) {
+                break;
+            }
+
+            // Spur from every node after the point where this route left its parent
+            for (int i = route.deviation; i < route.nodes.length - 1; i++) {
+                int spur = route.nodes[i];
+                for (Route other : accepted) {
+                    if (other.nodes.length > i + 1 && other.sharesPrefix(route, i)) {
+                        search.banPair(spur, other.nodes[i + 1]);
+                    }
+                }
+                for (int r = 0; r < i; r++) {
+                    search.banNode(route.nodes[r]);
+                }
+
+                Route spurRoute = search.spurRoute(route, i);
+                search.clearBans();
+                if (spurRoute != null && seen.add(spurRoute)) {
+                    spurRoute.sequence = ++sequence;
+                    candidates.add(spurRoute);
+                }
+            }
+        }
+
+        result.pathsExamined = accepted.size();
+        result.spurSearches = search.searches;
+        result.treeShortcuts = search.shortcuts;
+        StringBuilder details = new StringBuilder();
+        details.append("K-shortest loopless paths (Yen):\n");
+        details.append("From: ").append(startId).append(" | To: ").append(endId).append("\n");
+        for (int i = 0; i < result.paths.size(); i++) {
+            PathResult path = result.paths.get(i);
+            details.append("#").append(i + 1).append(" (").append(path.getTotalEnergy()).append("): ")
+                .append(String.join(" → ", path.getPath())).append("\n");
+        }
+        details.append("Paths examined: ").append(result.pathsExamined)
+            .append(" | A* spur searches: ").append(result.spurSearches)
+            .append(" | Tree shortcuts: ").append(result.treeShortcuts);
+        result.details = details.toString();
+        return result;
+    }
+
+    private static boolean isDiverse(Route route, List<Route> kept, double maxSharedFraction) {
+        if (maxSharedFraction >= 1.0 || kept.isEmpty()) {
+            return true;
+        }
+        int corridors = route.nodes.length - 1;
+        for (Route other : kept) {
+            Set<Long> otherCorridors = new HashSet<>();
+            for (int i = 0; i < other.nodes.length - 1; i++) {
+                otherCorridors.add(corridorKey(other.nodes[i], other.nodes[i + 1]));
+            }
+            int shared = 0;
+            for (int i = 0; i < corridors; i++) {
+                if (otherCorridors.contains(corridorKey(route.nodes[i], route.nodes[i + 1]))) {
+                    shared++;
+                }
+            }
+            if (shared > maxSharedFraction * corridors) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Undirected: both directions of a corridor count as the same corridor
+    private static long corridorKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    private static PathResult toPathResult(DroneNetwork network, Route route) {
+        List<String> ids = new ArrayList<>(route.nodes.length);
+        for (int node : route.nodes) {
+            ids.add(network.getRegistry().idOf(node));
+        }
+        return new PathResult(ids, route.cost, network.getVersion());
+    }
+
+    /** A loopless route as node indices, with the energy spent up to each node. */
+    private static class Route implements Comparable<Route> {
+        final int[] nodes;
+        final int[] costTo;
+        final int cost;
+        final int deviation;
+        long sequence;
+
+        Route(int[] nodes, int[] costTo, int deviation) {
+            this.nodes = nodes;
+            this.costTo = costTo;
+            this.cost = costTo[costTo.length - 1];
+            this.deviation = deviation;
+        }
+
+        boolean sharesPrefix(Route other, int length) {
+            for (int i = 0; i <= length; i++) {
+                if (nodes[i] != other.nodes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Route other) {
+            if (cost != other.cost) {
+                return Integer.compare(cost, other.cost);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Route && Arrays.equals(nodes, ((Route) o).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(nodes);
+        }
+    }
+
+    /** Reverse shortest-path tree to the target plus scratch space for the spur searches. */
+    private static class Search {
+        final RoutingGraph graph;
+        final int target;
+        // Cheapest energy from each node to the target, and the arc it leaves by on that path
+        final int[] toTarget;
+        final int[] treeArc;
+        final int[] arcTail;
+
+        final boolean[] bannedNode;
+        final boolean[] bannedArc;
+        int[] bannedNodes = new int[16];
+        int bannedNodeCount;
+        int[] bannedArcs = new int[16];
+        int bannedArcCount;
+
+        final int[] distances;
+        final int[] previousArc;
+        final int[] touched;
+        final IndexedMinHeap heap;
+        int searches;
+        int shortcuts;
+
+        Search(RoutingGraph graph, int target) {
+            this.graph = graph;
+            this.target = target;
+            int n = graph.nodeCount;
+            toTarget = new int[n];
+            treeArc = new int[n];
+            bannedNode = new boolean[n];
+            bannedArc = new boolean[graph.arcCount()];
+            distances = new int[n];
+            previousArc = new int[n];
+            touched = new int[n];
+            heap = new IndexedMinHeap(n);
+            Arrays.fill(distances, INFINITY);
+            arcTail = graph.tails();
+            buildReverseTree();
+        }
+
+        private void buildReverseTree() {
+            int[][] reverse = graph.reverse();
+            int[] reverseFirst = reverse[0];
+            int[] reverseArc = reverse[1];
+            Arrays.fill(toTarget, INFINITY);
+            Arrays.fill(treeArc, -1);
+            toTarget[target] = 0;
+            heap.insertOrDecrease(target, 0);
+            while (!heap.isEmpty()) {
+                int current = heap.poll();
+                for (int r = reverseFirst[current]; r < reverseFirst[current + 1]; r++) {
+                    int arc = reverseArc[r];
+                    int from = arcTail[arc];
+                    int newDist = toTarget[current] + graph.energy[arc];
+                    if (newDist < toTarget[from]) {
+                        toTarget[from] = newDist;
+                        treeArc[from] = arc;
+                        heap.insertOrDecrease(from, newDist);
+                    }
+                }
+            }
+        }
+
+        void banNode(int node) {
+            if (!bannedNode[node]) {
+                bannedNode[node] = true;
+                if (bannedNodeCount == bannedNodes.length) {
+                    bannedNodes = Arrays.copyOf(bannedNodes, bannedNodeCount * 2);
+                }
+                bannedNodes[bannedNodeCount++] = node;
+            }
+        }
+
+        /** Bans every arc from one node to another (parallel corridors included). */
+        void banPair(int from, int to) {
+            for (int a = graph.first[from]; a < graph.first[from + 1]; a++) {
+                if (graph.head[a] == to && !bannedArc[a]) {
+                    bannedArc[a] = true;
+                    if (bannedArcCount == bannedArcs.length) {
+                        bannedArcs = Arrays.copyOf(bannedArcs, bannedArcCount * 2);
+                    }
+                    bannedArcs[bannedArcCount++] = a;
+                }
+            }
+        }
+
+        void clearBans() {
+            for (int i = 0; i < bannedNodeCount; i++) {
+                bannedNode[bannedNodes[i]] = false;
+            }
+            for (int i = 0; i < bannedArcCount; i++) {
+                bannedArc[bannedArcs[i]] = false;
+            }
+            bannedNodeCount = 0;
+            bannedArcCount = 0;
+        }
+
+        /** Root of parent (if any) up to spurIndex, followed by the tree path from spur. */
+        Route treeRoute(Route parent, int spurIndex, int spur) {
+            return treeRoute(parent, spurIndex, spur, treeArc[spur]);
+        }
+
+        /** Same, but leaving spur by firstArc and following the tree from its head. */
+        Route treeRoute(Route parent, int spurIndex, int spur, int firstArc) {
+            int rootLength = spurIndex;
+            int length = rootLength + 1;
+            for (int v = spur, arc = firstArc; v != target; v = graph.head[arc], arc = treeArc[v]) {
+                length++;
+            }
+            int[] nodes = new int[length];
+            int[] costTo = new int[length];
+            if (parent != null) {
+                System.arraycopy(parent.nodes, 0, nodes, 0, rootLength);
+                System.arraycopy(parent.costTo, 0, costTo, 0, rootLength + 1);
+            }
+            int position = rootLength;
+            nodes[position] = spur;
+            for (int v = spur, arc = firstArc; v != target; v = graph.head[arc], arc = treeArc[v]) {
+                costTo[position + 1] = costTo[position] + graph.energy[arc];
+                nodes[++position] = graph.head[arc];
+            }
+            return new Route(nodes, costTo, spurIndex);
+        }
+
+        /** Cheapest route that follows parent's root up to spurIndex and then avoids the bans. */
+        Route spurRoute(Route parent, int spurIndex) {
+            int spur = parent.nodes[spurIndex];
+
+            // Every spur path leaves by some allowed arc a to w and costs at least
+            // energy(a) + toTarget[w]. If a minimizing arc is followed by a tree path
+            // that avoids the banned nodes and spur, that path is optimal as it is.
+            int bound = INFINITY;
+            for (int a = graph.first[spur]; a < graph.first[spur + 1]; a++) {
+                int next = graph.head[a];
+                if (!bannedArc[a] && !bannedNode[next] && toTarget[next] != INFINITY) {
+                    bound = Math.min(bound, graph.energy[a] + toTarget[next]);
+                }
+            }
+            if (bound == INFINITY) {
+                return null;
+            }
+            for (int a = graph.first[spur]; a < graph.first[spur + 1]; a++) {
+                int next = graph.head[a];
+                if (!bannedArc[a] && !bannedNode[next] && toTarget[next] != INFINITY
+                        && graph.energy[a] + toTarget[next] == bound && treePathAllowed(next, spur)) {
+                    shortcuts++;
+                    return treeRoute(parent, spurIndex, spur, a);
+                }
+            }
+
+            // A* towards the target; the tree distances are a consistent lower bound
+            searches++;
+            int touchedCount = 0;
+            distances[spur] = 0;
+            previousArc[spur] = -1;
+            touched[touchedCount++] = spur;
+            heap.insertOrDecrease(spur, toTarget[spur]);
+            boolean found = false;
+            while (!heap.isEmpty()) {
+                int current = heap.poll();
+                if (current == target) {
+                    found = true;
+                    break;
+                }
+                for (int a = graph.first[current]; a < graph.first[current + 1]; a++) {
+                    int next = graph.head[a];
+                    if (bannedArc[a] || bannedNode[next] || toTarget[next] == INFINITY) {
+                        continue;
+                    }
+                    int newDist = distances[current] + graph.energy[a];
+                    if (newDist < distances[next]) {
+                        if (distances[next] == INFINITY) {
+                            touched[touchedCount++] = next;
+                        }
+                        distances[next] = newDist;
+                        previousArc[next] = a;
+                        heap.insertOrDecrease(next, newDist + toTarget[next]);
+                    }
+                }
+            }
+            heap.clear();
+
+            Route route = null;
+            if (found) {
+                int spurLength = 1;
+                for (int v = target; v != spur; v = arcTail[previousArc[v]]) {
+                    spurLength++;
+                }
+                int length = spurIndex + spurLength;
+                int[] nodes = new int[length];
+                int[] costTo = new int[length];
+                System.arraycopy(parent.nodes, 0, nodes, 0, spurIndex);
+                System.arraycopy(parent.costTo, 0, costTo, 0, spurIndex + 1);
+                int position = length - 1;
+                for (int v = target; v != spur; v = arcTail[previousArc[v]]) {
+                    nodes[position] = v;
+                    costTo[position] = costTo[spurIndex] + distances[v];
+                    position--;
+                }
+                nodes[spurIndex] = spur;
+                route = new Route(nodes, costTo, spurIndex);
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                distances[touched[i]] = INFINITY;
+            }
+            return route;
+        }
+
+        /** True if the tree path from node to the target avoids the banned nodes and spur. */
+        private boolean treePathAllowed(int node, int spur) {
+            for (int v = node; v != target; v = graph.head[treeArc[v]]) {
+                if (v == spur || bannedNode[v]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
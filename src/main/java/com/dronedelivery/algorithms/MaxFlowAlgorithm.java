@@ -1,14 +1,10 @@
 package com.dronedelivery.algorithms;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.Map;
-import java.util.Queue;
+import java.util.Arrays;
 import java.util.Set;
 
 import com.dronedelivery.backend.DroneNetwork;
-import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.EdgeStore;
 
 public class MaxFlowAlgorithm {
     
@@ -28,57 +24,71 @@ public class MaxFlowAlgorithm {
      */
     public static FlowResult calculateDeliveryCapacity(DroneNetwork network, String hubId, 
                                                        Set<String> deliveryPointIds) {
+        return calculateDeliveryCapacity(network, hubId, deliveryPointIds, ProgressMonitor.NONE);
+    }
+    
+    /**
+     * Same as above; progress is the flow found so far against the capacity
+     * leaving the hub, and the monitor is checked after every augmenting path.
+     */
+    public static FlowResult calculateDeliveryCapacity(DroneNetwork network, String hubId,
+                                                       Set<String> deliveryPointIds, ProgressMonitor monitor) {
         if (!network.getNodes().containsKey(hubId)) {
             return new FlowResult(0, "Hub not found");
         }
         
-        // Create residual graph
-        Map<String, Map<String, Integer>> residualGraph = createResidualGraph(network);
+        // Node indices are dense, so the super sink simply takes the next free index
+        int source = network.indexOf(hubId);
+        int superSink = network.getIndexBound();
+        ResidualGraph residual = new ResidualGraph(superSink + 1);
+        
+        // Add all non-restricted edges with their capacities
+        EdgeStore edges = network.getEdgeStore();
+        for (int e = 0; e < edges.size(); e++) {
+            if (!edges.isRemoved(e) && !edges.isRestricted(e)) {
+                residual.addArc(edges.from(e), edges.to(e), edges.capacity(e));
+            }
+        }
         
-        // Add super sink connected to all delivery points
-        String superSink = "SUPER_SINK";
+        // Connect all delivery points to the super sink
         for (String deliveryId : deliveryPointIds) {
-            residualGraph.putIfAbsent(deliveryId, new HashMap<>());
-            residualGraph.putIfAbsent(superSink, new HashMap<>());
-            residualGraph.get(deliveryId).put(superSink, Integer.MAX_VALUE / 2); // Large capacity
-            residualGraph.get(superSink).put(deliveryId, 0);
+            int delivery = network.indexOf(deliveryId);
+            if (delivery >= 0) {
+                residual.addArc(delivery, superSink, Integer.MAX_VALUE / 2); // Large capacity
+            }
+        }
+        residual.freeze();
+        
+        // No flow can exceed what leaves the hub
+        long sourceCapacity = 0;
+        for (int i = residual.first[source]; i < residual.first[source + 1]; i++) {
+            sourceCapacity += residual.capacity[residual.arcOrder[i]];
         }
         
         // Run Edmonds-Karp algorithm
         int maxFlow = 0;
         int iterations = 0;
+        int[] parentArc = new int[superSink + 1];
+        int[] queue = new int[superSink + 1];
         
-        while (true) {
-            Map<String, String> parent = new HashMap<>();
-            
-            // BFS to find augmenting path
-            if (!bfsForFlow(residualGraph, hubId, superSink, parent)) {
-                break; // No more augmenting paths
-            }
-            
+        // BFS to find augmenting paths until none is left
+        while (bfsForFlow(residual, source, superSink, parentArc, queue)) {
             // Find minimum capacity (bottleneck) in path
             int pathFlow = Integer.MAX_VALUE;
-            String current = superSink;
-            
-            while (!current.equals(hubId)) {
-                String prev = parent.get(current);
-                pathFlow = Math.min(pathFlow, residualGraph.get(prev).get(current));
-                current = prev;
+            for (int v = superSink; v != source; v = residual.tail(parentArc[v])) {
+                pathFlow = Math.min(pathFlow, residual.capacity[parentArc[v]]);
             }
             
-            // Update residual capacities
-            current = superSink;
-            while (!current.equals(hubId)) {
-                String prev = parent.get(current);
-                residualGraph.get(prev).put(current, 
-                    residualGraph.get(prev).get(current) - pathFlow);
-                residualGraph.get(current).put(prev, 
-                    residualGraph.get(current).getOrDefault(prev, 0) + pathFlow);
-                current = prev;
+            // Update residual capacities (arc ^ 1 is the paired reverse arc)
+            for (int v = superSink; v != source; v = residual.tail(parentArc[v])) {
+                int arc = parentArc[v];
+                residual.capacity[arc] -= pathFlow;
+                residual.capacity[arc ^ 1] += pathFlow;
             }
             
             maxFlow += pathFlow;
             iterations++;
+            monitor.checkpoint(maxFlow, sourceCapacity);
         }
         
         StringBuilder details = new StringBuilder();
@@ -91,50 +101,85 @@ public class MaxFlowAlgorithm {
         return new FlowResult(maxFlow, details.toString());
     }
     
-    private static Map<String, Map<String, Integer>> createResidualGraph(DroneNetwork network) {
-        Map<String, Map<String, Integer>> graph = new HashMap<>();
+    /**
+     * Residual graph over dense node indices. Arcs are stored in pairs so that
+     * arc ^ 1 is the reverse of arc, and grouped per tail node (CSR) by freeze().
+     */
+    private static class ResidualGraph {
+        private final int nodeCount;
+        private int[] heads = new int[16];
+        private int[] tails = new int[16];
+        int[] capacity = new int[16];
+        private int arcCount;
+        
+        // CSR view built by freeze(): arcs out of u are arcOrder[first[u] .. first[u + 1])
+        int[] first;
+        int[] arcOrder;
         
-        // Initialize all nodes
-        for (String nodeId : network.getNodes().keySet()) {
-            graph.putIfAbsent(nodeId, new HashMap<>());
+        ResidualGraph(int nodeCount) {
+            this.nodeCount = nodeCount;
         }
         
-        // Add all edges with their capacities
-        for (Edge edge : network.getEdges()) {
-            if (!edge.isRestricted()) { // Skip restricted edges
-                String from = edge.getFrom().getId();
-                String to = edge.getTo().getId();
-                
-                graph.get(from).put(to, edge.getCapacity());
-                graph.get(to).putIfAbsent(from, 0);
+        void addArc(int from, int to, int cap) {
+            if (arcCount + 2 > heads.length) {
+                heads = Arrays.copyOf(heads, heads.length * 2);
+                tails = Arrays.copyOf(tails, tails.length * 2);
+                capacity = Arrays.copyOf(capacity, capacity.length * 2);
             }
+            tails[arcCount] = from;
+            heads[arcCount] = to;
+            capacity[arcCount++] = cap;
+            tails[arcCount] = to;
+            heads[arcCount] = from;
+            capacity[arcCount++] = 0;
         }
         
-        return graph;
+        void freeze() {
+            first = new int[nodeCount + 1];
+            for (int a = 0; a < arcCount; a++) {
+                first[tails[a] + 1]++;
+            }
+            for (int u = 0; u < nodeCount; u++) {
+                first[u + 1] += first[u];
+            }
+            arcOrder = new int[arcCount];
+            int[] fill = Arrays.copyOf(first, nodeCount);
+            for (int a = 0; a < arcCount; a++) {
+                arcOrder[fill[tails[a]]++] = a;
+            }
+        }
+        
+        int head(int arc) {
+            return heads[arc];
+        }
+        
+        int tail(int arc) {
+            return tails[arc];
+        }
     }
     
-    private static boolean bfsForFlow(Map<String, Map<String, Integer>> graph, 
-                                      String source, String sink, 
-                                      Map<String, String> parent) {
-        Set<String> visited = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-        queue.add(source);
-        visited.add(source);
-        
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
+    private static boolean bfsForFlow(ResidualGraph graph, int source, int sink,
+                                      int[] parentArc, int[] queue) {
+        Arrays.fill(parentArc, -1);
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        parentArc[source] = Integer.MAX_VALUE; // marks the source as visited
+        
+        while (head < tail) {
+            int current = queue[head++];
             
-            for (String neighbor : graph.getOrDefault(current, new HashMap<>()).keySet()) {
-                if (!visited.contains(neighbor) && 
-                    graph.get(current).get(neighbor) > 0) {
-                    visited.add(neighbor);
-                    parent.put(neighbor, current);
+            for (int i = graph.first[current]; i < graph.first[current + 1]; i++) {
+                int arc = graph.arcOrder[i];
+                int neighbor = graph.head(arc);
+                if (parentArc[neighbor] == -1 && graph.capacity[arc] > 0) {
+                    parentArc[neighbor] = arc;
                     
-                    if (neighbor.equals(sink)) {
+                    if (neighbor == sink) {
                         return true;
                     }
                     
-                    queue.add(neighbor);
+                    queue[tail++] = neighbor;
                 }
             }
         }
@@ -0,0 +1,65 @@
+package com.dronedelivery.algorithms;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Progress and cancellation hook for long-running analyses. The algorithms
+ * call checkpoint() from their loops: it reports how far they got and
+ * throws CancellationException once the caller has given up, so a cancelled
+ * analysis stops within one loop iteration instead of running to the end.
+ */
+public interface ProgressMonitor {
+
+    /** Never cancelled; progress is ignored. */
+    ProgressMonitor NONE = new ProgressMonitor() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void progress(long done, long total) {
+        }
+    };
+
+    boolean isCancelled();
+
+    /** done out of total work units; total <= 0 if the amount of work is unknown. Called often, so keep it cheap. */
+    void progress(long done, long total);
+
+    /** Reports progress, then throws CancellationException if the work was cancelled. */
+    default void checkpoint(long done, long total) {
+        progress(done, total);
+        checkCancelled();
+    }
+
+    default void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Monitor for one of several equally weighted steps of a larger job: its
+     * progress is mapped into the share of step (0-based) out of steps.
+     */
+    static ProgressMonitor step(ProgressMonitor parent, int step, int steps) {
+        if (parent == NONE) {
+            return NONE;
+        }
+        return new ProgressMonitor() {
+            private static final long SCALE = 1_000_000;
+
+            @Override
+            public boolean isCancelled() {
+                return parent.isCancelled();
+            }
+
+            @Override
+            public void progress(long done, long total) {
+                long within = total > 0 ? Math.min(SCALE, done * SCALE / total) : 0;
+                parent.progress(step * SCALE + within, steps * SCALE);
+            }
+        };
+    }
+}
@@ -27,6 +27,11 @@ public class ResilienceAlgorithm {
      * Nodes whose removal disconnects the network
      */
     public static List<String> findArticulationPoints(DroneNetwork network) {
+        return findArticulationPoints(network, ProgressMonitor.NONE);
+    }
+    
+    /** Same as above, checking the monitor at every node the search visits. */
+    public static List<String> findArticulationPoints(DroneNetwork network, ProgressMonitor monitor) {
         Map<String, Integer> disc = new HashMap<>();
         Map<String, Integer> low = new HashMap<>();
         Map<String, Boolean> visited = new HashMap<>();
@@ -44,7 +49,7 @@ public class ResilienceAlgorithm {
         for (String nodeId : network.getNodes().keySet()) {
             if (!visited.get(nodeId)) {
                 dfsFindArticulation(nodeId, -1, network, disc, low, visited, 
-                                  articulationPoints, time);
+                                  articulationPoints, time, monitor);
             }
         }
         
@@ -56,7 +61,8 @@ public class ResilienceAlgorithm {
                                            Map<String, Integer> low,
                                            Map<String, Boolean> visited,
                                            List<String> articulationPoints,
-                                           int[] time) {
+                                           int[] time, ProgressMonitor monitor) {
+        monitor.checkpoint(time[0], network.getNodes().size());
         int children = 0;
         visited.put(u, true);
         disc.put(u, time[0]);
@@ -70,7 +76,7 @@ public class ResilienceAlgorithm {
             if (!visited.getOrDefault(v, false)) {
                 children++;
                 dfsFindArticulation(v, u.hashCode(), network, disc, low, visited, 
-                                  articulationPoints, time);
+                                  articulationPoints, time, monitor);
                 
                 // Check if subtree of v has connection back to ancestor of u
                 Integer lowV = low.getOrDefault(v, Integer.MAX_VALUE);
@@ -101,6 +107,11 @@ public class ResilienceAlgorithm {
      * Edges whose removal disconnects the network
      */
     public static List<String> findBridges(DroneNetwork network) {
+        return findBridges(network, ProgressMonitor.NONE);
+    }
+    
+    /** Same as above, checking the monitor at every node the search visits. */
+    public static List<String> findBridges(DroneNetwork network, ProgressMonitor monitor) {
         Map<String, Integer> disc = new HashMap<>();
         Map<String, Integer> low = new HashMap<>();
         Map<String, Boolean> visited = new HashMap<>();
@@ -117,7 +128,7 @@ public class ResilienceAlgorithm {
         // DFS from each unvisited node
         for (String nodeId : network.getNodes().keySet()) {
             if (!visited.get(nodeId)) {
-                dfsFindBridges(nodeId, -1, network, disc, low, visited, bridges, time);
+                dfsFindBridges(nodeId, -1, network, disc, low, visited, bridges, time, monitor);
             }
         }
         
@@ -129,7 +140,8 @@ public class ResilienceAlgorithm {
                                        Map<String, Integer> low,
                                        Map<String, Boolean> visited,
                                        List<String> bridges,
-                                       int[] time) {
+                                       int[] time, ProgressMonitor monitor) {
+        monitor.checkpoint(time[0], network.getNodes().size());
         visited.put(u, true);
         disc.put(u, time[0]);
         low.put(u, time[0]++);
@@ -140,7 +152,7 @@ public class ResilienceAlgorithm {
             String v = edge.getTo().getId();
             
             if (!visited.getOrDefault(v, false)) {
-                dfsFindBridges(v, u.hashCode(), network, disc, low, visited, bridges, time);
+                dfsFindBridges(v, u.hashCode(), network, disc, low, visited, bridges, time, monitor);
                 
                 Integer lowV = low.getOrDefault(v, Integer.MAX_VALUE);
                 low.put(u, Math.min(low.get(u), lowV));
@@ -160,8 +172,12 @@ public class ResilienceAlgorithm {
      * Complete F4 analysis
      */
     public static ResilienceResult analyzeNetworkResilience(DroneNetwork network) {
-        List<String> artPoints = findArticulationPoints(network);
-        List<String> bridgeList = findBridges(network);
+        return analyzeNetworkResilience(network, ProgressMonitor.NONE);
+    }
+    
+    public static ResilienceResult analyzeNetworkResilience(DroneNetwork network, ProgressMonitor monitor) {
+        List<String> artPoints = findArticulationPoints(network, ProgressMonitor.step(monitor, 0, 2));
+        List<String> bridgeList = findBridges(network, ProgressMonitor.step(monitor, 1, 2));
         
         StringBuilder details = new StringBuilder();
         details.append("NETWORK RESILIENCE ANALYSIS\n");
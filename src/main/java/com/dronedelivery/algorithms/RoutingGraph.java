@@ -0,0 +1,170 @@
+package com.dronedelivery.algorithms;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
+
+/**
+ * Immutable compressed-sparse-row copy of the routable part of a network:
+ * every non-restricted edge, grouped by source node index in the same order
+ * the network iterates them. Built once per network version and then read
+ * by any number of threads without locking.
+ *
+ * Arcs of node u are first[u] .. first[u + 1] - 1; head[a] is the node the
+ * arc leads to, energy[a] its cost and edgeId[a] the EdgeStore id it was
+ * copied from. The reverse (incoming) arcs and the arc tails are built on
+ * first use.
+ *
+ * cached(network) keeps the latest graph of each network and rebuilds it
+ * only when the network version or compaction epoch has moved on, since a
+ * compaction renumbers the edge ids without changing the version.
+ */
+public final class RoutingGraph {
+    private static final Map<DroneNetwork, RoutingGraph> CACHE = new WeakHashMap<>();
+
+    public final long version;
+    public final int epoch;
+    public final int nodeCount;
+    public final int[] first;
+    public final int[] head;
+    public final int[] energy;
+    public final int[] edgeId;
+    // Lowest arc energy, 0 when there are no arcs
+    public final int minEnergy;
+
+    private volatile int[][] reverse;
+    private volatile int[] tails;
+
+    private RoutingGraph(long version, int epoch, int nodeCount, int[] first, int[] head, int[] energy, int[] edgeId) {
+        this.version = version;
+        this.epoch = epoch;
+        this.nodeCount = nodeCount;
+        this.first = first;
+        this.head = head;
+        this.energy = energy;
+        this.edgeId = edgeId;
+        int min = 0;
+        for (int value : energy) {
+            min = Math.min(min, value);
+        }
+        this.minEnergy = min;
+    }
+
+    /**
+     * The network's routing graph for its current version, shared with
+     * earlier callers when nothing has changed since; call on the thread
+     * that owns the network.
+     */
+    public static RoutingGraph cached(DroneNetwork network) {
+        synchronized (CACHE) {
+            RoutingGraph graph = CACHE.get(network);
+            if (graph == null || graph.version != network.getVersion()
+                    || graph.epoch != network.getCompactionEpoch()) {
+                graph = of(network);
+                CACHE.put(network, graph);
+            }
+            return graph;
+        }
+    }
+
+    /** Snapshot of the network's non-restricted edges; call on the thread that owns the network. */
+    public static RoutingGraph of(DroneNetwork network) {
+        EdgeStore edges = network.getEdgeStore();
+        int n = network.getIndexBound();
+        int[] first = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            for (int e = edges.firstOut(u); e != EdgeStore.NONE; e = edges.nextOut(e)) {
+                if (!edges.isRestricted(e)) {
+                    first[u + 1]++;
+                }
+            }
+        }
+        for (int u = 0; u < n; u++) {
+            first[u + 1] += first[u];
+        }
+
+        int arcs = first[n];
+        int[] head = new int[arcs];
+        int[] energy = new int[arcs];
+        int[] edgeId = new int[arcs];
+        int next = 0;
+        for (int u = 0; u < n; u++) {
+            for (int e = edges.firstOut(u); e != EdgeStore.NONE; e = edges.nextOut(e)) {
+                if (!edges.isRestricted(e)) {
+                    head[next] = edges.to(e);
+                    energy[next] = edges.energy(e);
+                    edgeId[next] = e;
+                    next++;
+                }
+            }
+        }
+        return new RoutingGraph(network.getVersion(), network.getCompactionEpoch(), n, first, head, energy, edgeId);
+    }
+
+    public int arcCount() {
+        return head.length;
+    }
+
+    /** Source node of an arc, by binary search over first. */
+    public int tail(int arc) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (first[mid] <= arc) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /** Source node of every arc, built on first use. */
+    public int[] tails() {
+        int[] result = tails;
+        if (result == null) {
+            result = new int[head.length];
+            for (int u = 0; u < nodeCount; u++) {
+                Arrays.fill(result, first[u], first[u + 1], u);
+            }
+            tails = result;
+        }
+        return result;
+    }
+
+    /**
+     * Incoming arcs in CSR form: {reverseFirst, reverseArc, reverseTail}, where
+     * the incoming arcs of v are reverseArc[reverseFirst[v] .. reverseFirst[v + 1] - 1]
+     * (indices into head/energy, ordered by source node) and reverseTail holds
+     * the source node of each of them.
+     */
+    public int[][] reverse() {
+        int[][] result = reverse;
+        if (result == null) {
+            int[] reverseFirst = new int[nodeCount + 1];
+            for (int a = 0; a < head.length; a++) {
+                reverseFirst[head[a] + 1]++;
+            }
+            for (int v = 0; v < nodeCount; v++) {
+                reverseFirst[v + 1] += reverseFirst[v];
+            }
+            int[] fill = Arrays.copyOf(reverseFirst, nodeCount);
+            int[] reverseArc = new int[head.length];
+            int[] reverseTail = new int[head.length];
+            for (int u = 0; u < nodeCount; u++) {
+                for (int a = first[u]; a < first[u + 1]; a++) {
+                    int slot = fill[head[a]]++;
+                    reverseArc[slot] = a;
+                    reverseTail[slot] = u;
+                }
+            }
+            result = new int[][] {reverseFirst, reverseArc, reverseTail};
+            reverse = result;
+        }
+        return result;
+    }
+}
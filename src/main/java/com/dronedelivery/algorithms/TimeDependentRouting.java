@@ -0,0 +1,167 @@
+package com.dronedelivery.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.EnergyProfiles;
+import com.dronedelivery.backend.IndexedMinHeap;
+
+public class TimeDependentRouting {
+
+    public static class RouteResult {
+        public boolean found;
+        public List<String> path;
+        // Minutes; a corridor takes as many minutes to fly as the energy it costs
+        public int departureTime;
+        public int arrivalTime;
+        public int totalEnergy;
+        public int profileEvaluations;
+        public int cacheHits;
+        public String details;
+    }
+
+    /**
+     * Cheapest route from startId to endId for a drone leaving at
+     * departureTime (minutes; minute 0 is midnight of day 0). Corridors with
+     * a time-of-day profile cost the profile's energy at the moment the drone
+     * enters them, the others their fixed energy; restricted corridors are
+     * skipped. Because flight time equals energy, the cheapest route is also
+     * the earliest arrival.
+     *
+     * Time-dependent Dijkstra: a node is settled at its earliest arrival and
+     * its corridors are evaluated at that time. Profiles never let a later
+     * departure arrive earlier (FIFO), so this is exact. Profiles are shared
+     * by many corridors, so each query caches the last evaluation of each
+     * profile together with its segment: a repeated minute is a lookup, and
+     * a minute in the same segment skips the breakpoint search.
+     */
+    public static RouteResult findRoute(DroneNetwork network, String startId, String endId, int departureTime) {
+        RouteResult result = new RouteResult();
+        result.departureTime = departureTime;
+        if (network.getNode(startId) == null || network.getNode(endId) == null) {
+            result.details = "Unknown start or destination";
+            return result;
+        }
+
+        EdgeStore edges = network.getEdgeStore();
+        EnergyProfiles profiles = network.getEnergyProfiles();
+        ProfileCache cache = new ProfileCache(profiles);
+        int n = network.getIndexBound();
+        int start = network.indexOf(startId);
+        int end = network.indexOf(endId);
+
+        int[] arrival = new int[n];
+        int[] previous = new int[n];
+        Arrays.fill(arrival, Integer.MAX_VALUE);
+        Arrays.fill(previous, -1);
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        arrival[start] = departureTime;
+        heap.insertOrDecrease(start, departureTime);
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            if (current == end) {
+                break;
+            }
+            int time = arrival[current];
+
+            // Only traverse non-restricted edges
+            for (int e = edges.firstOut(current); e != EdgeStore.NONE; e = edges.nextOut(e)) {
+                if (edges.isRestricted(e)) continue;
+
+                int profile = profiles.profileOf(e);
+                int energy = profile == EnergyProfiles.NONE ? edges.energy(e) : cache.energyAt(profile, time);
+                int neighbor = edges.to(e);
+                int newArrival = time + energy;
+                if (newArrival < arrival[neighbor]) {
+                    arrival[neighbor] = newArrival;
+                    previous[neighbor] = current;
+                    heap.insertOrDecrease(neighbor, newArrival);
+                }
+            }
+        }
+
+        result.profileEvaluations = cache.evaluations;
+        result.cacheHits = cache.hits;
+        if (arrival[end] == Integer.MAX_VALUE) {
+            result.details = "No route from " + startId + " to " + endId;
+            return result;
+        }
+
+        result.found = true;
+        result.arrivalTime = arrival[end];
+        result.totalEnergy = arrival[end] - departureTime;
+        result.path = new ArrayList<>();
+        for (int current = end; current != -1; current = previous[current]) {
+            result.path.add(network.getRegistry().idOf(current));
+        }
+        Collections.reverse(result.path);
+
+        StringBuilder details = new StringBuilder();
+        details.append("Time-dependent route leaving at ").append(formatTime(departureTime)).append(":\n");
+        details.append(String.join(" → ", result.path)).append("\n");
+        details.append("Total Energy: ").append(result.totalEnergy).append("\n");
+        details.append("Arrival: ").append(formatTime(result.arrivalTime)).append("\n");
+        details.append("Profile evaluations: ").append(cache.evaluations)
+            .append(" (").append(cache.hits).append(" cached)");
+        result.details = details.toString();
+        return result;
+    }
+
+    /** Minutes as "day d hh:mm", or just "hh:mm" on day 0. */
+    static String formatTime(int time) {
+        int day = Math.floorDiv(time, EnergyProfiles.PERIOD);
+        int minute = Math.floorMod(time, EnergyProfiles.PERIOD);
+        String clock = String.format("%02d:%02d", minute / 60, minute % 60);
+        return day == 0 ? clock : "day " + day + " " + clock;
+    }
+
+    /** Last evaluated minute, segment and energy of each profile, for one query. */
+    private static final class ProfileCache {
+        private final EnergyProfiles profiles;
+        private final int[] minute;
+        private final int[] segment;
+        private final int[] energy;
+        int evaluations;
+        int hits;
+
+        ProfileCache(EnergyProfiles profiles) {
+            this.profiles = profiles;
+            int count = profiles.size();
+            minute = new int[count];
+            segment = new int[count];
+            energy = new int[count];
+            Arrays.fill(minute, -1);
+        }
+
+        int energyAt(int profile, int time) {
+            evaluations++;
+            int m = Math.floorMod(time, EnergyProfiles.PERIOD);
+            if (minute[profile] == m) {
+                hits++;
+                return energy[profile];
+            }
+            int s = segment[profile];
+            if (minute[profile] < 0 || !inSegment(profile, s, m)) {
+                s = profiles.segment(profile, m);
+                segment[profile] = s;
+            }
+            minute[profile] = m;
+            energy[profile] = profiles.evaluate(profile, m, s);
+            return energy[profile];
+        }
+
+        private boolean inSegment(int profile, int s, int m) {
+            int last = profiles.breakpointCount(profile) - 1;
+            if (s < 0) {
+                return m < profiles.breakpointTime(profile, 0);
+            }
+            return profiles.breakpointTime(profile, s) <= m
+                && (s == last || m < profiles.breakpointTime(profile, s + 1));
+        }
+    }
+}
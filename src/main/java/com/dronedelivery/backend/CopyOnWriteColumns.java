@@ -0,0 +1,147 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+
+/**
+ * Paged primitive columns with copy-on-write pages, used to build
+ * NetworkSnapshots that share every untouched page with the previous version.
+ *
+ * The writer mutates a column freely; the first write to a page after a
+ * freeze() copies that page. freeze() hands out the current page directory,
+ * which from then on is never written again and can be read lock-free.
+ */
+final class CopyOnWriteColumns {
+    static final int PAGE_BITS = 10;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private CopyOnWriteColumns() {
+    }
+
+    static int get(int[][] pages, int i) {
+        return pages[i >>> PAGE_BITS][i & PAGE_MASK];
+    }
+
+    static double get(double[][] pages, int i) {
+        return pages[i >>> PAGE_BITS][i & PAGE_MASK];
+    }
+
+    static Object get(Object[][] pages, int i) {
+        return pages[i >>> PAGE_BITS][i & PAGE_MASK];
+    }
+
+    private static int pageCount(int size) {
+        return (size + PAGE_MASK) >>> PAGE_BITS;
+    }
+
+    static final class IntColumn {
+        private final int fill;
+        private int[][] pages = new int[0][];
+        private boolean[] owned = new boolean[0];
+
+        IntColumn(int fill) {
+            this.fill = fill;
+        }
+
+        int get(int i) {
+            return CopyOnWriteColumns.get(pages, i);
+        }
+
+        void set(int i, int value) {
+            int page = i >>> PAGE_BITS;
+            if (page >= pages.length) {
+                grow(page + 1);
+            }
+            if (!owned[page]) {
+                pages[page] = pages[page].clone();
+                owned[page] = true;
+            }
+            pages[page][i & PAGE_MASK] = value;
+        }
+
+        private void grow(int count) {
+            int old = pages.length;
+            int length = Math.max(count, old * 2);
+            pages = Arrays.copyOf(pages, length);
+            owned = Arrays.copyOf(owned, length);
+            for (int p = old; p < length; p++) {
+                pages[p] = new int[PAGE_SIZE];
+                if (fill != 0) {
+                    Arrays.fill(pages[p], fill);
+                }
+                owned[p] = true;
+            }
+        }
+
+        int[][] freeze(int size) {
+            Arrays.fill(owned, false);
+            return Arrays.copyOf(pages, pageCount(size));
+        }
+    }
+
+    static final class DoubleColumn {
+        private double[][] pages = new double[0][];
+        private boolean[] owned = new boolean[0];
+
+        double get(int i) {
+            return CopyOnWriteColumns.get(pages, i);
+        }
+
+        void set(int i, double value) {
+            int page = i >>> PAGE_BITS;
+            if (page >= pages.length) {
+                int old = pages.length;
+                int length = Math.max(page + 1, old * 2);
+                pages = Arrays.copyOf(pages, length);
+                owned = Arrays.copyOf(owned, length);
+                for (int p = old; p < length; p++) {
+                    pages[p] = new double[PAGE_SIZE];
+                    owned[p] = true;
+                }
+            }
+            if (!owned[page]) {
+                pages[page] = pages[page].clone();
+                owned[page] = true;
+            }
+            pages[page][i & PAGE_MASK] = value;
+        }
+
+        double[][] freeze(int size) {
+            Arrays.fill(owned, false);
+            return Arrays.copyOf(pages, pageCount(size));
+        }
+    }
+
+    static final class RefColumn {
+        private Object[][] pages = new Object[0][];
+        private boolean[] owned = new boolean[0];
+
+        Object get(int i) {
+            return CopyOnWriteColumns.get(pages, i);
+        }
+
+        void set(int i, Object value) {
+            int page = i >>> PAGE_BITS;
+            if (page >= pages.length) {
+                int old = pages.length;
+                int length = Math.max(page + 1, old * 2);
+                pages = Arrays.copyOf(pages, length);
+                owned = Arrays.copyOf(owned, length);
+                for (int p = old; p < length; p++) {
+                    pages[p] = new Object[PAGE_SIZE];
+                    owned[p] = true;
+                }
+            }
+            if (!owned[page]) {
+                pages[page] = pages[page].clone();
+                owned[page] = true;
+            }
+            pages[page][i & PAGE_MASK] = value;
+        }
+
+        Object[][] freeze(int size) {
+            Arrays.fill(owned, false);
+            return Arrays.copyOf(pages, pageCount(size));
+        }
+    }
+}
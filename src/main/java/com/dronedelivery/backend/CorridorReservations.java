@@ -0,0 +1,290 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live reservations of corridor capacity for real-time dispatch. Any number
+ * of dispatcher threads may reserve and release at the same time; there is
+ * no lock anywhere.
+ *
+ * Each corridor has one occupancy counter per time slot. The two directions
+ * of a bidirectional corridor share one counter, and a counter never goes
+ * above the corridor's Edge capacity. Restricted corridors cannot be
+ * reserved. Slots are absolute numbers whose length is up to the caller
+ * (for example one minute each). The counters form a ring of slotCount
+ * slots per corridor, so slots more than slotCount apart reuse the same
+ * counter. Every counter remembers which slot it currently counts, so a
+ * counter is reset on first use in a later lap without any clock, and
+ * requests for a slot that the counter has already moved past are refused.
+ * Keep all live reservations within slotCount slots of each other. Use the
+ * untimed reserve(int[]) for "held until released". It counts in slot 0 and
+ * is meant for a service with a single slot.
+ *
+ * A reservation is all or nothing. Its counters are taken in ascending
+ * order, each by compare-and-set. If one of them is full, the ones already
+ * taken are given back and the request fails. Nobody ever waits for another
+ * thread, so the scheme cannot deadlock. Taking counters in one global order
+ * means two competing paths collide on their first shared counter. The later
+ * one therefore fails early instead of both holding part of their path.
+ *
+ * The service is built from one NetworkSnapshot, and edge ids and
+ * capacities are those of that snapshot. After the network changes, start
+ * a new service.
+ */
+public final class CorridorReservations {
+    // A counter is packed as (slot << COUNT_BITS | count)
+    private static final int COUNT_BITS = 20;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long MAX_SLOT = Long.MAX_VALUE >>> COUNT_BITS;
+
+    private final NetworkSnapshot snapshot;
+    private final long version;
+    private final int slotCount;
+    // Counter of an edge's corridor (both directions), or NONE for edges that cannot be reserved
+    private final int[] corridorOf;
+    private final int[] capacity;
+    private final AtomicLongArray counters;
+
+    private final LongAdder granted = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+
+    /** Untimed reservations: one slot per corridor, held until released. */
+    public CorridorReservations(NetworkSnapshot snapshot) {
+        this(snapshot, 1);
+    }
+
+    public CorridorReservations(NetworkSnapshot snapshot, int slotCount) {
+        if (slotCount < 1) {
+            throw new IllegalArgumentException("Need at least one time slot, got " + slotCount);
+        }
+        this.snapshot = snapshot;
+        this.version = snapshot.getVersion();
+        this.slotCount = slotCount;
+
+        int edges = snapshot.getEdgeBound();
+        corridorOf = new int[edges];
+        capacity = new int[edges];
+        for (int e = 0; e < edges; e++) {
+            if (snapshot.isRemoved(e)) {
+                corridorOf[e] = EdgeStore.NONE;
+                continue;
+            }
+            corridorOf[e] = snapshot.isMirror(e) ? snapshot.edgeReverse(e) : e;
+            if (!snapshot.isRestricted(e)) {
+                capacity[e] = (int) Math.min(COUNT_MASK, Math.max(0, snapshot.edgeCapacity(e)));
+            }
+        }
+        counters = new AtomicLongArray(Math.multiplyExact(edges, slotCount));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /** Reservations granted so far. */
+    public long getGranted() {
+        return granted.sum();
+    }
+
+    /** Reservations refused so far because a corridor was full (or restricted). */
+    public long getRefused() {
+        return refused.sum();
+    }
+
+    // ===== Reserving =====
+
+    /** Holds one place on every edge until released; null if any corridor is full. */
+    public Reservation reserve(int[] edges) {
+        return reserve(edges, 0);
+    }
+
+    /** Holds one place on every edge during one slot; null if any corridor is full then. */
+    public Reservation reserve(int[] edges, long slot) {
+        long[] slots = new long[edges.length];
+        Arrays.fill(slots, slot);
+        return reserve(edges, slots);
+    }
+
+    /**
+     * Holds one place on edges[i] during slots[i], for all i or none. An edge
+     * listed twice for the same slot takes two places. Returns null when a
+     * corridor is full in its slot, is restricted, or its counter has
+     * already moved on to a later lap of the ring.
+     *
+     * @throws IllegalArgumentException for an edge id that is not in the
+     *         snapshot, a negative slot, or two slots of one corridor that
+     *         share a counter
+     */
+    public Reservation reserve(int[] edges, long[] slots) {
+        if (edges.length != slots.length) {
+            throw new IllegalArgumentException("Got " + edges.length + " edges but " + slots.length + " slots");
+        }
+        // Sort the (counter, slot) cells so that every thread takes them in the same order
+        int n = edges.length;
+        long[] cells = new long[n];
+        for (int i = 0; i < n; i++) {
+            int e = edges[i];
+            if (e < 0 || e >= corridorOf.length || corridorOf[e] == EdgeStore.NONE) {
+                throw new IllegalArgumentException("No edge " + e + " in network version " + version);
+            }
+            if (slots[i] < 0 || slots[i] > MAX_SLOT) {
+                throw new IllegalArgumentException("Slot out of range: " + slots[i]);
+            }
+            cells[i] = (long) cellOf(corridorOf[e], slots[i]) << 32 | i;
+        }
+        Arrays.sort(cells);
+
+        // Merge repeated cells into one cell taking several places
+        int[] counter = new int[n];
+        long[] slot = new long[n];
+        int[] places = new int[n];
+        int size = 0;
+        for (int k = 0; k < n; k++) {
+            int i = (int) cells[k];
+            int cell = (int) (cells[k] >>> 32);
+            long s = slots[i];
+            if (size > 0 && counter[size - 1] == cell) {
+                if (slot[size - 1] != s) {
+                    throw new IllegalArgumentException("Slots " + slot[size - 1] + " and " + s
+                        + " of one corridor fall on the same counter of a " + slotCount + "-slot ring");
+                }
+                places[size - 1]++;
+                continue;
+            }
+            counter[size] = cell;
+            slot[size] = s;
+            places[size] = 1;
+            size++;
+        }
+
+        for (int k = 0; k < size; k++) {
+            int corridor = counter[k] / slotCount;
+            if (!acquire(counter[k], slot[k], places[k], capacity[corridor])) {
+                for (int j = k - 1; j >= 0; j--) {
+                    release(counter[j], slot[j], places[j]);
+                }
+                refused.increment();
+                return null;
+            }
+        }
+        granted.increment();
+        return new Reservation(Arrays.copyOf(counter, size), Arrays.copyOf(slot, size), Arrays.copyOf(places, size));
+    }
+
+    /**
+     * Edges along a path of node ids: for each hop the cheapest corridor
+     * that is not restricted. Returns null if a node is unknown or a hop has
+     * no such corridor.
+     */
+    public int[] edgesOf(List<String> path) {
+        int[] edges = new int[Math.max(0, path.size() - 1)];
+        for (int i = 0; i < edges.length; i++) {
+            int from = snapshot.indexOf(path.get(i));
+            int to = snapshot.indexOf(path.get(i + 1));
+            if (from < 0 || to < 0) {
+                return null;
+            }
+            int best = EdgeStore.NONE;
+            for (int k = 0; k < snapshot.outDegree(from); k++) {
+                int e = snapshot.outEdge(from, k);
+                if (snapshot.edgeTo(e) == to && !snapshot.isRestricted(e)
+                        && (best == EdgeStore.NONE || snapshot.edgeEnergy(e) < snapshot.edgeEnergy(best))) {
+                    best = e;
+                }
+            }
+            if (best == EdgeStore.NONE) {
+                return null;
+            }
+            edges[i] = best;
+        }
+        return edges;
+    }
+
+    // ===== Counters =====
+
+    private int cellOf(int corridor, long slot) {
+        return corridor * slotCount + (int) (slot % slotCount);
+    }
+
+    private boolean acquire(int cell, long slot, int places, int limit) {
+        long current = counters.get(cell);
+        while (true) {
+            long counted = current >>> COUNT_BITS;
+            if (counted > slot) {
+                // The counter has moved on to a later lap; this slot is gone
+                return false;
+            }
+            // A counter still on an earlier lap counts nothing for this slot
+            long used = counted == slot ? current & COUNT_MASK : 0;
+            if (used + places > limit) {
+                return false;
+            }
+            long updated = slot << COUNT_BITS | (used + places);
+            long witness = counters.compareAndExchange(cell, current, updated);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
+    }
+
+    private void release(int cell, long slot, int places) {
+        long current = counters.get(cell);
+        while (current >>> COUNT_BITS == slot) {
+            long witness = counters.compareAndExchange(cell, current, current - places);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+        // Otherwise the counter was reset for a later lap and holds nothing of ours
+    }
+
+    /** Places currently held on the edge's corridor in a slot (slot 0 for untimed reservations). */
+    public int occupancy(int edge, long slot) {
+        long current = counters.get(cellOf(corridorOf[edge], slot));
+        return current >>> COUNT_BITS == slot ? (int) (current & COUNT_MASK) : 0;
+    }
+
+    /** Capacity of the edge's corridor, 0 when it is restricted. */
+    public int capacity(int edge) {
+        return capacity[corridorOf[edge]];
+    }
+
+    /** A granted reservation; release it once the drone has flown the path. */
+    public final class Reservation {
+        private final int[] cells;
+        private final long[] slots;
+        private final int[] places;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Reservation(int[] cells, long[] slots, int[] places) {
+            this.cells = cells;
+            this.slots = slots;
+            this.places = places;
+        }
+
+        /** Gives the places back; returns false if this reservation was already released. */
+        public boolean release() {
+            if (!released.compareAndSet(false, true)) {
+                return false;
+            }
+            for (int k = cells.length - 1; k >= 0; k--) {
+                CorridorReservations.this.release(cells[k], slots[k], places[k]);
+            }
+            return true;
+        }
+
+        public boolean isReleased() {
+            return released.get();
+        }
+    }
+}
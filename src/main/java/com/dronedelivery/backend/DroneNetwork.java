@@ -1,22 +1,280 @@
 package com.dronedelivery.backend;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class DroneNetwork {
     private Map<String, Node> nodes;
-    private List<Edge> edges;
-    private Map<String, List<Edge>> adjacencyList;
+    private EdgeStore edgeStore;
+    private List<Node> nodesByIndex;
+    private NodeIdRegistry registry;
+    private long version;
+    private List<NetworkChangeListener> listeners;
+    private SnapshotBuilder snapshotBuilder;
+    private final AtomicReference<NetworkSnapshot> snapshot = new AtomicReference<>();
+    private int compactionEpoch;
+    private final ShortestPathTreeCache pathTrees = new ShortestPathTreeCache(this);
+    private final EnergyProfiles energyProfiles = new EnergyProfiles();
     
     public DroneNetwork() {
         this.nodes = new HashMap<>();
-        this.edges = new ArrayList<>();
-        this.adjacencyList = new HashMap<>();
+        this.edgeStore = new EdgeStore();
+        this.nodesByIndex = new ArrayList<>();
+        this.registry = new NodeIdRegistry();
+        this.listeners = new ArrayList<>();
+    }
+    
+    // ===== Versioning and Change Events =====
+    
+    /** Incremented by every mutation; caches can compare it to detect staleness. */
+    public long getVersion() {
+        return version;
+    }
+    
+    public void addChangeListener(NetworkChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeChangeListener(NetworkChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    private void fireChange(NetworkChangeEvent.Type type, Node node, Edge edge) {
+        version++;
+        if (listeners.isEmpty()) {
+            return;
+        }
+        NetworkChangeEvent event = new NetworkChangeEvent(type, version, node, edge);
+        for (NetworkChangeListener listener : listeners) {
+            listener.onNetworkChange(event);
+        }
+    }
+    
+    void nodeUpdated(Node node) {
+        syncNode(node.getIndex());
+        fireChange(NetworkChangeEvent.Type.NODE_UPDATED, node, null);
+    }
+    
+    // Called by Edge setters; both halves of a bidirectional corridor share their attributes
+    
+    void setEdgeEnergy(int edge, int energy) {
+        if (edgeStore.isRemoved(edge)) return;
+        edgeStore.setEnergy(edge, energy);
+        edgeUpdated(edge);
+        int reverse = edgeStore.reverse(edge);
+        if (reverse != EdgeStore.NONE && edgeStore.energy(reverse) != energy) {
+            edgeStore.setEnergy(reverse, energy);
+            edgeUpdated(reverse);
+        }
+    }
+    
+    void setEdgeCapacity(int edge, int capacity) {
+        if (edgeStore.isRemoved(edge)) return;
+        edgeStore.setCapacity(edge, capacity);
+        edgeUpdated(edge);
+        int reverse = edgeStore.reverse(edge);
+        if (reverse != EdgeStore.NONE && edgeStore.capacity(reverse) != capacity) {
+            edgeStore.setCapacity(reverse, capacity);
+            edgeUpdated(reverse);
+        }
+    }
+    
+    void setEdgeFlag(int edge, byte flag, boolean value) {
+        if (edgeStore.isRemoved(edge)) return;
+        edgeStore.setFlag(edge, flag, value);
+        edgeUpdated(edge);
+        int reverse = edgeStore.reverse(edge);
+        if (flag == EdgeStore.FLAG_RESTRICTED && reverse != EdgeStore.NONE
+                && edgeStore.isRestricted(reverse) != value) {
+            edgeStore.setFlag(reverse, flag, value);
+            edgeUpdated(reverse);
+        }
+    }
+    
+    void setEdgeProfile(int edge, int profile) {
+        if (edgeStore.isRemoved(edge)) return;
+        energyProfiles.assign(edge, profile);
+        edgeUpdated(edge);
+        int reverse = edgeStore.reverse(edge);
+        if (reverse != EdgeStore.NONE && energyProfiles.profileOf(reverse) != profile) {
+            energyProfiles.assign(reverse, profile);
+            edgeUpdated(reverse);
+        }
+    }
+    
+    void setEdgeFrom(int edge, Node from) {
+        if (edgeStore.isRemoved(edge)) return;
+        edgeStore.setFrom(edge, from.getIndex());
+        edgeUpdated(edge);
+    }
+    
+    void setEdgeTo(int edge, Node to) {
+        if (edgeStore.isRemoved(edge)) return;
+        edgeStore.setTo(edge, to.getIndex());
+        edgeUpdated(edge);
+    }
+    
+    private void edgeUpdated(int edge) {
+        syncEdge(edge);
+        fireChange(NetworkChangeEvent.Type.EDGE_UPDATED, null, edgeView(edge));
+    }
+    
+    // ===== Snapshots =====
+    
+    /**
+     * Freezes the current state into an immutable NetworkSnapshot that other
+     * threads can query while this (writer) thread keeps mutating the network.
+     * Cheap after small edits: only the changed pages are copied. Returns the
+     * current snapshot unchanged if nothing was modified since it was published.
+     */
+    public NetworkSnapshot publishSnapshot() {
+        NetworkSnapshot current = snapshot.get();
+        if (current != null && current.getVersion() == version) {
+            return current;
+        }
+        if (snapshotBuilder == null) {
+            snapshotBuilder = new SnapshotBuilder(this);
+        }
+        NetworkSnapshot published = snapshotBuilder.publish(version);
+        snapshot.set(published);
+        return published;
+    }
+    
+    /**
+     * Latest published snapshot; safe to call from any thread. Returns null
+     * until the writer has called publishSnapshot() at least once.
+     */
+    public NetworkSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+    
+    // Keep the snapshot builder (if snapshots are in use) in step with the store
+    
+    private void syncNode(int index) {
+        if (snapshotBuilder != null) {
+            snapshotBuilder.syncNode(index);
+        }
+    }
+    
+    private void syncEdge(int edge) {
+        if (snapshotBuilder != null) {
+            snapshotBuilder.syncEdge(edge);
+        }
+    }
+    
+    // ===== Edge Store Compaction =====
+    
+    /**
+     * Number of compactions installed so far. Edge ids are renumbered by each
+     * one without changing the version, so caches of edge ids compare both.
+     * Edge views find their row again by serial on next use.
+     */
+    public int getCompactionEpoch() {
+        return compactionEpoch;
+    }
+    
+    /**
+     * Removes all tombstoned edges from the edge store now, waiting for a
+     * background compaction that is already running. Edge ids change.
+     */
+    public void compactEdges() {
+        if (!edgeStore.isCompacting() && edgeStore.removedCount() > 0) {
+            edgeStore.startCompaction();
+        }
+        installCompaction(true);
+    }
+    
+    // Called at the start of public mutations, when no edge id is in flight
+    private void maintainEdgeStore() {
+        if (edgeStore.isCompacting()) {
+            installCompaction(false);
+        }
+    }
+    
+    private void installCompaction(boolean wait) {
+        int[] remap = edgeStore.finishCompaction(wait);
+        if (remap == null) {
+            return;
+        }
+        compactionEpoch++;
+        energyProfiles.remap(remap);
+        if (snapshotBuilder != null) {
+            snapshotBuilder = new SnapshotBuilder(this);
+        }
     }
     
     // ===== Add/Get Nodes =====
     public void addNode(Node node) {
-        nodes.put(node.getId(), node);
-        adjacencyList.put(node.getId(), new ArrayList<>());
+        maintainEdgeStore();
+        placeNode(node);
+        fireChange(NetworkChangeEvent.Type.NODE_ADDED, node, null);
+    }
+    
+    /**
+     * Adds count nodes from parallel columns, for loaders. The result is the
+     * same as calling addNode for each in order, but it counts as a single
+     * mutation with no change event per node. If listeners are attached,
+     * every node goes through addNode so they still see each one.
+     */
+    public void addNodes(String[] ids, Node.NodeType[] types, double[] xs, double[] ys, int count) {
+        maintainEdgeStore();
+        if (!listeners.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                addNode(new Node(ids[i], types[i], xs[i], ys[i]));
+            }
+            return;
+        }
+        edgeStore.ensureNodeCapacity(registry.size() + count);
+        for (int i = 0; i < count; i++) {
+            placeNode(new Node(ids[i], types[i], xs[i], ys[i]));
+        }
+        version++;
+    }
+    
+    private void placeNode(Node node) {
+        int index = registry.register(node.getId());
+        String id = registry.idOf(index);
+        if (node.getId() != id) {
+            node.setId(id); // share the interned id string
+        }
+        while (nodesByIndex.size() <= index) {
+            nodesByIndex.add(null);
+        }
+        
+        nodes.put(id, node);
+        nodesByIndex.set(index, node);
+        edgeStore.ensureNodeCapacity(index + 1);
+        node.setIndex(index);
+        node.setOwner(this);
+        syncNode(index);
+    }
+    
+    /**
+     * Removes a node together with every edge that starts or ends at it, in
+     * time proportional to its degree. Returns false if the node does not exist.
+     */
+    public boolean removeNode(String id) {
+        maintainEdgeStore();
+        Node node = nodes.get(id);
+        if (node == null) {
+            return false;
+        }
+        
+        // Removing a corridor tombstones both halves, so the iteration skips the partner
+        int index = node.getIndex();
+        for (int e = edgeStore.firstOut(index); e != EdgeStore.NONE; e = edgeStore.nextOut(e)) {
+            removeEdge(e);
+        }
+        for (int e = edgeStore.firstIn(index); e != EdgeStore.NONE; e = edgeStore.nextIn(e)) {
+            removeEdge(e);
+        }
+        
+        nodes.remove(id);
+        nodesByIndex.set(index, null);
+        node.setOwner(null);
+        syncNode(index);
+        fireChange(NetworkChangeEvent.Type.NODE_REMOVED, node, null);
+        return true;
     }
     
     public Node getNode(String id) {
@@ -27,32 +285,322 @@ public class DroneNetwork {
         return nodes;
     }
     
+    // ===== Dense Node Indices =====
+    
+    public NodeIdRegistry getRegistry() {
+        return registry;
+    }
+    
+    /** Index of the node with this id, or -1 if it was never added. */
+    public int indexOf(String id) {
+        return registry.indexOf(id);
+    }
+    
+    /** Node at a dense index, or null if the index is unused or the node was removed. */
+    public Node getNode(int index) {
+        return index >= 0 && index < nodesByIndex.size() ? nodesByIndex.get(index) : null;
+    }
+    
+    /** Upper bound (exclusive) of node indices; size arrays keyed by index with this. */
+    public int getIndexBound() {
+        return registry.size();
+    }
+    
     // ===== Add/Get Edges =====
+    
+    /**
+     * Adds the edge (and its mirror if it is bidirectional) to the edge store.
+     * The passed object becomes a view over the stored edge.
+     */
     public void addEdge(Edge edge) {
-        edges.add(edge);
-        adjacencyList.get(edge.getFrom().getId()).add(edge);
+        maintainEdgeStore();
+        int id = storeEdge(edge.getFrom().getIndex(), edge.getTo().getIndex(), edge.getEnergy(),
+            edge.getCapacity(), edge.isBidirectional(), edge.isRestricted());
+        edge.attach(this, id);
+        fireChange(NetworkChangeEvent.Type.EDGE_ADDED, null, edge);
+    }
+    
+    /**
+     * Adds count corridors between node indices from parallel columns, for
+     * loaders. Edge ids and profiles come out the same as calling addEdge
+     * (and setEnergyProfile) for each in order, but no Edge object or change
+     * event is made per corridor and the whole batch counts as one mutation.
+     * profiles may be null; otherwise each entry is null or a corridor's
+     * breakpoints as minute, energy, minute, energy, ... If listeners are
+     * attached, every corridor goes through addEdge so they see each one.
+     */
+    public void addEdges(int[] from, int[] to, int[] energies, int[] capacities, boolean[] bidirectional,
+                         boolean[] restricted, int[][] profiles, int count) {
+        maintainEdgeStore();
+        for (int i = 0; i < count; i++) {
+            if (getNode(from[i]) == null || getNode(to[i]) == null) {
+                throw new IllegalArgumentException("Corridor " + i + " joins unknown node index "
+                    + (getNode(from[i]) == null ? from[i] : to[i]));
+            }
+        }
+        if (!listeners.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                Edge edge = new Edge(getNode(from[i]), getNode(to[i]), energies[i], capacities[i],
+                    bidirectional[i], restricted[i]);
+                addEdge(edge);
+                if (profiles != null && profiles[i] != null) {
+                    int[][] split = splitProfile(profiles[i]);
+                    edge.setEnergyProfile(split[0], split[1]);
+                }
+            }
+            return;
+        }
+        
+        int rows = edgeStore.size();
+        for (int i = 0; i < count; i++) {
+            rows += bidirectional[i] ? 2 : 1;
+        }
+        edgeStore.reserve(rows);
+        for (int i = 0; i < count; i++) {
+            int id = storeEdge(from[i], to[i], energies[i], capacities[i], bidirectional[i], restricted[i]);
+            if (profiles != null && profiles[i] != null) {
+                int[][] split = splitProfile(profiles[i]);
+                int profile = energyProfiles.add(split[0], split[1]);
+                energyProfiles.assign(id, profile);
+                syncEdge(id);
+                int reverse = edgeStore.reverse(id);
+                if (reverse != EdgeStore.NONE) {
+                    energyProfiles.assign(reverse, profile);
+                    syncEdge(reverse);
+                }
+            }
+        }
+        version++;
+    }
+    
+    /** Stores a corridor, and its mirror if it is bidirectional; returns the id of the forward edge. */
+    private int storeEdge(int from, int to, int energy, int capacity, boolean bidirectional, boolean restricted) {
+        byte flags = (byte) ((bidirectional ? EdgeStore.FLAG_BIDIRECTIONAL : 0)
+            | (restricted ? EdgeStore.FLAG_RESTRICTED : 0));
+        int id = edgeStore.add(from, to, energy, capacity, flags);
         
         // If bidirectional, add reverse edge
-        if (edge.isBidirectional()) {
-            Edge reverseEdge = new Edge(
-                edge.getTo(),
-                edge.getFrom(),
-                edge.getEnergy(),
-                edge.getCapacity(),
-                false,
-                edge.isRestricted()
-            );
-            edges.add(reverseEdge);
-            adjacencyList.get(edge.getTo().getId()).add(reverseEdge);
+        if (bidirectional) {
+            byte reverseFlags = (byte) (EdgeStore.FLAG_MIRROR | (restricted ? EdgeStore.FLAG_RESTRICTED : 0));
+            int reverseId = edgeStore.add(to, from, energy, capacity, reverseFlags);
+            edgeStore.setReverse(id, reverseId);
+            edgeStore.setReverse(reverseId, id);
+            syncEdge(id);
+            syncEdge(reverseId);
+        } else {
+            syncEdge(id);
+        }
+        return id;
+    }
+    
+    /** Breakpoints given as minute, energy, ... split into {times, energies}. */
+    private static int[][] splitProfile(int[] points) {
+        int[] times = new int[points.length / 2];
+        int[] energies = new int[points.length / 2];
+        for (int p = 0; p < times.length; p++) {
+            times[p] = points[2 * p];
+            energies[p] = points[2 * p + 1];
+        }
+        return new int[][] {times, energies};
+    }
+    
+    public EdgeStore getEdgeStore() {
+        return edgeStore;
+    }
+    
+    /** Time-of-day energy profiles, and which edge ids use them. */
+    public EnergyProfiles getEnergyProfiles() {
+        return energyProfiles;
+    }
+    
+    /** Flyweight view of a stored edge. */
+    public Edge edgeView(int id) {
+        return new Edge(this, id, getCompactionEpoch());
+    }
+    
+    /** First edge from fromId to toId, or null if there is none; O(1). */
+    public Edge getEdge(String fromId, String toId) {
+        return getEdge(registry.indexOf(fromId), registry.indexOf(toId));
+    }
+    
+    /** First edge between two node indices, or null if there is none; O(1). */
+    public Edge getEdge(int from, int to) {
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        int edge = edgeStore.find(from, to);
+        return edge == EdgeStore.NONE ? null : edgeView(edge);
+    }
+    
+    /**
+     * Removes the corridor from fromId to toId. For a bidirectional corridor
+     * both directions are removed, whichever one is named.
+     */
+    public boolean removeEdge(String fromId, String toId) {
+        maintainEdgeStore();
+        Edge edge = getEdge(fromId, toId);
+        if (edge == null) {
+            return false;
+        }
+        removeEdge(edge.getId());
+        return true;
+    }
+    
+    /**
+     * Removes this corridor, both directions if it is bidirectional. Unlike
+     * removeEdge(fromId, toId) it names one of several parallel corridors.
+     * Returns false if the edge is not in this network.
+     */
+    public boolean removeEdge(Edge edge) {
+        maintainEdgeStore();
+        if (!edge.isViewOf(this)) {
+            return false;
+        }
+        removeEdge(edge.getId());
+        return true;
+    }
+    
+    /**
+     * Position of the edge among the live edges from its from node to its to
+     * node that are (or are not) mirror halves, in insertion order; a removed
+     * edge counts where it stood. Snapshots and compaction keep that order, so
+     * together with the endpoints the ordinal names one of several parallel
+     * corridors for good. O(out-degree of the from node).
+     */
+    public int parallelOrdinal(Edge edge) {
+        int from = edge.getFrom().getIndex();
+        int to = edge.getTo().getIndex();
+        boolean mirror = edge.isMirror();
+        int ordinal = 0;
+        for (int e = edgeStore.firstOut(from); e != EdgeStore.NONE; e = edgeStore.nextOut(e)) {
+            if (edgeStore.to(e) == to && edgeStore.isMirror(e) == mirror && edgeStore.serial(e) < edge.serial()) {
+                ordinal++;
+            }
+        }
+        return ordinal;
+    }
+    
+    /**
+     * The edge with this parallelOrdinal from fromId to toId, or null if
+     * there are not that many; O(out-degree of fromId).
+     */
+    public Edge getEdge(String fromId, String toId, boolean mirror, int ordinal) {
+        int from = registry.indexOf(fromId);
+        int to = registry.indexOf(toId);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        int[] parallel = new int[4];
+        int count = 0;
+        for (int e = edgeStore.firstOut(from); e != EdgeStore.NONE; e = edgeStore.nextOut(e)) {
+            if (edgeStore.to(e) == to && edgeStore.isMirror(e) == mirror) {
+                if (count == parallel.length) {
+                    parallel = Arrays.copyOf(parallel, count * 2);
+                }
+                parallel[count++] = e;
+            }
+        }
+        if (ordinal < 0 || ordinal >= count) {
+            return null;
         }
+        Arrays.sort(parallel, 0, count);
+        return edgeView(parallel[ordinal]);
     }
     
+    /** Tombstones the corridor in O(1) and starts a compaction when enough have piled up. */
+    private void removeEdge(int edge) {
+        // Always report the corridor by the edge that was originally added
+        int added = edgeStore.isMirror(edge) ? edgeStore.reverse(edge) : edge;
+        Edge removed = edgeView(added);
+        removed.detach();
+        
+        edgeStore.remove(added);
+        syncEdge(added);
+        if (edgeStore.reverse(added) != EdgeStore.NONE) {
+            edgeStore.remove(edgeStore.reverse(added));
+            syncEdge(edgeStore.reverse(added));
+        }
+        fireChange(NetworkChangeEvent.Type.EDGE_REMOVED, null, removed);
+        if (edgeStore.needsCompaction()) {
+            edgeStore.startCompaction();
+        }
+    }
+    
+    /**
+     * Updates the attributes of the corridor from fromId to toId; null leaves a
+     * value unchanged. Both directions of a bidirectional corridor are updated.
+     */
+    public boolean updateEdge(String fromId, String toId, Integer energy, Integer capacity, Boolean restricted) {
+        maintainEdgeStore();
+        Edge edge = getEdge(fromId, toId);
+        if (edge == null) {
+            return false;
+        }
+        if (energy != null && energy != edge.getEnergy()) {
+            edge.setEnergy(energy);
+        }
+        if (capacity != null && capacity != edge.getCapacity()) {
+            edge.setCapacity(capacity);
+        }
+        if (restricted != null && restricted != edge.isRestricted()) {
+            edge.setRestricted(restricted);
+        }
+        return true;
+    }
+    
+    /** Live edges in insertion order, as views over the edge store. */
     public List<Edge> getEdges() {
-        return edges;
+        return edgeList;
     }
     
     public List<Edge> getEdgesFrom(String nodeId) {
-        return adjacencyList.getOrDefault(nodeId, new ArrayList<>());
+        return getEdgesFrom(registry.indexOf(nodeId));
+    }
+    
+    public List<Edge> getEdgesFrom(int index) {
+        List<Edge> outgoing = new ArrayList<>();
+        if (index >= 0) {
+            for (int e = edgeStore.firstOut(index); e != EdgeStore.NONE; e = edgeStore.nextOut(e)) {
+                outgoing.add(edgeView(e));
+            }
+        }
+        return outgoing;
+    }
+    
+    private final List<Edge> edgeList = new EdgeListView();
+    
+    /** Random-access list over the live edge ids, skipping removed edges. */
+    private class EdgeListView extends AbstractList<Edge> implements RandomAccess {
+        private int[] liveIds;
+        private long liveIdsVersion = -1;
+        private int liveIdsEpoch = -1;
+        
+        @Override
+        public int size() {
+            return edgeStore.liveCount();
+        }
+        
+        @Override
+        public Edge get(int i) {
+            if (i < 0 || i >= size()) {
+                throw new IndexOutOfBoundsException("Edge " + i + " of " + size());
+            }
+            if (edgeStore.liveCount() == edgeStore.size()) {
+                return edgeView(i);
+            }
+            if (liveIdsVersion != version || liveIdsEpoch != getCompactionEpoch()) {
+                liveIds = new int[edgeStore.liveCount()];
+                int next = 0;
+                for (int e = 0; e < edgeStore.size(); e++) {
+                    if (!edgeStore.isRemoved(e)) {
+                        liveIds[next++] = e;
+                    }
+                }
+                liveIdsVersion = version;
+                liveIdsEpoch = getCompactionEpoch();
+            }
+            return edgeView(liveIds[i]);
+        }
     }
     
     // ===== F1: Check Reachability (BFS) =====
@@ -61,23 +609,28 @@ public class DroneNetwork {
             return false;
         }
         
-        Set<String> visited = new HashSet<>();
-        Queue<String> queue = new LinkedList<>();
-        queue.add(startId);
-        visited.add(startId);
+        int start = registry.indexOf(startId);
+        int target = registry.indexOf(targetId);
+        boolean[] visited = new boolean[registry.size()];
+        int[] queue = new int[registry.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
         
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
+        while (head < tail) {
+            int current = queue[head++];
             
-            if (current.equals(targetId)) {
+            if (current == target) {
                 return true;
             }
             
             // Only traverse non-restricted edges
-            for (Edge edge : adjacencyList.get(current)) {
-                if (!edge.isRestricted() && !visited.contains(edge.getTo().getId())) {
-                    visited.add(edge.getTo().getId());
-                    queue.add(edge.getTo().getId());
+            for (int e = edgeStore.firstOut(current); e != EdgeStore.NONE; e = edgeStore.nextOut(e)) {
+                int next = edgeStore.to(e);
+                if (!edgeStore.isRestricted(e) && !visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
                 }
             }
         }
@@ -97,64 +650,36 @@ public class DroneNetwork {
     }
     
     // ===== F2: Dijkstra's Algorithm =====
+    
+    /**
+     * Energy-optimal path avoiding restricted corridors. Searches from the
+     * same source share one cached, resumable shortest-path tree per version.
+     * Safe to call from several threads while the network is not modified:
+     * growing the shared trees is serialized on the cache.
+     */
     public PathResult findShortestPath(String startId, String endId) {
         if (!nodes.containsKey(startId) || !nodes.containsKey(endId)) {
             return null;
         }
         
-        Map<String, Integer> distances = new HashMap<>();
-        Map<String, String> previousNodes = new HashMap<>();
-        PriorityQueue<String> pq = new PriorityQueue<>(
-            (a, b) -> Integer.compare(
-                distances.getOrDefault(a, Integer.MAX_VALUE),
-                distances.getOrDefault(b, Integer.MAX_VALUE)
-            )
-        );
-        
-        // Initialize
-        for (String nodeId : nodes.keySet()) {
-            distances.put(nodeId, Integer.MAX_VALUE);
-        }
-        distances.put(startId, 0);
-        pq.add(startId);
-        
-        while (!pq.isEmpty()) {
-            String current = pq.poll();
-            int currentDist = distances.get(current);
-            
-            if (currentDist == Integer.MAX_VALUE) continue;
-            if (current.equals(endId)) break;
-            
-            // Only traverse non-restricted edges
-            for (Edge edge : adjacencyList.get(current)) {
-                if (edge.isRestricted()) continue; // Skip restricted edges
-                
-                String neighbor = edge.getTo().getId();
-                int newDist = currentDist + edge.getEnergy();
-                
-                if (newDist < distances.get(neighbor)) {
-                    distances.put(neighbor, newDist);
-                    previousNodes.put(neighbor, current);
-                    pq.remove(neighbor);
-                    pq.add(neighbor);
-                }
+        synchronized (pathTrees) {
+            ShortestPathTreeCache.Tree tree = pathTrees.get(registry.indexOf(startId));
+            int end = registry.indexOf(endId);
+            List<String> path = tree.pathTo(end);
+            if (path == null) {
+                return null; // No path exists
             }
+            return new PathResult(path, tree.distanceTo(end), version);
         }
-        
-        // Reconstruct path
-        List<String> path = new ArrayList<>();
-        String current = endId;
-        
-        if (distances.get(endId) == Integer.MAX_VALUE) {
-            return null; // No path exists
-        }
-        
-        while (current != null) {
-            path.add(0, current);
-            current = previousNodes.get(current);
-        }
-        
-        return new PathResult(path, distances.get(endId));
+    }
+    
+    /** Cached shortest-path tree from a node for the current version, or null if there is no such node. */
+    public ShortestPathTreeCache.Tree getShortestPathTree(String sourceId) {
+        return nodes.containsKey(sourceId) ? pathTrees.get(registry.indexOf(sourceId)) : null;
+    }
+    
+    public ShortestPathTreeCache getShortestPathTreeCache() {
+        return pathTrees;
     }
     
     // ===== F1: Get All Delivery Points =====
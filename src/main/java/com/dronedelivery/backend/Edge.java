@@ -1,23 +1,38 @@
 package com.dronedelivery.backend;
 
+/**
+ * A directed corridor. A newly constructed Edge holds its own values; once it
+ * is added to a DroneNetwork it becomes a view over the network's EdgeStore,
+ * and every Edge the network hands out is such a lightweight view.
+ */
 public class Edge {
+    // Values of a detached edge (not yet added, or removed from its network)
     private Node from;
     private Node to;
     private int energy;
     private int capacity;
     private boolean bidirectional;
     private boolean restricted;
+    private boolean mirror;
+
+    // Set while the edge is a view over a network's EdgeStore
+    private DroneNetwork owner;
+    private int id = EdgeStore.NONE;
+    private int epoch;
+    // Identity of the stored edge, kept after removal: its network and EdgeStore serial
+    private DroneNetwork home;
+    private int serial = EdgeStore.NONE;
 
 
     @java.lang.Override
     public java.lang.String toString() {
         return "Edge{" +
-                "from=" + from +
-                ", to=" + to +
-                ", energy=" + energy +
-                ", capacity=" + capacity +
-                ", bidirectional=" + bidirectional +
-                ", restricted=" + restricted +
+                "from=" + getFrom() +
+                ", to=" + getTo() +
+                ", energy=" + getEnergy() +
+                ", capacity=" + getCapacity() +
+                ", bidirectional=" + isBidirectional() +
+                ", restricted=" + isRestricted() +
                 '}';
     }
 
@@ -30,51 +45,201 @@ public class Edge {
         this.restricted = restricted;
     }
 
+    Edge(DroneNetwork owner, int id, int epoch) {
+        this.owner = owner;
+        this.id = id;
+        this.epoch = epoch;
+        this.home = owner;
+        this.serial = owner.getEdgeStore().serial(id);
+    }
+    
+    /** Current row in the owner's EdgeStore, following any compaction since the view was made. */
+    private int row() {
+        int current = owner.getCompactionEpoch();
+        if (epoch != current) {
+            id = owner.getEdgeStore().findSerial(serial);
+            epoch = current;
+        }
+        if (id == EdgeStore.NONE) {
+            throw new IllegalStateException("Edge was removed from the network");
+        }
+        return id;
+    }
+
     public Node getFrom() {
-        return from;
+        return owner != null ? owner.getNode(owner.getEdgeStore().from(row())) : from;
     }
 
     public Node getTo() {
-        return to;
+        return owner != null ? owner.getNode(owner.getEdgeStore().to(row())) : to;
     }
 
     public int getCapacity() {
-        return capacity;
+        return owner != null ? owner.getEdgeStore().capacity(row()) : capacity;
     }
 
     public int getEnergy() {
-        return energy;
+        return owner != null ? owner.getEdgeStore().energy(row()) : energy;
+    }
+
+    /**
+     * Energy for a departure at the given minute: from the corridor's
+     * time-of-day profile if it has one, otherwise the fixed energy.
+     */
+    public int getEnergyAt(int time) {
+        if (owner == null) {
+            return energy;
+        }
+        int profile = owner.getEnergyProfiles().profileOf(row());
+        return profile == EnergyProfiles.NONE ? getEnergy() : owner.getEnergyProfiles().energyAt(profile, time);
+    }
+
+    /** Number of the corridor's profile in its network's EnergyProfiles, or EnergyProfiles.NONE. */
+    public int getEnergyProfile() {
+        return owner != null ? owner.getEnergyProfiles().profileOf(row()) : EnergyProfiles.NONE;
+    }
+
+    /**
+     * Gives the corridor (both directions if bidirectional) a time-of-day
+     * energy profile; see EnergyProfiles. Only for edges in a network.
+     */
+    public void setEnergyProfile(int[] times, int[] energies) {
+        if (owner == null) {
+            throw new IllegalStateException("Energy profiles can only be set on edges in a network");
+        }
+        owner.setEdgeProfile(row(), owner.getEnergyProfiles().add(times, energies));
+    }
+
+    /** Back to the fixed energy for every departure time. */
+    public void clearEnergyProfile() {
+        if (owner != null) {
+            owner.setEdgeProfile(row(), EnergyProfiles.NONE);
+        }
     }
 
     public boolean isBidirectional() {
-        return bidirectional;
+        return owner != null ? owner.getEdgeStore().isBidirectional(row()) : bidirectional;
     }
 
     public boolean isRestricted() {
-        return restricted;
+        return owner != null ? owner.getEdgeStore().isRestricted(row()) : restricted;
+    }
+
+    /** True for the reverse edge DroneNetwork.addEdge creates for a bidirectional corridor. */
+    public boolean isMirror() {
+        return owner != null ? owner.getEdgeStore().isMirror(row()) : mirror;
+    }
+
+    /** Mirrored edge created by DroneNetwork.addEdge for a bidirectional corridor, or null. */
+    public Edge getReverse() {
+        if (owner == null) {
+            return null;
+        }
+        int reverse = owner.getEdgeStore().reverse(row());
+        return reverse == EdgeStore.NONE ? null : owner.edgeView(reverse);
+    }
+
+    /** Id of this edge in its network's EdgeStore, or -1 if it is detached. */
+    public int getId() {
+        return owner != null ? row() : EdgeStore.NONE;
+    }
+
+    void attach(DroneNetwork owner, int id) {
+        this.owner = owner;
+        this.id = id;
+        this.epoch = owner.getCompactionEpoch();
+        this.home = owner;
+        this.serial = owner.getEdgeStore().serial(id);
+    }
+
+    /** EdgeStore serial of the stored edge, kept after removal, or NONE if it was never added. */
+    int serial() {
+        return serial;
+    }
+
+    /** True while the edge is a view over network's EdgeStore. */
+    boolean isViewOf(DroneNetwork network) {
+        return owner != null && owner == network;
     }
+
+    /** Copies the current values out of the store so the edge stays readable once removed. */
+    void detach() {
+        if (owner == null) {
+            return;
+        }
+        from = getFrom();
+        to = getTo();
+        energy = getEnergy();
+        capacity = getCapacity();
+        bidirectional = isBidirectional();
+        restricted = isRestricted();
+        mirror = isMirror();
+        owner = null;
+    }
+
     public void setFrom(Node from) {
-        this.from = from;
+        if (owner != null) {
+            owner.setEdgeFrom(row(), from);
+        } else {
+            this.from = from;
+        }
     }
 
     public void setTo(Node to) {
-        this.to = to;
+        if (owner != null) {
+            owner.setEdgeTo(row(), to);
+        } else {
+            this.to = to;
+        }
     }
 
     public void setEnergy(int energy) {
-        this.energy = energy;
+        if (owner != null) {
+            owner.setEdgeEnergy(row(), energy);
+        } else {
+            this.energy = energy;
+        }
     }
 
     public void setCapacity(int capacity) {
-        this.capacity = capacity;
+        if (owner != null) {
+            owner.setEdgeCapacity(row(), capacity);
+        } else {
+            this.capacity = capacity;
+        }
     }
 
     public void setBidirectional(boolean bidirectional) {
-        this.bidirectional = bidirectional;
+        if (owner != null) {
+            owner.setEdgeFlag(row(), EdgeStore.FLAG_BIDIRECTIONAL, bidirectional);
+        } else {
+            this.bidirectional = bidirectional;
+        }
     }
 
     public void setRestricted(boolean restricted) {
-        this.restricted = restricted;
+        if (owner != null) {
+            owner.setEdgeFlag(row(), EdgeStore.FLAG_RESTRICTED, restricted);
+        } else {
+            this.restricted = restricted;
+        }
     }
-}
 
+    // Views of the same stored edge are equal, across compactions and after its removal
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Edge) || serial == EdgeStore.NONE) {
+            return false;
+        }
+        Edge other = (Edge) o;
+        return home == other.home && serial == other.serial;
+    }
+
+    @Override
+    public int hashCode() {
+        return serial != EdgeStore.NONE ? System.identityHashCode(home) * 31 + serial : System.identityHashCode(this);
+    }
+}
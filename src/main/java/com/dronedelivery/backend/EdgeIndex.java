@@ -0,0 +1,122 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash index from a (from, to) node index pair, packed into
+ * one long, to the lowest live edge id between them. Linear probing with
+ * backward-shift deletion, so lookups and updates allocate nothing and the
+ * table never fills up with deleted markers.
+ */
+final class EdgeIndex {
+    private static final long EMPTY = -1L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    EdgeIndex() {
+        allocate(64);
+    }
+
+    static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    /** Edge id stored for the pair, or EdgeStore.NONE. */
+    int get(int from, int to) {
+        long key = key(from, to);
+        int mask = keys.length - 1;
+        for (int slot = slotOf(key, mask); keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return EdgeStore.NONE;
+    }
+
+    void put(int from, int to, int edge) {
+        if ((size + 1) * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        long key = key(from, to);
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = edge;
+    }
+
+    void remove(int from, int to) {
+        long key = key(from, to);
+        int mask = keys.length - 1;
+        int slot = slotOf(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == EMPTY) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Shift later entries of the probe run back into the hole
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = slotOf(keys[next], mask);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+        size--;
+    }
+
+    /** Grows the table once so that entries pairs fit without further rehashing. */
+    void reserve(int entries) {
+        int capacity = keys.length;
+        while ((long) capacity < 2L * entries) {
+            capacity *= 2;
+        }
+        if (capacity != keys.length) {
+            rehash(capacity);
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotOf(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    private static int slotOf(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
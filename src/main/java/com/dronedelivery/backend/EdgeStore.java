@@ -0,0 +1,632 @@
+package com.dronedelivery.backend;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Struct-of-arrays storage for every directed edge of a network, kept in
+ * direct (off-heap) buffers so that large networks do not put one object per
+ * corridor on the Java heap. An edge is identified by its id, the position in
+ * the columns; ids are assigned in insertion order.
+ *
+ * Outgoing and incoming edges of each node form singly linked lists through
+ * the nextOut/nextIn columns (in insertion order), with the list heads kept in
+ * small on-heap arrays indexed by node index. Edge objects handed out by
+ * DroneNetwork are flyweight views over these columns. An EdgeIndex maps each
+ * (from, to) pair to its lowest live edge id for constant-time lookup.
+ *
+ * Removing an edge only sets its FLAG_REMOVED tombstone, O(1); the adjacency
+ * iterators skip tombstones. Once tombstones make up COMPACTION_RATIO of the
+ * store, DroneNetwork starts a compaction that copies the live rows into
+ * dense columns on a background thread and renumbers the edges.
+ *
+ * Every edge also gets a serial number when it is added, which it keeps
+ * through compactions. Serials increase with the id, so a serial is found
+ * again by binary search; Edge views use it to follow their row.
+ */
+public class EdgeStore {
+    public static final int NONE = -1;
+
+    static final byte FLAG_BIDIRECTIONAL = 1;
+    static final byte FLAG_RESTRICTED = 2;
+    static final byte FLAG_MIRROR = 4;
+    static final byte FLAG_REMOVED = 8;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Compaction starts once at least this many rows exist and this share of them are tombstones
+    static final int MIN_COMPACTION_SIZE = 1024;
+    static final double COMPACTION_RATIO = 0.25;
+
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "edge-store-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private IntBuffer from;
+    private IntBuffer to;
+    private IntBuffer energy;
+    private IntBuffer capacity;
+    private IntBuffer reverse;
+    private IntBuffer nextOut;
+    private IntBuffer nextIn;
+    private ByteBuffer flags;
+    private IntBuffer serial;
+    private int nextSerial;
+    private int size;
+    private int capacityLimit;
+    private int removedCount;
+
+    private int[] firstOut = new int[16];
+    private int[] lastOut = new int[16];
+    private int[] firstIn = new int[16];
+    private int[] lastIn = new int[16];
+
+    private final EdgeIndex index = new EdgeIndex();
+
+    // Running compaction: rows below compactionBound are being copied in the
+    // background, and dirty collects the ones the writer changed meanwhile
+    private Future<Compacted> compaction;
+    private int compactionBound;
+    private int[] dirty = new int[0];
+    private int dirtyCount;
+
+    public EdgeStore() {
+        allocate(INITIAL_CAPACITY);
+        Arrays.fill(firstOut, NONE);
+        Arrays.fill(lastOut, NONE);
+        Arrays.fill(firstIn, NONE);
+        Arrays.fill(lastIn, NONE);
+    }
+
+    // ===== Column access =====
+
+    /** Upper bound (exclusive) of edge ids, including removed edges. */
+    public int size() {
+        return size;
+    }
+
+    /** Number of edges that have not been removed. */
+    public int liveCount() {
+        return size - removedCount;
+    }
+
+    /** Number of removed edges still occupying a row. */
+    public int removedCount() {
+        return removedCount;
+    }
+
+    public int from(int edge) {
+        return from.get(edge);
+    }
+
+    public int to(int edge) {
+        return to.get(edge);
+    }
+
+    public int energy(int edge) {
+        return energy.get(edge);
+    }
+
+    public int capacity(int edge) {
+        return capacity.get(edge);
+    }
+
+    /** Id of the mirrored half of a bidirectional corridor, or NONE. */
+    public int reverse(int edge) {
+        return reverse.get(edge);
+    }
+
+    public boolean isBidirectional(int edge) {
+        return (flags.get(edge) & FLAG_BIDIRECTIONAL) != 0;
+    }
+
+    public boolean isRestricted(int edge) {
+        return (flags.get(edge) & FLAG_RESTRICTED) != 0;
+    }
+
+    /** True for the reverse edge that addEdge creates for a bidirectional corridor. */
+    public boolean isMirror(int edge) {
+        return (flags.get(edge) & FLAG_MIRROR) != 0;
+    }
+
+    public boolean isRemoved(int edge) {
+        return (flags.get(edge) & FLAG_REMOVED) != 0;
+    }
+
+    /** Number given to the edge when it was added; unlike its id it never changes. */
+    public int serial(int edge) {
+        return serial.get(edge);
+    }
+
+    /** Id of the edge with this serial, or NONE if it was compacted away; O(log size). */
+    public int findSerial(int edgeSerial) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = serial.get(mid);
+            if (value < edgeSerial) {
+                low = mid + 1;
+            } else if (value > edgeSerial) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NONE;
+    }
+
+    // ===== Adjacency =====
+
+    /** First live outgoing edge of a node, or NONE. */
+    public int firstOut(int node) {
+        return node < firstOut.length ? skipRemovedOut(firstOut[node]) : NONE;
+    }
+
+    /** Next live outgoing edge of the same node after edge, or NONE. */
+    public int nextOut(int edge) {
+        return skipRemovedOut(nextOut.get(edge));
+    }
+
+    /** First live incoming edge of a node, or NONE. */
+    public int firstIn(int node) {
+        return node < firstIn.length ? skipRemovedIn(firstIn[node]) : NONE;
+    }
+
+    /** Next live incoming edge of the same node after edge, or NONE. */
+    public int nextIn(int edge) {
+        return skipRemovedIn(nextIn.get(edge));
+    }
+
+    /** Lowest live edge id from one node to another, or NONE; O(1). */
+    public int find(int fromNode, int toNode) {
+        return index.get(fromNode, toNode);
+    }
+
+    private int skipRemovedOut(int edge) {
+        while (edge != NONE && isRemoved(edge)) {
+            edge = nextOut.get(edge);
+        }
+        return edge;
+    }
+
+    private int skipRemovedIn(int edge) {
+        while (edge != NONE && isRemoved(edge)) {
+            edge = nextIn.get(edge);
+        }
+        return edge;
+    }
+
+    // ===== Mutation (through DroneNetwork only) =====
+
+    int add(int fromNode, int toNode, int edgeEnergy, int edgeCapacity, byte edgeFlags) {
+        if (nextSerial == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Edge serial numbers exhausted");
+        }
+        if (size == capacityLimit) {
+            allocate(capacityLimit * 2);
+        }
+        int edge = size++;
+        serial.put(edge, nextSerial++);
+        from.put(edge, fromNode);
+        to.put(edge, toNode);
+        energy.put(edge, edgeEnergy);
+        capacity.put(edge, edgeCapacity);
+        reverse.put(edge, NONE);
+        flags.put(edge, edgeFlags);
+        linkOut(edge, fromNode);
+        linkIn(edge, toNode);
+        if (index.get(fromNode, toNode) == NONE) {
+            index.put(fromNode, toNode, edge);
+        }
+        return edge;
+    }
+
+    /** Makes room for rows edges in total, so a bulk load grows the columns and index once. */
+    void reserve(int rows) {
+        if (rows > capacityLimit) {
+            allocate(rows);
+        }
+        index.reserve(rows);
+    }
+
+    void setEnergy(int edge, int value) {
+        energy.put(edge, value);
+        touched(edge);
+    }
+
+    void setCapacity(int edge, int value) {
+        capacity.put(edge, value);
+        touched(edge);
+    }
+
+    void setTo(int edge, int node) {
+        int oldTo = to.get(edge);
+        unlinkIn(edge);
+        to.put(edge, node);
+        linkIn(edge, node);
+        reindex(edge, from.get(edge), oldTo);
+        touched(edge);
+    }
+
+    void setFrom(int edge, int node) {
+        int oldFrom = from.get(edge);
+        unlinkOut(edge);
+        from.put(edge, node);
+        linkOut(edge, node);
+        reindex(edge, oldFrom, to.get(edge));
+        touched(edge);
+    }
+
+    void setReverse(int edge, int other) {
+        reverse.put(edge, other);
+        touched(edge);
+    }
+
+    void setFlag(int edge, byte flag, boolean value) {
+        byte current = flags.get(edge);
+        flags.put(edge, (byte) (value ? current | flag : current & ~flag));
+        touched(edge);
+    }
+
+    /** Tombstones the edge; it stays linked but adjacency iteration skips it. */
+    void remove(int edge) {
+        if (isRemoved(edge)) {
+            return;
+        }
+        setFlag(edge, FLAG_REMOVED, true);
+        removedCount++;
+        if (index.get(from.get(edge), to.get(edge)) == edge) {
+            indexLowest(from.get(edge), to.get(edge));
+        }
+    }
+
+    /** Updates the index after a live edge moved from the pair (oldFrom, oldTo) to its current one. */
+    private void reindex(int edge, int oldFrom, int oldTo) {
+        if (index.get(oldFrom, oldTo) == edge) {
+            indexLowest(oldFrom, oldTo);
+        }
+        int current = index.get(from.get(edge), to.get(edge));
+        if (current == NONE || current > edge) {
+            index.put(from.get(edge), to.get(edge), edge);
+        }
+    }
+
+    /** Re-points the pair at its lowest remaining live edge, scanning the outgoing list of fromNode. */
+    private void indexLowest(int fromNode, int toNode) {
+        int lowest = NONE;
+        for (int e = firstOut(fromNode); e != NONE; e = nextOut(e)) {
+            if (to.get(e) == toNode && (lowest == NONE || e < lowest)) {
+                lowest = e;
+            }
+        }
+        if (lowest == NONE) {
+            index.remove(fromNode, toNode);
+        } else {
+            index.put(fromNode, toNode, lowest);
+        }
+    }
+
+    private void linkOut(int edge, int node) {
+        ensureNodeCapacity(node + 1);
+        nextOut.put(edge, NONE);
+        if (lastOut[node] == NONE) {
+            firstOut[node] = edge;
+        } else {
+            nextOut.put(lastOut[node], edge);
+        }
+        lastOut[node] = edge;
+    }
+
+    private void linkIn(int edge, int node) {
+        ensureNodeCapacity(node + 1);
+        nextIn.put(edge, NONE);
+        if (lastIn[node] == NONE) {
+            firstIn[node] = edge;
+        } else {
+            nextIn.put(lastIn[node], edge);
+        }
+        lastIn[node] = edge;
+    }
+
+    private void unlinkOut(int edge) {
+        int node = from.get(edge);
+        int previous = NONE;
+        for (int e = firstOut[node]; e != NONE; e = nextOut.get(e)) {
+            if (e == edge) {
+                int next = nextOut.get(e);
+                if (previous == NONE) {
+                    firstOut[node] = next;
+                } else {
+                    nextOut.put(previous, next);
+                }
+                if (lastOut[node] == edge) {
+                    lastOut[node] = previous;
+                }
+                return;
+            }
+            previous = e;
+        }
+    }
+
+    private void unlinkIn(int edge) {
+        int node = to.get(edge);
+        int previous = NONE;
+        for (int e = firstIn[node]; e != NONE; e = nextIn.get(e)) {
+            if (e == edge) {
+                int next = nextIn.get(e);
+                if (previous == NONE) {
+                    firstIn[node] = next;
+                } else {
+                    nextIn.put(previous, next);
+                }
+                if (lastIn[node] == edge) {
+                    lastIn[node] = previous;
+                }
+                return;
+            }
+            previous = e;
+        }
+    }
+
+    void ensureNodeCapacity(int nodes) {
+        if (nodes > firstOut.length) {
+            int length = Math.max(nodes, firstOut.length * 2);
+            int old = firstOut.length;
+            firstOut = Arrays.copyOf(firstOut, length);
+            lastOut = Arrays.copyOf(lastOut, length);
+            firstIn = Arrays.copyOf(firstIn, length);
+            lastIn = Arrays.copyOf(lastIn, length);
+            Arrays.fill(firstOut, old, length, NONE);
+            Arrays.fill(lastOut, old, length, NONE);
+            Arrays.fill(firstIn, old, length, NONE);
+            Arrays.fill(lastIn, old, length, NONE);
+        }
+    }
+
+    // ===== Compaction =====
+
+    /** Dense copy of the live rows below the compaction bound, built in the background. */
+    private static final class Compacted {
+        IntBuffer from;
+        IntBuffer to;
+        IntBuffer energy;
+        IntBuffer capacity;
+        IntBuffer reverse;
+        ByteBuffer flags;
+        IntBuffer serial;
+        int size;
+        int capacityLimit;
+        int[] remap;
+    }
+
+    boolean needsCompaction() {
+        return compaction == null && size >= MIN_COMPACTION_SIZE && removedCount >= size * COMPACTION_RATIO;
+    }
+
+    boolean isCompacting() {
+        return compaction != null;
+    }
+
+    /**
+     * Starts copying the live rows into dense columns on the compaction
+     * thread. The writer keeps using this store meanwhile; rows it changes
+     * are recorded and re-copied by finishCompaction.
+     */
+    void startCompaction() {
+        if (compaction != null) {
+            return;
+        }
+        // Removal is permanent, so the background pass can only see fewer live
+        // rows than counted here; whatever it reads stale is replayed from dirty
+        IntBuffer fromColumn = from.duplicate();
+        IntBuffer toColumn = to.duplicate();
+        IntBuffer energyColumn = energy.duplicate();
+        IntBuffer capacityColumn = capacity.duplicate();
+        IntBuffer reverseColumn = reverse.duplicate();
+        ByteBuffer flagColumn = flags.duplicate();
+        IntBuffer serialColumn = serial.duplicate();
+        int bound = size;
+        int live = size - removedCount;
+
+        compactionBound = bound;
+        dirtyCount = 0;
+        compaction = COMPACTOR.submit(() -> {
+            Compacted result = new Compacted();
+            result.capacityLimit = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, live)) * 2);
+            result.from = newIntColumn(result.capacityLimit);
+            result.to = newIntColumn(result.capacityLimit);
+            result.energy = newIntColumn(result.capacityLimit);
+            result.capacity = newIntColumn(result.capacityLimit);
+            result.reverse = newIntColumn(result.capacityLimit);
+            result.flags = ByteBuffer.allocateDirect(result.capacityLimit);
+            result.serial = newIntColumn(result.capacityLimit);
+            result.remap = new int[bound];
+
+            int next = 0;
+            for (int e = 0; e < bound; e++) {
+                if ((flagColumn.get(e) & FLAG_REMOVED) != 0) {
+                    result.remap[e] = NONE;
+                    continue;
+                }
+                result.remap[e] = next;
+                result.from.put(next, fromColumn.get(e));
+                result.to.put(next, toColumn.get(e));
+                result.energy.put(next, energyColumn.get(e));
+                result.capacity.put(next, capacityColumn.get(e));
+                result.reverse.put(next, reverseColumn.get(e));
+                result.flags.put(next, flagColumn.get(e));
+                result.serial.put(next, serialColumn.get(e));
+                next++;
+            }
+            for (int e = 0; e < next; e++) {
+                int partner = result.reverse.get(e);
+                result.reverse.put(e, partner == NONE || partner >= bound ? NONE : result.remap[partner]);
+            }
+            result.size = next;
+            return result;
+        });
+    }
+
+    /**
+     * Installs a finished compaction, waiting for it if wait is set. Returns
+     * the mapping from old to new edge ids (NONE for dropped rows), or null if
+     * no compaction was installed.
+     */
+    int[] finishCompaction(boolean wait) {
+        if (compaction == null || (!wait && !compaction.isDone())) {
+            return null;
+        }
+        Compacted result;
+        try {
+            result = compaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            compaction = null;
+            throw new IllegalStateException("Edge store compaction failed", e.getCause());
+        }
+        compaction = null;
+
+        IntBuffer oldFrom = from;
+        IntBuffer oldTo = to;
+        IntBuffer oldEnergy = energy;
+        IntBuffer oldCapacity = capacity;
+        IntBuffer oldReverse = reverse;
+        ByteBuffer oldFlags = flags;
+        IntBuffer oldSerial = serial;
+        int oldSize = size;
+        int bound = compactionBound;
+
+        int[] remap = Arrays.copyOf(result.remap, oldSize);
+        from = result.from;
+        to = result.to;
+        energy = result.energy;
+        capacity = result.capacity;
+        reverse = result.reverse;
+        flags = result.flags;
+        serial = result.serial;
+        capacityLimit = result.capacityLimit;
+        size = result.size;
+        removedCount = 0;
+        nextOut = newIntColumn(capacityLimit);
+        nextIn = newIntColumn(capacityLimit);
+
+        // Rows added while compacting: keep the live ones
+        for (int e = bound; e < oldSize; e++) {
+            if ((oldFlags.get(e) & FLAG_REMOVED) != 0) {
+                remap[e] = NONE;
+                continue;
+            }
+            if (size == capacityLimit) {
+                allocate(capacityLimit * 2);
+            }
+            remap[e] = size;
+            copyRow(size++, e, oldFrom, oldTo, oldEnergy, oldCapacity, oldFlags, oldSerial);
+        }
+        // Rows changed while compacting: re-copy them (removed ones stay as tombstones)
+        for (int i = 0; i < dirtyCount; i++) {
+            int e = dirty[i];
+            if (remap[e] != NONE) {
+                copyRow(remap[e], e, oldFrom, oldTo, oldEnergy, oldCapacity, oldFlags, oldSerial);
+            }
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            int e = dirty[i];
+            if (remap[e] != NONE) {
+                int partner = oldReverse.get(e);
+                reverse.put(remap[e], partner == NONE ? NONE : remap[partner]);
+            }
+        }
+        for (int e = bound; e < oldSize; e++) {
+            if (remap[e] != NONE) {
+                int partner = oldReverse.get(e);
+                reverse.put(remap[e], partner == NONE ? NONE : remap[partner]);
+            }
+        }
+        dirtyCount = 0;
+
+        Arrays.fill(firstOut, NONE);
+        Arrays.fill(lastOut, NONE);
+        Arrays.fill(firstIn, NONE);
+        Arrays.fill(lastIn, NONE);
+        index.clear();
+        for (int e = 0; e < size; e++) {
+            linkOut(e, from.get(e));
+            linkIn(e, to.get(e));
+            if (isRemoved(e)) {
+                removedCount++;
+            } else if (index.get(from.get(e), to.get(e)) == NONE) {
+                index.put(from.get(e), to.get(e), e);
+            }
+        }
+        return remap;
+    }
+
+    private void copyRow(int target, int source, IntBuffer oldFrom, IntBuffer oldTo,
+                         IntBuffer oldEnergy, IntBuffer oldCapacity, ByteBuffer oldFlags,
+                         IntBuffer oldSerial) {
+        from.put(target, oldFrom.get(source));
+        to.put(target, oldTo.get(source));
+        energy.put(target, oldEnergy.get(source));
+        capacity.put(target, oldCapacity.get(source));
+        flags.put(target, oldFlags.get(source));
+        serial.put(target, oldSerial.get(source));
+    }
+
+    private void touched(int edge) {
+        if (compaction != null && edge < compactionBound) {
+            if (dirtyCount == dirty.length) {
+                dirty = Arrays.copyOf(dirty, Math.max(16, dirtyCount * 2));
+            }
+            dirty[dirtyCount++] = edge;
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        from = grow(from, newCapacity);
+        to = grow(to, newCapacity);
+        energy = grow(energy, newCapacity);
+        capacity = grow(capacity, newCapacity);
+        reverse = grow(reverse, newCapacity);
+        nextOut = grow(nextOut, newCapacity);
+        nextIn = grow(nextIn, newCapacity);
+        serial = grow(serial, newCapacity);
+
+        ByteBuffer newFlags = ByteBuffer.allocateDirect(newCapacity);
+        if (flags != null) {
+            ByteBuffer old = flags.duplicate();
+            old.position(0).limit(size);
+            newFlags.put(old);
+            newFlags.clear();
+        }
+        flags = newFlags;
+        capacityLimit = newCapacity;
+    }
+
+    private static IntBuffer newIntColumn(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * Integer.BYTES)
+            .order(ByteOrder.nativeOrder())
+            .asIntBuffer();
+    }
+
+    private IntBuffer grow(IntBuffer old, int newCapacity) {
+        IntBuffer column = newIntColumn(newCapacity);
+        if (old != null) {
+            IntBuffer source = old.duplicate();
+            source.position(0).limit(size);
+            column.put(source);
+            column.clear();
+        }
+        return column;
+    }
+}
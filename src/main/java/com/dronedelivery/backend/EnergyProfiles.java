@@ -0,0 +1,208 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Optional time-of-day energy profiles for corridors. A profile is a
+ * piecewise-linear function given by breakpoints (minute of day, energy)
+ * that repeats every day; between breakpoints the energy is interpolated,
+ * and after the last one it runs back to the first one of the next day.
+ *
+ * The breakpoints of all profiles live in two shared int arrays, and an edge
+ * only stores the number of its profile (NONE for a corridor with a fixed
+ * energy). Identical profiles are stored once. Flying a corridor takes as
+ * many minutes as the energy it costs, so a profile may not fall faster than
+ * one energy unit per minute: leaving later must never mean arriving earlier.
+ */
+public final class EnergyProfiles {
+    public static final int NONE = -1;
+    public static final int PERIOD = 24 * 60;
+
+    // Breakpoints of profile p are times/energies[start[p] .. start[p + 1] - 1]
+    private int[] start = new int[9];
+    private int[] times = new int[64];
+    private int[] energies = new int[64];
+    private int count;
+    private final Map<Key, Integer> interned = new HashMap<>();
+
+    // Profile of each edge id, NONE if it has a fixed energy
+    private int[] edgeProfile = new int[0];
+
+    /**
+     * Stores a profile (or finds an identical one) and returns its number.
+     * times must be strictly increasing minutes in [0, PERIOD).
+     */
+    public int add(int[] profileTimes, int[] profileEnergies) {
+        validate(profileTimes, profileEnergies);
+        Key key = new Key(profileTimes, profileEnergies);
+        Integer existing = interned.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        int length = profileTimes.length;
+        int offset = start[count];
+        if (offset + length > times.length) {
+            int capacity = Math.max(times.length * 2, offset + length);
+            times = Arrays.copyOf(times, capacity);
+            energies = Arrays.copyOf(energies, capacity);
+        }
+        System.arraycopy(profileTimes, 0, times, offset, length);
+        System.arraycopy(profileEnergies, 0, energies, offset, length);
+        if (count + 2 > start.length) {
+            start = Arrays.copyOf(start, start.length * 2);
+        }
+        start[++count] = offset + length;
+        interned.put(key, count - 1);
+        return count - 1;
+    }
+
+    private static void validate(int[] profileTimes, int[] profileEnergies) {
+        int length = profileTimes.length;
+        if (length == 0 || length != profileEnergies.length) {
+            throw new IllegalArgumentException("A profile needs matching, non-empty times and energies");
+        }
+        for (int i = 0; i < length; i++) {
+            if (profileTimes[i] < 0 || profileTimes[i] >= PERIOD
+                    || (i > 0 && profileTimes[i] <= profileTimes[i - 1])) {
+                throw new IllegalArgumentException("Profile times must increase within [0, " + PERIOD + ")");
+            }
+            if (profileEnergies[i] < 0) {
+                throw new IllegalArgumentException("Profile energies must not be negative");
+            }
+            // Segment to the next breakpoint, wrapping to the first one tomorrow
+            int nextTime = i + 1 < length ? profileTimes[i + 1] : profileTimes[0] + PERIOD;
+            int nextEnergy = profileEnergies[(i + 1) % length];
+            if (profileEnergies[i] - nextEnergy > nextTime - profileTimes[i]) {
+                throw new IllegalArgumentException("Profile drops faster than one unit per minute after minute "
+                    + profileTimes[i] + ", so later departures could arrive earlier");
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int breakpointCount(int profile) {
+        return start[profile + 1] - start[profile];
+    }
+
+    public int breakpointTime(int profile, int i) {
+        return times[start[profile] + i];
+    }
+
+    public int breakpointEnergy(int profile, int i) {
+        return energies[start[profile] + i];
+    }
+
+    /** Energy of the profile for a departure at the given minute (any day). */
+    public int energyAt(int profile, int time) {
+        int minute = Math.floorMod(time, PERIOD);
+        return evaluate(profile, minute, segment(profile, minute));
+    }
+
+    /**
+     * Index of the breakpoint starting the segment that contains minute
+     * (in [0, PERIOD)); -1 before the first breakpoint, which belongs to the
+     * wrap-around segment from the last one.
+     */
+    public int segment(int profile, int minute) {
+        int low = start[profile];
+        int high = start[profile + 1] - 1;
+        if (minute < times[low]) {
+            return -1;
+        }
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (times[mid] <= minute) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low - start[profile];
+    }
+
+    /** Linear interpolation within a segment found by segment(); rounds down. */
+    public int evaluate(int profile, int minute, int segment) {
+        int first = start[profile];
+        int last = start[profile + 1] - 1;
+        int i = segment < 0 ? last : first + segment;
+        int fromTime = times[i];
+        int toTime;
+        int toEnergy;
+        if (i < last) {
+            toTime = times[i + 1];
+            toEnergy = energies[i + 1];
+        } else {
+            toTime = times[first] + PERIOD;
+            toEnergy = energies[first];
+        }
+        if (segment < 0) {
+            minute += PERIOD; // before the first breakpoint: on the segment that started yesterday
+        }
+        long rise = (long) (toEnergy - energies[i]) * (minute - fromTime);
+        return energies[i] + (int) Math.floorDiv(rise, toTime - fromTime);
+    }
+
+    // ===== Edge assignment =====
+
+    /** Profile of an edge id, or NONE. */
+    public int profileOf(int edge) {
+        return edge < edgeProfile.length ? edgeProfile[edge] : NONE;
+    }
+
+    void assign(int edge, int profile) {
+        if (edge >= edgeProfile.length) {
+            if (profile == NONE) {
+                return;
+            }
+            int old = edgeProfile.length;
+            edgeProfile = Arrays.copyOf(edgeProfile, Math.max(edge + 1, old * 2));
+            Arrays.fill(edgeProfile, old, edgeProfile.length, NONE);
+        }
+        edgeProfile[edge] = profile;
+    }
+
+    /** Follows an EdgeStore compaction (old id to new id, NONE if dropped). */
+    void remap(int[] remap) {
+        int[] moved = new int[edgeProfile.length];
+        Arrays.fill(moved, NONE);
+        for (int old = 0; old < edgeProfile.length && old < remap.length; old++) {
+            if (edgeProfile[old] != NONE && remap[old] != EdgeStore.NONE) {
+                moved[remap[old]] = edgeProfile[old];
+            }
+        }
+        edgeProfile = moved;
+    }
+
+    /** Content key used to store identical profiles once. */
+    private static final class Key {
+        private final int[] times;
+        private final int[] energies;
+        private final int hash;
+
+        Key(int[] times, int[] energies) {
+            this.times = times.clone();
+            this.energies = energies.clone();
+            this.hash = 31 * Arrays.hashCode(times) + Arrays.hashCode(energies);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return Arrays.equals(times, other.times) && Arrays.equals(energies, other.energies);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap over node indices 0 .. capacity - 1 with int keys and
+ * decrease-key, backed by primitive arrays. Replaces PriorityQueue&lt;String&gt;
+ * plus remove/add in the shortest-path searches.
+ */
+public class IndexedMinHeap {
+    private int[] heap;
+    private int[] keys;
+    private int[] positions;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new int[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int index) {
+        return positions[index] >= 0;
+    }
+
+    public int keyOf(int index) {
+        return keys[index];
+    }
+
+    /** Smallest key currently in the heap. */
+    public int peekKey() {
+        return keys[heap[0]];
+    }
+
+    /** Inserts index, or lowers its key if it is already queued with a larger one. */
+    public void insertOrDecrease(int index, int key) {
+        int pos = positions[index];
+        if (pos < 0) {
+            pos = size++;
+            heap[pos] = index;
+            positions[index] = pos;
+        } else if (key >= keys[index]) {
+            return;
+        }
+        keys[index] = key;
+        siftUp(pos);
+    }
+
+    public int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int index = heap[pos];
+        int key = keys[index];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int parentIndex = heap[parent];
+            if (keys[parentIndex] <= key) {
+                break;
+            }
+            heap[pos] = parentIndex;
+            positions[parentIndex] = pos;
+            pos = parent;
+        }
+        heap[pos] = index;
+        positions[index] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int index = heap[pos];
+        int key = keys[index];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[pos] = heap[child];
+            positions[heap[pos]] = pos;
+            pos = child;
+        }
+        heap[pos] = index;
+        positions[index] = pos;
+    }
+}
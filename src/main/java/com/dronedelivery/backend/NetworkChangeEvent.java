@@ -0,0 +1,53 @@
+package com.dronedelivery.backend;
+
+public class NetworkChangeEvent {
+    public enum Type {
+        NODE_ADDED,
+        NODE_REMOVED,
+        NODE_UPDATED,
+        EDGE_ADDED,
+        EDGE_REMOVED,
+        EDGE_UPDATED
+    }
+
+    private final Type type;
+    private final long version;
+    private final Node node;
+    private final Edge edge;
+
+    public NetworkChangeEvent(Type type, long version, Node node, Edge edge) {
+        this.type = type;
+        this.version = version;
+        this.node = node;
+        this.edge = edge;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /** Network version reached by applying this change. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Affected node for NODE_* events, null otherwise. */
+    public Node getNode() {
+        return node;
+    }
+
+    /** Affected edge for EDGE_* events, null otherwise. */
+    public Edge getEdge() {
+        return edge;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkChangeEvent{" +
+                "type=" + type +
+                ", version=" + version +
+                ", node=" + node +
+                ", edge=" + edge +
+                '}';
+    }
+}
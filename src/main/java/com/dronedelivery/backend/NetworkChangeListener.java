@@ -0,0 +1,10 @@
+package com.dronedelivery.backend;
+
+/**
+ * Receives every mutation applied to a DroneNetwork, in order, on the thread
+ * that performed it. Lets caches and indexes update incrementally instead of
+ * rebuilding from scratch.
+ */
+public interface NetworkChangeListener {
+    void onNetworkChange(NetworkChangeEvent event);
+}
@@ -0,0 +1,357 @@
+package com.dronedelivery.backend;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A small set of changes (add/remove/update of nodes and corridors) that can be
+ * applied to a loaded network in place instead of reloading the whole file.
+ */
+public class NetworkPatch {
+
+    public enum OperationType {
+        ADD_NODE,
+        REMOVE_NODE,
+        UPDATE_NODE,
+        ADD_EDGE,
+        REMOVE_EDGE,
+        UPDATE_EDGE
+    }
+
+    /**
+     * One patch operation. Node operations use nodeId, edge operations use
+     * fromId/toId; attributes left null are not changed by updates.
+     */
+    public static class Operation {
+        public final OperationType type;
+        public String nodeId;
+        public Node.NodeType nodeType;
+        public Double x;
+        public Double y;
+        public String fromId;
+        public String toId;
+        public Integer energy;
+        public Integer capacity;
+        public Boolean bidirectional;
+        public Boolean restricted;
+
+        public Operation(OperationType type) {
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            switch (type) {
+                case ADD_NODE:
+                case REMOVE_NODE:
+                case UPDATE_NODE:
+                    return type + " " + nodeId;
+                default:
+                    return type + " " + fromId + " -> " + toId;
+            }
+        }
+    }
+
+    private final List<Operation> operations = new ArrayList<>();
+    private Long baseVersion;
+
+    public NetworkPatch() {
+    }
+
+    /** Rejects the patch unless the network is exactly at this version when applied. */
+    public NetworkPatch(long baseVersion) {
+        this.baseVersion = baseVersion;
+    }
+
+    public Long getBaseVersion() {
+        return baseVersion;
+    }
+
+    public List<Operation> getOperations() {
+        return Collections.unmodifiableList(operations);
+    }
+
+    public NetworkPatch add(Operation operation) {
+        operations.add(operation);
+        return this;
+    }
+
+    // ===== Builders =====
+    public NetworkPatch addNode(String id, Node.NodeType type, double x, double y) {
+        Operation op = new Operation(OperationType.ADD_NODE);
+        op.nodeId = id;
+        op.nodeType = type;
+        op.x = x;
+        op.y = y;
+        return add(op);
+    }
+
+    public NetworkPatch removeNode(String id) {
+        Operation op = new Operation(OperationType.REMOVE_NODE);
+        op.nodeId = id;
+        return add(op);
+    }
+
+    public NetworkPatch updateNode(String id, Node.NodeType type, Double x, Double y) {
+        Operation op = new Operation(OperationType.UPDATE_NODE);
+        op.nodeId = id;
+        op.nodeType = type;
+        op.x = x;
+        op.y = y;
+        return add(op);
+    }
+
+    public NetworkPatch addEdge(String fromId, String toId, int energy, int capacity,
+                                boolean bidirectional, boolean restricted) {
+        Operation op = new Operation(OperationType.ADD_EDGE);
+        op.fromId = fromId;
+        op.toId = toId;
+        op.energy = energy;
+        op.capacity = capacity;
+        op.bidirectional = bidirectional;
+        op.restricted = restricted;
+        return add(op);
+    }
+
+    public NetworkPatch removeEdge(String fromId, String toId) {
+        Operation op = new Operation(OperationType.REMOVE_EDGE);
+        op.fromId = fromId;
+        op.toId = toId;
+        return add(op);
+    }
+
+    public NetworkPatch updateEdge(String fromId, String toId, Integer energy, Integer capacity,
+                                   Boolean restricted) {
+        Operation op = new Operation(OperationType.UPDATE_EDGE);
+        op.fromId = fromId;
+        op.toId = toId;
+        op.energy = energy;
+        op.capacity = capacity;
+        op.restricted = restricted;
+        return add(op);
+    }
+
+    // ===== Apply =====
+
+    /**
+     * Applies every operation to the network in order. The whole patch is
+     * validated first, so an invalid patch leaves the network untouched.
+     * Each applied change bumps the network version and fires change events.
+     *
+     * @throws IllegalStateException if the network is not at the base version
+     * @throws IllegalArgumentException if an operation refers to a missing
+     *         node/edge or adds a node, or a corridor direction, that already exists
+     */
+    public void applyTo(DroneNetwork network) {
+        if (baseVersion != null && baseVersion != network.getVersion()) {
+            throw new IllegalStateException("Patch expects network version " + baseVersion
+                + " but network is at " + network.getVersion());
+        }
+        validate(network);
+
+        for (Operation op : operations) {
+            switch (op.type) {
+                case ADD_NODE:
+                    network.addNode(new Node(op.nodeId, op.nodeType, op.x, op.y));
+                    break;
+                case REMOVE_NODE:
+                    network.removeNode(op.nodeId);
+                    break;
+                case UPDATE_NODE:
+                    Node node = network.getNode(op.nodeId);
+                    if (op.nodeType != null && op.nodeType != node.getType()) node.setType(op.nodeType);
+                    if (op.x != null && op.x != node.getX()) node.setX(op.x);
+                    if (op.y != null && op.y != node.getY()) node.setY(op.y);
+                    break;
+                case ADD_EDGE:
+                    network.addEdge(new Edge(network.getNode(op.fromId), network.getNode(op.toId),
+                        op.energy, op.capacity, op.bidirectional, op.restricted));
+                    break;
+                case REMOVE_EDGE:
+                    network.removeEdge(op.fromId, op.toId);
+                    break;
+                case UPDATE_EDGE:
+                    network.updateEdge(op.fromId, op.toId, op.energy, op.capacity, op.restricted);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Dry-runs the operations against the current nodes and corridors. Only
+     * what the patch touches is looked at: nodes by id, and each direction
+     * the patch names as the list of corridors flying it, loaded from the
+     * from node's out-edges, lowest edge id first like getEdge finds them.
+     * Removing a bidirectional corridor by either name drops both of its
+     * directions, as DroneNetwork does.
+     */
+    private void validate(DroneNetwork network) {
+        Overlay overlay = new Overlay(network);
+        for (Operation op : operations) {
+            switch (op.type) {
+                case ADD_NODE:
+                    if (op.nodeId == null || op.nodeType == null || op.x == null || op.y == null) {
+                        throw invalid(op, "id, type, x and y are required");
+                    }
+                    if (overlay.hasNode(op.nodeId)) {
+                        throw invalid(op, "node already exists");
+                    }
+                    overlay.nodes.put(op.nodeId, true);
+                    break;
+                case REMOVE_NODE:
+                    if (!overlay.hasNode(op.nodeId)) {
+                        throw invalid(op, "unknown node");
+                    }
+                    overlay.removeNode(op.nodeId);
+                    break;
+                case UPDATE_NODE:
+                    if (!overlay.hasNode(op.nodeId)) {
+                        throw invalid(op, "unknown node");
+                    }
+                    break;
+                case ADD_EDGE:
+                    if (op.energy == null || op.capacity == null || op.bidirectional == null) {
+                        throw invalid(op, "energy, capacity and bidirectional are required");
+                    }
+                    if (op.restricted == null) {
+                        op.restricted = false;
+                    }
+                    if (!overlay.hasNode(op.fromId) || !overlay.hasNode(op.toId)) {
+                        throw invalid(op, "unknown endpoint");
+                    }
+                    if (!overlay.direction(op.fromId, op.toId).isEmpty()
+                            || (op.bidirectional && !overlay.direction(op.toId, op.fromId).isEmpty())) {
+                        throw invalid(op, "corridor already exists");
+                    }
+                    Corridor added = new Corridor(op.fromId, op.toId, op.bidirectional);
+                    overlay.direction(op.fromId, op.toId).add(added);
+                    if (op.bidirectional) {
+                        overlay.direction(op.toId, op.fromId).add(added);
+                    }
+                    break;
+                case REMOVE_EDGE:
+                    if (overlay.direction(op.fromId, op.toId).isEmpty()) {
+                        throw invalid(op, "unknown corridor");
+                    }
+                    Corridor removed = overlay.direction(op.fromId, op.toId).get(0);
+                    overlay.direction(removed.fromId, removed.toId).remove(removed);
+                    if (removed.bidirectional) {
+                        overlay.direction(removed.toId, removed.fromId).remove(removed);
+                    }
+                    break;
+                case UPDATE_EDGE:
+                    if (overlay.direction(op.fromId, op.toId).isEmpty()) {
+                        throw invalid(op, "unknown corridor");
+                    }
+                    break;
+            }
+        }
+    }
+
+    /** A corridor during validation; both directions of a bidirectional one share the object. */
+    private static class Corridor {
+        final String fromId;
+        final String toId;
+        final boolean bidirectional;
+
+        Corridor(String fromId, String toId, boolean bidirectional) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.bidirectional = bidirectional;
+        }
+    }
+
+    /**
+     * The nodes and corridor directions a patch has touched so far, on top
+     * of the unchanged network, so validation costs O(operations x degree)
+     * instead of a copy of the whole network.
+     */
+    private static class Overlay {
+        final DroneNetwork network;
+        // Nodes added (true) or removed (false) by the patch
+        final Map<String, Boolean> nodes = new HashMap<>();
+        // Nodes removed at some point: their stored corridors are gone even if they are added again
+        final Set<String> removedNodes = new HashSet<>();
+        // Corridors flying each touched direction, by from and to id
+        final Map<String, Map<String, List<Corridor>>> out = new HashMap<>();
+        // For each to id, the from ids with a direction into it in out
+        final Map<String, Set<String>> in = new HashMap<>();
+        // Stored corridors by the id of their non-mirror edge, so both directions share one object
+        final Map<Integer, Corridor> stored = new HashMap<>();
+
+        Overlay(DroneNetwork network) {
+            this.network = network;
+        }
+
+        boolean hasNode(String id) {
+            Boolean patched = nodes.get(id);
+            return patched != null ? patched : network.getNode(id) != null;
+        }
+
+        /** Drops the node and every direction touching it, walking only its own entries. */
+        void removeNode(String id) {
+            nodes.put(id, false);
+            removedNodes.add(id);
+            Map<String, List<Corridor>> outgoing = out.remove(id);
+            if (outgoing != null) {
+                for (String toId : outgoing.keySet()) {
+                    in.get(toId).remove(id);
+                }
+            }
+            Set<String> incoming = in.remove(id);
+            if (incoming != null) {
+                for (String fromId : incoming) {
+                    Map<String, List<Corridor>> targets = out.get(fromId);
+                    if (targets != null) {
+                        targets.remove(id); // null for a loop, already dropped above
+                    }
+                }
+            }
+        }
+
+        /** Corridors flying fromId to toId, loaded from the network on first use. */
+        List<Corridor> direction(String fromId, String toId) {
+            Map<String, List<Corridor>> targets = out.computeIfAbsent(fromId, key -> new HashMap<>());
+            List<Corridor> corridors = targets.get(toId);
+            if (corridors == null) {
+                corridors = load(fromId, toId);
+                targets.put(toId, corridors);
+                in.computeIfAbsent(toId, key -> new HashSet<>()).add(fromId);
+            }
+            return corridors;
+        }
+
+        private List<Corridor> load(String fromId, String toId) {
+            List<Corridor> corridors = new ArrayList<>();
+            Node from = network.getNode(fromId);
+            Node to = network.getNode(toId);
+            if (from == null || to == null || removedNodes.contains(fromId) || removedNodes.contains(toId)) {
+                return corridors;
+            }
+            EdgeStore store = network.getEdgeStore();
+            List<Integer> edges = new ArrayList<>();
+            for (int e = store.firstOut(from.getIndex()); e != EdgeStore.NONE; e = store.nextOut(e)) {
+                if (store.to(e) == to.getIndex()) {
+                    edges.add(e);
+                }
+            }
+            Collections.sort(edges);
+            for (int e : edges) {
+                int primary = store.isMirror(e) ? store.reverse(e) : e;
+                corridors.add(stored.computeIfAbsent(primary, key -> new Corridor(
+                    network.getRegistry().idOf(store.from(key)), network.getRegistry().idOf(store.to(key)),
+                    store.isBidirectional(key))));
+            }
+            return corridors;
+        }
+    }
+
+    private static IllegalArgumentException invalid(Operation op, String reason) {
+        return new IllegalArgumentException("Invalid patch operation " + op + ": " + reason);
+    }
+}
@@ -0,0 +1,275 @@
+package com.dronedelivery.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, versioned view of a DroneNetwork at one point in time.
+ *
+ * Snapshots are published by the writer with DroneNetwork.publishSnapshot()
+ * and fetched by any thread with DroneNetwork.getSnapshot(). They are never
+ * modified after publication, so route queries on reader threads need no
+ * locks and always see one consistent version even while the writer keeps
+ * editing the network. Consecutive snapshots share every column page that was
+ * not touched in between, so publishing after a small edit copies only the
+ * few pages (and adjacency blocks) that changed.
+ *
+ * Nodes and edges are addressed by the same dense indices and edge ids as in
+ * the DroneNetwork the snapshot was taken from.
+ */
+public final class NetworkSnapshot {
+    private final long version;
+    private final NodeIdRegistry registry;
+    private final int nodeBound;
+    private final int edgeBound;
+    private final int nodeCount;
+    private final int edgeCount;
+
+    private final int[][] nodeType;
+    private final double[][] nodeX;
+    private final double[][] nodeY;
+    private final Object[][] outEdges;
+
+    private final int[][] edgeFrom;
+    private final int[][] edgeTo;
+    private final int[][] edgeEnergy;
+    private final int[][] edgeCapacity;
+    private final int[][] edgeFlags;
+    private final int[][] edgeReverse;
+    private final Object[][] edgeProfile;
+
+    NetworkSnapshot(long version, NodeIdRegistry registry, int nodeBound, int edgeBound,
+                    int nodeCount, int edgeCount,
+                    int[][] nodeType, double[][] nodeX, double[][] nodeY, Object[][] outEdges,
+                    int[][] edgeFrom, int[][] edgeTo, int[][] edgeEnergy,
+                    int[][] edgeCapacity, int[][] edgeFlags, int[][] edgeReverse,
+                    Object[][] edgeProfile) {
+        this.version = version;
+        this.registry = registry;
+        this.nodeBound = nodeBound;
+        this.edgeBound = edgeBound;
+        this.nodeCount = nodeCount;
+        this.edgeCount = edgeCount;
+        this.nodeType = nodeType;
+        this.nodeX = nodeX;
+        this.nodeY = nodeY;
+        this.outEdges = outEdges;
+        this.edgeFrom = edgeFrom;
+        this.edgeTo = edgeTo;
+        this.edgeEnergy = edgeEnergy;
+        this.edgeCapacity = edgeCapacity;
+        this.edgeFlags = edgeFlags;
+        this.edgeReverse = edgeReverse;
+        this.edgeProfile = edgeProfile;
+    }
+
+    /** Network version this snapshot was taken at. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Upper bound (exclusive) of node indices in this snapshot. */
+    public int getIndexBound() {
+        return nodeBound;
+    }
+
+    /** Upper bound (exclusive) of edge ids in this snapshot, including removed edges. */
+    public int getEdgeBound() {
+        return edgeBound;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    // ===== Nodes =====
+
+    /** Index of the node with this id, or -1 if it is not part of this snapshot. */
+    public int indexOf(String id) {
+        int index = registry.indexOf(id);
+        return hasNode(index) ? index : -1;
+    }
+
+    public String getNodeId(int index) {
+        return registry.idOf(index);
+    }
+
+    public boolean hasNode(int index) {
+        return index >= 0 && index < nodeBound
+            && CopyOnWriteColumns.get(nodeType, index) != SnapshotBuilder.NO_NODE;
+    }
+
+    /** Type of the node at index, or null if there is no such node in this snapshot. */
+    public Node.NodeType getNodeType(int index) {
+        return hasNode(index) ? Node.NodeType.values()[CopyOnWriteColumns.get(nodeType, index)] : null;
+    }
+
+    public double getX(int index) {
+        return CopyOnWriteColumns.get(nodeX, index);
+    }
+
+    public double getY(int index) {
+        return CopyOnWriteColumns.get(nodeY, index);
+    }
+
+    // ===== Adjacency =====
+
+    /**
+     * Adjacency block of a node: element 0 is the out-degree d and elements
+     * 1 .. d are the ids of its live outgoing edges in insertion order. The
+     * array is shared with other snapshots and must not be modified.
+     */
+    public int[] adjacency(int index) {
+        return (int[]) CopyOnWriteColumns.get(outEdges, index);
+    }
+
+    public int outDegree(int index) {
+        return adjacency(index)[0];
+    }
+
+    /** The k-th (0-based) outgoing edge of a node. */
+    public int outEdge(int index, int k) {
+        return adjacency(index)[k + 1];
+    }
+
+    // ===== Edges =====
+
+    public int edgeFrom(int edge) {
+        return CopyOnWriteColumns.get(edgeFrom, edge);
+    }
+
+    public int edgeTo(int edge) {
+        return CopyOnWriteColumns.get(edgeTo, edge);
+    }
+
+    public int edgeEnergy(int edge) {
+        return CopyOnWriteColumns.get(edgeEnergy, edge);
+    }
+
+    public int edgeCapacity(int edge) {
+        return CopyOnWriteColumns.get(edgeCapacity, edge);
+    }
+
+    /** Id of the mirrored half of a bidirectional corridor, or EdgeStore.NONE. */
+    public int edgeReverse(int edge) {
+        return CopyOnWriteColumns.get(edgeReverse, edge);
+    }
+
+    /**
+     * Breakpoints of the edge's time-of-day energy profile as time0, energy0,
+     * time1, energy1, ..., or null if its energy is fixed. The array is shared
+     * with other snapshots and must not be modified.
+     */
+    public int[] edgeProfile(int edge) {
+        return (int[]) CopyOnWriteColumns.get(edgeProfile, edge);
+    }
+
+    public boolean isBidirectional(int edge) {
+        return (CopyOnWriteColumns.get(edgeFlags, edge) & EdgeStore.FLAG_BIDIRECTIONAL) != 0;
+    }
+
+    public boolean isRestricted(int edge) {
+        return (CopyOnWriteColumns.get(edgeFlags, edge) & EdgeStore.FLAG_RESTRICTED) != 0;
+    }
+
+    public boolean isMirror(int edge) {
+        return (CopyOnWriteColumns.get(edgeFlags, edge) & EdgeStore.FLAG_MIRROR) != 0;
+    }
+
+    public boolean isRemoved(int edge) {
+        return edge >= edgeBound || (CopyOnWriteColumns.get(edgeFlags, edge) & EdgeStore.FLAG_REMOVED) != 0;
+    }
+
+    // ===== Queries =====
+
+    /** Same as DroneNetwork.isReachable, evaluated against this snapshot. */
+    public boolean isReachable(String startId, String targetId) {
+        int start = indexOf(startId);
+        int target = indexOf(targetId);
+        if (start < 0 || target < 0) {
+            return false;
+        }
+
+        boolean[] visited = new boolean[nodeBound];
+        int[] queue = new int[nodeBound];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = start;
+        visited[start] = true;
+
+        while (head < tail) {
+            int current = queue[head++];
+            if (current == target) {
+                return true;
+            }
+            int[] out = adjacency(current);
+            for (int k = 1; k <= out[0]; k++) {
+                int e = out[k];
+                int next = edgeTo(e);
+                if (!isRestricted(e) && !visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as DroneNetwork.findShortestPath, evaluated against this snapshot.
+     * The result carries the snapshot version.
+     */
+    public PathResult findShortestPath(String startId, String endId) {
+        int start = indexOf(startId);
+        int end = indexOf(endId);
+        if (start < 0 || end < 0) {
+            return null;
+        }
+
+        int[] distances = new int[nodeBound];
+        int[] previous = new int[nodeBound];
+        Arrays.fill(distances, Integer.MAX_VALUE);
+        Arrays.fill(previous, -1);
+        IndexedMinHeap pq = new IndexedMinHeap(nodeBound);
+
+        distances[start] = 0;
+        pq.insertOrDecrease(start, 0);
+
+        while (!pq.isEmpty()) {
+            int current = pq.poll();
+            int currentDist = distances[current];
+            if (current == end) break;
+
+            int[] out = adjacency(current);
+            for (int k = 1; k <= out[0]; k++) {
+                int e = out[k];
+                if (isRestricted(e)) continue;
+
+                int neighbor = edgeTo(e);
+                int newDist = currentDist + edgeEnergy(e);
+                if (newDist < distances[neighbor]) {
+                    distances[neighbor] = newDist;
+                    previous[neighbor] = current;
+                    pq.insertOrDecrease(neighbor, newDist);
+                }
+            }
+        }
+
+        if (distances[end] == Integer.MAX_VALUE) {
+            return null;
+        }
+
+        List<String> path = new ArrayList<>();
+        for (int current = end; current != -1; current = previous[current]) {
+            path.add(registry.idOf(current));
+        }
+        Collections.reverse(path);
+        return new PathResult(path, distances[end], version);
+    }
+}
@@ -11,6 +11,8 @@ public class Node {
     private NodeType type;
     private double x;
     private double y;
+    private DroneNetwork owner;
+    private int index = -1;
 
     @java.lang.Override
     public java.lang.String toString() {
@@ -45,20 +47,42 @@ public class Node {
         return this.y;
     }
 
-    public void setId(String id) {
+    // Only DroneNetwork may change the id: a node in a network is registered under it
+    void setId(String id) {
         this.id = id;
     }
 
     public void setType(NodeType type) {
         this.type = type;
+        changed();
     }
 
     public void setX(double x) {
         this.x = x;
+        changed();
     }
 
     public void setY(double y) {
         this.y = y;
+        changed();
     }
 
-}
\ No newline at end of file
+    /** Dense index assigned by the network's NodeIdRegistry, or -1 if not added to a network. */
+    public int getIndex() {
+        return index;
+    }
+
+    void setIndex(int index) {
+        this.index = index;
+    }
+
+    void setOwner(DroneNetwork owner) {
+        this.owner = owner;
+    }
+
+    private void changed() {
+        if (owner != null) {
+            owner.nodeUpdated(this);
+        }
+    }
+}
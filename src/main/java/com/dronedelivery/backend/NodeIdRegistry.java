@@ -0,0 +1,110 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every node id a stable dense index (0, 1, 2, ...) in the order the
+ * ids are first registered, and interns the id strings. Algorithms can key
+ * primitive arrays by index and translate back to ids only when building
+ * results. Indices are never reused, so they stay valid for the lifetime of
+ * the network even if the node is later removed and re-added.
+ *
+ * Registration happens on the network's writer thread only. Lookups may run
+ * concurrently on reader threads: the hash table is replaced wholesale on
+ * rehash and each id is fully registered before any NetworkSnapshot that
+ * contains it is published, so readers always find the ids of their snapshot.
+ */
+public class NodeIdRegistry {
+    private static final int NOT_FOUND = -1;
+
+    /** Open-addressing table from id to index (index + 1, 0 meaning empty). */
+    private static class Table {
+        final String[] keys;
+        final int[] slots;
+
+        Table(int capacity) {
+            keys = new String[capacity];
+            slots = new int[capacity];
+        }
+    }
+
+    private volatile String[] ids = new String[16];
+    private volatile Table table = new Table(32);
+    private int size;
+
+    /** Returns the index of id, assigning the next free one if it is new. */
+    public int register(String id) {
+        Table t = table;
+        int slot = findSlot(t, id);
+        if (t.slots[slot] != 0) {
+            return t.slots[slot] - 1;
+        }
+        String[] current = ids;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+            ids = current;
+        }
+        int index = size++;
+        current[index] = id;
+        t.slots[slot] = index + 1;
+        t.keys[slot] = id;
+        if (size * 2 > t.keys.length) {
+            rehash(t.keys.length * 2);
+        }
+        return index;
+    }
+
+    /** Index of id, or -1 if it was never registered. */
+    public int indexOf(String id) {
+        if (id == null) {
+            return NOT_FOUND;
+        }
+        Table t = table;
+        return t.slots[findSlot(t, id)] - 1;
+    }
+
+    /** Interned id for an index. */
+    public String idOf(int index) {
+        String[] current = ids;
+        if (index < 0 || index >= current.length || current[index] == null) {
+            throw new IndexOutOfBoundsException("Unknown node index " + index);
+        }
+        return current[index];
+    }
+
+    /** Canonical instance of id, or null if it was never registered. */
+    public String intern(String id) {
+        int index = indexOf(id);
+        return index < 0 ? null : ids[index];
+    }
+
+    /** Number of indices handed out; valid indices are 0 .. size() - 1. */
+    public int size() {
+        return size;
+    }
+
+    private static int findSlot(Table t, String id) {
+        int mask = t.keys.length - 1;
+        int slot = mix(id.hashCode()) & mask;
+        while (t.keys[slot] != null && !t.keys[slot].equals(id)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        Table bigger = new Table(capacity);
+        String[] current = ids;
+        for (int index = 0; index < size; index++) {
+            int slot = findSlot(bigger, current[index]);
+            bigger.keys[slot] = current[index];
+            bigger.slots[slot] = index + 1;
+        }
+        table = bigger;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -5,12 +5,18 @@ import java.util.List;
 public class PathResult {
     private List<String> path;
     private int totalEnergy;
+    private long networkVersion = -1;
     
     public PathResult(List<String> path, int totalEnergy) {
         this.path = path;
         this.totalEnergy = totalEnergy;
     }
     
+    public PathResult(List<String> path, int totalEnergy, long networkVersion) {
+        this(path, totalEnergy);
+        this.networkVersion = networkVersion;
+    }
+    
     public List<String> getPath() {
         return path;
     }
@@ -19,6 +25,11 @@ public class PathResult {
         return totalEnergy;
     }
     
+    /** Version of the network the path was computed on, or -1 if unknown. */
+    public long getNetworkVersion() {
+        return networkVersion;
+    }
+    
     @Override
     public String toString() {
         return "Path: " + String.join(" → ", path) + "\n" +
@@ -0,0 +1,196 @@
+package com.dronedelivery.backend;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-source shortest-path trees (energy-weighted, restricted corridors
+ * skipped) shared by repeated queries from the same source.
+ *
+ * A tree is grown lazily: a query settles nodes only until its target is
+ * settled and keeps the frontier, so a later query for a target that is not
+ * settled yet resumes the same Dijkstra run instead of starting over. Trees
+ * belong to one network version and the whole cache is dropped when the
+ * network changes. Least recently used trees are evicted once their
+ * estimated size exceeds the memory limit.
+ */
+public class ShortestPathTreeCache {
+    public static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+    private final DroneNetwork network;
+    private final LinkedHashMap<Integer, Tree> trees = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryLimit = DEFAULT_MEMORY_LIMIT;
+    private long memoryUsed;
+    private long version = -1;
+
+    public ShortestPathTreeCache(DroneNetwork network) {
+        this.network = network;
+    }
+
+    /** Tree rooted at a node index for the current network version, reused if cached. */
+    public Tree get(int source) {
+        if (version != network.getVersion()) {
+            clear();
+            version = network.getVersion();
+        }
+        Tree tree = trees.get(source);
+        if (tree == null) {
+            tree = new Tree(network, source);
+            trees.put(source, tree);
+            memoryUsed += tree.bytes;
+            evict();
+        }
+        return tree;
+    }
+
+    /** Upper bound for the estimated size of all cached trees; 0 keeps only the latest one. */
+    public void setMemoryLimit(long bytes) {
+        memoryLimit = bytes;
+        evict();
+    }
+
+    public long getMemoryUsed() {
+        return memoryUsed;
+    }
+
+    public int size() {
+        return trees.size();
+    }
+
+    public void clear() {
+        trees.clear();
+        memoryUsed = 0;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Integer, Tree>> eldest = trees.entrySet().iterator();
+        while (memoryUsed > memoryLimit && trees.size() > 1) {
+            memoryUsed -= eldest.next().getValue().bytes;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Shortest-path tree from one source, settled on demand. Only valid for
+     * the network version it was created at.
+     */
+    public static final class Tree {
+        private final DroneNetwork network;
+        private final int source;
+        private final long version;
+        private final int[] distances;
+        private final int[] previous;
+        private final boolean[] settled;
+        private IndexedMinHeap frontier;
+        private final long bytes;
+
+        Tree(DroneNetwork network, int source) {
+            this.network = network;
+            this.source = source;
+            this.version = network.getVersion();
+            int n = network.getIndexBound();
+            distances = new int[n];
+            previous = new int[n];
+            settled = new boolean[n];
+            frontier = new IndexedMinHeap(n);
+            Arrays.fill(distances, Integer.MAX_VALUE);
+            Arrays.fill(previous, -1);
+            distances[source] = 0;
+            frontier.insertOrDecrease(source, 0);
+            // distances, previous, settled and the heap's three int arrays
+            bytes = 64 + (long) n * (4 + 4 + 1 + 12);
+        }
+
+        public int getSource() {
+            return source;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /** True once every node reachable from the source is settled. */
+        public boolean isComplete() {
+            return frontier == null;
+        }
+
+        /**
+         * Continues the search until target is settled or the frontier is
+         * exhausted. Returns whether target is reachable.
+         */
+        public boolean settle(int target) {
+            if (network.getVersion() != version) {
+                throw new IllegalStateException("Shortest-path tree of version " + version
+                    + " used at network version " + network.getVersion());
+            }
+            EdgeStore edges = network.getEdgeStore();
+            while (!settled[target] && frontier != null) {
+                if (frontier.isEmpty()) {
+                    frontier = null; // everything reachable is settled, release the heap
+                    break;
+                }
+                int current = frontier.poll();
+                settled[current] = true;
+                int currentDist = distances[current];
+
+                // Only traverse non-restricted edges
+                for (int e = edges.firstOut(current); e != EdgeStore.NONE; e = edges.nextOut(e)) {
+                    if (edges.isRestricted(e)) continue;
+
+                    int neighbor = edges.to(e);
+                    int newDist = currentDist + edges.energy(e);
+                    if (newDist < distances[neighbor]) {
+                        distances[neighbor] = newDist;
+                        previous[neighbor] = current;
+                        frontier.insertOrDecrease(neighbor, newDist);
+                    }
+                }
+            }
+            return settled[target];
+        }
+
+        /** Shortest distance to target, or Integer.MAX_VALUE if it is unreachable. */
+        public int distanceTo(int target) {
+            return settle(target) ? distances[target] : Integer.MAX_VALUE;
+        }
+
+        /** Node before target on its shortest path, or -1 for the source and unreachable nodes. */
+        public int predecessor(int target) {
+            return settle(target) ? previous[target] : -1;
+        }
+
+        /** Node indices from the source to target, or null if target is unreachable. */
+        public int[] indexPathTo(int target) {
+            if (!settle(target)) {
+                return null;
+            }
+            int length = 0;
+            for (int current = target; current != -1; current = previous[current]) {
+                length++;
+            }
+            int[] path = new int[length];
+            for (int current = target; current != -1; current = previous[current]) {
+                path[--length] = current;
+            }
+            return path;
+        }
+
+        /** Node ids from the source to target, or null if target is unreachable. */
+        public List<String> pathTo(int target) {
+            if (!settle(target)) {
+                return null;
+            }
+            List<String> path = new ArrayList<>();
+            for (int current = target; current != -1; current = previous[current]) {
+                path.add(network.getRegistry().idOf(current));
+            }
+            Collections.reverse(path);
+            return path;
+        }
+    }
+}
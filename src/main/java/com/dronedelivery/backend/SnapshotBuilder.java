@@ -0,0 +1,181 @@
+package com.dronedelivery.backend;
+
+import java.util.Arrays;
+
+/**
+ * Writer-side mirror of a DroneNetwork in copy-on-write columns. DroneNetwork
+ * keeps it in step with every mutation once snapshots are in use, and
+ * publish() freezes the current state into an immutable NetworkSnapshot that
+ * shares all unmodified pages with the previous one.
+ */
+final class SnapshotBuilder {
+    static final int NO_NODE = -1;
+    private static final int[] NO_EDGES = new int[]{0};
+
+    private final DroneNetwork network;
+
+    private final CopyOnWriteColumns.IntColumn nodeType = new CopyOnWriteColumns.IntColumn(NO_NODE);
+    private final CopyOnWriteColumns.DoubleColumn nodeX = new CopyOnWriteColumns.DoubleColumn();
+    private final CopyOnWriteColumns.DoubleColumn nodeY = new CopyOnWriteColumns.DoubleColumn();
+    private final CopyOnWriteColumns.RefColumn outEdges = new CopyOnWriteColumns.RefColumn();
+
+    private final CopyOnWriteColumns.IntColumn edgeFrom = new CopyOnWriteColumns.IntColumn(0);
+    private final CopyOnWriteColumns.IntColumn edgeTo = new CopyOnWriteColumns.IntColumn(0);
+    private final CopyOnWriteColumns.IntColumn edgeEnergy = new CopyOnWriteColumns.IntColumn(0);
+    private final CopyOnWriteColumns.IntColumn edgeCapacity = new CopyOnWriteColumns.IntColumn(0);
+    private final CopyOnWriteColumns.IntColumn edgeFlags = new CopyOnWriteColumns.IntColumn(EdgeStore.FLAG_REMOVED);
+    private final CopyOnWriteColumns.IntColumn edgeReverse = new CopyOnWriteColumns.IntColumn(EdgeStore.NONE);
+    private final CopyOnWriteColumns.RefColumn edgeProfile = new CopyOnWriteColumns.RefColumn();
+
+    // Breakpoints of each energy profile number, built on first use; profiles never change once added
+    private int[][] profileBreakpoints = new int[0][];
+
+    // Publish epoch in which each node's adjacency block was last copied; blocks
+    // copied in the current epoch are not visible to readers yet and can grow in place
+    private int epoch;
+    private int[] adjacencyEpoch = new int[16];
+
+    private int nodeBound;
+    private int edgeBound;
+    private int nodeCount;
+    private int edgeCount;
+
+    /** Builds the initial state from the whole network, O(V + E) once. */
+    SnapshotBuilder(DroneNetwork network) {
+        this.network = network;
+        epoch = 1;
+        for (int index = 0; index < network.getIndexBound(); index++) {
+            syncNode(index);
+        }
+        EdgeStore store = network.getEdgeStore();
+        for (int edge = 0; edge < store.size(); edge++) {
+            syncEdge(edge);
+        }
+    }
+
+    /** Copies the node's current state (or its absence) from the network. */
+    void syncNode(int index) {
+        Node node = network.getNode(index);
+        boolean existed = index < nodeBound && nodeType.get(index) != NO_NODE;
+        if (index >= nodeBound) {
+            for (int i = nodeBound; i <= index; i++) {
+                nodeType.set(i, NO_NODE);
+                nodeX.set(i, 0);
+                nodeY.set(i, 0);
+                outEdges.set(i, NO_EDGES);
+            }
+            if (index >= adjacencyEpoch.length) {
+                adjacencyEpoch = Arrays.copyOf(adjacencyEpoch, Math.max(index + 1, adjacencyEpoch.length * 2));
+            }
+            nodeBound = index + 1;
+        }
+        if (node == null) {
+            nodeType.set(index, NO_NODE);
+            if (existed) nodeCount--;
+            return;
+        }
+        nodeType.set(index, node.getType().ordinal());
+        nodeX.set(index, node.getX());
+        nodeY.set(index, node.getY());
+        if (!existed) nodeCount++;
+    }
+
+    /** Copies the edge's current row from the EdgeStore, relinking adjacency if needed. */
+    void syncEdge(int edge) {
+        EdgeStore store = network.getEdgeStore();
+        boolean known = edge < edgeBound;
+        boolean wasLive = known && (edgeFlags.get(edge) & EdgeStore.FLAG_REMOVED) == 0;
+        boolean live = !store.isRemoved(edge);
+        int oldFrom = known ? edgeFrom.get(edge) : EdgeStore.NONE;
+
+        if (edge >= edgeBound) {
+            edgeBound = edge + 1;
+        }
+        int from = store.from(edge);
+        edgeFrom.set(edge, from);
+        edgeTo.set(edge, store.to(edge));
+        edgeEnergy.set(edge, store.energy(edge));
+        edgeCapacity.set(edge, store.capacity(edge));
+        edgeReverse.set(edge, store.reverse(edge));
+        edgeProfile.set(edge, breakpoints(network.getEnergyProfiles().profileOf(edge)));
+        int flags = (store.isBidirectional(edge) ? EdgeStore.FLAG_BIDIRECTIONAL : 0)
+            | (store.isRestricted(edge) ? EdgeStore.FLAG_RESTRICTED : 0)
+            | (store.isMirror(edge) ? EdgeStore.FLAG_MIRROR : 0)
+            | (live ? 0 : EdgeStore.FLAG_REMOVED);
+        edgeFlags.set(edge, flags);
+
+        if (wasLive && (!live || oldFrom != from)) {
+            unlink(oldFrom, edge);
+        }
+        if (live && (!wasLive || oldFrom != from)) {
+            link(from, edge);
+        }
+        if (wasLive != live) {
+            edgeCount += live ? 1 : -1;
+        }
+    }
+
+    /** Breakpoints of a profile as time0, energy0, time1, energy1, ..., or null for NONE. */
+    private int[] breakpoints(int profile) {
+        if (profile == EnergyProfiles.NONE) {
+            return null;
+        }
+        if (profile >= profileBreakpoints.length) {
+            profileBreakpoints = Arrays.copyOf(profileBreakpoints, Math.max(profile + 1, profileBreakpoints.length * 2));
+        }
+        if (profileBreakpoints[profile] == null) {
+            EnergyProfiles profiles = network.getEnergyProfiles();
+            int[] points = new int[2 * profiles.breakpointCount(profile)];
+            for (int i = 0; i < points.length / 2; i++) {
+                points[2 * i] = profiles.breakpointTime(profile, i);
+                points[2 * i + 1] = profiles.breakpointEnergy(profile, i);
+            }
+            profileBreakpoints[profile] = points;
+        }
+        return profileBreakpoints[profile];
+    }
+
+    /** Adjacency block of a node that is safe to modify in place, copying it if it was published. */
+    private int[] writableBlock(int node, int minLength) {
+        int[] block = (int[]) outEdges.get(node);
+        if (adjacencyEpoch[node] == epoch && block.length >= minLength) {
+            return block;
+        }
+        int length = Math.max(minLength, adjacencyEpoch[node] == epoch ? block.length * 2 : block[0] + 1);
+        int[] copy = Arrays.copyOf(block, Math.max(length, 4));
+        adjacencyEpoch[node] = epoch;
+        outEdges.set(node, copy);
+        return copy;
+    }
+
+    private void link(int node, int edge) {
+        if (node >= nodeBound) {
+            syncNode(node);
+        }
+        int[] current = (int[]) outEdges.get(node);
+        int[] block = writableBlock(node, current[0] + 2);
+        block[++block[0]] = edge;
+    }
+
+    private void unlink(int node, int edge) {
+        int[] current = (int[]) outEdges.get(node);
+        for (int i = 1; i <= current[0]; i++) {
+            if (current[i] == edge) {
+                int[] block = writableBlock(node, current[0] + 1);
+                System.arraycopy(block, i + 1, block, i, block[0] - i);
+                block[0]--;
+                return;
+            }
+        }
+    }
+
+    NetworkSnapshot publish(long version) {
+        epoch++;
+        return new NetworkSnapshot(version, network.getRegistry(), nodeBound, edgeBound, nodeCount, edgeCount,
+            nodeType.freeze(nodeBound), nodeX.freeze(nodeBound), nodeY.freeze(nodeBound),
+            outEdges.freeze(nodeBound),
+            edgeFrom.freeze(edgeBound), edgeTo.freeze(edgeBound), edgeEnergy.freeze(edgeBound),
+            edgeCapacity.freeze(edgeBound), edgeFlags.freeze(edgeBound), edgeReverse.freeze(edgeBound),
+            edgeProfile.freeze(edgeBound));
+    }
+}
@@ -0,0 +1,682 @@
+package com.dronedelivery.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.ToIntFunction;
+
+import com.dronedelivery.backend.Node;
+
+/**
+ * Parses the "nodes" and "edges" arrays of a network file on several threads.
+ *
+ * The file is memory-mapped, in windows of up to 1 GiB so that files beyond
+ * 2 GiB can be read too, and scanned once to find the byte offsets of every
+ * array element (this pass only tracks brackets and string state, so it runs at
+ * close to memory bandwidth). The elements are then split into byte-range chunks
+ * of roughly equal size and each chunk is decoded on its own thread into
+ * primitive column buffers. Chunks are returned in file order, so merging them
+ * front to back gives exactly the same result as the sequential loader.
+ */
+class ChunkedNetworkParser {
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final byte[] KEY_NODES = ascii("nodes");
+    private static final byte[] KEY_EDGES = ascii("edges");
+    private static final byte[] KEY_ID = ascii("id");
+    private static final byte[] KEY_TYPE = ascii("type");
+    private static final byte[] KEY_X = ascii("x");
+    private static final byte[] KEY_Y = ascii("y");
+    private static final byte[] KEY_FROM = ascii("from");
+    private static final byte[] KEY_TO = ascii("to");
+    private static final byte[] KEY_ENERGY = ascii("energy");
+    private static final byte[] KEY_CAPACITY = ascii("capacity");
+    private static final byte[] KEY_BIDIRECTIONAL = ascii("bidirectional");
+    private static final byte[] KEY_RESTRICTED = ascii("restricted");
+    private static final byte[] KEY_ENERGY_PROFILE = ascii("energyProfile");
+
+    /** Decoded node objects of one chunk, one column per field. */
+    static class NodeChunk {
+        String[] ids;
+        Node.NodeType[] types;
+        double[] xs;
+        double[] ys;
+        int size;
+
+        NodeChunk(int capacity) {
+            ids = new String[capacity];
+            types = new Node.NodeType[capacity];
+            xs = new double[capacity];
+            ys = new double[capacity];
+        }
+    }
+
+    /** Decoded edge objects of one chunk, one column per field. */
+    static class EdgeChunk {
+        String[] fromIds;
+        String[] toIds;
+        // Node indices of the endpoints, filled in by resolveEndpoints
+        int[] fromIndices;
+        int[] toIndices;
+        int[] energies;
+        int[] capacities;
+        boolean[] bidirectional;
+        boolean[] restricted;
+        // Breakpoints flattened as minute, energy, ...; null until an edge in the chunk has a profile
+        int[][] profiles;
+        int size;
+
+        EdgeChunk(int capacity) {
+            fromIds = new String[capacity];
+            toIds = new String[capacity];
+            energies = new int[capacity];
+            capacities = new int[capacity];
+            bidirectional = new boolean[capacity];
+            restricted = new boolean[capacity];
+        }
+    }
+
+    /** Parsed chunks of both arrays, each list in file order. */
+    static class ParsedNetwork {
+        final List<NodeChunk> nodeChunks;
+        final List<EdgeChunk> edgeChunks;
+
+        ParsedNetwork(List<NodeChunk> nodeChunks, List<EdgeChunk> edgeChunks) {
+            this.nodeChunks = nodeChunks;
+            this.edgeChunks = edgeChunks;
+        }
+    }
+
+    private final int threads;
+
+    ChunkedNetworkParser(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    ParsedNetwork parse(String filePath) throws IOException {
+        MappedFile file;
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            file = new MappedFile(channel);
+        }
+
+        ElementIndex nodeElements = new ElementIndex();
+        ElementIndex edgeElements = new ElementIndex();
+        indexElements(file, nodeElements, edgeElements);
+        if (!nodeElements.found || !edgeElements.found) {
+            throw new IllegalStateException("Network file must contain \"nodes\" and \"edges\" arrays");
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<NodeChunk>> nodeFutures = new ArrayList<>();
+            for (int[] range : split(nodeElements)) {
+                nodeFutures.add(pool.submit(nodeTask(file, nodeElements, range[0], range[1])));
+            }
+            List<Future<EdgeChunk>> edgeFutures = new ArrayList<>();
+            for (int[] range : split(edgeElements)) {
+                edgeFutures.add(pool.submit(edgeTask(file, edgeElements, range[0], range[1])));
+            }
+
+            List<NodeChunk> nodeChunks = new ArrayList<>();
+            for (Future<NodeChunk> future : nodeFutures) {
+                nodeChunks.add(await(future));
+            }
+            List<EdgeChunk> edgeChunks = new ArrayList<>();
+            for (Future<EdgeChunk> future : edgeFutures) {
+                edgeChunks.add(await(future));
+            }
+            return new ParsedNetwork(nodeChunks, edgeChunks);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Looks up the node index of every edge endpoint on the worker threads,
+     * one chunk per task, so the sequential merge only copies columns. A
+     * negative index marks an unknown id. lookup must allow concurrent
+     * readers, as NodeIdRegistry.indexOf does.
+     */
+    void resolveEndpoints(List<EdgeChunk> chunks, ToIntFunction<String> lookup) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<EdgeChunk>> futures = new ArrayList<>();
+            for (EdgeChunk chunk : chunks) {
+                futures.add(pool.submit(() -> {
+                    chunk.fromIndices = new int[chunk.size];
+                    chunk.toIndices = new int[chunk.size];
+                    for (int i = 0; i < chunk.size; i++) {
+                        chunk.fromIndices[i] = lookup.applyAsInt(chunk.fromIds[i]);
+                        chunk.toIndices[i] = lookup.applyAsInt(chunk.toIds[i]);
+                    }
+                    return chunk;
+                }));
+            }
+            for (Future<EdgeChunk> future : futures) {
+                await(future);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing network", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    // ===== Mapping =====
+
+    /**
+     * A read-only file mapped as consecutive windows, since one mapping is
+     * limited to 2 GiB. Bytes are read by absolute long offset, which leaves
+     * the buffers' positions alone, so every thread can share one instance.
+     */
+    static final class MappedFile {
+        private static final int WINDOW_BITS = 30;
+        private static final long WINDOW_SIZE = 1L << WINDOW_BITS;
+
+        private final MappedByteBuffer[] windows;
+        final long size;
+
+        MappedFile(FileChannel channel) throws IOException {
+            size = channel.size();
+            windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) >>> WINDOW_BITS)];
+            for (int w = 0; w < windows.length; w++) {
+                long start = (long) w << WINDOW_BITS;
+                windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, size - start));
+            }
+        }
+
+        byte get(long pos) {
+            return windows[(int) (pos >>> WINDOW_BITS)].get((int) (pos & (WINDOW_SIZE - 1)));
+        }
+    }
+
+    // ===== Structural scan =====
+
+    /** Start byte offsets of the objects in one top-level array, and the end of the last one. */
+    static class ElementIndex {
+        long[] starts = new long[1024];
+        long end;
+        int size;
+        boolean found;
+
+        void add(long start, long elementEnd) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+            starts[size++] = start;
+            end = elementEnd;
+        }
+    }
+
+    private static void indexElements(MappedFile file, ElementIndex nodes, ElementIndex edges) {
+        int depth = 0;
+        boolean inString = false;
+        boolean escaped = false;
+        long keyStart = -1;
+        byte[] lastKey = null;
+        ElementIndex target = null;
+        long elementStart = -1;
+
+        // Window by window, so the inner loop reads each buffer directly
+        for (int w = 0; w < file.windows.length; w++) {
+            MappedByteBuffer window = file.windows[w];
+            long base = (long) w << MappedFile.WINDOW_BITS;
+            int limit = window.limit();
+            for (int j = 0; j < limit; j++) {
+                byte b = window.get(j);
+                long i = base + j;
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (b == '\\') {
+                        escaped = true;
+                    } else if (b == '"') {
+                        inString = false;
+                        if (keyStart >= 0) {
+                            lastKey = new byte[(int) (i - keyStart)];
+                            for (int k = 0; k < lastKey.length; k++) {
+                                lastKey[k] = file.get(keyStart + k);
+                            }
+                            keyStart = -1;
+                        }
+                    }
+                    continue;
+                }
+                switch (b) {
+                    case '"':
+                        inString = true;
+                        keyStart = depth == 1 ? i + 1 : -1;
+                        break;
+                    case '[':
+                        if (depth == 1) {
+                            if (Arrays.equals(lastKey, KEY_NODES)) {
+                                target = nodes;
+                            } else if (Arrays.equals(lastKey, KEY_EDGES)) {
+                                target = edges;
+                            } else {
+                                target = null;
+                            }
+                            if (target != null) {
+                                target.found = true;
+                            }
+                        }
+                        depth++;
+                        break;
+                    case '{':
+                        if (depth == 2 && target != null) {
+                            elementStart = i;
+                        }
+                        depth++;
+                        break;
+                    case '}':
+                        depth--;
+                        if (depth == 2 && target != null) {
+                            target.add(elementStart, i + 1);
+                        }
+                        break;
+                    case ']':
+                        depth--;
+                        if (depth == 1) {
+                            target = null;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+    }
+
+    /** Splits the elements into contiguous runs covering roughly equal byte ranges. */
+    private List<int[]> split(ElementIndex elements) {
+        List<int[]> ranges = new ArrayList<>();
+        if (elements.size == 0) {
+            return ranges;
+        }
+        int chunkCount = Math.min(elements.size, threads * CHUNKS_PER_THREAD);
+        long firstByte = elements.starts[0];
+        long totalBytes = elements.end - firstByte;
+        int from = 0;
+        for (int c = 1; c <= chunkCount && from < elements.size; c++) {
+            long boundary = firstByte + totalBytes * c / chunkCount;
+            int to = from + 1;
+            while (to < elements.size && elements.starts[to] < boundary) {
+                to++;
+            }
+            if (c == chunkCount) {
+                to = elements.size;
+            }
+            ranges.add(new int[]{from, to});
+            from = to;
+        }
+        return ranges;
+    }
+
+    // ===== Chunk decoding =====
+
+    private static Callable<NodeChunk> nodeTask(MappedFile file, ElementIndex elements, int from, int to) {
+        return () -> {
+            Cursor cursor = new Cursor(file);
+            NodeChunk chunk = new NodeChunk(to - from);
+            for (int e = from; e < to; e++) {
+                cursor.pos = elements.starts[e];
+                String id = null;
+                String type = null;
+                double x = Double.NaN;
+                double y = Double.NaN;
+
+                cursor.expect('{');
+                while (cursor.nextField()) {
+                    if (cursor.keyEquals(KEY_ID)) {
+                        id = cursor.readString();
+                    } else if (cursor.keyEquals(KEY_TYPE)) {
+                        type = cursor.readString();
+                    } else if (cursor.keyEquals(KEY_X)) {
+                        x = cursor.readNumber();
+                    } else if (cursor.keyEquals(KEY_Y)) {
+                        y = cursor.readNumber();
+                    } else {
+                        cursor.skipValue();
+                    }
+                }
+                if (id == null || type == null || Double.isNaN(x) || Double.isNaN(y)) {
+                    throw new IllegalStateException("Incomplete node at byte " + elements.starts[e]);
+                }
+
+                int i = chunk.size++;
+                chunk.ids[i] = id;
+                chunk.types[i] = Node.NodeType.valueOf(type);
+                chunk.xs[i] = x;
+                chunk.ys[i] = y;
+            }
+            return chunk;
+        };
+    }
+
+    private static Callable<EdgeChunk> edgeTask(MappedFile file, ElementIndex elements, int from, int to) {
+        return () -> {
+            Cursor cursor = new Cursor(file);
+            EdgeChunk chunk = new EdgeChunk(to - from);
+            for (int e = from; e < to; e++) {
+                cursor.pos = elements.starts[e];
+                String fromId = null;
+                String toId = null;
+                double energy = Double.NaN;
+                double capacity = Double.NaN;
+                int bidirectional = -1;
+                boolean restricted = false;
+                int[] profile = null;
+
+                cursor.expect('{');
+                while (cursor.nextField()) {
+                    if (cursor.keyEquals(KEY_FROM)) {
+                        fromId = cursor.readString();
+                    } else if (cursor.keyEquals(KEY_TO)) {
+                        toId = cursor.readString();
+                    } else if (cursor.keyEquals(KEY_ENERGY)) {
+                        energy = cursor.readNumber();
+                    } else if (cursor.keyEquals(KEY_CAPACITY)) {
+                        capacity = cursor.readNumber();
+                    } else if (cursor.keyEquals(KEY_BIDIRECTIONAL)) {
+                        bidirectional = cursor.readBoolean() ? 1 : 0;
+                    } else if (cursor.keyEquals(KEY_RESTRICTED)) {
+                        restricted = cursor.readBoolean();
+                    } else if (cursor.keyEquals(KEY_ENERGY_PROFILE)) {
+                        profile = cursor.readNumberPairs();
+                    } else {
+                        cursor.skipValue();
+                    }
+                }
+                if (fromId == null || toId == null || Double.isNaN(energy)
+                        || Double.isNaN(capacity) || bidirectional < 0) {
+                    throw new IllegalStateException("Incomplete edge at byte " + elements.starts[e]);
+                }
+
+                int i = chunk.size++;
+                chunk.fromIds[i] = fromId;
+                chunk.toIds[i] = toId;
+                chunk.energies[i] = (int) energy;
+                chunk.capacities[i] = (int) capacity;
+                chunk.bidirectional[i] = bidirectional == 1;
+                chunk.restricted[i] = restricted;
+                if (profile != null) {
+                    if (chunk.profiles == null) {
+                        chunk.profiles = new int[chunk.fromIds.length][];
+                    }
+                    chunk.profiles[i] = profile;
+                }
+            }
+            return chunk;
+        };
+    }
+
+    /**
+     * Minimal reader for the flat objects found in network files. Keys are
+     * compared as raw bytes so that only values we keep are decoded.
+     */
+    private static class Cursor {
+        private final MappedFile file;
+        private final byte[] scratch = new byte[64];
+        long pos;
+        private long keyStart;
+        private int keyLength;
+
+        Cursor(MappedFile file) {
+            this.file = file;
+        }
+
+        void expect(char c) {
+            skipWhitespace();
+            if (file.get(pos) != c) {
+                throw error("expected '" + c + "'");
+            }
+            pos++;
+        }
+
+        /** Advances to the next key of the current object; false at the closing brace. */
+        boolean nextField() {
+            skipWhitespace();
+            byte b = file.get(pos);
+            if (b == ',') {
+                pos++;
+                skipWhitespace();
+                b = file.get(pos);
+            }
+            if (b == '}') {
+                pos++;
+                return false;
+            }
+            if (b != '"') {
+                throw error("expected key");
+            }
+            keyStart = ++pos;
+            while (file.get(pos) != '"') {
+                if (file.get(pos) == '\\') {
+                    pos++;
+                }
+                pos++;
+            }
+            keyLength = (int) (pos - keyStart);
+            pos++;
+            expect(':');
+            skipWhitespace();
+            return true;
+        }
+
+        boolean keyEquals(byte[] key) {
+            if (key.length != keyLength) {
+                return false;
+            }
+            for (int i = 0; i < keyLength; i++) {
+                if (file.get(keyStart + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        String readString() {
+            if (file.get(pos) != '"') {
+                throw error("expected string");
+            }
+            pos++;
+            long start = pos;
+            boolean plain = true;
+            while (file.get(pos) != '"') {
+                if (file.get(pos) == '\\') {
+                    plain = false;
+                    pos++;
+                }
+                pos++;
+            }
+            int length = (int) (pos - start);
+            pos++;
+            byte[] bytes = length <= scratch.length ? scratch : new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = file.get(start + i);
+            }
+            String raw = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            return plain ? raw : unescape(raw);
+        }
+
+        double readNumber() {
+            long start = pos;
+            boolean negative = false;
+            if (file.get(pos) == '-') {
+                negative = true;
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            byte b;
+            while (pos < file.size && (b = file.get(pos)) >= '0' && b <= '9' && digits < 18) {
+                value = value * 10 + (b - '0');
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                throw error("expected number");
+            }
+            b = pos < file.size ? file.get(pos) : 0;
+            if (b != '.' && b != 'e' && b != 'E' && (b < '0' || b > '9')) {
+                return negative ? -value : value;
+            }
+            // Fractions, exponents and very long integers take the slow path
+            while (pos < file.size && isNumberChar(file.get(pos))) {
+                pos++;
+            }
+            byte[] bytes = new byte[(int) (pos - start)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = file.get(start + i);
+            }
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        }
+
+        boolean readBoolean() {
+            byte b = file.get(pos);
+            if (b == 't') {
+                pos += 4;
+                return true;
+            }
+            if (b == 'f') {
+                pos += 5;
+                return false;
+            }
+            throw error("expected boolean");
+        }
+
+        /** Reads [[a, b], [c, d], ...] as {a, b, c, d, ...}. */
+        int[] readNumberPairs() {
+            expect('[');
+            int[] values = new int[8];
+            int size = 0;
+            skipWhitespace();
+            if (file.get(pos) == ']') {
+                pos++;
+                return new int[0];
+            }
+            do {
+                expect('[');
+                for (int k = 0; k < 2; k++) {
+                    if (k == 1) {
+                        expect(',');
+                    }
+                    skipWhitespace();
+                    if (size == values.length) {
+                        values = Arrays.copyOf(values, size * 2);
+                    }
+                    values[size++] = (int) readNumber();
+                }
+                expect(']');
+                skipWhitespace();
+            } while (file.get(pos++) == ',');
+            if (file.get(pos - 1) != ']') {
+                throw error("expected ']'");
+            }
+            return Arrays.copyOf(values, size);
+        }
+
+        void skipValue() {
+            byte b = file.get(pos);
+            if (b == '"') {
+                readString();
+                return;
+            }
+            if (b == '{' || b == '[') {
+                int depth = 0;
+                boolean inString = false;
+                do {
+                    b = file.get(pos++);
+                    if (inString) {
+                        if (b == '\\') {
+                            pos++;
+                        } else if (b == '"') {
+                            inString = false;
+                        }
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                } while (depth > 0);
+                return;
+            }
+            while (b != ',' && b != '}' && b != ']' && !isWhitespace(b)) {
+                b = file.get(++pos);
+            }
+        }
+
+        private void skipWhitespace() {
+            while (isWhitespace(file.get(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalStateException error(String message) {
+            return new IllegalStateException("Malformed network JSON at byte " + pos + ": " + message);
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static boolean isNumberChar(byte b) {
+        return (b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-';
+    }
+
+    private static String unescape(String raw) {
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            char next = raw.charAt(++i);
+            switch (next) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default: sb.append(next); break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
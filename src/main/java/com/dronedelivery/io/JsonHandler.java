@@ -3,9 +3,14 @@ package com.dronedelivery.io;
 import com.dronedelivery.backend.*;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 import org.json.simple.parser.JSONParser;
 
+import java.io.BufferedWriter;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 
 public class JsonHandler {
     private JSONParser parser = new JSONParser();
@@ -47,6 +52,19 @@ public class JsonHandler {
                 if (from != null && to != null) {
                     Edge edge = new Edge(from, to, energy, capacity, bidirectional, restricted);
                     network.addEdge(edge);
+                    
+                    // Optional time-of-day profile: [[minute, energy], ...]
+                    JSONArray profileJson = (JSONArray) edgeJson.get("energyProfile");
+                    if (profileJson != null) {
+                        int[] times = new int[profileJson.size()];
+                        int[] energies = new int[profileJson.size()];
+                        for (int i = 0; i < times.length; i++) {
+                            JSONArray point = (JSONArray) profileJson.get(i);
+                            times[i] = ((Number) point.get(0)).intValue();
+                            energies[i] = ((Number) point.get(1)).intValue();
+                        }
+                        edge.setEnergyProfile(times, energies);
+                    }
                 }
             }
             
@@ -59,4 +77,212 @@ public class JsonHandler {
             return null;
         }
     }
+    
+    /**
+     * Writes the network in the same format loadNetwork reads. Mirrored edges
+     * created for bidirectional corridors are written once, as the corridor.
+     */
+    public boolean saveNetwork(DroneNetwork network, String filePath) {
+        try (Writer out = new BufferedWriter(new FileWriter(filePath))) {
+            writeNetwork(network, out);
+            return true;
+        } catch (IOException e) {
+            System.err.println("✗ Error saving JSON: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    private void writeNetwork(DroneNetwork network, Writer out) throws IOException {
+        // Streamed by hand so snapshots of large networks are not built in memory first
+        out.write("{\n  \"nodes\": [");
+        boolean first = true;
+        for (Node node : network.getNodes().values()) {
+            writeNode(out, first, node.getId(), node.getType(), node.getX(), node.getY());
+            first = false;
+        }
+        out.write("\n  ],\n  \"edges\": [");
+        first = true;
+        for (Edge edge : network.getEdges()) {
+            if (edge.isMirror()) {
+                continue; // mirror of a bidirectional corridor
+            }
+            int[] points = null;
+            int profile = edge.getEnergyProfile();
+            if (profile != EnergyProfiles.NONE) {
+                EnergyProfiles profiles = network.getEnergyProfiles();
+                points = new int[2 * profiles.breakpointCount(profile)];
+                for (int i = 0; i < profiles.breakpointCount(profile); i++) {
+                    points[2 * i] = profiles.breakpointTime(profile, i);
+                    points[2 * i + 1] = profiles.breakpointEnergy(profile, i);
+                }
+            }
+            writeEdge(out, first, edge.getFrom().getId(), edge.getTo().getId(), edge.getEnergy(),
+                edge.getCapacity(), edge.isBidirectional(), edge.isRestricted(), points);
+            first = false;
+        }
+        out.write("\n  ]\n}\n");
+    }
+    
+    /**
+     * Writes a published snapshot in the same format as saveNetwork. The
+     * snapshot is immutable, so this may run on any thread while the network
+     * keeps changing.
+     */
+    public boolean saveSnapshot(NetworkSnapshot snapshot, String filePath) {
+        try (Writer out = new BufferedWriter(new FileWriter(filePath))) {
+            out.write("{\n  \"nodes\": [");
+            boolean first = true;
+            for (int index = 0; index < snapshot.getIndexBound(); index++) {
+                if (snapshot.hasNode(index)) {
+                    writeNode(out, first, snapshot.getNodeId(index), snapshot.getNodeType(index),
+                        snapshot.getX(index), snapshot.getY(index));
+                    first = false;
+                }
+            }
+            out.write("\n  ],\n  \"edges\": [");
+            first = true;
+            for (int edge = 0; edge < snapshot.getEdgeBound(); edge++) {
+                if (snapshot.isRemoved(edge) || snapshot.isMirror(edge)) {
+                    continue;
+                }
+                writeEdge(out, first, snapshot.getNodeId(snapshot.edgeFrom(edge)),
+                    snapshot.getNodeId(snapshot.edgeTo(edge)), snapshot.edgeEnergy(edge),
+                    snapshot.edgeCapacity(edge), snapshot.isBidirectional(edge), snapshot.isRestricted(edge),
+                    snapshot.edgeProfile(edge));
+                first = false;
+            }
+            out.write("\n  ]\n}\n");
+            return true;
+        } catch (IOException e) {
+            System.err.println("✗ Error saving JSON: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    private static void writeNode(Writer out, boolean first, String id, Node.NodeType type, double x, double y)
+            throws IOException {
+        out.write(first ? "\n    " : ",\n    ");
+        out.write("{\"id\": \"" + JSONValue.escape(id) + "\", \"type\": \"" + type
+            + "\", \"x\": " + x + ", \"y\": " + y + "}");
+    }
+    
+    /** One corridor; profile holds time0, energy0, time1, ... or is null for a fixed energy. */
+    private static void writeEdge(Writer out, boolean first, String fromId, String toId, int energy, int capacity,
+                                  boolean bidirectional, boolean restricted, int[] profile) throws IOException {
+        out.write(first ? "\n    " : ",\n    ");
+        out.write("{\"from\": \"" + JSONValue.escape(fromId)
+            + "\", \"to\": \"" + JSONValue.escape(toId)
+            + "\", \"energy\": " + energy + ", \"capacity\": " + capacity
+            + ", \"bidirectional\": " + bidirectional
+            + ", \"restricted\": " + restricted);
+        if (profile != null) {
+            out.write(", \"energyProfile\": [");
+            for (int i = 0; i < profile.length; i += 2) {
+                out.write((i == 0 ? "[" : ", [") + profile[i] + ", " + profile[i + 1] + "]");
+            }
+            out.write("]");
+        }
+        out.write("}");
+    }
+    
+    /**
+     * Loads a network by parsing the node and edge arrays in parallel chunks.
+     * Produces the same network as loadNetwork; intended for very large files.
+     */
+    public DroneNetwork loadNetworkParallel(String filePath) {
+        return loadNetworkParallel(filePath, Runtime.getRuntime().availableProcessors());
+    }
+    
+    public DroneNetwork loadNetworkParallel(String filePath, int threads) {
+        try {
+            ChunkedNetworkParser parser = new ChunkedNetworkParser(threads);
+            ChunkedNetworkParser.ParsedNetwork parsed = parser.parse(filePath);
+            DroneNetwork network = new DroneNetwork();
+            
+            // Merge node chunks in file order so ids are interned deterministically
+            for (ChunkedNetworkParser.NodeChunk chunk : parsed.nodeChunks) {
+                network.addNodes(chunk.ids, chunk.types, chunk.xs, chunk.ys, chunk.size);
+            }
+            
+            // Edges are resolved only once every node is known, and then stored column by
+            // column; like loadNetwork, corridors with an unknown endpoint are dropped
+            parser.resolveEndpoints(parsed.edgeChunks, network::indexOf);
+            for (ChunkedNetworkParser.EdgeChunk chunk : parsed.edgeChunks) {
+                int kept = 0;
+                for (int i = 0; i < chunk.size; i++) {
+                    if (chunk.fromIndices[i] < 0 || chunk.toIndices[i] < 0) {
+                        continue;
+                    }
+                    if (kept < i) {
+                        chunk.fromIndices[kept] = chunk.fromIndices[i];
+                        chunk.toIndices[kept] = chunk.toIndices[i];
+                        chunk.energies[kept] = chunk.energies[i];
+                        chunk.capacities[kept] = chunk.capacities[i];
+                        chunk.bidirectional[kept] = chunk.bidirectional[i];
+                        chunk.restricted[kept] = chunk.restricted[i];
+                        if (chunk.profiles != null) {
+                            chunk.profiles[kept] = chunk.profiles[i];
+                        }
+                    }
+                    kept++;
+                }
+                network.addEdges(chunk.fromIndices, chunk.toIndices, chunk.energies, chunk.capacities,
+                    chunk.bidirectional, chunk.restricted, chunk.profiles, kept);
+            }
+            
+            System.out.println("✓ Network loaded successfully from " + filePath);
+            return network;
+            
+        } catch (Exception e) {
+            System.err.println("✗ Error loading JSON: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Loads a patch file of the form
+     * {"baseVersion": 42, "operations": [{"op": "REMOVE_EDGE", "from": "A", "to": "B"}, ...]}.
+     * baseVersion is optional; operation fields mirror the node/edge fields of network files.
+     */
+    public NetworkPatch loadPatch(String filePath) {
+        try (FileReader reader = new FileReader(filePath)) {
+            JSONObject jsonObject = (JSONObject) parser.parse(reader);
+            
+            Number baseVersion = (Number) jsonObject.get("baseVersion");
+            NetworkPatch patch = baseVersion != null
+                ? new NetworkPatch(baseVersion.longValue()) : new NetworkPatch();
+            
+            JSONArray opsArray = (JSONArray) jsonObject.get("operations");
+            for (Object opObj : opsArray) {
+                JSONObject opJson = (JSONObject) opObj;
+                NetworkPatch.Operation op = new NetworkPatch.Operation(
+                    NetworkPatch.OperationType.valueOf((String) opJson.get("op")));
+                
+                op.nodeId = (String) opJson.get("id");
+                String typeStr = (String) opJson.get("type");
+                op.nodeType = typeStr != null ? Node.NodeType.valueOf(typeStr) : null;
+                op.x = opJson.containsKey("x") ? ((Number) opJson.get("x")).doubleValue() : null;
+                op.y = opJson.containsKey("y") ? ((Number) opJson.get("y")).doubleValue() : null;
+                
+                op.fromId = (String) opJson.get("from");
+                op.toId = (String) opJson.get("to");
+                op.energy = opJson.containsKey("energy") ? ((Number) opJson.get("energy")).intValue() : null;
+                op.capacity = opJson.containsKey("capacity") ? ((Number) opJson.get("capacity")).intValue() : null;
+                op.bidirectional = (Boolean) opJson.get("bidirectional");
+                op.restricted = (Boolean) opJson.get("restricted");
+                
+                patch.add(op);
+            }
+            
+            System.out.println("✓ Patch loaded successfully from " + filePath);
+            return patch;
+            
+        } catch (Exception e) {
+            System.err.println("✗ Error loading patch: " + e.getMessage());
+            e.printStackTrace();
+            return null;
+        }
+    }
 }
@@ -0,0 +1,701 @@
+package com.dronedelivery.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.EnergyProfiles;
+import com.dronedelivery.backend.NetworkChangeEvent;
+import com.dronedelivery.backend.NetworkChangeListener;
+import com.dronedelivery.backend.NetworkSnapshot;
+import com.dronedelivery.backend.Node;
+
+/**
+ * Append-only write-ahead log of network mutations with periodic snapshots.
+ *
+ * Every change event of the attached network is encoded as a checksummed
+ * record with a sequence number and handed to a background writer thread.
+ * The writer drains everything queued since its last flush and makes it
+ * durable with a single fsync (group commit), so the mutating thread never
+ * waits on the disk unless it calls {@link #sync()}.
+ *
+ * The directory holds snapshot-&lt;seq&gt;.json files (network state after
+ * record seq) and journal-&lt;seq&gt;.log segments (records starting at seq).
+ * Recovery loads the newest snapshot and replays the records after it; a torn
+ * record at the end of the log is treated as the end of the journal and cut
+ * off, together with anything after it, before new records are appended.
+ *
+ * Edge records carry the corridor's energy profile breakpoints, so profiles
+ * set or cleared after the last snapshot are replayed as well. Updates and
+ * removals name the edge by its endpoints plus its parallelOrdinal, so each
+ * lands on the right one of several parallel corridors.
+ *
+ * Snapshots are taken from a published NetworkSnapshot: the mutating thread
+ * only publishes it and starts a new segment, and a background thread writes
+ * the JSON. Older segments and snapshots are deleted once it is durable.
+ *
+ * Changing an edge's endpoints through setFrom/setTo is not journaled, as it
+ * is not supported by DroneNetwork's adjacency lists either.
+ */
+public class MutationJournal implements NetworkChangeListener, AutoCloseable {
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json";
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte FLAG_BIDIRECTIONAL = 1;
+    private static final byte FLAG_RESTRICTED = 2;
+    private static final byte FLAG_MIRROR = 4;
+
+    private final Path directory;
+    private final JsonHandler jsonHandler = new JsonHandler();
+
+    private DroneNetwork network;
+    private DroneNetwork recovered;
+    private long nextSequence;
+    private int snapshotInterval;
+    private int mutationsSinceSnapshot;
+
+    // Encoding buffers, only touched by the mutating thread
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    // Shared with the writer thread, guarded by lock
+    private final Object lock = new Object();
+    private final ArrayDeque<Object> pending = new ArrayDeque<>();
+    // Records and markers ever queued, and how many of them the writer has handled
+    private long queuedItems;
+    private long writtenItems;
+    private IOException writerFailure;
+    private boolean closed;
+    private Thread writer;
+    private int snapshotsInFlight;
+    private IOException snapshotFailure;
+
+    private final ExecutorService snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "mutation-journal-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private MutationJournal(Path directory) {
+        this.directory = directory;
+    }
+
+    /** Opens (creating if needed) a journal directory. Call recover() before attach(). */
+    public static MutationJournal open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        MutationJournal journal = new MutationJournal(directory);
+        journal.nextSequence = 1;
+        return journal;
+    }
+
+    /**
+     * Takes a snapshot automatically after this many mutations (0 disables).
+     * While the previous snapshot is still being written the next one waits
+     * for a later mutation.
+     */
+    public void setSnapshotInterval(int mutations) {
+        this.snapshotInterval = mutations;
+    }
+
+    // ===== Recovery =====
+
+    /**
+     * Rebuilds the network from the newest snapshot plus the journal tail.
+     * Returns an empty network if the directory holds no state yet.
+     */
+    public DroneNetwork recover() throws IOException {
+        long snapshotSequence = 0;
+        DroneNetwork restored = null;
+        List<Long> snapshots = listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            snapshotSequence = snapshots.get(snapshots.size() - 1);
+            restored = jsonHandler.loadNetworkParallel(snapshotPath(snapshotSequence).toString());
+            if (restored == null) {
+                throw new IOException("Unreadable snapshot " + snapshotPath(snapshotSequence));
+            }
+        }
+        if (restored == null) {
+            restored = new DroneNetwork();
+        }
+
+        long lastSequence = snapshotSequence;
+        int replayed = 0;
+        boolean broken = false;
+        for (long segmentStart : listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            Path path = segmentPath(segmentStart);
+            if (broken || segmentStart > lastSequence + 1) {
+                // Records after a gap or a torn record can never be replayed in order
+                broken = true;
+                Files.delete(path);
+                continue;
+            }
+            long validLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+                while (true) {
+                    byte[] body = readRecord(in);
+                    if (body == null) {
+                        break;
+                    }
+                    long sequence = ByteBuffer.wrap(body).getLong();
+                    if (sequence > lastSequence + 1) {
+                        break;
+                    }
+                    validLength += body.length + 8;
+                    if (sequence <= lastSequence) {
+                        continue; // already contained in the snapshot
+                    }
+                    replay(restored, body);
+                    lastSequence = sequence;
+                    replayed++;
+                }
+            }
+            // Cut off a torn or corrupt tail, so records appended after recovery stay readable
+            if (validLength < Files.size(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                    channel.force(true);
+                }
+                System.out.println("✗ Discarded a torn journal tail in " + path.getFileName());
+            }
+        }
+
+        nextSequence = lastSequence + 1;
+        recovered = restored;
+        System.out.println("✓ Recovered network from snapshot " + snapshotSequence
+            + " + " + replayed + " journal records");
+        return restored;
+    }
+
+    /** Reads one record body, or null at the end of the log or at a torn/corrupt record. */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if (length < 9 || length > (1 << 24)) {
+                return null;
+            }
+            byte[] body = new byte[length];
+            in.readFully(body);
+            int checksum = in.readInt();
+            CRC32 crc = new CRC32();
+            crc.update(body, 0, length);
+            return (int) crc.getValue() == checksum ? body : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static void replay(DroneNetwork network, byte[] body) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        in.readLong();
+        NetworkChangeEvent.Type type = NetworkChangeEvent.Type.values()[in.readByte()];
+        switch (type) {
+            case NODE_ADDED: {
+                String id = in.readUTF();
+                Node.NodeType nodeType = Node.NodeType.values()[in.readByte()];
+                network.addNode(new Node(id, nodeType, in.readDouble(), in.readDouble()));
+                break;
+            }
+            case NODE_UPDATED: {
+                Node node = network.getNode(in.readUTF());
+                Node.NodeType nodeType = Node.NodeType.values()[in.readByte()];
+                double x = in.readDouble();
+                double y = in.readDouble();
+                if (node != null) {
+                    if (node.getType() != nodeType) node.setType(nodeType);
+                    if (node.getX() != x) node.setX(x);
+                    if (node.getY() != y) node.setY(y);
+                }
+                break;
+            }
+            case NODE_REMOVED:
+                network.removeNode(in.readUTF());
+                break;
+            case EDGE_ADDED: {
+                Node from = network.getNode(in.readUTF());
+                Node to = network.getNode(in.readUTF());
+                int energy = in.readInt();
+                int capacity = in.readInt();
+                byte flags = in.readByte();
+                int[][] profile = readProfile(in);
+                if (from != null && to != null) {
+                    Edge edge = new Edge(from, to, energy, capacity,
+                        (flags & FLAG_BIDIRECTIONAL) != 0, (flags & FLAG_RESTRICTED) != 0);
+                    network.addEdge(edge);
+                    if (profile != null) {
+                        edge.setEnergyProfile(profile[0], profile[1]);
+                    }
+                }
+                break;
+            }
+            case EDGE_REMOVED: {
+                Edge edge = network.getEdge(in.readUTF(), in.readUTF(), false, in.readInt());
+                if (edge != null) {
+                    network.removeEdge(edge);
+                }
+                break;
+            }
+            case EDGE_UPDATED: {
+                String fromId = in.readUTF();
+                String toId = in.readUTF();
+                int ordinal = in.readInt();
+                int energy = in.readInt();
+                int capacity = in.readInt();
+                byte flags = in.readByte();
+                int[][] profile = readProfile(in);
+                Edge edge = network.getEdge(fromId, toId, (flags & FLAG_MIRROR) != 0, ordinal);
+                if (edge != null) {
+                    if (edge.getEnergy() != energy) edge.setEnergy(energy);
+                    if (edge.getCapacity() != capacity) edge.setCapacity(capacity);
+                    boolean restricted = (flags & FLAG_RESTRICTED) != 0;
+                    if (edge.isRestricted() != restricted) edge.setRestricted(restricted);
+                    if (!hasProfile(network, edge, profile)) {
+                        if (profile != null) {
+                            edge.setEnergyProfile(profile[0], profile[1]);
+                        } else {
+                            edge.clearEnergyProfile();
+                        }
+                    }
+                }
+                break;
+            }
+        }
+    }
+
+    /** Profile breakpoints of an edge record as {times, energies}, or null for a fixed energy. */
+    private static int[][] readProfile(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count == 0) {
+            return null;
+        }
+        int[] times = new int[count];
+        int[] energies = new int[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = in.readInt();
+            energies[i] = in.readInt();
+        }
+        return new int[][] {times, energies};
+    }
+
+    private static boolean hasProfile(DroneNetwork network, Edge edge, int[][] profile) {
+        int current = edge.getEnergyProfile();
+        if (current == EnergyProfiles.NONE || profile == null) {
+            return current == EnergyProfiles.NONE && profile == null;
+        }
+        EnergyProfiles profiles = network.getEnergyProfiles();
+        if (profiles.breakpointCount(current) != profile[0].length) {
+            return false;
+        }
+        for (int i = 0; i < profile[0].length; i++) {
+            if (profiles.breakpointTime(current, i) != profile[0][i]
+                    || profiles.breakpointEnergy(current, i) != profile[1][i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ===== Journaling =====
+
+    /**
+     * Starts journaling every mutation of the network. A network that did not
+     * come from recover() is snapshotted first, and the snapshot is durable
+     * before this returns, so the journal has a base.
+     */
+    public void attach(DroneNetwork network) throws IOException {
+        if (this.network != null) {
+            throw new IllegalStateException("Journal is already attached to a network");
+        }
+        if (network != recovered && (!listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).isEmpty()
+                || !listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX).isEmpty())) {
+            throw new IllegalStateException("Journal directory already holds state; attach the recovered network");
+        }
+        this.network = network;
+        openSegment(nextSequence);
+
+        writer = new Thread(this::writeLoop, "mutation-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        network.addChangeListener(this);
+        if (network != recovered) {
+            checkpoint();
+            awaitSnapshots();
+        }
+    }
+
+    @Override
+    public void onNetworkChange(NetworkChangeEvent event) {
+        byte[] encoded;
+        try {
+            encoded = encode(nextSequence, event);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot encode journal record", e);
+        }
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            pending.add(encoded);
+            queuedItems++;
+            lock.notifyAll();
+        }
+        nextSequence++;
+
+        if (snapshotInterval > 0 && ++mutationsSinceSnapshot >= snapshotInterval && !snapshotInFlight()) {
+            checkpoint();
+        }
+    }
+
+    private byte[] encode(long sequence, NetworkChangeEvent event) throws IOException {
+        recordBytes.reset();
+        record.writeLong(sequence);
+        record.writeByte(event.getType().ordinal());
+        Node node = event.getNode();
+        Edge edge = event.getEdge();
+        switch (event.getType()) {
+            case NODE_ADDED:
+            case NODE_UPDATED:
+                record.writeUTF(node.getId());
+                record.writeByte(node.getType().ordinal());
+                record.writeDouble(node.getX());
+                record.writeDouble(node.getY());
+                break;
+            case NODE_REMOVED:
+                record.writeUTF(node.getId());
+                break;
+            case EDGE_REMOVED:
+                record.writeUTF(edge.getFrom().getId());
+                record.writeUTF(edge.getTo().getId());
+                record.writeInt(network.parallelOrdinal(edge));
+                break;
+            case EDGE_ADDED:
+            case EDGE_UPDATED:
+                record.writeUTF(edge.getFrom().getId());
+                record.writeUTF(edge.getTo().getId());
+                if (event.getType() == NetworkChangeEvent.Type.EDGE_UPDATED) {
+                    record.writeInt(network.parallelOrdinal(edge));
+                }
+                record.writeInt(edge.getEnergy());
+                record.writeInt(edge.getCapacity());
+                record.writeByte((edge.isBidirectional() ? FLAG_BIDIRECTIONAL : 0)
+                    | (edge.isRestricted() ? FLAG_RESTRICTED : 0)
+                    | (edge.isMirror() ? FLAG_MIRROR : 0));
+                int profile = edge.getEnergyProfile();
+                if (profile == EnergyProfiles.NONE) {
+                    record.writeInt(0);
+                } else {
+                    EnergyProfiles profiles = network.getEnergyProfiles();
+                    record.writeInt(profiles.breakpointCount(profile));
+                    for (int i = 0; i < profiles.breakpointCount(profile); i++) {
+                        record.writeInt(profiles.breakpointTime(profile, i));
+                        record.writeInt(profiles.breakpointEnergy(profile, i));
+                    }
+                }
+                break;
+        }
+        record.flush();
+
+        int length = recordBytes.size();
+        byte[] framed = new byte[length + 8];
+        ByteBuffer frame = ByteBuffer.wrap(framed);
+        frame.putInt(length);
+        frame.put(recordBytes.toByteArray());
+        crc.reset();
+        crc.update(framed, 4, length);
+        frame.putInt((int) crc.getValue());
+        return framed;
+    }
+
+    /**
+     * Blocks until every mutation journaled so far is on disk and every
+     * snapshot started so far is written. Throws a snapshot write failure
+     * once; the journal itself stays complete in that case.
+     */
+    public void sync() throws IOException {
+        awaitSnapshots();
+        synchronized (lock) {
+            long target = queuedItems;
+            while (writtenItems < target && writerFailure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for journal sync", e);
+                }
+            }
+            if (writerFailure != null) {
+                throw writerFailure;
+            }
+        }
+    }
+
+    /**
+     * Snapshots the current network and starts a new log segment. Only the
+     * NetworkSnapshot is published here; its JSON is written and fsynced on a
+     * background thread, after which the segments and snapshots it makes
+     * obsolete are deleted. Must be called on the mutating thread.
+     */
+    public void checkpoint() {
+        long sequence = nextSequence - 1;
+        NetworkSnapshot state = network.publishSnapshot();
+        mutationsSinceSnapshot = 0;
+        synchronized (lock) {
+            pending.add(new Rotation(sequence + 1));
+            queuedItems++;
+            snapshotsInFlight++;
+            lock.notifyAll();
+        }
+        snapshotWriter.execute(() -> writeSnapshot(state, sequence));
+    }
+
+    private boolean snapshotInFlight() {
+        synchronized (lock) {
+            return snapshotsInFlight > 0;
+        }
+    }
+
+    private void writeSnapshot(NetworkSnapshot state, long sequence) {
+        IOException failure = null;
+        try {
+            Path temp = directory.resolve(SNAPSHOT_PREFIX + sequence + ".tmp");
+            if (!jsonHandler.saveSnapshot(state, temp.toString())) {
+                throw new IOException("Failed to write snapshot " + temp);
+            }
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, snapshotPath(sequence), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("✗ Error writing snapshot: " + e.getMessage());
+            failure = e;
+        }
+        synchronized (lock) {
+            if (failure == null) {
+                // Queued behind the rotation, so the writer has left the old segments by then
+                pending.add(new Cleanup(sequence));
+                queuedItems++;
+            } else if (snapshotFailure == null) {
+                snapshotFailure = failure;
+            }
+            snapshotsInFlight--;
+            lock.notifyAll();
+        }
+    }
+
+    /** Blocks until no snapshot is being written, then reports a failed one. */
+    private void awaitSnapshots() throws IOException {
+        synchronized (lock) {
+            while (snapshotsInFlight > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for a snapshot", e);
+                }
+            }
+            IOException failure = snapshotFailure;
+            snapshotFailure = null;
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /** Queue marker telling the writer to switch segments after a snapshot. */
+    private static class Rotation {
+        final long nextSegmentStart;
+
+        Rotation(long nextSegmentStart) {
+            this.nextSegmentStart = nextSegmentStart;
+        }
+    }
+
+    /** Queue marker telling the writer that the snapshot after record sequence is durable. */
+    private static class Cleanup {
+        final long snapshotSequence;
+
+        Cleanup(long snapshotSequence) {
+            this.snapshotSequence = snapshotSequence;
+        }
+    }
+
+    // ===== Writer thread =====
+
+    private FileChannel segment;
+    private long segmentStart;
+
+    private void openSegment(long start) throws IOException {
+        segmentStart = start;
+        segment = FileChannel.open(segmentPath(start), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        while (true) {
+            synchronized (lock) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch.addAll(pending);
+                pending.clear();
+            }
+
+            try {
+                writeBatch(batch);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    writerFailure = e;
+                    lock.notifyAll();
+                }
+                System.err.println("✗ Journal write failed: " + e.getMessage());
+                return;
+            }
+            synchronized (lock) {
+                writtenItems += batch.size();
+                lock.notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Object> batch) throws IOException {
+        int size = 0;
+        for (Object item : batch) {
+            if (item instanceof byte[]) {
+                size += ((byte[]) item).length;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Object item : batch) {
+            if (item instanceof byte[]) {
+                buffer.put((byte[]) item);
+            } else if (item instanceof Rotation) {
+                // Everything before the rotation belongs to the current segment
+                buffer.flip();
+                writeFully(buffer);
+                segment.force(false);
+                segment.close();
+                openSegment(((Rotation) item).nextSegmentStart);
+                buffer.clear();
+            } else {
+                deleteObsolete(((Cleanup) item).snapshotSequence);
+            }
+        }
+        buffer.flip();
+        writeFully(buffer);
+        segment.force(false);
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            segment.write(buffer);
+        }
+    }
+
+    private void deleteObsolete(long snapshotSequence) throws IOException {
+        for (long start : listSequences(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (start <= snapshotSequence) {
+                Files.deleteIfExists(segmentPath(start));
+            }
+        }
+        for (long sequence : listSequences(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequence < snapshotSequence) {
+                Files.deleteIfExists(snapshotPath(sequence));
+            }
+        }
+    }
+
+    /** Flushes outstanding records and stops the writer. */
+    @Override
+    public void close() throws IOException {
+        if (network != null) {
+            network.removeChangeListener(this);
+        }
+        IOException failure = null;
+        try {
+            awaitSnapshots();
+        } catch (IOException e) {
+            failure = e;
+        }
+        snapshotWriter.shutdown();
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        if (writer != null) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (segment != null) {
+            segment.close();
+        }
+        if (writerFailure != null) {
+            throw writerFailure;
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    // ===== Files =====
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(SNAPSHOT_PREFIX + sequence + SNAPSHOT_SUFFIX);
+    }
+
+    private Path segmentPath(long start) {
+        return directory.resolve(SEGMENT_PREFIX + start + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSequences(String prefix, String suffix) throws IOException {
+        List<Long> sequences = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    sequences.add(Long.parseLong(
+                        name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(sequences);
+        return sequences;
+    }
+}
@@ -1,45 +1,64 @@
 package com.dronedelivery.main;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
 import com.dronedelivery.algorithms.ChargingOptimization;
 import com.dronedelivery.algorithms.CommunicationNetwork;
+import com.dronedelivery.algorithms.EnergyConstrainedRouting;
+import com.dronedelivery.algorithms.FleetSimulation;
+import com.dronedelivery.algorithms.HubReachability;
 import com.dronedelivery.algorithms.MaxFlowAlgorithm;
+import com.dronedelivery.algorithms.ProgressMonitor;
 import com.dronedelivery.algorithms.ResilienceAlgorithm;
 import com.dronedelivery.backend.DroneNetwork;
 import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.NetworkPatch;
 import com.dronedelivery.backend.Node;
 import com.dronedelivery.backend.PathResult;
 import com.dronedelivery.io.JsonHandler;
+import com.dronedelivery.visualization.DroneAnimator;
 import com.dronedelivery.visualization.GraphVisualizer;
 
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.Separator;
-import javafx.scene.control.TextArea;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 public class DroneNetworkApp extends Application {
     
     private DroneNetwork network;
     private Canvas canvas;
+    private Canvas overlayCanvas;
     private GraphVisualizer visualizer;
-    private TextArea outputArea;
+    private DroneAnimator animator;
+    private OutputConsole outputConsole;
     private ComboBox<String> hubCombo;
     private Label networkStatusLabel;
     private ComboBox<String> fromCombo;
     private ComboBox<String> toCombo;
+    private double dragX;
+    private double dragY;
+    
+    // F3-F6 run on worker threads; their progress is shown under the algorithm buttons
+    private final JobExecutor jobs = new JobExecutor(JobExecutor.defaultThreads());
+    private ProgressBar jobProgress;
+    private Label jobStatusLabel;
+    private Button cancelJobsBtn;
     
     @Override
     public void start(Stage primaryStage) {
@@ -52,19 +71,19 @@ public class DroneNetworkApp extends Application {
         
         // Create canvas for graph visualization
         canvas = new Canvas(900, 600);
+        installViewControls();
+        // Route highlights and the selection go on a transparent canvas on top
+        overlayCanvas = new Canvas(900, 600);
+        overlayCanvas.setMouseTransparent(true);
         
         // Create output area (MUST be created before control panel)
-        outputArea = new TextArea();
-        outputArea.setPrefHeight(150);
-        outputArea.setEditable(false);
-        outputArea.setWrapText(true);
-        outputArea.setStyle("-fx-font-family: monospace; -fx-font-size: 10;");
+        outputConsole = new OutputConsole(OutputConsole.DEFAULT_CAPACITY);
         
         // Create control panel
         VBox controlPanel = createControlPanel();
         
         // Layout
-        VBox centerLayout = new VBox(10, canvas, new Label("Output:"), new ScrollPane(outputArea));
+        VBox centerLayout = new VBox(10, new StackPane(canvas, overlayCanvas), new Label("Output:"), outputConsole);
         centerLayout.setPadding(new Insets(10));
         
         root.setCenter(centerLayout);
@@ -106,13 +125,18 @@ public class DroneNetworkApp extends Application {
         // Algorithm Selection
         VBox algorithmBox = createAlgorithmBox();
         
+        // Background Jobs
+        VBox jobBox = createJobBox();
+        
         panel.getChildren().addAll(
             titleLabel,
             networkStatusLabel,
             sep1,
             fileBox,
             sep2,
-            algorithmBox
+            algorithmBox,
+            new Separator(),
+            jobBox
         );
         
         return panel;
@@ -133,7 +157,12 @@ public class DroneNetworkApp extends Application {
         loadSample2.setStyle("-fx-padding: 8; -fx-font-size: 11;");
         loadSample2.setOnAction(e -> loadNetwork("src/main/resources/networks/sample2.json"));
         
-        box.getChildren().addAll(fileLabel, loadSample1, loadSample2);
+        Button applyPatch = new Button("Apply Patch...");
+        applyPatch.setPrefWidth(Double.MAX_VALUE);
+        applyPatch.setStyle("-fx-padding: 8; -fx-font-size: 11;");
+        applyPatch.setOnAction(e -> handleApplyPatch());
+        
+        box.getChildren().addAll(fileLabel, loadSample1, loadSample2, applyPatch);
         return box;
     }
     
@@ -172,6 +201,12 @@ public class DroneNetworkApp extends Application {
         commBtn.setStyle("-fx-padding: 8; -fx-font-size: 11;");
         commBtn.setOnAction(e -> handleCommunicationNetwork());
         
+        // F7: Fleet Simulation
+        Button simulationBtn = new Button("F7: Simulate Fleet");
+        simulationBtn.setPrefWidth(Double.MAX_VALUE);
+        simulationBtn.setStyle("-fx-padding: 8; -fx-font-size: 11;");
+        simulationBtn.setOnAction(e -> handleFleetSimulation());
+        
         box.getChildren().addAll(
             algoLabel,
             reachabilityBox,
@@ -181,12 +216,50 @@ public class DroneNetworkApp extends Application {
             capacityBtn,
             resilienceBtn,
             chargingBtn,
-            commBtn
+            commBtn,
+            simulationBtn
         );
         
         return box;
     }
     
+    private VBox createJobBox() {
+        VBox box = new VBox(5);
+        
+        jobStatusLabel = new Label("No analysis running");
+        jobStatusLabel.setStyle("-fx-font-size: 10;");
+        
+        jobProgress = new ProgressBar(0);
+        jobProgress.setPrefWidth(Double.MAX_VALUE);
+        
+        cancelJobsBtn = new Button("Cancel Running Analyses");
+        cancelJobsBtn.setPrefWidth(Double.MAX_VALUE);
+        cancelJobsBtn.setStyle("-fx-padding: 6; -fx-font-size: 10;");
+        cancelJobsBtn.setDisable(true);
+        cancelJobsBtn.setOnAction(e -> {
+            int running = jobs.activeCountProperty().get();
+            jobs.cancelAll();
+            appendOutput("✗ Cancelled " + running + " running " + (running == 1 ? "analysis" : "analyses"));
+        });
+        
+        // Follow the most recently started job while any is running
+        jobs.activeCountProperty().addListener((obs, before, count) -> {
+            Task<?> latest = jobs.latest();
+            jobProgress.progressProperty().unbind();
+            if (latest != null) {
+                jobProgress.progressProperty().bind(latest.progressProperty());
+                jobStatusLabel.setText(count.intValue() == 1 ? "1 analysis running" : count + " analyses running");
+            } else {
+                jobProgress.setProgress(0);
+                jobStatusLabel.setText("No analysis running");
+            }
+            cancelJobsBtn.setDisable(latest == null);
+        });
+        
+        box.getChildren().addAll(jobStatusLabel, jobProgress, cancelJobsBtn);
+        return box;
+    }
+    
     private VBox createReachabilityBox() {
         VBox box = new VBox(5);
         
@@ -269,16 +342,64 @@ public class DroneNetworkApp extends Application {
         return box;
     }
     
+    /**
+     * Mouse wheel zooms around the pointer, dragging pans, double-click fits
+     * the network again and clicking a node selects and prints it.
+     */
+    private void installViewControls() {
+        canvas.setOnScroll(e -> {
+            if (visualizer != null && e.getDeltaY() != 0) {
+                visualizer.zoomAt(e.getDeltaY() > 0 ? 1.1 : 1 / 1.1, e.getX(), e.getY());
+                visualizer.draw();
+            }
+        });
+        canvas.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+        });
+        canvas.setOnMouseDragged(e -> {
+            if (visualizer != null) {
+                visualizer.pan(e.getX() - dragX, e.getY() - dragY);
+                dragX = e.getX();
+                dragY = e.getY();
+                visualizer.draw();
+            }
+        });
+        canvas.setOnMouseClicked(e -> {
+            if (visualizer == null || !e.isStillSincePress()) {
+                return;
+            }
+            if (e.getClickCount() == 2) {
+                visualizer.resetView();
+                visualizer.draw();
+                return;
+            }
+            Node node = visualizer.nodeAt(e.getX(), e.getY());
+            visualizer.setSelectedNode(node);
+            if (node != null) {
+                appendOutput("Selected " + node.getId() + " (" + node.getType() + ") at ("
+                    + node.getX() + ", " + node.getY() + "), "
+                    + network.getEdgesFrom(node.getId()).size() + " outgoing corridors");
+            }
+        });
+    }
+    
     private void loadDefaultNetwork() {
         loadNetwork("src/main/resources/networks/sample1.json");
     }
     
     private void loadNetwork(String filePath) {
+        // Running analyses belong to the network being replaced
+        jobs.cancelAll();
         JsonHandler handler = new JsonHandler();
         network = handler.loadNetwork(filePath);
         
         if (network != null) {
-            visualizer = new GraphVisualizer(canvas, network);
+            if (animator != null) {
+                animator.stop();
+            }
+            visualizer = new GraphVisualizer(canvas, overlayCanvas, network);
+            animator = new DroneAnimator(visualizer, network);
             visualizer.draw();
             updateNetworkStatus();
             appendOutput("✓ Network loaded: " + filePath);
@@ -289,6 +410,44 @@ public class DroneNetworkApp extends Application {
         }
     }
     
+    private void handleApplyPatch() {
+        if (network == null) {
+            appendOutput("✗ Load a network first");
+            return;
+        }
+        if (jobs.isBusy()) {
+            // Analyses read the network on worker threads, so it must not change under them
+            appendOutput("✗ Wait for the running analyses to finish or cancel them first");
+            return;
+        }
+        
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Select Network Patch");
+        chooser.setInitialDirectory(new File("src/main/resources/patches"));
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("JSON patch", "*.json"));
+        File file = chooser.showOpenDialog(canvas.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        
+        NetworkPatch patch = new JsonHandler().loadPatch(file.getPath());
+        if (patch == null) {
+            appendOutput("✗ Failed to load patch");
+            return;
+        }
+        
+        try {
+            long before = network.getVersion();
+            patch.applyTo(network);
+            visualizer.draw();
+            updateNetworkStatus();
+            appendOutput("✓ Patch applied: " + file.getName() + " (" + patch.getOperations().size() +
+                        " operations, version " + before + " → " + network.getVersion() + ")");
+        } catch (Exception e) {
+            appendOutput("✗ Patch rejected: " + e.getMessage());
+        }
+    }
+    
     private void updateNetworkStatus() {
         int nodeCount = network.getNodes().size();
         int edgeCount = network.getEdges().size();
@@ -320,9 +479,10 @@ public class DroneNetworkApp extends Application {
             
             boolean allReachable = true;
             int reachableCount = 0;
+            HubReachability.ReachabilityResult reach = HubReachability.reachableFrom(network, hubId);
             
             for (Node delivery : network.getDeliveryPoints()) {
-                boolean reachable = network.isReachable(hubId, delivery.getId());
+                boolean reachable = reach.isReachable(delivery.getId());
                 String status = reachable ? "✓" : "✗";
                 appendOutput(status + " " + delivery.getId() + ": " + (reachable ? "REACHABLE" : "NOT REACHABLE"));
                 if (reachable) reachableCount++;
@@ -360,15 +520,42 @@ public class DroneNetworkApp extends Application {
             appendOutput(pathStr);
             appendOutput("Total Energy Cost: " + result.getTotalEnergy() + " units");
             
-            // Clear previous drawing and redraw network
-            visualizer.draw();
+            // Check the route against the drone battery, recharging at CHARGING nodes
+            int battery = animator.getDroneEnergyCapacity();
+            EnergyConstrainedRouting.RouteResult route = animator.planRoute(from, to);
+            if (!route.feasible) {
+                appendOutput("✗ Not flyable with a " + battery + "-unit battery, even with recharging");
+            } else {
+                if (!route.path.equals(result.getPath())) {
+                    appendOutput("Battery-feasible route (" + battery + " units):");
+                    appendOutput(String.join(" → ", route.path));
+                    appendOutput("Energy Cost: " + route.totalEnergy + " units");
+                }
+                appendOutput(route.chargingStops.isEmpty()
+                    ? "✓ No recharge needed with a " + battery + "-unit battery"
+                    : "Recharge at: " + String.join(", ", route.chargingStops));
+            }
+            
+            // Replace the previous highlights; the network layers stay as they are
+            visualizer.clearHighlights();
             
-            // Highlight path on canvas
+            // Highlight path on canvas (and the battery-feasible detour if it differs)
+            if (route.feasible && !route.path.equals(result.getPath())) {
+                visualizer.drawPath(route.path, Color.ORANGE);
+            }
             visualizer.drawPath(result.getPath(), Color.LIMEGREEN);
+            
+            // Fly a drone along the route it can actually take
+            if (route.feasible) {
+                animator.launch(route);
+            } else {
+                animator.launch(result.getPath());
+            }
+            animator.start();
         } else {
             appendOutput("\n✗ No path found from " + from + " to " + to);
             appendOutput("  (Destination may be unreachable due to restricted edges)");
-            visualizer.draw();
+            visualizer.clearHighlights();
         }
     }
     
@@ -378,39 +565,36 @@ public class DroneNetworkApp extends Application {
             return;
         }
         
-        try {
-            appendOutput("\n════════════════════════════════════════");
-            appendOutput("F3: Calculate Delivery Capacity");
-            appendOutput("════════════════════════════════════════");
-            
-            // Get all distributors and delivery points
-            Set<String> hubIds = new HashSet<>();
-            for (Node hub : network.getDistributors()) {
-                hubIds.add(hub.getId());
-            }
-            
-            Set<String> deliveryIds = new HashSet<>();
-            for (Node delivery : network.getDeliveryPoints()) {
-                deliveryIds.add(delivery.getId());
-            }
-            
-            if (hubIds.isEmpty() || deliveryIds.isEmpty()) {
-                appendOutput("✗ Network must have distributors and delivery points");
-                return;
-            }
-            
+        // Get all distributors and delivery points
+        Set<String> hubIds = new HashSet<>();
+        for (Node hub : network.getDistributors()) {
+            hubIds.add(hub.getId());
+        }
+        
+        Set<String> deliveryIds = new HashSet<>();
+        for (Node delivery : network.getDeliveryPoints()) {
+            deliveryIds.add(delivery.getId());
+        }
+        
+        if (hubIds.isEmpty() || deliveryIds.isEmpty()) {
+            appendOutput("✗ Network must have distributors and delivery points");
+            return;
+        }
+        
+        DroneNetwork target = network;
+        runJob("F3", "F3: Calculate Delivery Capacity", "capacity check", monitor -> {
             // Calculate capacity for each hub
+            StringBuilder report = new StringBuilder();
+            int step = 0;
             for (String hubId : hubIds) {
-                MaxFlowAlgorithm.FlowResult result = 
-                    MaxFlowAlgorithm.calculateDeliveryCapacity(network, hubId, deliveryIds);
+                MaxFlowAlgorithm.FlowResult result = MaxFlowAlgorithm.calculateDeliveryCapacity(
+                    target, hubId, deliveryIds, ProgressMonitor.step(monitor, step++, hubIds.size()));
                 
-                appendOutput("\nHub: " + hubId);
-                appendOutput(result.details);
-                appendOutput("");
+                report.append("\nHub: ").append(hubId).append("\n");
+                report.append(result.details).append("\n\n");
             }
-        } catch (Exception e) {
-            appendOutput("✗ Error in capacity check: " + e.getMessage());
-        }
+            return report.toString();
+        });
     }
     
     private void handleResilience() {
@@ -419,18 +603,13 @@ public class DroneNetworkApp extends Application {
             return;
         }
         
-        try {
-            appendOutput("\n════════════════════════════════════════");
-            appendOutput("F4: Network Resilience Analysis");
-            appendOutput("════════════════════════════════════════\n");
-            
+        DroneNetwork target = network;
+        runJob("F4", "F4: Network Resilience Analysis", "resilience analysis", monitor -> {
             ResilienceAlgorithm.ResilienceResult result = 
-                ResilienceAlgorithm.analyzeNetworkResilience(network);
+                ResilienceAlgorithm.analyzeNetworkResilience(target, monitor);
             
-            appendOutput(result.details);
-        } catch (Exception e) {
-            appendOutput("✗ Error in resilience analysis: " + e.getMessage());
-        }
+            return "\n" + result.details;
+        });
     }
     
     private void handleChargingOptimization() {
@@ -439,19 +618,14 @@ public class DroneNetworkApp extends Application {
             return;
         }
         
-        try {
-            appendOutput("\n════════════════════════════════════════");
-            appendOutput("F5: Charging Station Optimization");
-            appendOutput("════════════════════════════════════════\n");
-            
-            int k = 2; // Number of new stations to add
+        DroneNetwork target = network;
+        int k = 2; // Number of new stations to add
+        runJob("F5:" + k, "F5: Charging Station Optimization", "charging optimization", monitor -> {
             ChargingOptimization.OptimizationResult result = 
-                ChargingOptimization.optimizeChargingStations(network, k);
+                ChargingOptimization.optimizeChargingStations(target, k, monitor);
             
-            appendOutput(result.details);
-        } catch (Exception e) {
-            appendOutput("✗ Error in charging optimization: " + e.getMessage());
-        }
+            return "\n" + result.details;
+        });
     }
     
     private void handleCommunicationNetwork() {
@@ -460,22 +634,51 @@ public class DroneNetworkApp extends Application {
             return;
         }
         
-        try {
-            appendOutput("\n════════════════════════════════════════");
-            appendOutput("F6: Communication Network (MST)");
-            appendOutput("════════════════════════════════════════\n");
-            
+        DroneNetwork target = network;
+        runJob("F6", "F6: Communication Network (MST)", "communication network", monitor -> {
             CommunicationNetwork.MSTResult result = 
-                CommunicationNetwork.buildCommunicationNetwork(network);
+                CommunicationNetwork.buildCommunicationNetwork(target, monitor);
             
-            appendOutput(result.details);
-        } catch (Exception e) {
-            appendOutput("✗ Error in communication network: " + e.getMessage());
+            return "\n" + result.details;
+        });
+    }
+    
+    private void handleFleetSimulation() {
+        if (network == null) {
+            appendOutput("✗ Load a network first");
+            return;
+        }
+        
+        DroneNetwork target = network;
+        FleetSimulation.Config config = new FleetSimulation.Config();
+        config.batteryCapacity = animator.getDroneEnergyCapacity();
+        runJob("F7", "F7: Fleet Simulation", "fleet simulation", monitor -> {
+            FleetSimulation.SimulationResult result = 
+                FleetSimulation.simulate(target, config, monitor);
+            
+            return "\n" + result.details;
+        });
+    }
+    
+    /**
+     * Runs an analysis on a worker thread and prints its report, under a
+     * banner with the title, in one append when it is done. A second request
+     * with the same key while the first is still running is ignored.
+     */
+    private void runJob(String key, String title, String name, JobExecutor.Job<String> job) {
+        Task<String> task = jobs.submit(key, job,
+            report -> appendOutput("\n════════════════════════════════════════\n" + title
+                + "\n════════════════════════════════════════\n" + report),
+            error -> appendOutput("✗ Error in " + name + ": " + error.getMessage()));
+        if (task == null) {
+            appendOutput("✗ " + title + " is already running");
+        } else {
+            appendOutput("… " + title + " started");
         }
     }
     
     private void appendOutput(String text) {
-        outputArea.appendText(text + "\n");
+        outputConsole.append(text);
     }
     
     public static void main(String[] args) {
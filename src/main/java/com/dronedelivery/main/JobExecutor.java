@@ -0,0 +1,144 @@
+package com.dronedelivery.main;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.dronedelivery.algorithms.ProgressMonitor;
+
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.concurrent.Task;
+
+/**
+ * Runs analyses off the JavaFX application thread on a small, bounded pool
+ * of daemon workers, one JavaFX Task per job.
+ *
+ * A job receives a ProgressMonitor that feeds the task's progress (which
+ * JavaFX coalesces into at most one UI update per pulse) and reports the
+ * task's cancellation, so the algorithms stop at their next checkpoint. The
+ * result of a job comes back in one piece on the FX thread. A request whose
+ * key matches a job that is still queued or running is not started again.
+ *
+ * All methods must be called on the FX application thread.
+ */
+final class JobExecutor {
+
+    /** Work to do on a worker thread. */
+    interface Job<T> {
+        T run(ProgressMonitor monitor) throws Exception;
+    }
+
+    private final ExecutorService pool;
+    // Queued and running jobs by key, oldest first
+    private final Map<String, Task<?>> active = new LinkedHashMap<>();
+    private final ReadOnlyIntegerWrapper activeCount = new ReadOnlyIntegerWrapper(0);
+
+    JobExecutor(int threads) {
+        AtomicInteger created = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "analysis-worker-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** One worker per spare core, between 1 and 4. */
+    static int defaultThreads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * Queues a job unless one with the same key is already queued or running;
+     * returns the new task, or null for such a duplicate. onSuccess and
+     * onFailure run on the FX thread; a cancelled job calls neither.
+     */
+    <T> Task<T> submit(String key, Job<T> job, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        if (active.containsKey(key)) {
+            return null;
+        }
+        JobTask<T> task = new JobTask<>(key, job, onSuccess, onFailure);
+        active.put(key, task);
+        activeCount.set(active.size());
+        pool.execute(task);
+        return task;
+    }
+
+    private void finished(String key) {
+        active.remove(key);
+        activeCount.set(active.size());
+    }
+
+    /** Cancels every queued and running job. */
+    void cancelAll() {
+        // cancel() removes the task from active through cancelled()
+        for (Task<?> task : new ArrayList<>(active.values())) {
+            task.cancel();
+        }
+    }
+
+    boolean isBusy() {
+        return !active.isEmpty();
+    }
+
+    /** Most recently submitted job still queued or running, or null. */
+    Task<?> latest() {
+        Task<?> latest = null;
+        for (Task<?> task : active.values()) {
+            latest = task;
+        }
+        return latest;
+    }
+
+    ReadOnlyIntegerProperty activeCountProperty() {
+        return activeCount.getReadOnlyProperty();
+    }
+
+    /** A task that is its own progress monitor. */
+    private final class JobTask<T> extends Task<T> implements ProgressMonitor {
+        private final String key;
+        private final Job<T> job;
+        private final Consumer<T> onSuccess;
+        private final Consumer<Throwable> onFailure;
+
+        JobTask(String key, Job<T> job, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+            this.key = key;
+            this.job = job;
+            this.onSuccess = onSuccess;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        protected T call() throws Exception {
+            return job.run(this);
+        }
+
+        @Override
+        public void progress(long done, long total) {
+            if (total > 0) {
+                updateProgress(done, total);
+            }
+        }
+
+        @Override
+        protected void succeeded() {
+            finished(key);
+            onSuccess.accept(getValue());
+        }
+
+        @Override
+        protected void failed() {
+            finished(key);
+            onFailure.accept(getException());
+        }
+
+        @Override
+        protected void cancelled() {
+            finished(key);
+        }
+    }
+}
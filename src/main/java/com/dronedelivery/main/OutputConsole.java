@@ -0,0 +1,309 @@
+package com.dronedelivery.main;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
+import javafx.scene.control.TextField;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCombination;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+
+/**
+ * Output log shown in a virtualized ListView, so only the visible lines
+ * are laid out no matter how long the log grows.
+ *
+ * Lines live in a ring buffer of fixed capacity; once it is full the oldest
+ * lines are dropped, so memory stays flat over a long session. append() may
+ * be called from any thread: texts are queued and an AnimationTimer moves
+ * them into the buffer at most once per frame, as a single list change. The
+ * timer only runs while there is something to move.
+ *
+ * The search field finds the next line containing the text, or with "Only
+ * matching" shows just the matching lines (case-insensitive).
+ */
+final class OutputConsole extends VBox {
+    static final int DEFAULT_CAPACITY = 50_000;
+
+    // Line with sequence number s is ring[s % ring.length] while first <= s < next
+    private final String[] ring;
+    private long first;
+    private long next;
+    private LineView view;
+
+    private final ConcurrentLinkedQueue<String> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean pumping = new AtomicBoolean();
+    private final AnimationTimer pump = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            drain();
+        }
+    };
+
+    private final ListView<String> listView = new ListView<>();
+    private final TextField searchField = new TextField();
+    private final CheckBox filterBox = new CheckBox("Only matching");
+
+    OutputConsole(int capacity) {
+        super(5);
+        ring = new String[capacity];
+        view = new LineView(null);
+
+        listView.setItems(view);
+        listView.setFixedCellSize(16);
+        listView.setPrefHeight(150);
+        listView.setStyle("-fx-font-family: monospace; -fx-font-size: 10;");
+        listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+        KeyCombination copy = new KeyCodeCombination(KeyCode.C, KeyCombination.SHORTCUT_DOWN);
+        listView.setOnKeyPressed(e -> {
+            if (copy.match(e)) {
+                copySelection();
+            } else if (e.getCode() == KeyCode.ESCAPE) {
+                // Follow new output again
+                listView.getSelectionModel().clearSelection();
+            }
+        });
+
+        searchField.setPromptText("Search output");
+        searchField.setStyle("-fx-font-size: 10;");
+        searchField.setOnAction(e -> findNext());
+        searchField.textProperty().addListener((obs, before, text) -> {
+            if (filterBox.isSelected()) {
+                applyFilter();
+            }
+        });
+        filterBox.setStyle("-fx-font-size: 10;");
+        filterBox.setOnAction(e -> applyFilter());
+        Button findBtn = new Button("Find Next");
+        findBtn.setStyle("-fx-font-size: 10;");
+        findBtn.setOnAction(e -> findNext());
+        Button clearBtn = new Button("Clear");
+        clearBtn.setStyle("-fx-font-size: 10;");
+        clearBtn.setOnAction(e -> clear());
+
+        HBox searchBar = new HBox(5, searchField, findBtn, filterBox, clearBtn);
+        searchBar.setAlignment(Pos.CENTER_LEFT);
+        HBox.setHgrow(searchField, Priority.ALWAYS);
+        VBox.setVgrow(listView, Priority.ALWAYS);
+        getChildren().addAll(searchBar, listView);
+    }
+
+    /** Queues text to be shown as one or more lines; callable from any thread. */
+    void append(String text) {
+        pending.add(text);
+        if (pumping.compareAndSet(false, true)) {
+            if (Platform.isFxApplicationThread()) {
+                pump.start();
+            } else {
+                Platform.runLater(pump::start);
+            }
+        }
+    }
+
+    /** Moves everything queued into the buffer; runs once per frame while output arrives. */
+    private void drain() {
+        List<String> lines = new ArrayList<>();
+        String text;
+        while ((text = pending.poll()) != null) {
+            int start = 0;
+            for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', start)) {
+                lines.add(text.substring(start, i));
+                start = i + 1;
+            }
+            lines.add(text.substring(start));
+        }
+        if (!lines.isEmpty()) {
+            add(lines);
+        }
+
+        pump.stop();
+        pumping.set(false);
+        // An append between the poll and the flag reset must not be left waiting
+        if (!pending.isEmpty() && pumping.compareAndSet(false, true)) {
+            pump.start();
+        }
+    }
+
+    private void add(List<String> lines) {
+        int capacity = ring.length;
+        // A batch larger than the buffer only keeps its tail
+        int skip = Math.max(0, lines.size() - capacity);
+        long oldNext = next;
+        long newFirst = Math.max(first, next + lines.size() - skip - capacity);
+        List<String> evicted = view.linesBefore(newFirst);
+
+        for (int i = skip; i < lines.size(); i++) {
+            ring[(int) (next % capacity)] = lines.get(i);
+            next++;
+        }
+        first = newFirst;
+        view.appended(oldNext, evicted);
+
+        if (listView.getSelectionModel().isEmpty() && !view.isEmpty()) {
+            listView.scrollTo(view.size() - 1);
+        }
+    }
+
+    private void clear() {
+        pending.clear();
+        first = next;
+        view = new LineView(view.query);
+        listView.setItems(view);
+    }
+
+    private void applyFilter() {
+        String text = searchField.getText();
+        view = new LineView(filterBox.isSelected() && !text.isEmpty() ? text : null);
+        listView.setItems(view);
+        if (!view.isEmpty()) {
+            listView.scrollTo(view.size() - 1);
+        }
+    }
+
+    /** Selects the next line of the current view containing the search text, wrapping around. */
+    private void findNext() {
+        String query = searchField.getText();
+        int size = view.size();
+        if (query.isEmpty() || size == 0) {
+            return;
+        }
+        int from = listView.getSelectionModel().getSelectedIndex() + 1;
+        for (int k = 0; k < size; k++) {
+            int i = (from + k) % size;
+            if (containsIgnoreCase(view.get(i), query)) {
+                listView.getSelectionModel().clearAndSelect(i);
+                listView.scrollTo(i);
+                return;
+            }
+        }
+    }
+
+    private void copySelection() {
+        List<String> selected = listView.getSelectionModel().getSelectedItems();
+        if (selected.isEmpty()) {
+            return;
+        }
+        ClipboardContent content = new ClipboardContent();
+        content.putString(String.join("\n", selected));
+        Clipboard.getSystemClipboard().setContent(content);
+    }
+
+    private static boolean containsIgnoreCase(String line, String query) {
+        for (int i = 0; i + query.length() <= line.length(); i++) {
+            if (line.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String line(long seq) {
+        return ring[(int) (seq % ring.length)];
+    }
+
+    /**
+     * The lines shown by the ListView: all buffered lines, or the sequence
+     * numbers of those containing query. Reports appends and evictions as
+     * one change per batch.
+     */
+    private final class LineView extends ObservableListBase<String> {
+        private final String query;
+        private long[] matches = new long[16];
+        private int matchStart;
+        private int matchEnd;
+
+        LineView(String query) {
+            this.query = query;
+            if (query != null) {
+                for (long seq = first; seq < next; seq++) {
+                    addIfMatching(seq);
+                }
+            }
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return line(query == null ? first + index : matches[matchStart + index]);
+        }
+
+        @Override
+        public int size() {
+            return query == null ? (int) (next - first) : matchEnd - matchStart;
+        }
+
+        /** Lines of this view that fall out of the buffer once it starts at newFirst. */
+        List<String> linesBefore(long newFirst) {
+            List<String> lines = new ArrayList<>();
+            if (query == null) {
+                for (long seq = first; seq < newFirst; seq++) {
+                    lines.add(line(seq));
+                }
+            } else {
+                for (int i = matchStart; i < matchEnd && matches[i] < newFirst; i++) {
+                    lines.add(line(matches[i]));
+                }
+            }
+            return lines.isEmpty() ? Collections.emptyList() : lines;
+        }
+
+        /** Called after lines from..next - 1 were written and the evicted ones dropped. */
+        void appended(long from, List<String> evicted) {
+            int added;
+            if (query == null) {
+                added = (int) (next - Math.max(from, first));
+            } else {
+                matchStart += evicted.size();
+                int before = size();
+                for (long seq = Math.max(from, first); seq < next; seq++) {
+                    addIfMatching(seq);
+                }
+                added = size() - before;
+            }
+            if (evicted.isEmpty() && added == 0) {
+                return;
+            }
+            beginChange();
+            if (!evicted.isEmpty()) {
+                nextRemove(0, evicted);
+            }
+            if (added > 0) {
+                nextAdd(size() - added, size());
+            }
+            endChange();
+        }
+
+        private void addIfMatching(long seq) {
+            if (!containsIgnoreCase(line(seq), query)) {
+                return;
+            }
+            if (matchEnd == matches.length) {
+                // Slide the live matches to the front before growing
+                int live = matchEnd - matchStart;
+                long[] target = live * 2 < matches.length ? matches : new long[matches.length * 2];
+                System.arraycopy(matches, matchStart, target, 0, live);
+                matches = target;
+                matchStart = 0;
+                matchEnd = live;
+            }
+            matches[matchEnd++] = seq;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.dronedelivery.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import com.dronedelivery.algorithms.DeltaStepping;
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.Node;
+import com.dronedelivery.backend.PathResult;
+import com.dronedelivery.io.JsonHandler;
+
+/**
+ * DeltaStepping.computeTree must give exactly the distances of
+ * DroneNetwork.findShortestPath (Dijkstra). Trees from random sources are
+ * compared node by node with a delta of 1, a random delta and the
+ * auto-tuned one, on the sample network and on a random network with
+ * parallel, restricted and zero-energy corridors.
+ */
+public class DeltaSteppingTest {
+    private static final int SOURCES = 12;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.out.println("=== Testing Delta-Stepping ===\n");
+        Random random = new Random(38);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        System.out.println("=== Sample network ===");
+        compare(new JsonHandler().loadNetwork("src/main/resources/networks/sample1.json"), random, pool);
+
+        System.out.println("\n=== Random network ===");
+        compare(randomNetwork(400, 1600, random), random, pool);
+
+        pool.shutdown();
+        System.out.println(failures == 0 ? "\n✓ All delta-stepping checks passed"
+            : "\n✗ " + failures + " delta-stepping checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void compare(DroneNetwork network, Random random, ForkJoinPool pool) {
+        List<Node> nodes = new ArrayList<>(network.getNodes().values());
+        int[] deltas = {1, 1 + random.nextInt(60), 0};
+        for (int delta : deltas) {
+            int mismatches = 0;
+            int compared = 0;
+            for (int s = 0; s < SOURCES; s++) {
+                String source = nodes.get(random.nextInt(nodes.size())).getId();
+                DeltaStepping.TreeResult tree = DeltaStepping.computeTree(network, source, delta, pool);
+                for (Node target : nodes) {
+                    PathResult path = network.findShortestPath(source, target.getId());
+                    int expected = path == null ? DeltaStepping.UNREACHABLE : path.getTotalEnergy();
+                    compared++;
+                    if (tree.distanceTo(target.getId()) != expected) {
+                        if (mismatches++ == 0) {
+                            System.out.println("  " + source + " → " + target.getId() + ": delta-stepping "
+                                + tree.distanceTo(target.getId()) + ", Dijkstra " + expected);
+                        }
+                    }
+                }
+            }
+            check(mismatches == 0, (delta == 0 ? "auto-tuned delta" : "delta " + delta) + ": "
+                + compared + " distances identical to Dijkstra");
+        }
+    }
+
+    /** Random corridors with energies 0-50, some bidirectional, restricted or parallel to each other. */
+    private static DroneNetwork randomNetwork(int nodeCount, int edgeCount, Random random) {
+        DroneNetwork network = new DroneNetwork();
+        Node[] nodes = new Node[nodeCount];
+        Node.NodeType[] types = Node.NodeType.values();
+        for (int i = 0; i < nodeCount; i++) {
+            nodes[i] = new Node("N" + i, types[random.nextInt(types.length)],
+                random.nextDouble() * 1000, random.nextDouble() * 1000);
+            network.addNode(nodes[i]);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            Node from = nodes[random.nextInt(nodeCount)];
+            Node to = nodes[random.nextInt(nodeCount)];
+            if (from == to) {
+                continue;
+            }
+            network.addEdge(new Edge(from, to, random.nextInt(51), 1 + random.nextInt(5),
+                random.nextInt(3) == 0, random.nextInt(10) == 0));
+        }
+        return network;
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "  ✓ " : "  ✗ ") + what);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.dronedelivery.test;
+
+import java.util.Random;
+
+import com.dronedelivery.algorithms.FleetSimulation;
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.Node;
+
+/**
+ * FleetSimulation on networks small enough to work out by hand. Orders
+ * arrive far faster than the single drone can fly them, so from the first
+ * order on the drone is never idle and every later number follows from the
+ * corridor lengths, energies and charge rate. The first arrival is the
+ * seed's first exponential draw.
+ */
+public class FleetSimulationTest {
+    private static final double EPSILON = 1e-9;
+
+    private static int failures;
+
+    public static void main(String[] args) {
+        System.out.println("=== Testing Fleet Simulation ===\n");
+
+        // H —50— C —50— D, 30 energy per corridor, a 60-unit battery:
+        // H→C leaves 30 and C→D→C needs 60, so the drone tops up 30 units at C (6 s);
+        // it is back at C empty and recharges 60 units (12 s) for C→H. Each corridor
+        // takes 5 s, so a trip is 4 × 5 + 6 + 12 = 38 s, delivering 16 s after take-off
+        System.out.println("=== Saturated drone with two charging stops per trip ===");
+        DroneNetwork network = new DroneNetwork();
+        Node hub = new Node("H", Node.NodeType.DISTRIBUTOR, 0, 0);
+        Node charger = new Node("C", Node.NodeType.CHARGING, 50, 0);
+        Node delivery = new Node("D", Node.NodeType.DELIVERY, 100, 0);
+        network.addNode(hub);
+        network.addNode(charger);
+        network.addNode(delivery);
+        network.addEdge(new Edge(hub, charger, 30, 1, true, false));
+        network.addEdge(new Edge(charger, delivery, 30, 1, true, false));
+
+        FleetSimulation.Config config = saturated();
+        config.batteryCapacity = 60;
+        FleetSimulation.SimulationResult result = FleetSimulation.simulate(network, config);
+        System.out.println(result.details + "\n");
+
+        // Take-offs at t0, t0 + 38 and t0 + 76; the third trip is charging at C at 100 s
+        double t0 = firstArrival(config);
+        System.out.println("  First order at " + t0 + " s");
+        check(t0 < 8, "first order arrives early enough for three deliveries");
+        check(result.ordersDelivered == 3, "3 deliveries (at t0 + 16, 54 and 92 s)");
+        check(close(result.throughputPerHour, 3 * 3600 / 100.0), "throughput of 108 deliveries/h");
+        check(result.chargingStops == 6, "6 charging stops (two per trip)");
+        check(result.ordersRejected == 0, "no order rejected");
+        check(close(result.meanCorridorWait, 0), "a single drone never waits for a corridor");
+        check(close(result.droneUtilization, (100 - t0) / 100), "drone busy from t0 to the end");
+        // C↔D: 10 s in each trip; H↔C: 10 s in the first two, only the way out in the third
+        check("C ↔ D".equals(result.busiestCorridor), "busiest corridor is C ↔ D");
+        check(close(result.busiestCorridorUtilization, 0.30), "C ↔ D occupied for 30 s");
+        check(close(result.meanCorridorUtilization, (0.25 + 0.30) / 2), "H ↔ C occupied for 25 s");
+        check(result.ordersArrived == result.ordersDelivered + result.ordersQueued,
+            "every order is delivered or still queued");
+
+        // A corridor of 100 energy cannot be flown on a 60-unit battery
+        System.out.println("\n=== Destination out of battery range ===");
+        DroneNetwork far = new DroneNetwork();
+        Node farHub = new Node("H", Node.NodeType.DISTRIBUTOR, 0, 0);
+        Node farDelivery = new Node("D", Node.NodeType.DELIVERY, 100, 0);
+        far.addNode(farHub);
+        far.addNode(farDelivery);
+        far.addEdge(new Edge(farHub, farDelivery, 100, 1, true, false));
+        result = FleetSimulation.simulate(far, config);
+        check(result.ordersArrived > 0 && result.ordersRejected == result.ordersArrived, "every order rejected");
+        check(result.ordersDelivered == 0 && close(result.droneUtilization, 0), "the drone never takes off");
+
+        System.out.println("\n=== Negative corridor energy ===");
+        network.updateEdge("H", "C", -5, 1, null);
+        result = FleetSimulation.simulate(network, config);
+        check(result.ordersArrived == 0 && result.details.contains("non-negative"), "the network is refused up front");
+
+        System.out.println(failures == 0 ? "\n✓ All fleet simulation checks passed"
+            : "\n✗ " + failures + " fleet simulation checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /** 100 s with one drone and orders every 0.1 s on average. */
+    private static FleetSimulation.Config saturated() {
+        FleetSimulation.Config config = new FleetSimulation.Config();
+        config.duration = 100;
+        config.ordersPerHour = 36000;
+        config.dronesPerDistributor = 1;
+        config.droneSpeed = 10;
+        config.chargeRate = 5;
+        return config;
+    }
+
+    /** Seconds to the first order, rounded to the simulation's millisecond ticks. */
+    private static double firstArrival(FleetSimulation.Config config) {
+        double gap = -Math.log(1 - new Random(config.seed).nextDouble()) * 3600 / config.ordersPerHour;
+        return Math.round(gap * 1000) / 1000.0;
+    }
+
+    private static boolean close(double actual, double expected) {
+        return Math.abs(actual - expected) < EPSILON;
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "  ✓ " : "  ✗ ") + what);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.dronedelivery.test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.EnergyProfiles;
+import com.dronedelivery.backend.Node;
+import com.dronedelivery.io.JsonHandler;
+import com.dronedelivery.io.MutationJournal;
+
+/**
+ * Crash and replay checks for MutationJournal. A crash is simulated by
+ * leaving a journal open (its writer has synced everything) and recovering
+ * the directory with a second journal; torn writes are simulated by
+ * appending half a record to a segment.
+ */
+public class JournalTest {
+    // Length prefix of a 40-byte record followed by only part of its body
+    private static final byte[] TORN_RECORD = {0, 0, 0, 40, 0, 0, 0, 0, 0, 0, 0, 7, 3};
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Testing Mutation Journal ===\n");
+
+        System.out.println("=== Crash and replay ===");
+        Path directory = Files.createTempDirectory("journal-test");
+        DroneNetwork network = new JsonHandler().loadNetwork("src/main/resources/networks/sample1.json");
+        MutationJournal journal = MutationJournal.open(directory);
+        journal.attach(network);
+        mutate(network, "X1");
+        journal.sync();
+        check(describe(recover(directory)).equals(describe(network)), "recovered network matches the live one");
+
+        System.out.println("\n=== Torn record at the end of the log ===");
+        appendTorn(latestSegment(directory));
+        check(describe(recover(directory)).equals(describe(network)), "torn tail is ignored");
+
+        System.out.println("\n=== Crash right after a rotation ===");
+        directory = Files.createTempDirectory("journal-test");
+        network = new JsonHandler().loadNetwork("src/main/resources/networks/sample1.json");
+        journal = MutationJournal.open(directory);
+        journal.attach(network);
+        mutate(network, "X1");
+        journal.checkpoint();
+        journal.sync();
+        // The first record of the fresh segment was torn by the crash
+        appendTorn(latestSegment(directory));
+
+        MutationJournal reopened = MutationJournal.open(directory);
+        DroneNetwork restored = reopened.recover();
+        check(describe(restored).equals(describe(network)), "state up to the rotation is recovered");
+        reopened.attach(restored);
+        mutate(restored, "X2");
+        reopened.sync();
+        check(describe(recover(directory)).equals(describe(restored)),
+            "records synced after recovery survive the next recovery");
+        reopened.close();
+
+        System.out.println("\n=== Parallel corridors ===");
+        directory = Files.createTempDirectory("journal-test");
+        network = new JsonHandler().loadNetwork("src/main/resources/networks/sample1.json");
+        journal = MutationJournal.open(directory);
+        journal.attach(network);
+        Node a = new Node("PA", Node.NodeType.CHARGING, 0, 0);
+        Node b = new Node("PB", Node.NodeType.CHARGING, 10, 0);
+        network.addNode(a);
+        network.addNode(b);
+        Edge first = new Edge(a, b, 10, 1, false, false);
+        Edge second = new Edge(a, b, 20, 2, false, false);
+        Edge third = new Edge(a, b, 40, 3, true, false);
+        network.addEdge(first);
+        network.addEdge(second);
+        network.addEdge(third);
+        second.setEnergy(30);
+        third.getReverse().setCapacity(4);
+        journal.sync();
+        check(describe(recover(directory)).equals(describe(network)), "updates land on the right parallel corridor");
+        network.removeEdge(second);
+        third.setEnergy(45);
+        journal.sync();
+        check(describe(recover(directory)).equals(describe(network)), "removals land on the right parallel corridor");
+        journal.close();
+
+        System.out.println("\n=== Snapshots every 5 mutations ===");
+        directory = Files.createTempDirectory("journal-test");
+        network = new JsonHandler().loadNetwork("src/main/resources/networks/sample1.json");
+        journal = MutationJournal.open(directory);
+        journal.setSnapshotInterval(5);
+        journal.attach(network);
+        mutate(network, "X1");
+        mutate(network, "X2");
+        journal.sync();
+        check(count(directory, "snapshot-*.json") == 1, "older snapshots are deleted once a newer one is written");
+        check(describe(recover(directory)).equals(describe(network)), "snapshot plus tail matches the live network");
+        journal.close();
+
+        System.out.println(failures == 0 ? "\n✓ All journal checks passed" : "\n✗ " + failures + " journal checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /** One mutation of every journaled kind, on nodes named after prefix. */
+    private static void mutate(DroneNetwork network, String prefix) {
+        Node hub = network.getDistributors().get(0);
+        Node added = new Node(prefix, Node.NodeType.CHARGING, 10, 20);
+        network.addNode(added);
+        Edge corridor = new Edge(hub, added, 30, 4, true, false);
+        network.addEdge(corridor);
+        network.updateEdge(prefix, hub.getId(), 35, 2, null);
+        corridor.setEnergyProfile(new int[] {0, 480, 1020}, new int[] {30, 45, 40});
+        Edge existing = network.getEdgesFrom(hub.getId()).get(0);
+        existing.setEnergyProfile(new int[] {600}, new int[] {12});
+        existing.clearEnergyProfile();
+        added.setX(15);
+        Node other = new Node(prefix + "-tmp", Node.NodeType.DELIVERY, 0, 0);
+        network.addNode(other);
+        network.addEdge(new Edge(added, other, 5, 1, false, false));
+        network.removeNode(other.getId());
+    }
+
+    private static DroneNetwork recover(Path directory) throws IOException {
+        return MutationJournal.open(directory).recover();
+    }
+
+    /** Nodes and edges as sorted lines, for comparing two networks. */
+    private static String describe(DroneNetwork network) {
+        List<String> lines = new ArrayList<>();
+        for (Node node : network.getNodes().values()) {
+            lines.add(node.getId() + " " + node.getType() + " " + node.getX() + " " + node.getY());
+        }
+        for (Edge edge : network.getEdges()) {
+            lines.add(edge.getFrom().getId() + " -> " + edge.getTo().getId() + " " + edge.getEnergy()
+                + " " + edge.getCapacity() + " " + edge.isBidirectional() + " " + edge.isRestricted()
+                + profileOf(network, edge));
+        }
+        Collections.sort(lines);
+        return String.join("\n", lines);
+    }
+
+    private static String profileOf(DroneNetwork network, Edge edge) {
+        int profile = edge.getEnergyProfile();
+        if (profile == EnergyProfiles.NONE) {
+            return "";
+        }
+        EnergyProfiles profiles = network.getEnergyProfiles();
+        StringBuilder points = new StringBuilder(" profile");
+        for (int i = 0; i < profiles.breakpointCount(profile); i++) {
+            points.append(" ").append(profiles.breakpointTime(profile, i))
+                .append(":").append(profiles.breakpointEnergy(profile, i));
+        }
+        return points.toString();
+    }
+
+    private static Path latestSegment(Path directory) throws IOException {
+        Path latest = null;
+        long latestStart = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                long start = Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+                if (start > latestStart) {
+                    latest = file;
+                    latestStart = start;
+                }
+            }
+        }
+        return latest;
+    }
+
+    private static int count(Path directory, String glob) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, glob)) {
+            for (Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void appendTorn(Path segment) throws IOException {
+        Files.write(segment, TORN_RECORD, StandardOpenOption.APPEND);
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "  ✓ " : "  ✗ ") + what);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
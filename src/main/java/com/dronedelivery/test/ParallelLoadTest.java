@@ -0,0 +1,149 @@
+package com.dronedelivery.test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.EnergyProfiles;
+import com.dronedelivery.backend.Node;
+import com.dronedelivery.io.JsonHandler;
+
+/**
+ * JsonHandler.loadNetworkParallel must build exactly the network that
+ * loadNetwork builds: the same node at every index and the same edge at
+ * every edge id, including mirror halves, flags and energy profiles. Each
+ * file is loaded with one thread and with several, so chunk boundaries fall
+ * in different places.
+ */
+public class ParallelLoadTest {
+    private static final int[] THREADS = {1, 3, 8};
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Testing Parallel Network Loading ===\n");
+        JsonHandler json = new JsonHandler();
+
+        System.out.println("=== Sample networks ===");
+        compare(json, "src/main/resources/networks/sample1.json", "sample1.json");
+        compare(json, "src/main/resources/networks/sample2.json", "sample2.json");
+
+        // Parallel and bidirectional corridors, profiles and ids that need escaping
+        System.out.println("\n=== Random network ===");
+        Path random = Files.createTempFile("parallel-load", ".json");
+        json.saveNetwork(randomNetwork(2000, 8000, new Random(26)), random.toString());
+        compare(json, random.toString(), "random network");
+
+        System.out.println("\n=== Corridors to unknown nodes ===");
+        Path unknown = Files.createTempFile("parallel-load", ".json");
+        Files.write(unknown, ("{\"nodes\": [{\"id\": \"A\", \"type\": \"DISTRIBUTOR\", \"x\": 0, \"y\": 0},"
+            + " {\"id\": \"B\", \"type\": \"DELIVERY\", \"x\": 1.5, \"y\": -2}],"
+            + " \"edges\": [{\"from\": \"A\", \"to\": \"Z\", \"energy\": 4, \"capacity\": 1, \"bidirectional\": true},"
+            + " {\"from\": \"A\", \"to\": \"B\", \"energy\": 7, \"capacity\": 2, \"bidirectional\": true,"
+            + " \"restricted\": true, \"energyProfile\": [[0, 7], [600, 9]]}]}").getBytes(StandardCharsets.UTF_8));
+        compare(json, unknown.toString(), "unknown endpoints");
+
+        System.out.println(failures == 0 ? "\n✓ All parallel loading checks passed"
+            : "\n✗ " + failures + " parallel loading checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void compare(JsonHandler json, String path, String name) {
+        DroneNetwork expected = json.loadNetwork(path);
+        for (int threads : THREADS) {
+            DroneNetwork actual = json.loadNetworkParallel(path, threads);
+            String difference = actual == null ? "failed to load" : difference(expected, actual);
+            check(difference == null, name + " with " + threads + " thread(s): "
+                + (difference == null ? expected.getNodes().size() + " nodes and "
+                    + expected.getEdgeStore().size() + " edges identical" : difference));
+        }
+    }
+
+    /** First difference between the two networks, or null if they are identical. */
+    private static String difference(DroneNetwork expected, DroneNetwork actual) {
+        if (expected.getIndexBound() != actual.getIndexBound()) {
+            return "index bound " + actual.getIndexBound() + " instead of " + expected.getIndexBound();
+        }
+        for (int index = 0; index < expected.getIndexBound(); index++) {
+            String a = describe(expected.getNode(index));
+            String b = describe(actual.getNode(index));
+            if (!a.equals(b)) {
+                return "node " + index + " is " + b + " instead of " + a;
+            }
+        }
+        if (expected.getEdgeStore().size() != actual.getEdgeStore().size()) {
+            return actual.getEdgeStore().size() + " edges instead of " + expected.getEdgeStore().size();
+        }
+        for (int edge = 0; edge < expected.getEdgeStore().size(); edge++) {
+            String a = describe(expected, edge);
+            String b = describe(actual, edge);
+            if (!a.equals(b)) {
+                return "edge " + edge + " is " + b + " instead of " + a;
+            }
+        }
+        return null;
+    }
+
+    private static String describe(Node node) {
+        return node == null ? "-" : node.getId() + " " + node.getType() + " " + node.getX() + " " + node.getY();
+    }
+
+    private static String describe(DroneNetwork network, int edge) {
+        EdgeStore store = network.getEdgeStore();
+        StringBuilder line = new StringBuilder()
+            .append(store.from(edge)).append(" -> ").append(store.to(edge))
+            .append(" ").append(store.energy(edge)).append(" ").append(store.capacity(edge))
+            .append(store.isBidirectional(edge) ? " bidirectional" : "")
+            .append(store.isRestricted(edge) ? " restricted" : "")
+            .append(store.isMirror(edge) ? " mirror" : "")
+            .append(store.isRemoved(edge) ? " removed" : "")
+            .append(" reverse ").append(store.reverse(edge));
+        int profile = network.getEnergyProfiles().profileOf(edge);
+        if (profile != EnergyProfiles.NONE) {
+            EnergyProfiles profiles = network.getEnergyProfiles();
+            for (int i = 0; i < profiles.breakpointCount(profile); i++) {
+                line.append(" ").append(profiles.breakpointTime(profile, i))
+                    .append(":").append(profiles.breakpointEnergy(profile, i));
+            }
+        }
+        return line.toString();
+    }
+
+    private static DroneNetwork randomNetwork(int nodeCount, int edgeCount, Random random) {
+        DroneNetwork network = new DroneNetwork();
+        Node[] nodes = new Node[nodeCount];
+        Node.NodeType[] types = Node.NodeType.values();
+        for (int i = 0; i < nodeCount; i++) {
+            String id = i % 97 == 0 ? "N\"" + i + "\\é" : "N" + i;
+            nodes[i] = new Node(id, types[random.nextInt(types.length)],
+                random.nextInt(100000) / 7.0, -random.nextDouble() * 1000);
+            network.addNode(nodes[i]);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            Node from = nodes[random.nextInt(nodeCount)];
+            Node to = random.nextInt(10) == 0 ? from : nodes[random.nextInt(nodeCount)];
+            Edge edge = new Edge(from, to, random.nextInt(80), 1 + random.nextInt(5),
+                random.nextInt(3) == 0, random.nextInt(10) == 0);
+            network.addEdge(edge);
+            if (random.nextInt(8) == 0) {
+                int base = 20 + random.nextInt(40);
+                edge.setEnergyProfile(new int[] {0, 420 + random.nextInt(120), 1020},
+                    new int[] {base, base + random.nextInt(30), base + 5});
+            }
+        }
+        return network;
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "  ✓ " : "  ✗ ") + what);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.dronedelivery.test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.dronedelivery.backend.CorridorReservations;
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.Node;
+
+/**
+ * Checks for CorridorReservations: all-or-nothing reservations, shared
+ * counters for both directions of a corridor, time slots on the ring, and
+ * corridor capacity under contention. In the contention test every thread
+ * keeps a shadow count of the places it holds; a shadow count above a
+ * corridor's capacity means the service granted a place it did not have.
+ */
+public class ReservationTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20000;
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== Testing Corridor Reservations ===\n");
+
+        // A ↔ B (2 places) ↔ C (1 place) ↔ D (3 places), and a restricted A → C
+        DroneNetwork network = new DroneNetwork();
+        Node a = new Node("A", Node.NodeType.DISTRIBUTOR, 0, 0);
+        Node b = new Node("B", Node.NodeType.CHARGING, 10, 0);
+        Node c = new Node("C", Node.NodeType.CHARGING, 20, 0);
+        Node d = new Node("D", Node.NodeType.DELIVERY, 30, 0);
+        network.addNode(a);
+        network.addNode(b);
+        network.addNode(c);
+        network.addNode(d);
+        network.addEdge(new Edge(a, b, 10, 2, true, false));
+        network.addEdge(new Edge(b, c, 10, 1, true, false));
+        network.addEdge(new Edge(c, d, 10, 3, true, false));
+        network.addEdge(new Edge(a, c, 5, 5, false, true));
+
+        System.out.println("=== All or nothing ===");
+        CorridorReservations reservations = new CorridorReservations(network.publishSnapshot());
+        int[] abcd = reservations.edgesOf(List.of("A", "B", "C", "D"));
+        int[] ab = reservations.edgesOf(List.of("A", "B"));
+        int[] dc = reservations.edgesOf(List.of("D", "C"));
+        CorridorReservations.Reservation first = reservations.reserve(abcd);
+        check(first != null, "A → B → C → D is granted");
+        check(reservations.reserve(abcd) == null, "a second A → B → C → D is refused (B ↔ C is full)");
+        check(reservations.occupancy(ab[0], 0) == 1, "the refused request gave its place on A ↔ B back");
+        check(reservations.reserve(dc) != null, "D → C shares C ↔ D's 3 places with the other direction");
+        check(reservations.occupancy(abcd[2], 0) == 2, "C ↔ D counts both directions together");
+        check(first.release() && !first.release(), "a reservation is released once");
+        check(reservations.occupancy(abcd[1], 0) == 0, "releasing frees B ↔ C");
+        check(reservations.edgesOf(List.of("A", "C")) == null, "the restricted A → C is never offered");
+
+        System.out.println("\n=== Time slots ===");
+        CorridorReservations slots = new CorridorReservations(network.publishSnapshot(), 4);
+        int bc = abcd[1];
+        CorridorReservations.Reservation early = slots.reserve(new int[] {bc}, 1);
+        check(early != null && slots.reserve(new int[] {bc}, 1) == null, "B ↔ C is full in slot 1");
+        check(slots.reserve(new int[] {bc}, 2) != null, "slot 2 has its own place");
+        CorridorReservations.Reservation lap = slots.reserve(new int[] {bc}, 5);
+        check(lap != null, "slot 5 reuses slot 1's counter, which starts over on the new lap");
+        check(slots.reserve(new int[] {bc}, 1) == null, "slot 1 is gone once its counter moved on");
+        early.release();
+        check(slots.occupancy(bc, 5) == 1, "releasing the slot 1 reservation leaves slot 5 alone");
+
+        System.out.println("\n=== Capacity under contention ===");
+        int[] dcba = reservations.edgesOf(List.of("D", "C", "B", "A"));
+        int[] back = new int[dcba.length];
+        for (int k = 0; k < back.length; k++) {
+            back[k] = dcba[dcba.length - 1 - k];
+        }
+        contend(new CorridorReservations(network.publishSnapshot()), abcd, back);
+
+        System.out.println(failures == 0 ? "\n✓ All reservation checks passed"
+            : "\n✗ " + failures + " reservation checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * THREADS threads reserve random sub-paths of the corridor chain, each
+     * corridor in a random direction, hold them briefly and release them.
+     * back[k] is the other direction of chain[k].
+     */
+    private static void contend(CorridorReservations reservations, int[] chain, int[] back)
+            throws InterruptedException {
+        int corridors = chain.length;
+        int[] capacity = new int[corridors];
+        for (int k = 0; k < corridors; k++) {
+            capacity[k] = reservations.capacity(chain[k]);
+        }
+        AtomicIntegerArray held = new AtomicIntegerArray(corridors);
+        AtomicInteger overbooked = new AtomicInteger();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int round = 0; round < ROUNDS; round++) {
+                    int from = random.nextInt(corridors);
+                    int to = from + random.nextInt(corridors - from);
+                    int[] edges = new int[to - from + 1];
+                    for (int k = from; k <= to; k++) {
+                        edges[k - from] = random.nextBoolean() ? chain[k] : back[k];
+                    }
+                    attempts.incrementAndGet();
+                    CorridorReservations.Reservation reservation = reservations.reserve(edges);
+                    if (reservation == null) {
+                        continue;
+                    }
+                    for (int k = from; k <= to; k++) {
+                        if (held.incrementAndGet(k) > capacity[k]) {
+                            overbooked.incrementAndGet();
+                        }
+                    }
+                    Thread.yield();
+                    for (int k = from; k <= to; k++) {
+                        held.decrementAndGet(k);
+                    }
+                    reservation.release();
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println("  " + reservations.getGranted() + " granted, " + reservations.getRefused() + " refused");
+        check(overbooked.get() == 0, "no corridor ever held more drones than its capacity");
+        check(reservations.getGranted() + reservations.getRefused() == attempts.get(),
+            "every request was either granted or refused");
+        check(reservations.getGranted() > 0 && reservations.getRefused() > 0, "the threads competed for places");
+        boolean empty = true;
+        for (int edge : chain) {
+            empty &= reservations.occupancy(edge, 0) == 0;
+        }
+        check(empty, "every counter is back to zero after the releases");
+    }
+
+    private static void check(boolean passed, String what) {
+        System.out.println((passed ? "  ✓ " : "  ✗ ") + what);
+        if (!passed) {
+            failures++;
+        }
+    }
+}
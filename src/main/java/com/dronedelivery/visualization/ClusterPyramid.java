@@ -0,0 +1,311 @@
+package com.dronedelivery.visualization;
+
+import java.util.Arrays;
+
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.Node;
+
+/**
+ * Grid aggregation of a network for zoomed-out rendering, built once per
+ * network version. Level l cuts the square around the network's bounding
+ * box into 2^l x 2^l cells. Every non-empty cell keeps its node count, the
+ * centroid of its nodes and its most common node type; the corridors
+ * between two cells are bundled into one cell-to-cell link with a count.
+ *
+ * Levels stop once cells hold only a few nodes each, so memory stays
+ * within a small multiple of the network size.
+ */
+final class ClusterPyramid {
+    // Finest level aims for about this many nodes per non-empty cell
+    private static final int MIN_NODES_PER_CELL = 4;
+    private static final int MAX_LEVEL = 14;
+
+    final double originX;
+    final double originY;
+    final double span;
+    final Level[] levels;
+
+    ClusterPyramid(DroneNetwork network, double[] worldX, double[] worldY) {
+        int n = network.getIndexBound();
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        int nodeCount = 0;
+        byte[] types = new byte[n];
+        for (int i = 0; i < n; i++) {
+            Node node = network.getNode(i);
+            if (node == null) {
+                types[i] = -1;
+                continue;
+            }
+            types[i] = (byte) node.getType().ordinal();
+            nodeCount++;
+            x0 = Math.min(x0, worldX[i]);
+            y0 = Math.min(y0, worldY[i]);
+            x1 = Math.max(x1, worldX[i]);
+            y1 = Math.max(y1, worldY[i]);
+        }
+        originX = nodeCount > 0 ? x0 : 0;
+        originY = nodeCount > 0 ? y0 : 0;
+        // Slightly larger than the box so the far edge falls inside the last cell
+        span = nodeCount > 0 ? Math.max(Math.max(x1 - x0, y1 - y0), 1) * (1 + 1e-9) : 1;
+
+        int levelCount = 1;
+        while (levelCount <= MAX_LEVEL && (1L << (2 * levelCount)) * MIN_NODES_PER_CELL <= nodeCount) {
+            levelCount++;
+        }
+        levels = new Level[levelCount];
+        for (int l = 0; l < levelCount; l++) {
+            levels[l] = new Level(this, l, network, worldX, worldY, types);
+        }
+    }
+
+    int finestLevel() {
+        return levels.length - 1;
+    }
+
+    double cellSize(int level) {
+        return span / (1 << level);
+    }
+
+    /** One grid resolution; cells and links are struct-of-arrays indexed by cell number. */
+    static final class Level {
+        final int side;
+        final double cellSize;
+        int cellCount;
+        int[] cellX;
+        int[] cellY;
+        int[] count;
+        double[] centroidX;
+        double[] centroidY;
+        byte[] dominantType;
+        // Links of cell c: linkTarget/linkCount/linkRestricted[linkFirst[c] .. linkFirst[c + 1] - 1]
+        int[] linkFirst;
+        int[] linkTarget;
+        int[] linkCount;
+        boolean[] linkRestricted;
+        int maxCount;
+        int maxLinkCount;
+
+        private final CellMap cells;
+
+        Level(ClusterPyramid pyramid, int level, DroneNetwork network,
+              double[] worldX, double[] worldY, byte[] types) {
+            side = 1 << level;
+            cellSize = pyramid.span / side;
+            int n = types.length;
+            cells = new CellMap(Math.min(n, (long) side * side));
+            int[] cellOf = new int[n];
+            cellX = new int[16];
+            cellY = new int[16];
+            count = new int[16];
+            centroidX = new double[16];
+            centroidY = new double[16];
+            int[] typeCounts = new int[16 * 3];
+
+            for (int i = 0; i < n; i++) {
+                if (types[i] < 0) {
+                    cellOf[i] = -1;
+                    continue;
+                }
+                int gx = (int) ((worldX[i] - pyramid.originX) / cellSize);
+                int gy = (int) ((worldY[i] - pyramid.originY) / cellSize);
+                int cell = cells.get(gx, gy);
+                if (cell < 0) {
+                    cell = cellCount++;
+                    if (cell == count.length) {
+                        int capacity = cell * 2;
+                        cellX = Arrays.copyOf(cellX, capacity);
+                        cellY = Arrays.copyOf(cellY, capacity);
+                        count = Arrays.copyOf(count, capacity);
+                        centroidX = Arrays.copyOf(centroidX, capacity);
+                        centroidY = Arrays.copyOf(centroidY, capacity);
+                        typeCounts = Arrays.copyOf(typeCounts, capacity * 3);
+                    }
+                    cells.put(gx, gy, cell);
+                    cellX[cell] = gx;
+                    cellY[cell] = gy;
+                }
+                cellOf[i] = cell;
+                count[cell]++;
+                centroidX[cell] += worldX[i];
+                centroidY[cell] += worldY[i];
+                typeCounts[cell * 3 + types[i]]++;
+            }
+
+            dominantType = new byte[cellCount];
+            for (int c = 0; c < cellCount; c++) {
+                centroidX[c] /= count[c];
+                centroidY[c] /= count[c];
+                maxCount = Math.max(maxCount, count[c]);
+                int best = 0;
+                for (int t = 1; t < 3; t++) {
+                    if (typeCounts[c * 3 + t] > typeCounts[c * 3 + best]) {
+                        best = t;
+                    }
+                }
+                dominantType[c] = (byte) best;
+            }
+            buildLinks(network.getEdgeStore(), cellOf);
+        }
+
+        /** Bundles corridors by unordered cell pair; both cells list the link. */
+        private void buildLinks(EdgeStore store, int[] cellOf) {
+            PairMap pairs = new PairMap(Math.max(16, store.liveCount() / 4));
+            for (int e = 0; e < store.size(); e++) {
+                if (store.isRemoved(e) || store.isMirror(e)) {
+                    continue;
+                }
+                int a = cellOf[store.from(e)];
+                int b = cellOf[store.to(e)];
+                if (a < 0 || b < 0 || a == b) {
+                    continue;
+                }
+                pairs.add(Math.min(a, b), Math.max(a, b), store.isRestricted(e));
+            }
+
+            linkFirst = new int[cellCount + 1];
+            for (int p = 0; p < pairs.size; p++) {
+                linkFirst[pairs.low[p] + 1]++;
+                linkFirst[pairs.high[p] + 1]++;
+            }
+            for (int c = 0; c < cellCount; c++) {
+                linkFirst[c + 1] += linkFirst[c];
+            }
+            int[] fill = Arrays.copyOf(linkFirst, cellCount);
+            linkTarget = new int[pairs.size * 2];
+            linkCount = new int[pairs.size * 2];
+            linkRestricted = new boolean[pairs.size * 2];
+            for (int p = 0; p < pairs.size; p++) {
+                int low = pairs.low[p];
+                int high = pairs.high[p];
+                // A bundle counts as restricted only if all its corridors are
+                boolean restricted = pairs.restricted[p] == pairs.count[p];
+                int slot = fill[low]++;
+                linkTarget[slot] = high;
+                linkCount[slot] = pairs.count[p];
+                linkRestricted[slot] = restricted;
+                slot = fill[high]++;
+                linkTarget[slot] = low;
+                linkCount[slot] = pairs.count[p];
+                linkRestricted[slot] = restricted;
+                maxLinkCount = Math.max(maxLinkCount, pairs.count[p]);
+            }
+        }
+
+        /** Cell number at grid coordinates, or -1 if the cell is empty. */
+        int cellAt(int gx, int gy) {
+            return cells.get(gx, gy);
+        }
+    }
+
+    /** Open-addressing map from grid coordinates to cell number. */
+    private static final class CellMap {
+        private long[] keys;
+        private int[] values;
+        private int mask;
+
+        CellMap(long expected) {
+            int capacity = Integer.highestOneBit((int) Math.max(16, Math.min(1 << 28, expected * 2)) - 1) << 1;
+            keys = new long[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, -1L);
+            mask = capacity - 1;
+        }
+
+        int get(int gx, int gy) {
+            long key = ((long) gx << 32) | (gy & 0xFFFFFFFFL);
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                if (keys[slot] == -1L) {
+                    return -1;
+                }
+            }
+        }
+
+        void put(int gx, int gy, int value) {
+            long key = ((long) gx << 32) | (gy & 0xFFFFFFFFL);
+            int slot = hash(key) & mask;
+            while (keys[slot] != -1L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /** Counts corridors per unordered cell pair; grows like CellMap but keeps insertion order. */
+    private static final class PairMap {
+        private long[] keys;
+        private int[] slots;
+        private int mask;
+        int size;
+        int[] low = new int[16];
+        int[] high = new int[16];
+        int[] count = new int[16];
+        int[] restricted = new int[16];
+
+        PairMap(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(16, expected * 2) - 1) << 1;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            Arrays.fill(keys, -1L);
+            mask = capacity - 1;
+        }
+
+        void add(int a, int b, boolean isRestricted) {
+            long key = ((long) a << 32) | b;
+            int slot = CellMap.hash(key) & mask;
+            while (keys[slot] != -1L && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            int pair;
+            if (keys[slot] == key) {
+                pair = slots[slot];
+            } else {
+                pair = size++;
+                if (pair == low.length) {
+                    low = Arrays.copyOf(low, pair * 2);
+                    high = Arrays.copyOf(high, pair * 2);
+                    count = Arrays.copyOf(count, pair * 2);
+                    restricted = Arrays.copyOf(restricted, pair * 2);
+                }
+                low[pair] = a;
+                high[pair] = b;
+                keys[slot] = key;
+                slots[slot] = pair;
+                if (size * 2 > keys.length) {
+                    rehash();
+                }
+            }
+            count[pair]++;
+            if (isRestricted) {
+                restricted[pair]++;
+            }
+        }
+
+        private void rehash() {
+            int capacity = keys.length * 2;
+            keys = new long[capacity];
+            slots = new int[capacity];
+            Arrays.fill(keys, -1L);
+            mask = capacity - 1;
+            for (int p = 0; p < size; p++) {
+                long key = ((long) low[p] << 32) | high[p];
+                int slot = CellMap.hash(key) & mask;
+                while (keys[slot] != -1L) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                slots[slot] = p;
+            }
+        }
+    }
+}
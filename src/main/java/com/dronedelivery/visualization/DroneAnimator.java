@@ -1,58 +1,451 @@
 package com.dronedelivery.visualization;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import com.dronedelivery.algorithms.EnergyConstrainedRouting;
 import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
 import com.dronedelivery.backend.Node;
 
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.AnimationTimer;
 import javafx.scene.canvas.GraphicsContext;
-import javafx.util.Duration;
+import javafx.scene.paint.Color;
 
+/**
+ * Frame-driven fleet animation. Drones fly their routes at a constant
+ * speed, draining their battery by the energy of the corridor they are on
+ * and recharging to full at their charging stops, and are drawn on the
+ * visualizer's overlay.
+ *
+ * All state lives in primitive arrays: routes as flat point lists with the
+ * cumulative length and energy at every point, drones as their route,
+ * distance flown, current segment and battery base. A frame advances every
+ * drone (segments only move forward, so finding the current one is
+ * amortized O(1)) and draws all of them in one pass per battery color,
+ * without allocating.
+ *
+ * Routes are shared by all drones with the same path and charging stops.
+ * A route no drone is flying any more stays cached until such routes hold
+ * most of the points; the live routes are then moved down over them.
+ */
 public class DroneAnimator {
     private DroneNetwork network;
-    private GraphicsContext gc;
-    private List<String> path;
+    private final GraphVisualizer visualizer;
     private int droneEnergyCapacity;
     private static final double DRONE_RADIUS = 8;
+    // Fleets larger than this are drawn as small dots
+    private static final int LARGE_FLEET = 100;
+    private static final double DOT_RADIUS = 2.5;
+    public static final int DEFAULT_ENERGY_CAPACITY = 500;
+    // World units per second
+    public static final double DEFAULT_SPEED = 100;
+    // Longest step simulated in one frame, so a stalled frame does not make drones jump
+    private static final double MAX_FRAME_SECONDS = 0.1;
+    private static final Color[] BATTERY_COLORS = {Color.DEEPSKYBLUE, Color.GOLD, Color.RED};
     
-    public DroneAnimator(GraphicsContext gc, DroneNetwork network) {
-        this.gc = gc;
+    // ===== Routes =====
+    // Points of route r are routeStart[r] .. routeStart[r + 1] - 1
+    private int routeCount;
+    private int[] routeStart = new int[17];
+    private int pointCount;
+    private double[] pointX = new double[256];
+    private double[] pointY = new double[256];
+    // Distance and energy from the start of the route to each point
+    private double[] pointDistance = new double[256];
+    private double[] pointEnergy = new double[256];
+    // The battery is recharged to full on reaching this point
+    private boolean[] pointRecharge = new boolean[256];
+    // Drones flying each route, and the route's key in routeIndex
+    private int[] routeDrones = new int[16];
+    private RouteKey[] routeKeys = new RouteKey[16];
+    private final Map<RouteKey, Integer> routeIndex = new HashMap<>();
+    // Points of routes no drone is flying
+    private int deadPoints;
+    
+    // ===== Drones =====
+    // Active drones are 0 .. droneCount - 1; a finished drone is replaced by the last one
+    private int droneCount;
+    private int[] droneRoute = new int[64];
+    private int[] droneSegment = new int[64];
+    private double[] droneDistance = new double[64];
+    private double[] droneSpeed = new double[64];
+    // Route energy at the last recharge; battery = capacity - (energy so far - base)
+    private double[] droneEnergyBase = new double[64];
+    private double[] droneX = new double[64];
+    private double[] droneY = new double[64];
+    private double[] droneBattery = new double[64];
+    private long completed;
+    
+    private final AnimationTimer timer = new AnimationTimer() {
+        @Override
+        public void handle(long now) {
+            double seconds = lastFrame < 0 ? 0 : Math.min(MAX_FRAME_SECONDS, (now - lastFrame) / 1e9);
+            lastFrame = now;
+            advance(seconds);
+            visualizer.drawOverlay();
+            if (droneCount == 0) {
+                stop();
+            }
+        }
+    };
+    private long lastFrame = -1;
+    private boolean running;
+    
+    /** Draws its drones on the visualizer's overlay. */
+    public DroneAnimator(GraphVisualizer visualizer, DroneNetwork network) {
+        this.visualizer = visualizer;
         this.network = network;
-        this.droneEnergyCapacity = 500;
+        this.droneEnergyCapacity = DEFAULT_ENERGY_CAPACITY;
+        visualizer.setDroneLayer(this);
     }
     
-    public Timeline createDeliveryAnimation(List<String> path, int totalEnergy) {
-        this.path = path;
-        
-        Timeline timeline = new Timeline();
-        timeline.setCycleCount(1);
+    public int getDroneEnergyCapacity() {
+        return droneEnergyCapacity;
+    }
+    
+    public void setDroneEnergyCapacity(int droneEnergyCapacity) {
+        this.droneEnergyCapacity = droneEnergyCapacity;
+    }
+    
+    /** Cheapest route the drone can fly on its battery, recharging at CHARGING nodes. */
+    public EnergyConstrainedRouting.RouteResult planRoute(String fromId, String toId) {
+        return EnergyConstrainedRouting.findRoute(network, fromId, toId, droneEnergyCapacity);
+    }
+    
+    // ===== Launching =====
+    
+    /** Sends a drone along a battery-feasible route; it recharges at the route's charging stops. */
+    public boolean launch(EnergyConstrainedRouting.RouteResult route) {
+        if (!route.feasible) {
+            return false;
+        }
+        return launch(route.path, route.chargingStops, DEFAULT_SPEED);
+    }
+    
+    /** Sends a drone along a path of node ids without recharging. */
+    public boolean launch(List<String> path) {
+        return launch(path, Collections.emptyList(), DEFAULT_SPEED);
+    }
+    
+    /**
+     * Sends a drone along a path at speed world units per second. Drones on
+     * the same path with the same charging stops share its geometry, which is
+     * built on first use. Returns false if the path has fewer than two known
+     * nodes.
+     */
+    public boolean launch(List<String> path, List<String> chargingStops, double speed) {
+        int route = routeFor(path, chargingStops);
+        if (route < 0) {
+            return false;
+        }
+        if (droneCount == droneRoute.length) {
+            growDrones();
+        }
+        int d = droneCount++;
+        int first = routeStart[route];
+        droneRoute[d] = route;
+        routeDrones[route]++;
+        droneSegment[d] = first;
+        droneDistance[d] = 0;
+        droneSpeed[d] = speed;
+        droneEnergyBase[d] = 0;
+        droneX[d] = pointX[first];
+        droneY[d] = pointY[first];
+        droneBattery[d] = droneEnergyCapacity;
+        return true;
+    }
+    
+    private int routeFor(List<String> path, List<String> chargingStops) {
+        RouteKey key = new RouteKey(path, chargingStops);
+        Integer known = routeIndex.get(key);
+        if (known != null) {
+            if (routeDrones[known] == 0) {
+                deadPoints -= routeStart[known + 1] - routeStart[known];
+            }
+            return known;
+        }
+        EdgeStore edges = network.getEdgeStore();
+        int start = pointCount;
+        int previous = -1;
+        for (String id : path) {
+            Node node = network.getNode(id);
+            if (node == null) {
+                continue;
+            }
+            int index = network.indexOf(id);
+            if (pointCount == pointX.length) {
+                growPoints();
+            }
+            int p = pointCount++;
+            pointX[p] = node.getX();
+            pointY[p] = node.getY();
+            pointRecharge[p] = chargingStops.contains(id);
+            if (p == start) {
+                pointDistance[p] = 0;
+                pointEnergy[p] = 0;
+            } else {
+                pointDistance[p] = pointDistance[p - 1]
+                    + Math.hypot(pointX[p] - pointX[p - 1], pointY[p] - pointY[p - 1]);
+                pointEnergy[p] = pointEnergy[p - 1] + corridorEnergy(edges, previous, index);
+            }
+            previous = index;
+        }
+        if (pointCount - start < 2) {
+            pointCount = start;
+            return -1;
+        }
+        if (routeCount + 2 > routeStart.length) {
+            routeStart = Arrays.copyOf(routeStart, routeStart.length * 2);
+        }
+        if (routeCount == routeDrones.length) {
+            routeDrones = Arrays.copyOf(routeDrones, routeCount * 2);
+            routeKeys = Arrays.copyOf(routeKeys, routeCount * 2);
+        }
+        routeStart[routeCount] = start;
+        routeStart[routeCount + 1] = pointCount;
+        routeDrones[routeCount] = 0;
+        routeKeys[routeCount] = key;
+        routeIndex.put(key, routeCount);
+        return routeCount++;
+    }
+    
+    /** Energy of the cheapest non-restricted corridor between two nodes (what the routing uses). */
+    private static int corridorEnergy(EdgeStore edges, int from, int to) {
+        int best = 0;
+        boolean found = false;
+        for (int e = edges.firstOut(from); e != EdgeStore.NONE; e = edges.nextOut(e)) {
+            if (edges.to(e) == to && !edges.isRestricted(e) && (!found || edges.energy(e) < best)) {
+                best = edges.energy(e);
+                found = true;
+            }
+        }
+        return best;
+    }
+    
+    // ===== Frame Loop =====
+    
+    /** Starts the frame loop; it stops by itself when the last drone has arrived. */
+    public void start() {
+        lastFrame = -1;
+        running = true;
+        timer.start();
+    }
+    
+    public void stop() {
+        running = false;
+        timer.stop();
+    }
+    
+    public boolean isRunning() {
+        return running && droneCount > 0;
+    }
+    
+    /** Removes all drones and routes. */
+    public void clear() {
+        droneCount = 0;
+        resetRoutes();
+        visualizer.drawOverlay();
+    }
+    
+    public int getActiveCount() {
+        return droneCount;
+    }
+    
+    /** Drones that reached the end of their route since this animator was created. */
+    public long getCompletedCount() {
+        return completed;
+    }
+    
+    /** Moves every drone seconds further along its route. */
+    public void advance(double seconds) {
+        int d = 0;
+        while (d < droneCount) {
+            int route = droneRoute[d];
+            int last = routeStart[route + 1] - 1;
+            double distance = droneDistance[d] + droneSpeed[d] * seconds;
+            int segment = droneSegment[d];
+            while (segment < last && pointDistance[segment + 1] <= distance) {
+                segment++;
+                if (pointRecharge[segment]) {
+                    droneEnergyBase[d] = pointEnergy[segment];
+                }
+            }
+            if (segment == last) {
+                // Arrived: the last drone takes this slot, which is processed next
+                completed++;
+                removeDrone(d);
+                continue;
+            }
+            double length = pointDistance[segment + 1] - pointDistance[segment];
+            double t = length > 0 ? (distance - pointDistance[segment]) / length : 0;
+            droneDistance[d] = distance;
+            droneSegment[d] = segment;
+            droneX[d] = pointX[segment] + t * (pointX[segment + 1] - pointX[segment]);
+            droneY[d] = pointY[segment] + t * (pointY[segment + 1] - pointY[segment]);
+            double used = pointEnergy[segment] + t * (pointEnergy[segment + 1] - pointEnergy[segment])
+                - droneEnergyBase[d];
+            droneBattery[d] = Math.max(0, droneEnergyCapacity - used);
+            d++;
+        }
+        if (droneCount == 0) {
+            resetRoutes();
+        } else if (deadPoints > pointCount / 2 && pointCount > 256) {
+            compactRoutes();
+        }
+    }
+    
+    private void removeDrone(int d) {
+        int route = droneRoute[d];
+        if (--routeDrones[route] == 0) {
+            deadPoints += routeStart[route + 1] - routeStart[route];
+        }
+        int last = --droneCount;
+        droneRoute[d] = droneRoute[last];
+        droneSegment[d] = droneSegment[last];
+        droneDistance[d] = droneDistance[last];
+        droneSpeed[d] = droneSpeed[last];
+        droneEnergyBase[d] = droneEnergyBase[last];
+        droneX[d] = droneX[last];
+        droneY[d] = droneY[last];
+        droneBattery[d] = droneBattery[last];
+    }
+    
+    /** With no drone in flight the route storage starts over, so it does not grow forever. */
+    private void resetRoutes() {
+        routeCount = 0;
+        pointCount = 0;
+        deadPoints = 0;
+        Arrays.fill(routeKeys, null);
+        routeIndex.clear();
+    }
+    
+    /** Drops the routes no drone is flying and moves the others down; O(points + drones). */
+    private void compactRoutes() {
+        int[] newRoute = new int[routeCount];
+        int[] oldStart = Arrays.copyOf(routeStart, routeCount + 1);
+        int live = 0;
+        int p = 0;
+        routeIndex.clear();
+        for (int r = 0; r < routeCount; r++) {
+            if (routeDrones[r] == 0) {
+                routeKeys[r] = null;
+                continue;
+            }
+            int length = oldStart[r + 1] - oldStart[r];
+            System.arraycopy(pointX, oldStart[r], pointX, p, length);
+            System.arraycopy(pointY, oldStart[r], pointY, p, length);
+            System.arraycopy(pointDistance, oldStart[r], pointDistance, p, length);
+            System.arraycopy(pointEnergy, oldStart[r], pointEnergy, p, length);
+            System.arraycopy(pointRecharge, oldStart[r], pointRecharge, p, length);
+            routeStart[live] = p;
+            routeDrones[live] = routeDrones[r];
+            routeKeys[live] = routeKeys[r];
+            routeIndex.put(routeKeys[live], live);
+            newRoute[r] = live++;
+            p += length;
+        }
+        routeStart[live] = p;
+        Arrays.fill(routeKeys, live, routeCount, null);
+        for (int d = 0; d < droneCount; d++) {
+            int r = droneRoute[d];
+            droneSegment[d] += routeStart[newRoute[r]] - oldStart[r];
+            droneRoute[d] = newRoute[r];
+        }
+        routeCount = live;
+        pointCount = p;
+        deadPoints = 0;
+    }
+    
+    // ===== Rendering =====
+    
+    /**
+     * Draws the drones visible on the canvas, called by the visualizer when
+     * it paints its overlay. One pass per battery color: above half, above
+     * a fifth, and below.
+     */
+    void render(GraphicsContext gc, double width, double height) {
+        if (droneCount == 0) {
+            return;
+        }
+        // The world-to-screen transform is affine: screen = origin + world * scale
+        double scale = visualizer.getScale();
+        double originX = visualizer.getScreenX(0);
+        double originY = visualizer.getScreenY(0);
+        double r = droneCount > LARGE_FLEET ? DOT_RADIUS : DRONE_RADIUS;
+        double full = droneEnergyCapacity;
         
-        // Calculate animation duration based on path distance
-        double totalDistance = calculatePathDistance(path);
-        double totalDuration = Math.max(1000, (totalDistance / 100) * 1000); // in milliseconds
+        for (int color = 0; color < BATTERY_COLORS.length; color++) {
+            gc.setFill(BATTERY_COLORS[color]);
+            for (int d = 0; d < droneCount; d++) {
+                double battery = droneBattery[d];
+                int level = battery > full / 2 ? 0 : battery > full / 5 ? 1 : 2;
+                if (level != color) continue;
+                double x = originX + droneX[d] * scale;
+                double y = originY + droneY[d] * scale;
+                if (x < -r || y < -r || x > width + r || y > height + r) continue;
+                gc.fillOval(x - r, y - r, 2 * r, 2 * r);
+            }
+        }
+        if (r == DRONE_RADIUS) {
+            gc.setStroke(Color.BLACK);
+            gc.setLineWidth(1);
+            for (int d = 0; d < droneCount; d++) {
+                double x = originX + droneX[d] * scale;
+                double y = originY + droneY[d] * scale;
+                gc.strokeOval(x - r, y - r, 2 * r, 2 * r);
+            }
+        }
+    }
+    
+    private void growPoints() {
+        int capacity = pointX.length * 2;
+        pointX = Arrays.copyOf(pointX, capacity);
+        pointY = Arrays.copyOf(pointY, capacity);
+        pointDistance = Arrays.copyOf(pointDistance, capacity);
+        pointEnergy = Arrays.copyOf(pointEnergy, capacity);
+        pointRecharge = Arrays.copyOf(pointRecharge, capacity);
+    }
+    
+    /** A path with its charging stops; drones flying the same one share a route. */
+    private static final class RouteKey {
+        private final List<String> path;
+        private final List<String> chargingStops;
+        private final int hash;
         
-        timeline.getKeyFrames().add(new KeyFrame(Duration.millis(0), e -> {
-            // Animation start
-        }));
+        RouteKey(List<String> path, List<String> chargingStops) {
+            this.path = List.copyOf(path);
+            this.chargingStops = List.copyOf(chargingStops);
+            this.hash = 31 * this.path.hashCode() + this.chargingStops.hashCode();
+        }
         
-        timeline.getKeyFrames().add(new KeyFrame(Duration.millis(totalDuration), e -> {
-            System.out.println("✓ Delivery animation completed!");
-        }));
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof RouteKey)) {
+                return false;
+            }
+            RouteKey other = (RouteKey) o;
+            return path.equals(other.path) && chargingStops.equals(other.chargingStops);
+        }
         
-        return timeline;
+        @Override
+        public int hashCode() {
+            return hash;
+        }
     }
     
-    private double calculatePathDistance(List<String> path) {
-        double distance = 0;
-        for (int i = 0; i < path.size() - 1; i++) {
-            Node from = network.getNode(path.get(i));
-            Node to = network.getNode(path.get(i + 1));
-            if (from != null && to != null) {
-                distance += Math.hypot(to.getX() - from.getX(), to.getY() - from.getY());
-            }
-        }
-        return distance;
+    private void growDrones() {
+        int capacity = droneRoute.length * 2;
+        droneRoute = Arrays.copyOf(droneRoute, capacity);
+        droneSegment = Arrays.copyOf(droneSegment, capacity);
+        droneDistance = Arrays.copyOf(droneDistance, capacity);
+        droneSpeed = Arrays.copyOf(droneSpeed, capacity);
+        droneEnergyBase = Arrays.copyOf(droneEnergyBase, capacity);
+        droneX = Arrays.copyOf(droneX, capacity);
+        droneY = Arrays.copyOf(droneY, capacity);
+        droneBattery = Arrays.copyOf(droneBattery, capacity);
     }
-}
\ No newline at end of file
+}
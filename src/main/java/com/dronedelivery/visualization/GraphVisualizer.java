@@ -1,51 +1,167 @@
 package com.dronedelivery.visualization;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 import com.dronedelivery.backend.DroneNetwork;
-import com.dronedelivery.backend.Edge;
+import com.dronedelivery.backend.EdgeStore;
 import com.dronedelivery.backend.Node;
 
+import javafx.application.Platform;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 
 public class GraphVisualizer {
     private Canvas canvas;
+    // Canvas stacked over the network for highlights; the same canvas if there is no separate one
+    private final Canvas overlay;
     private DroneNetwork network;
-    private static final double NODE_RADIUS = 15;
-    private double scaleX = 1.0;
-    private double scaleY = 1.0;
+    private static final double MIN_ZOOM = 0.05;
+    private static final double MAX_ZOOM = 200;
+    private static final Font EDGE_LABEL_FONT = new Font(NetworkStyle.EDGE_LABEL_SIZE);
+    private static final Font NODE_LABEL_FONT = new Font(NetworkStyle.NODE_LABEL_SIZE);
+    private static final double LABEL_MARGIN = 80;
+    
+    // ===== Level of detail =====
+    // Above this many visible nodes the view shows clusters instead of nodes
+    private static final int DETAIL_NODE_BUDGET = 3000;
+    // Label collision grid cell, in pixels
+    private static final int LABEL_CELL_PX = 8;
     private double offsetX = 10;
     private double offsetY = 10;
     
+    // ===== World-to-screen transform =====
+    // screen = offset + pan + (world - min) * fitScale * zoom
+    private double minX;
+    private double minY;
+    private double fitScale = 1.0;
+    private double zoom = 1.0;
+    private double panX;
+    private double panY;
+    private double scale = 1.0;
+    
+    // What the cached fit and spatial indexes were computed for
+    private long scaledVersion = -1;
+    // Edge ids in the indexes and label cache belong to one compaction epoch
+    private int indexedEpoch = -1;
+    private double scaledWidth = -1;
+    private double scaledHeight = -1;
+    
+    // ===== Spatial Indexes =====
+    // World position of each node index, and R-trees over nodes and drawn edges, per network version
+    private double[] worldX = new double[0];
+    private double[] worldY = new double[0];
+    private PackedRTree nodeTree;
+    private PackedRTree edgeTree;
+    // Tree item to node index / edge id
+    private int[] nodeIndexOf = new int[0];
+    private int[] edgeIdOf = new int[0];
+    private String[] edgeLabels = new String[0];
+    private ClusterPyramid pyramid;
+    private int nodeCount;
+    // Scale from which labels are drawn: nodes then sit about NetworkStyle.LABEL_SPACING_PX apart
+    private double labelScale;
+    
+    // Visible cells of the cluster level being drawn, and the label collision grid
+    private int[] visibleCells = new int[64];
+    private int visibleCellCount;
+    private int cellColumn0;
+    private int cellColumn1;
+    private int cellRow0;
+    private int cellRow1;
+    private boolean[] labelCells = new boolean[0];
+    private int labelColumns;
+    private int labelRows;
+    
+    // Ids found visible by the last viewport query; the collectors are allocated once
+    private int[] visibleNodes = new int[64];
+    private int visibleNodeCount;
+    private int[] visibleEdges = new int[64];
+    private int visibleEdgeCount;
+    private final IntConsumer nodeCollector = this::collectNode;
+    private final IntConsumer edgeCollector = this::collectEdge;
+    private final int[] picked = new int[1];
+    
+    // Reused arrowhead polygon
+    private final double[] arrowX = new double[3];
+    private final double[] arrowY = new double[3];
+    
+    // ===== Layers =====
+    // The network is cached as tiles in content pixels (screen minus pan), kept
+    // for one network version, scale and cluster level, least recently used first
+    private static final int TILE_SIZE = 256;
+    private static final int MAX_TILES = 64;
+    private final Map<Long, WritableImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final ArrayDeque<WritableImage> spareTiles = new ArrayDeque<>();
+    private final Canvas tileCanvas = new Canvas(TILE_SIZE, TILE_SIZE);
+    private final SnapshotParameters transparentSnapshot = new SnapshotParameters();
+    private long tilesVersion = -1;
+    private double tilesScale;
+    private int tilesLevel;
+    private WritableImage gridLayer;
+    private double gridWidth;
+    private double gridHeight;
+    // Size of what is being drawn: the canvas, or a tile while it is rendered
+    private double viewWidth;
+    private double viewHeight;
+    
+    // Overlay contents, repainted without touching the cached layers
+    private final List<List<String>> highlightPaths = new ArrayList<>();
+    private final List<Color> highlightColors = new ArrayList<>();
+    private Node selectedNode;
+    private DroneAnimator drones;
+    
     public GraphVisualizer(Canvas canvas, DroneNetwork network) {
+        this(canvas, canvas, network);
+    }
+    
+    /** Draws highlights on overlay, a transparent canvas of the same size stacked on top of canvas. */
+    public GraphVisualizer(Canvas canvas, Canvas overlay, DroneNetwork network) {
         this.canvas = canvas;
+        this.overlay = overlay;
         this.network = network;
-        calculateScale();
+        transparentSnapshot.setFill(Color.TRANSPARENT);
+        updateTransform();
     }
     
+    /**
+     * Fits the network's bounding box to the canvas. Only recomputed when the
+     * network version or the canvas size changed; pan and zoom stay as they are.
+     */
     private void calculateScale() {
-        if (network == null || network.getNodes().isEmpty()) {
+        scaledVersion = network.getVersion();
+        scaledWidth = canvas.getWidth();
+        scaledHeight = canvas.getHeight();
+        if (network.getNodes().isEmpty()) {
             return;
         }
         
         // Find min and max coordinates
-        double minX = Double.MAX_VALUE, maxX = Double.MIN_VALUE;
-        double minY = Double.MAX_VALUE, maxY = Double.MIN_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        minX = Double.MAX_VALUE;
+        minY = Double.MAX_VALUE;
         
-        for (Node node : network.getNodes().values()) {
+        for (int i = 0; i < network.getIndexBound(); i++) {
+            Node node = network.getNode(i);
+            if (node == null) continue;
             minX = Math.min(minX, node.getX());
             maxX = Math.max(maxX, node.getX());
             minY = Math.min(minY, node.getY());
             maxY = Math.max(maxY, node.getY());
         }
         
-        double canvasWidth = canvas.getWidth() - 2 * offsetX - 2 * NODE_RADIUS;
-        double canvasHeight = canvas.getHeight() - 2 * offsetY - 2 * NODE_RADIUS;
+        double canvasWidth = canvas.getWidth() - 2 * offsetX - 2 * NetworkStyle.NODE_RADIUS;
+        double canvasHeight = canvas.getHeight() - 2 * offsetY - 2 * NetworkStyle.NODE_RADIUS;
         
         double dataWidth = maxX - minX;
         double dataHeight = maxY - minY;
@@ -54,44 +170,457 @@ public class GraphVisualizer {
         if (dataWidth == 0) dataWidth = 1;
         if (dataHeight == 0) dataHeight = 1;
         
-        scaleX = canvasWidth / dataWidth;
-        scaleY = canvasHeight / dataHeight;
-        
         // Use uniform scaling to maintain aspect ratio
-        double scale = Math.min(scaleX, scaleY);
-        scaleX = scale;
-        scaleY = scale;
+        fitScale = Math.min(canvasWidth / dataWidth, canvasHeight / dataHeight);
+    }
+    
+    /**
+     * Refits after a network or canvas change, rebuilding the indexes only for
+     * a new network version or after a compaction renumbered the edges.
+     */
+    private void updateTransform() {
+        if (network == null) {
+            return;
+        }
+        if (network.getVersion() != scaledVersion || network.getCompactionEpoch() != indexedEpoch) {
+            calculateScale();
+            buildIndexes();
+        } else if (canvas.getWidth() != scaledWidth || canvas.getHeight() != scaledHeight) {
+            calculateScale();
+        }
+        scale = fitScale * zoom;
+    }
+    
+    /** Bulk loads the node and edge R-trees in world coordinates; O(n log n). */
+    private void buildIndexes() {
+        indexedEpoch = network.getCompactionEpoch();
+        int n = network.getIndexBound();
+        worldX = new double[n];
+        worldY = new double[n];
+        int count = 0;
+        int[] nodeIds = new int[n];
+        for (int i = 0; i < n; i++) {
+            Node node = network.getNode(i);
+            if (node != null) {
+                worldX[i] = node.getX();
+                worldY[i] = node.getY();
+                nodeIds[count++] = i;
+            }
+        }
+        double[] x0 = new double[count];
+        double[] y0 = new double[count];
+        for (int k = 0; k < count; k++) {
+            x0[k] = worldX[nodeIds[k]];
+            y0[k] = worldY[nodeIds[k]];
+        }
+        nodeTree = new PackedRTree(x0, y0, x0, y0, count);
+        nodeIndexOf = nodeIds;
+        nodeCount = count;
+        pyramid = new ClusterPyramid(network, worldX, worldY);
+        labelScale = NetworkStyle.labelScale(pyramid.span, count);
+        
+        // One box per drawn node pair, indexed by position in edgeIds
+        EdgeStore store = network.getEdgeStore();
+        int[] edgeIds = new int[store.liveCount()];
+        int edges = 0;
+        for (int id = 0; id < store.size(); id++) {
+            if (!store.isRemoved(id) && NetworkStyle.drawsPair(store, id)) {
+                edgeIds[edges++] = id;
+            }
+        }
+        double[] ex0 = new double[edges];
+        double[] ey0 = new double[edges];
+        double[] ex1 = new double[edges];
+        double[] ey1 = new double[edges];
+        for (int k = 0; k < edges; k++) {
+            int from = store.from(edgeIds[k]);
+            int to = store.to(edgeIds[k]);
+            ex0[k] = Math.min(worldX[from], worldX[to]);
+            ey0[k] = Math.min(worldY[from], worldY[to]);
+            ex1[k] = Math.max(worldX[from], worldX[to]);
+            ey1[k] = Math.max(worldY[from], worldY[to]);
+        }
+        edgeTree = new PackedRTree(ex0, ey0, ex1, ey1, edges);
+        edgeIdOf = edgeIds;
+        
+        if (edgeLabels.length < store.size()) {
+            edgeLabels = new String[store.size()];
+        } else {
+            Arrays.fill(edgeLabels, null);
+        }
+    }
+    
+    private void collectNode(int item) {
+        if (visibleNodeCount == visibleNodes.length) {
+            visibleNodes = Arrays.copyOf(visibleNodes, visibleNodeCount * 2);
+        }
+        visibleNodes[visibleNodeCount++] = nodeIndexOf[item];
+    }
+    
+    private void collectEdge(int item) {
+        if (visibleEdgeCount == visibleEdges.length) {
+            visibleEdges = Arrays.copyOf(visibleEdges, visibleEdgeCount * 2);
+        }
+        visibleEdges[visibleEdgeCount++] = edgeIdOf[item];
+    }
+    
+    /** Collects the nodes and edges that can show up on the canvas, with a margin of marginPx pixels. */
+    private void queryViewport(double marginPx) {
+        double x0 = toWorldX(-marginPx);
+        double y0 = toWorldY(-marginPx);
+        double x1 = toWorldX(viewWidth + marginPx);
+        double y1 = toWorldY(viewHeight + marginPx);
+        visibleNodeCount = 0;
+        visibleEdgeCount = 0;
+        nodeTree.search(x0, y0, x1, y1, nodeCollector);
+        edgeTree.search(x0, y0, x1, y1, edgeCollector);
+    }
+    
+    double getScreenX(double dataX) {
+        return offsetX + panX + (dataX - minX) * scale;
+    }
+    
+    double getScreenY(double dataY) {
+        return offsetY + panY + (dataY - minY) * scale;
     }
     
-    private double getScreenX(double dataX) {
-        // Find min X for centering
-        double minX = network.getNodes().values().stream()
-            .mapToDouble(Node::getX).min().orElse(0);
-        return offsetX + (dataX - minX) * scaleX;
+    /** Screen pixels per world unit. */
+    double getScale() {
+        return scale;
     }
     
-    private double getScreenY(double dataY) {
-        // Find min Y for centering
-        double minY = network.getNodes().values().stream()
-            .mapToDouble(Node::getY).min().orElse(0);
-        return offsetY + (dataY - minY) * scaleY;
+    private double toWorldX(double screenX) {
+        return minX + (screenX - offsetX - panX) / scale;
+    }
+    
+    private double toWorldY(double screenY) {
+        return minY + (screenY - offsetY - panY) / scale;
+    }
+    
+    // ===== Picking =====
+    
+    /** Node drawn at a canvas point (within its circle), or null. */
+    public Node nodeAt(double x, double y) {
+        updateTransform();
+        int found = nodeTree.nearest(toWorldX(x), toWorldY(y), 1, NetworkStyle.NODE_RADIUS / scale, picked);
+        return found == 0 ? null : network.getNode(nodeIndexOf[picked[0]]);
+    }
+    
+    /** Up to k nodes closest to a canvas point, nearest first. */
+    public List<Node> nearestNodes(double x, double y, int k) {
+        updateTransform();
+        int[] items = new int[k];
+        int found = nodeTree.nearest(toWorldX(x), toWorldY(y), k, Double.POSITIVE_INFINITY, items);
+        List<Node> nodes = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            nodes.add(network.getNode(nodeIndexOf[items[i]]));
+        }
+        return nodes;
+    }
+    
+    // ===== Pan and Zoom =====
+    
+    /** Moves the view by the given number of pixels. */
+    public void pan(double dx, double dy) {
+        panX += dx;
+        panY += dy;
+    }
+    
+    /** Zooms by factor around a canvas point, which stays where it is on screen. */
+    public void zoomAt(double factor, double x, double y) {
+        double newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        double applied = newZoom / zoom;
+        // Keep (x - offset - pan) proportional to the scale
+        panX = x - offsetX - (x - offsetX - panX) * applied;
+        panY = y - offsetY - (y - offsetY - panY) * applied;
+        zoom = newZoom;
+        scale = fitScale * zoom;
+    }
+    
+    /** Back to the whole network fitted to the canvas. */
+    public void resetView() {
+        zoom = 1.0;
+        panX = 0;
+        panY = 0;
+        scale = fitScale * zoom;
+    }
+    
+    public double getZoom() {
+        return zoom;
     }
     
     public void draw() {
         GraphicsContext gc = canvas.getGraphicsContext2D();
         
+        // Nodes may have been added or moved since the last draw
+        updateTransform();
+        // Whole-pixel pan so that cached tiles meet without seams
+        panX = Math.rint(panX);
+        panY = Math.rint(panY);
+        viewWidth = canvas.getWidth();
+        viewHeight = canvas.getHeight();
+        
         // Clear canvas with light gray background
         gc.setFill(Color.WHITE);
-        gc.fillRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.fillRect(0, 0, viewWidth, viewHeight);
         
-        // Draw grid
-        drawGrid(gc);
+        // Zoomed out: a density heatmap with one cluster per cell; close up: labels
+        int level = clusterLevel();
+        boolean detailed = level < 0 && scale >= labelScale;
+        
+        boolean layered = Platform.isFxApplicationThread();
+        if (layered) {
+            gc.drawImage(gridLayer(), 0, 0);
+            drawTiles(gc, level, detailed);
+        } else {
+            // Snapshots are only allowed on the FX thread; elsewhere draw directly
+            drawGrid(gc);
+            drawNetwork(gc, level, detailed);
+        }
+        
+        // Label culling depends on the whole view, so labels are not cached
+        if (detailed) {
+            if (layered) {
+                queryViewport(LABEL_MARGIN);
+            }
+            drawLabels(gc);
+        }
+        
+        if (overlay == canvas) {
+            paintOverlay(gc);
+        } else {
+            drawOverlay();
+        }
+    }
+    
+    /** Edges and nodes, or clusters, of the area viewWidth x viewHeight at the current pan. */
+    private void drawNetwork(GraphicsContext gc, int level, boolean detailed) {
+        if (level >= 0) {
+            // One extra cell around: cluster circles reach half a cell beyond their own
+            collectVisibleCells(pyramid.levels[level], 1);
+            drawClusters(gc, pyramid.levels[level]);
+            return;
+        }
+        // Room for node circles, arrowheads and labels that reach in from outside
+        queryViewport(LABEL_MARGIN);
         
         // Draw edges first (so they appear behind nodes)
-        drawEdges(gc);
+        drawEdges(gc, detailed);
         
         // Draw nodes on top
-        drawNodes(gc);
+        drawNodes(gc, detailed);
+    }
+    
+    // ===== Layer Cache =====
+    
+    /**
+     * Copies the cached tiles covering the canvas, rendering the missing
+     * ones. Panning only renders the tiles that scroll into view; the cache
+     * starts over when the network, the scale or the cluster level changes.
+     */
+    private void drawTiles(GraphicsContext gc, int level, boolean detailed) {
+        long version = network.getVersion();
+        if (version != tilesVersion || scale != tilesScale || level != tilesLevel) {
+            spareTiles.addAll(tiles.values());
+            tiles.clear();
+            tilesVersion = version;
+            tilesScale = scale;
+            tilesLevel = level;
+        }
+        int i0 = (int) Math.floor(-panX / TILE_SIZE);
+        int i1 = (int) Math.floor((viewWidth - 1 - panX) / TILE_SIZE);
+        int j0 = (int) Math.floor(-panY / TILE_SIZE);
+        int j1 = (int) Math.floor((viewHeight - 1 - panY) / TILE_SIZE);
+        for (int i = i0; i <= i1; i++) {
+            for (int j = j0; j <= j1; j++) {
+                long key = ((long) i << 32) | (j & 0xFFFFFFFFL);
+                WritableImage tile = tiles.get(key);
+                if (tile == null) {
+                    tile = renderTile(i, j, level, detailed);
+                    tiles.put(key, tile);
+                }
+                gc.drawImage(tile, (double) i * TILE_SIZE + panX, (double) j * TILE_SIZE + panY);
+            }
+        }
+    }
+    
+    private WritableImage renderTile(int i, int j, int level, boolean detailed) {
+        WritableImage image;
+        if (tiles.size() >= MAX_TILES) {
+            Iterator<WritableImage> eldest = tiles.values().iterator();
+            image = eldest.next();
+            eldest.remove();
+        } else {
+            image = spareTiles.isEmpty() ? new WritableImage(TILE_SIZE, TILE_SIZE) : spareTiles.pop();
+        }
+        
+        // Shift the view so the tile's corner is at (0, 0) of the tile canvas
+        double savedPanX = panX;
+        double savedPanY = panY;
+        panX = -(double) i * TILE_SIZE;
+        panY = -(double) j * TILE_SIZE;
+        viewWidth = TILE_SIZE;
+        viewHeight = TILE_SIZE;
+        GraphicsContext gc = tileCanvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, TILE_SIZE, TILE_SIZE);
+        drawNetwork(gc, level, detailed);
+        panX = savedPanX;
+        panY = savedPanY;
+        viewWidth = canvas.getWidth();
+        viewHeight = canvas.getHeight();
+        return tileCanvas.snapshot(transparentSnapshot, image);
+    }
+    
+    /** The grid does not move with the view; rendered again only when the canvas is resized. */
+    private WritableImage gridLayer() {
+        if (gridLayer == null || gridWidth != viewWidth || gridHeight != viewHeight) {
+            Canvas layer = new Canvas(viewWidth, viewHeight);
+            drawGrid(layer.getGraphicsContext2D());
+            gridLayer = layer.snapshot(transparentSnapshot, null);
+            gridWidth = viewWidth;
+            gridHeight = viewHeight;
+        }
+        return gridLayer;
+    }
+    
+    // ===== Level of Detail =====
+    
+    /**
+     * Cluster level to draw, or -1 to draw single nodes. Uses the finest level
+     * whose cells are still NetworkStyle.CLUSTER_CELL_PX wide and switches to nodes once
+     * those cells hold at most DETAIL_NODE_BUDGET visible nodes. Only the
+     * cells in view are looked at, so the cost depends on the canvas size.
+     */
+    private int clusterLevel() {
+        if (nodeCount <= DETAIL_NODE_BUDGET) {
+            return -1;
+        }
+        int level = 0;
+        while (level < pyramid.finestLevel() && pyramid.cellSize(level + 1) * scale >= NetworkStyle.CLUSTER_CELL_PX) {
+            level++;
+        }
+        collectVisibleCells(pyramid.levels[level], 0);
+        long visible = 0;
+        for (int k = 0; k < visibleCellCount; k++) {
+            visible += pyramid.levels[level].count[visibleCells[k]];
+        }
+        return visible > DETAIL_NODE_BUDGET ? level : -1;
+    }
+    
+    /** Non-empty cells in view, plus extraCells rings of cells around it. */
+    private void collectVisibleCells(ClusterPyramid.Level level, int extraCells) {
+        visibleCellCount = 0;
+        cellColumn0 = Math.max(0, cellColumn(level, toWorldX(0)) - extraCells);
+        cellColumn1 = Math.min(level.side - 1, cellColumn(level, toWorldX(viewWidth)) + extraCells);
+        cellRow0 = Math.max(0, cellRow(level, toWorldY(0)) - extraCells);
+        cellRow1 = Math.min(level.side - 1, cellRow(level, toWorldY(viewHeight)) + extraCells);
+        for (int gx = cellColumn0; gx <= cellColumn1; gx++) {
+            for (int gy = cellRow0; gy <= cellRow1; gy++) {
+                int cell = level.cellAt(gx, gy);
+                if (cell < 0) continue;
+                if (visibleCellCount == visibleCells.length) {
+                    visibleCells = Arrays.copyOf(visibleCells, visibleCellCount * 2);
+                }
+                visibleCells[visibleCellCount++] = cell;
+            }
+        }
+    }
+    
+    private int cellColumn(ClusterPyramid.Level level, double worldX) {
+        int gx = (int) Math.floor((worldX - pyramid.originX) / level.cellSize);
+        return Math.max(0, Math.min(level.side - 1, gx));
+    }
+    
+    private int cellRow(ClusterPyramid.Level level, double worldY) {
+        int gy = (int) Math.floor((worldY - pyramid.originY) / level.cellSize);
+        return Math.max(0, Math.min(level.side - 1, gy));
+    }
+    
+    /**
+     * Heat-shaded cells, bundled links between cells (wider for more
+     * corridors) and one circle per cell at the centroid of its nodes, in
+     * the color of its most common node type. Uses the cells collected by
+     * collectVisibleCells().
+     */
+    private void drawClusters(GraphicsContext gc, ClusterPyramid.Level level) {
+        double cellPx = level.cellSize * scale;
+        double logMax = Math.log(1 + level.maxCount);
+        for (int k = 0; k < visibleCellCount; k++) {
+            int cell = visibleCells[k];
+            gc.setFill(NetworkStyle.HEAT[NetworkStyle.heatShade(level.count[cell], logMax)]);
+            gc.fillRect(getScreenX(pyramid.originX + level.cellX[cell] * level.cellSize),
+                getScreenY(pyramid.originY + level.cellY[cell] * level.cellSize), cellPx, cellPx);
+        }
+        
+        // Each link once: from its lower cell, or from the visible end if the other is off screen
+        double logMaxLink = Math.log(1 + level.maxLinkCount);
+        for (int k = 0; k < visibleCellCount; k++) {
+            int cell = visibleCells[k];
+            for (int l = level.linkFirst[cell]; l < level.linkFirst[cell + 1]; l++) {
+                int other = level.linkTarget[l];
+                boolean otherVisible = level.cellX[other] >= cellColumn0 && level.cellX[other] <= cellColumn1
+                    && level.cellY[other] >= cellRow0 && level.cellY[other] <= cellRow1;
+                if (otherVisible && other < cell) continue;
+                gc.setStroke(level.linkRestricted[l] ? NetworkStyle.RESTRICTED_COLOR : NetworkStyle.EDGE_COLOR);
+                gc.setLineWidth(NetworkStyle.linkWidth(level.linkCount[l], logMaxLink));
+                gc.strokeLine(getScreenX(level.centroidX[cell]), getScreenY(level.centroidY[cell]),
+                    getScreenX(level.centroidX[other]), getScreenY(level.centroidY[other]));
+            }
+        }
+        
+        gc.setStroke(NetworkStyle.BORDER_COLOR);
+        gc.setLineWidth(NetworkStyle.borderWidth(false));
+        for (int k = 0; k < visibleCellCount; k++) {
+            int cell = visibleCells[k];
+            double r = NetworkStyle.clusterRadius(level.count[cell], logMax, cellPx);
+            double x = getScreenX(level.centroidX[cell]);
+            double y = getScreenY(level.centroidY[cell]);
+            gc.setFill(NetworkStyle.nodeColor(Node.NodeType.values()[level.dominantType[cell]]));
+            gc.fillOval(x - r, y - r, 2 * r, 2 * r);
+            gc.strokeOval(x - r, y - r, 2 * r, 2 * r);
+        }
+    }
+    
+    private void clearLabelCells() {
+        labelColumns = (int) (viewWidth / LABEL_CELL_PX) + 1;
+        labelRows = (int) (viewHeight / LABEL_CELL_PX) + 1;
+        if (labelCells.length < labelColumns * labelRows) {
+            labelCells = new boolean[labelColumns * labelRows];
+        } else {
+            Arrays.fill(labelCells, false);
+        }
+    }
+    
+    /**
+     * Reserves the screen box of a label if no earlier label overlaps it.
+     * Width is estimated from the character count, so no text is measured.
+     */
+    private boolean placeLabel(double x, double baseline, int length, double fontSize) {
+        double width = length * fontSize * 0.6;
+        int c0 = (int) Math.floor(x / LABEL_CELL_PX);
+        int c1 = (int) Math.floor((x + width) / LABEL_CELL_PX);
+        int r0 = (int) Math.floor((baseline - fontSize) / LABEL_CELL_PX);
+        int r1 = (int) Math.floor(baseline / LABEL_CELL_PX);
+        if (c1 < 0 || r1 < 0 || c0 >= labelColumns || r0 >= labelRows) {
+            return false; // off screen
+        }
+        c0 = Math.max(c0, 0);
+        r0 = Math.max(r0, 0);
+        c1 = Math.min(c1, labelColumns - 1);
+        r1 = Math.min(r1, labelRows - 1);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                if (labelCells[r * labelColumns + c]) {
+                    return false;
+                }
+            }
+        }
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                labelCells[r * labelColumns + c] = true;
+            }
+        }
+        return true;
     }
     
     private void drawGrid(GraphicsContext gc) {
@@ -99,150 +628,197 @@ public class GraphVisualizer {
         gc.setLineWidth(0.5);
         
         double gridSpacing = 50;
-        for (double x = 0; x < canvas.getWidth(); x += gridSpacing) {
-            gc.strokeLine(x, 0, x, canvas.getHeight());
+        for (double x = 0; x < viewWidth; x += gridSpacing) {
+            gc.strokeLine(x, 0, x, viewHeight);
         }
-        for (double y = 0; y < canvas.getHeight(); y += gridSpacing) {
-            gc.strokeLine(0, y, canvas.getWidth(), y);
+        for (double y = 0; y < viewHeight; y += gridSpacing) {
+            gc.strokeLine(0, y, viewWidth, y);
         }
     }
     
-    private void drawEdges(GraphicsContext gc) {
-        Set<String> drawnEdges = new HashSet<>();
+    /**
+     * Only the edges found by the last viewport query, straight from the edge
+     * store columns: no Edge views, fonts or per-frame strings. Plain
+     * corridors, restricted ones and then arrows and labels are drawn in
+     * separate passes so the stroke settings are set once per pass. Below
+     * the label zoom every corridor is a thin solid line without arrow or label.
+     */
+    private void drawEdges(GraphicsContext gc, boolean detailed) {
+        EdgeStore store = network.getEdgeStore();
         
-        for (Edge edge : network.getEdges()) {
-            // Create unique key for bidirectional edges (avoid drawing twice)
-            String edgeKey = edge.getFrom().getId() + "-" + edge.getTo().getId();
-            String reverseKey = edge.getTo().getId() + "-" + edge.getFrom().getId();
-            
-            if (drawnEdges.contains(edgeKey) || drawnEdges.contains(reverseKey)) {
-                continue;
+        gc.setStroke(NetworkStyle.EDGE_COLOR);
+        gc.setLineWidth(NetworkStyle.edgeWidth(false, detailed));
+        for (int k = 0; k < visibleEdgeCount; k++) {
+            int id = visibleEdges[k];
+            if (!store.isRestricted(id)) {
+                strokeEdge(gc, store, id);
             }
-            drawnEdges.add(edgeKey);
-            
-            Node from = edge.getFrom();
-            Node to = edge.getTo();
-            
-            double x1 = getScreenX(from.getX());
-            double y1 = getScreenY(from.getY());
-            double x2 = getScreenX(to.getX());
-            double y2 = getScreenY(to.getY());
-            
-            // Set color and style based on restriction
-            if (edge.isRestricted()) {
-                gc.setStroke(Color.RED);
-                gc.setLineWidth(2.5);
-                drawDashedLine(gc, x1, y1, x2, y2, 5, 5);
-            } else {
-                gc.setStroke(Color.DARKGRAY);
-                gc.setLineWidth(1.5);
-                gc.strokeLine(x1, y1, x2, y2);
+        }
+        
+        gc.setStroke(NetworkStyle.RESTRICTED_COLOR);
+        gc.setLineWidth(NetworkStyle.edgeWidth(true, detailed));
+        if (detailed) {
+            gc.setLineDashes(NetworkStyle.RESTRICTED_DASHES);
+        }
+        for (int k = 0; k < visibleEdgeCount; k++) {
+            int id = visibleEdges[k];
+            if (store.isRestricted(id)) {
+                strokeEdge(gc, store, id);
             }
-            
-            // Draw arrowhead for directed (non-bidirectional) edges
-            if (!edge.isBidirectional()) {
-                drawArrowHead(gc, x1, y1, x2, y2, edge.isRestricted());
+        }
+        gc.setLineDashes(null);
+        if (!detailed) {
+            return;
+        }
+        
+        // Draw arrowhead for directed (non-bidirectional) edges
+        for (int k = 0; k < visibleEdgeCount; k++) {
+            int id = visibleEdges[k];
+            if (!store.isBidirectional(id) && !store.isMirror(id)) {
+                drawArrowHead(gc, getScreenX(worldX[store.from(id)]), getScreenY(worldY[store.from(id)]),
+                    getScreenX(worldX[store.to(id)]), getScreenY(worldY[store.to(id)]), store.isRestricted(id));
             }
-            
-            // Draw edge label (energy and capacity)
-            double midX = (x1 + x2) / 2;
-            double midY = (y1 + y2) / 2;
-            String label = "E:" + edge.getEnergy() + " C:" + edge.getCapacity();
-            
-            gc.setFill(Color.BLACK);
-            gc.setFont(new Font(9));
-            gc.fillText(label, midX + 5, midY - 5);
         }
     }
     
-    private void drawDashedLine(GraphicsContext gc, double x1, double y1, double x2, double y2,
-                                double dashLength, double gapLength) {
-        double dx = x2 - x1;
-        double dy = y2 - y1;
-        double distance = Math.sqrt(dx * dx + dy * dy);
-        double unitDx = dx / distance;
-        double unitDy = dy / distance;
-        
-        double currentDist = 0;
-        boolean drawDash = true;
-        
-        while (currentDist < distance) {
-            double segmentLength = drawDash ? dashLength : gapLength;
-            double nextDist = Math.min(currentDist + segmentLength, distance);
-            
-            if (drawDash) {
-                double sx1 = x1 + unitDx * currentDist;
-                double sy1 = y1 + unitDy * currentDist;
-                double sx2 = x1 + unitDx * nextDist;
-                double sy2 = y1 + unitDy * nextDist;
-                gc.strokeLine(sx1, sy1, sx2, sy2);
+    /** Energy/capacity labels of the visible edges that do not collide with labels placed before. */
+    private void drawEdgeLabels(GraphicsContext gc) {
+        EdgeStore store = network.getEdgeStore();
+        gc.setFont(EDGE_LABEL_FONT);
+        gc.setFill(NetworkStyle.EDGE_LABEL_COLOR);
+        for (int k = 0; k < visibleEdgeCount; k++) {
+            int id = visibleEdges[k];
+            // Built once per network version
+            if (edgeLabels[id] == null) {
+                edgeLabels[id] = "E:" + store.energy(id) + " C:" + store.capacity(id);
+            }
+            double x = (getScreenX(worldX[store.from(id)]) + getScreenX(worldX[store.to(id)])) / 2 + 5;
+            double y = (getScreenY(worldY[store.from(id)]) + getScreenY(worldY[store.to(id)])) / 2 - 5;
+            if (placeLabel(x, y, edgeLabels[id].length(), EDGE_LABEL_FONT.getSize())) {
+                gc.fillText(edgeLabels[id], x, y);
             }
-            
-            currentDist = nextDist;
-            drawDash = !drawDash;
         }
     }
     
-    private void drawArrowHead(GraphicsContext gc, double x1, double y1, double x2, double y2, 
+    private void strokeEdge(GraphicsContext gc, EdgeStore store, int id) {
+        gc.strokeLine(getScreenX(worldX[store.from(id)]), getScreenY(worldY[store.from(id)]),
+            getScreenX(worldX[store.to(id)]), getScreenY(worldY[store.to(id)]));
+    }
+    
+    private void drawArrowHead(GraphicsContext gc, double x1, double y1, double x2, double y2,
                                boolean restricted) {
-        double size = 15;
+        double size = NetworkStyle.ARROW_SIZE;
         double angle = Math.atan2(y2 - y1, x2 - x1);
         
         double x = x2 - size * Math.cos(angle);
         double y = y2 - size * Math.sin(angle);
         
-        double x3 = x - size * Math.cos(angle - Math.PI / 6);
-        double y3 = y - size * Math.sin(angle - Math.PI / 6);
-        double x4 = x - size * Math.cos(angle + Math.PI / 6);
-        double y4 = y - size * Math.sin(angle + Math.PI / 6);
+        arrowX[0] = x2;
+        arrowY[0] = y2;
+        arrowX[1] = x - size * Math.cos(angle - Math.PI / 6);
+        arrowY[1] = y - size * Math.sin(angle - Math.PI / 6);
+        arrowX[2] = x - size * Math.cos(angle + Math.PI / 6);
+        arrowY[2] = y - size * Math.sin(angle + Math.PI / 6);
         
-        Color arrowColor = restricted ? Color.RED : Color.DARKGRAY;
+        Color arrowColor = restricted ? NetworkStyle.RESTRICTED_COLOR : NetworkStyle.EDGE_COLOR;
         gc.setFill(arrowColor);
-        gc.fillPolygon(
-            new double[]{x2, x3, x4},
-            new double[]{y2, y3, y4},
-            3
-        );
+        gc.fillPolygon(arrowX, arrowY, 3);
     }
     
-    private void drawNodes(GraphicsContext gc) {
-        for (Node node : network.getNodes().values()) {
-            double x = getScreenX(node.getX());
-            double y = getScreenY(node.getY());
+    private void drawNodes(GraphicsContext gc, boolean detailed) {
+        double radius = detailed ? NetworkStyle.NODE_RADIUS : NetworkStyle.SMALL_NODE_RADIUS;
+        gc.setStroke(NetworkStyle.BORDER_COLOR);
+        gc.setLineWidth(NetworkStyle.borderWidth(detailed));
+        for (int k = 0; k < visibleNodeCount; k++) {
+            int i = visibleNodes[k];
+            Node node = network.getNode(i);
+            double x = getScreenX(worldX[i]);
+            double y = getScreenY(worldY[i]);
             
             // Draw node circle with color based on type
-            Color color = getNodeColor(node.getType());
+            Color color = NetworkStyle.nodeColor(node.getType());
             gc.setFill(color);
-            gc.fillOval(x - NODE_RADIUS, y - NODE_RADIUS, NODE_RADIUS * 2, NODE_RADIUS * 2);
+            gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
             
             // Draw border
-            gc.setStroke(Color.BLACK);
-            gc.setLineWidth(2);
-            gc.strokeOval(x - NODE_RADIUS, y - NODE_RADIUS, NODE_RADIUS * 2, NODE_RADIUS * 2);
-            
-            // Draw label
-            gc.setFill(Color.WHITE);
-            gc.setFont(new Font(10));
-            gc.fillText(node.getId(), x, y + 4);
+            gc.strokeOval(x - radius, y - radius, radius * 2, radius * 2);
         }
     }
     
-    private Color getNodeColor(Node.NodeType type) {
-        switch (type) {
-            case DISTRIBUTOR:
-                return Color.DODGERBLUE;
-            case CHARGING:
-                return Color.LIMEGREEN;
-            case DELIVERY:
-                return Color.CRIMSON;
-            default:
-                return Color.GRAY;
+    /** Node labels first, then edge labels, each left out where it would overlap one already placed. */
+    private void drawLabels(GraphicsContext gc) {
+        clearLabelCells();
+        gc.setFont(NODE_LABEL_FONT);
+        gc.setFill(NetworkStyle.NODE_LABEL_COLOR);
+        for (int k = 0; k < visibleNodeCount; k++) {
+            int i = visibleNodes[k];
+            String id = network.getNode(i).getId();
+            double x = getScreenX(worldX[i]);
+            double y = getScreenY(worldY[i]) + 4;
+            if (placeLabel(x, y, id.length(), NODE_LABEL_FONT.getSize())) {
+                gc.fillText(id, x, y);
+            }
         }
+        drawEdgeLabels(gc);
     }
     
+    // ===== Overlay =====
+    
+    /** Adds a highlighted route to the overlay; it stays until clearHighlights(). */
     public void drawPath(List<String> path, Color color) {
-        GraphicsContext gc = canvas.getGraphicsContext2D();
-        
+        highlightPaths.add(path);
+        highlightColors.add(color);
+        updateTransform();
+        strokePath(overlay.getGraphicsContext2D(), path, color);
+    }
+    
+    /** Removes all route highlights and the selection. */
+    public void clearHighlights() {
+        highlightPaths.clear();
+        highlightColors.clear();
+        selectedNode = null;
+        drawOverlay();
+    }
+    
+    /** Rings a node on the overlay; null clears the selection. */
+    public void setSelectedNode(Node node) {
+        selectedNode = node;
+        drawOverlay();
+    }
+    
+    /** Drones drawn on top of the highlights; set by the animator itself. */
+    void setDroneLayer(DroneAnimator drones) {
+        this.drones = drones;
+    }
+    
+    /** Repaints only the overlay, unless it shares the canvas with the network. */
+    public void drawOverlay() {
+        if (overlay == canvas) {
+            draw();
+            return;
+        }
+        updateTransform();
+        GraphicsContext gc = overlay.getGraphicsContext2D();
+        gc.clearRect(0, 0, overlay.getWidth(), overlay.getHeight());
+        paintOverlay(gc);
+    }
+    
+    private void paintOverlay(GraphicsContext gc) {
+        for (int i = 0; i < highlightPaths.size(); i++) {
+            strokePath(gc, highlightPaths.get(i), highlightColors.get(i));
+        }
+        if (selectedNode != null) {
+            double r = NetworkStyle.NODE_RADIUS + 4;
+            gc.setStroke(Color.GOLD);
+            gc.setLineWidth(3);
+            gc.strokeOval(getScreenX(selectedNode.getX()) - r, getScreenY(selectedNode.getY()) - r, 2 * r, 2 * r);
+        }
+        if (drones != null) {
+            drones.render(gc, gc.getCanvas().getWidth(), gc.getCanvas().getHeight());
+        }
+    }
+    
+    private void strokePath(GraphicsContext gc, List<String> path, Color color) {
         gc.setStroke(color);
         gc.setLineWidth(4);
         
@@ -251,11 +827,8 @@ public class GraphVisualizer {
             Node to = network.getNode(path.get(i + 1));
             
             if (from != null && to != null) {
-                double x1 = getScreenX(from.getX());
-                double y1 = getScreenY(from.getY());
-                double x2 = getScreenX(to.getX());
-                double y2 = getScreenY(to.getY());
-                gc.strokeLine(x1, y1, x2, y2);
+                gc.strokeLine(getScreenX(from.getX()), getScreenY(from.getY()),
+                    getScreenX(to.getX()), getScreenY(to.getY()));
             }
         }
     }
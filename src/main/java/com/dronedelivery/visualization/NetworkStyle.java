@@ -0,0 +1,100 @@
+package com.dronedelivery.visualization;
+
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.Node;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Styling rules shared by the interactive view (GraphVisualizer) and the
+ * headless map export (TileExporter), so both draw a network the same way.
+ * Sizes are in screen pixels. Only plain values and colors live here; no
+ * fonts or other objects that need the JavaFX toolkit.
+ */
+final class NetworkStyle {
+    static final double NODE_RADIUS = 15;
+    // Node radius below the label zoom
+    static final double SMALL_NODE_RADIUS = 4;
+    static final double ARROW_SIZE = 15;
+    static final double[] RESTRICTED_DASHES = {5, 5};
+    static final double NODE_LABEL_SIZE = 10;
+    static final double EDGE_LABEL_SIZE = 9;
+    // Labels (and full node/edge styling) once nodes are this far apart on screen
+    static final double LABEL_SPACING_PX = 60;
+    // Cluster cells are drawn at least this many pixels wide
+    static final double CLUSTER_CELL_PX = 24;
+
+    static final Color EDGE_COLOR = Color.DARKGRAY;
+    static final Color RESTRICTED_COLOR = Color.RED;
+    static final Color BORDER_COLOR = Color.BLACK;
+    static final Color NODE_LABEL_COLOR = Color.WHITE;
+    static final Color EDGE_LABEL_COLOR = Color.BLACK;
+    // Cluster cell shading, from sparse to dense
+    static final Color[] HEAT = new Color[16];
+    static {
+        for (int i = 0; i < HEAT.length; i++) {
+            HEAT[i] = Color.rgb(255, 140, 0, 0.06 + 0.5 * i / (HEAT.length - 1));
+        }
+    }
+
+    private NetworkStyle() {
+    }
+
+    static Color nodeColor(Node.NodeType type) {
+        switch (type) {
+            case DISTRIBUTOR:
+                return Color.DODGERBLUE;
+            case CHARGING:
+                return Color.LIMEGREEN;
+            case DELIVERY:
+                return Color.CRIMSON;
+            default:
+                return Color.GRAY;
+        }
+    }
+
+    /** True for the one edge id that stands for its node pair when corridors are drawn. */
+    static boolean drawsPair(EdgeStore store, int id) {
+        // Draw each node pair once (avoid drawing bidirectional and parallel edges twice):
+        // only the first edge of the pair, unless the opposite direction came earlier
+        int fromIndex = store.from(id);
+        int toIndex = store.to(id);
+        if (store.find(fromIndex, toIndex) != id) {
+            return false;
+        }
+        int opposite = store.find(toIndex, fromIndex);
+        return fromIndex == toIndex || opposite == EdgeStore.NONE || opposite > id;
+    }
+
+    static double edgeWidth(boolean restricted, boolean detailed) {
+        if (!detailed) {
+            return 1;
+        }
+        return restricted ? 2.5 : 1.5;
+    }
+
+    static double borderWidth(boolean detailed) {
+        return detailed ? 2 : 1;
+    }
+
+    /** Heat shade of a cluster cell holding count nodes; logMax = log(1 + largest count). */
+    static int heatShade(int count, double logMax) {
+        return (int) ((HEAT.length - 1) * Math.log(1 + count) / logMax);
+    }
+
+    /** Width of a bundled link of count corridors; logMaxLink = log(1 + largest link count). */
+    static double linkWidth(int count, double logMaxLink) {
+        return 0.5 + 3.5 * Math.log(1 + count) / logMaxLink;
+    }
+
+    /** Radius of a cluster circle: grows with its node count, up to half the cell. */
+    static double clusterRadius(int count, double logMax, double cellPx) {
+        double maxRadius = Math.max(SMALL_NODE_RADIUS, Math.min(NODE_RADIUS, cellPx / 2));
+        return SMALL_NODE_RADIUS + (maxRadius - SMALL_NODE_RADIUS) * Math.log(1 + count) / logMax;
+    }
+
+    /** Screen scale from which labels are drawn, for nodeCount nodes spread over span world units. */
+    static double labelScale(double span, int nodeCount) {
+        return LABEL_SPACING_PX / (span / Math.sqrt(Math.max(1, nodeCount)));
+    }
+}
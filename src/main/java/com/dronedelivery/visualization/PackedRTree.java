@@ -0,0 +1,290 @@
+package com.dronedelivery.visualization;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Static R-tree over axis-aligned boxes, bulk loaded with Sort-Tile-Recursive
+ * packing in O(n log n) and stored in flat primitive arrays.
+ *
+ * Positions 0 .. n - 1 hold the items in packed order; each higher level
+ * follows the one below, with a node's children in one contiguous run of at
+ * most NODE_SIZE positions. For an item position, ref is the item id; for an
+ * inner node it is the position of its first child. Queries reuse scratch
+ * arrays owned by the tree, so a tree must be queried by one thread at a time;
+ * view() gives other threads their own handle on the same boxes.
+ */
+public final class PackedRTree {
+    public static final int NODE_SIZE = 16;
+
+    private final int itemCount;
+    private final double[] minX;
+    private final double[] minY;
+    private final double[] maxX;
+    private final double[] maxY;
+    private final int[] ref;
+    // levelEnd[l]: first position after level l (level 0 holds the items)
+    private final int[] levelEnd;
+
+    // Query scratch: search stack of positions, and the best-first queue of nearest()
+    private int[] stack = new int[64];
+    private double[] queueDistance = new double[64];
+    private int[] queuePosition = new int[64];
+    private int queueSize;
+
+    /** Bulk loads boxes; item i is (boxMinX[i], boxMinY[i]) - (boxMaxX[i], boxMaxY[i]). */
+    public PackedRTree(double[] boxMinX, double[] boxMinY, double[] boxMaxX, double[] boxMaxY, int count) {
+        itemCount = count;
+        int total = count;
+        int levels = 1;
+        for (int size = count; size > 1; levels++) {
+            size = (size + NODE_SIZE - 1) / NODE_SIZE;
+            total += size;
+        }
+        minX = new double[Math.max(total, 1)];
+        minY = new double[minX.length];
+        maxX = new double[minX.length];
+        maxY = new double[minX.length];
+        ref = new int[minX.length];
+        levelEnd = new int[levels];
+
+        int[] order = strOrder(boxMinX, boxMinY, boxMaxX, boxMaxY, count);
+        for (int i = 0; i < count; i++) {
+            int item = order[i];
+            minX[i] = boxMinX[item];
+            minY[i] = boxMinY[item];
+            maxX[i] = boxMaxX[item];
+            maxY[i] = boxMaxY[item];
+            ref[i] = item;
+        }
+        levelEnd[0] = count;
+
+        // Parents of each run of NODE_SIZE positions, level by level
+        int levelStart = 0;
+        int position = count;
+        for (int level = 1; level < levels; level++) {
+            int end = levelEnd[level - 1];
+            for (int child = levelStart; child < end; child += NODE_SIZE) {
+                double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+                double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+                int last = Math.min(child + NODE_SIZE, end);
+                for (int c = child; c < last; c++) {
+                    x0 = Math.min(x0, minX[c]);
+                    y0 = Math.min(y0, minY[c]);
+                    x1 = Math.max(x1, maxX[c]);
+                    y1 = Math.max(y1, maxY[c]);
+                }
+                minX[position] = x0;
+                minY[position] = y0;
+                maxX[position] = x1;
+                maxY[position] = y1;
+                ref[position] = child;
+                position++;
+            }
+            levelStart = end;
+            levelEnd[level] = position;
+        }
+    }
+
+    /** Shares the packed boxes of tree; only the query scratch is new. */
+    private PackedRTree(PackedRTree tree) {
+        itemCount = tree.itemCount;
+        minX = tree.minX;
+        minY = tree.minY;
+        maxX = tree.maxX;
+        maxY = tree.maxY;
+        ref = tree.ref;
+        levelEnd = tree.levelEnd;
+    }
+
+    /** The same tree with separate query scratch, for querying it from another thread. */
+    public PackedRTree view() {
+        return new PackedRTree(this);
+    }
+
+    public int size() {
+        return itemCount;
+    }
+
+    /**
+     * Sort-Tile-Recursive order: sort by center x, cut into vertical slices
+     * of about sqrt(leaves) leaves each, and sort every slice by center y.
+     * Centers are quantized to 31 bits so both sorts are on packed longs.
+     */
+    private static int[] strOrder(double[] boxMinX, double[] boxMinY, double[] boxMaxX, double[] boxMaxY,
+                                  int count) {
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; i++) {
+            x0 = Math.min(x0, boxMinX[i]);
+            y0 = Math.min(y0, boxMinY[i]);
+            x1 = Math.max(x1, boxMaxX[i]);
+            y1 = Math.max(y1, boxMaxY[i]);
+        }
+        double spanX = x1 > x0 ? x1 - x0 : 1;
+        double spanY = y1 > y0 ? y1 - y0 : 1;
+
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            double center = (boxMinX[i] + boxMaxX[i]) / 2;
+            keys[i] = ((long) ((center - x0) / spanX * Integer.MAX_VALUE) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        int leaves = (count + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(leaves));
+        for (int start = 0; start < count; start += sliceSize) {
+            int end = Math.min(start + sliceSize, count);
+            for (int k = start; k < end; k++) {
+                int i = (int) keys[k];
+                double center = (boxMinY[i] + boxMaxY[i]) / 2;
+                keys[k] = ((long) ((center - y0) / spanY * Integer.MAX_VALUE) << 32) | i;
+            }
+            Arrays.sort(keys, start, end);
+        }
+
+        int[] order = new int[count];
+        for (int k = 0; k < count; k++) {
+            order[k] = (int) keys[k];
+        }
+        return order;
+    }
+
+    /** Calls visitor with every item whose box intersects the query box. */
+    public void search(double queryMinX, double queryMinY, double queryMaxX, double queryMaxY,
+                       IntConsumer visitor) {
+        if (itemCount == 0) {
+            return;
+        }
+        int root = ref.length - 1;
+        if (root < itemCount) {
+            // A single item is its own root
+            if (intersects(root, queryMinX, queryMinY, queryMaxX, queryMaxY)) {
+                visitor.accept(ref[root]);
+            }
+            return;
+        }
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int node = stack[--top];
+            int first = ref[node];
+            int last = Math.min(first + NODE_SIZE, childLevelEnd(node));
+            for (int c = first; c < last; c++) {
+                if (!intersects(c, queryMinX, queryMinY, queryMaxX, queryMaxY)) {
+                    continue;
+                }
+                if (c < itemCount) {
+                    visitor.accept(ref[c]);
+                } else {
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, top * 2);
+                    }
+                    stack[top++] = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * Up to k items nearest to (x, y) by distance to their boxes, closest
+     * first, written to out; returns how many were found. Items farther than
+     * maxDistance are ignored.
+     */
+    public int nearest(double x, double y, int k, double maxDistance, int[] out) {
+        if (itemCount == 0 || k <= 0) {
+            return 0;
+        }
+        double maxSquared = maxDistance * maxDistance;
+        int found = 0;
+        queueSize = 0;
+        int root = ref.length - 1;
+        push(distanceSquared(root, x, y), root);
+        while (queueSize > 0 && found < k) {
+            double distance = queueDistance[0];
+            int position = pop();
+            if (distance > maxSquared) {
+                break;
+            }
+            if (position < itemCount) {
+                // Popped in order of distance, so no unexplored box is closer
+                out[found++] = ref[position];
+                continue;
+            }
+            int first = ref[position];
+            int last = Math.min(first + NODE_SIZE, childLevelEnd(position));
+            for (int c = first; c < last; c++) {
+                double d = distanceSquared(c, x, y);
+                if (d <= maxSquared) {
+                    push(d, c);
+                }
+            }
+        }
+        return found;
+    }
+
+    /** End of the level holding the children of an inner node. */
+    private int childLevelEnd(int node) {
+        int level = 0;
+        while (levelEnd[level] <= node) {
+            level++;
+        }
+        return levelEnd[level - 1];
+    }
+
+    private boolean intersects(int p, double x0, double y0, double x1, double y1) {
+        return minX[p] <= x1 && maxX[p] >= x0 && minY[p] <= y1 && maxY[p] >= y0;
+    }
+
+    private double distanceSquared(int p, double x, double y) {
+        double dx = x < minX[p] ? minX[p] - x : x > maxX[p] ? x - maxX[p] : 0;
+        double dy = y < minY[p] ? minY[p] - y : y > maxY[p] ? y - maxY[p] : 0;
+        return dx * dx + dy * dy;
+    }
+
+    // Binary min-heap on distance for nearest()
+
+    private void push(double distance, int position) {
+        if (queueSize == queueDistance.length) {
+            queueDistance = Arrays.copyOf(queueDistance, queueSize * 2);
+            queuePosition = Arrays.copyOf(queuePosition, queueSize * 2);
+        }
+        int i = queueSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (queueDistance[parent] <= distance) {
+                break;
+            }
+            queueDistance[i] = queueDistance[parent];
+            queuePosition[i] = queuePosition[parent];
+            i = parent;
+        }
+        queueDistance[i] = distance;
+        queuePosition[i] = position;
+    }
+
+    private int pop() {
+        int top = queuePosition[0];
+        double lastDistance = queueDistance[--queueSize];
+        int lastPosition = queuePosition[queueSize];
+        int i = 0;
+        int half = queueSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < queueSize && queueDistance[child + 1] < queueDistance[child]) {
+                child++;
+            }
+            if (lastDistance <= queueDistance[child]) {
+                break;
+            }
+            queueDistance[i] = queueDistance[child];
+            queuePosition[i] = queuePosition[child];
+            i = child;
+        }
+        if (queueSize > 0) {
+            queueDistance[i] = lastDistance;
+            queuePosition[i] = lastPosition;
+        }
+        return top;
+    }
+}
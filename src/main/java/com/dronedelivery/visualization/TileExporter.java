@@ -0,0 +1,861 @@
+package com.dronedelivery.visualization;
+
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import com.dronedelivery.algorithms.ProgressMonitor;
+import com.dronedelivery.backend.DroneNetwork;
+import com.dronedelivery.backend.EdgeStore;
+import com.dronedelivery.backend.Node;
+import com.dronedelivery.io.JsonHandler;
+
+/**
+ * Headless export of a network map as a zoomable pyramid of PNG tiles, for
+ * the nightly map images. Needs no JavaFX canvas: tiles are rasterized with
+ * Java2D, several at a time on a thread pool, each into its worker's own
+ * TILE_SIZE image that is written to disk before the next tile is drawn, so
+ * memory holds one tile per worker whatever the size of the map.
+ *
+ * Level z cuts the square around the network into 2^z x 2^z tiles, stored as
+ * directory/z/x/y.png (the usual web map layout). The drawing follows
+ * NetworkStyle, the rules GraphVisualizer uses: heat-shaded clusters while a
+ * tile would hold too many nodes, then nodes colored by type and corridors
+ * with restricted ones in red, and from the label zoom on full-size nodes,
+ * dashed restricted corridors, arrows and labels.
+ *
+ * Tiles with nothing on or near them are not written. Outside cluster mode a
+ * tile can only have content if its parent had, so from the first level of
+ * single nodes on only the children of non-empty tiles are drawn.
+ */
+public final class TileExporter {
+    public static final int TILE_SIZE = 256;
+    public static final int MAX_LEVEL = 15;
+    // Above this many nodes in the busiest tile, a level shows clusters
+    private static final int TILE_NODE_BUDGET = 400;
+    // Empty border around the network, as a share of its extent
+    private static final double BORDER = 1.0 / 64;
+    // Tiles pick up nodes, arrows and labels reaching this far in from outside; at most
+    // doubling from one level to the next, so a child's surroundings lie in its parent's
+    private static final double DETAIL_MARGIN_PX = 80;
+    private static final double MARGIN_PX = DETAIL_MARGIN_PX / 2;
+    // Corridors are clipped to the tile plus this much, enough for their width
+    private static final double CLIP_MARGIN_PX = 4;
+    // Cluster levels draw about this many pixels of bundled links per tile, strongest first
+    private static final double LINK_PX_PER_TILE = 64 * TILE_SIZE;
+    // Link widths are rounded to quarter pixels, so strokes can be reused
+    private static final int LINK_STROKE_STEPS = 4;
+    // Edge labels only on corridors at least this long on screen, so they never crowd
+    private static final double EDGE_LABEL_MIN_PX = 100;
+
+    // PNG writer quality, high for a fast deflate level: on map tiles the files come out
+    // no larger than with the default level, in about two thirds of the time
+    private static final float PNG_QUALITY = 0.9f;
+
+    private static final java.awt.Color BACKGROUND = java.awt.Color.WHITE;
+    private static final java.awt.Color EDGE_COLOR = awt(NetworkStyle.EDGE_COLOR);
+    private static final java.awt.Color RESTRICTED_COLOR = awt(NetworkStyle.RESTRICTED_COLOR);
+    private static final java.awt.Color BORDER_COLOR = awt(NetworkStyle.BORDER_COLOR);
+    private static final java.awt.Color NODE_LABEL_COLOR = awt(NetworkStyle.NODE_LABEL_COLOR);
+    private static final java.awt.Color EDGE_LABEL_COLOR = awt(NetworkStyle.EDGE_LABEL_COLOR);
+    private static final java.awt.Color[] NODE_COLORS = new java.awt.Color[Node.NodeType.values().length];
+    private static final java.awt.Color[] HEAT = new java.awt.Color[NetworkStyle.HEAT.length];
+    static {
+        for (Node.NodeType type : Node.NodeType.values()) {
+            NODE_COLORS[type.ordinal()] = awt(NetworkStyle.nodeColor(type));
+        }
+        for (int i = 0; i < HEAT.length; i++) {
+            HEAT[i] = awt(NetworkStyle.HEAT[i]);
+        }
+    }
+
+    public static class ExportResult {
+        public int levels;
+        public long tilesWritten;
+        public long bytesWritten;
+        public long elapsedMillis;
+        public String details;
+
+        public ExportResult(int levels, long tilesWritten, long bytesWritten, long elapsedMillis, String details) {
+            this.levels = levels;
+            this.tilesWritten = tilesWritten;
+            this.bytesWritten = bytesWritten;
+            this.elapsedMillis = elapsedMillis;
+            this.details = details;
+        }
+    }
+
+    // ===== Network, indexed once per export and then only read =====
+    private final DroneNetwork network;
+    private final EdgeStore store;
+    private final double[] worldX;
+    private final double[] worldY;
+    private final byte[] nodeType;
+    private final int nodeCount;
+    private final PackedRTree nodeTree;
+    private final int[] nodeIndexOf;
+    private final PackedRTree edgeTree;
+    private final int[] edgeIdOf;
+    private final ClusterPyramid pyramid;
+    private final double labelScale;
+    // Tile grid: a square of span world units from (originX, originY)
+    private final double originX;
+    private final double originY;
+    private final double span;
+    // Bundled links of each cluster level, one box per link drawn, built on first use
+    private final PackedRTree[] linkTrees;
+    private final int[][] linkCellOf;
+    private final int[][] linkIdOf;
+
+    private TileExporter(DroneNetwork network) {
+        this.network = network;
+        this.store = network.getEdgeStore();
+        int n = network.getIndexBound();
+        worldX = new double[n];
+        worldY = new double[n];
+        nodeType = new byte[n];
+        int[] nodeIds = new int[n];
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = network.getNode(i);
+            if (node != null) {
+                worldX[i] = node.getX();
+                worldY[i] = node.getY();
+                nodeType[i] = (byte) node.getType().ordinal();
+                nodeIds[count++] = i;
+            }
+        }
+        double[] x0 = new double[count];
+        double[] y0 = new double[count];
+        for (int k = 0; k < count; k++) {
+            x0[k] = worldX[nodeIds[k]];
+            y0[k] = worldY[nodeIds[k]];
+        }
+        nodeTree = new PackedRTree(x0, y0, x0, y0, count);
+        nodeIndexOf = nodeIds;
+        nodeCount = count;
+
+        int[] edgeIds = new int[store.liveCount()];
+        int edges = 0;
+        for (int id = 0; id < store.size(); id++) {
+            if (!store.isRemoved(id) && NetworkStyle.drawsPair(store, id)) {
+                edgeIds[edges++] = id;
+            }
+        }
+        double[] ex0 = new double[edges];
+        double[] ey0 = new double[edges];
+        double[] ex1 = new double[edges];
+        double[] ey1 = new double[edges];
+        for (int k = 0; k < edges; k++) {
+            int from = store.from(edgeIds[k]);
+            int to = store.to(edgeIds[k]);
+            ex0[k] = Math.min(worldX[from], worldX[to]);
+            ey0[k] = Math.min(worldY[from], worldY[to]);
+            ex1[k] = Math.max(worldX[from], worldX[to]);
+            ey1[k] = Math.max(worldY[from], worldY[to]);
+        }
+        edgeTree = new PackedRTree(ex0, ey0, ex1, ey1, edges);
+        edgeIdOf = edgeIds;
+
+        pyramid = new ClusterPyramid(network, worldX, worldY);
+        labelScale = NetworkStyle.labelScale(pyramid.span, count);
+        span = pyramid.span * (1 + 2 * BORDER);
+        originX = pyramid.originX - pyramid.span * BORDER;
+        originY = pyramid.originY - pyramid.span * BORDER;
+        linkTrees = new PackedRTree[pyramid.levels.length];
+        linkCellOf = new int[pyramid.levels.length][];
+        linkIdOf = new int[pyramid.levels.length][];
+    }
+
+    // ===== Export =====
+
+    /** Exports levels 0 .. maxLevel without progress reporting. */
+    public static ExportResult export(DroneNetwork network, File directory, int maxLevel, int threads)
+            throws IOException {
+        return export(network, directory, maxLevel, threads, ProgressMonitor.NONE);
+    }
+
+    /**
+     * Renders levels 0 .. maxLevel into directory on threads workers. The
+     * network must not change during the export. Progress is reported per
+     * tile (each level an equal share); cancelling stops after the tiles in
+     * progress and leaves the tiles written so far.
+     */
+    public static ExportResult export(DroneNetwork network, File directory, int maxLevel, int threads,
+                                      ProgressMonitor monitor) throws IOException {
+        long start = System.currentTimeMillis();
+        maxLevel = Math.max(0, Math.min(MAX_LEVEL, maxLevel));
+        threads = Math.max(1, threads);
+        TileExporter exporter = new TileExporter(network);
+        AtomicLong bytes = new AtomicLong();
+        long written = 0;
+        StringBuilder levelLines = new StringBuilder();
+
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "tile-worker-" + created.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        TileRenderer[] renderers = new TileRenderer[threads];
+        try {
+            // Candidate tiles of the current level as (x << 32) | y; null means all of them
+            long[] candidates = null;
+            int candidateCount = 0;
+            for (int z = 0; z <= maxLevel; z++) {
+                int clusterLevel = exporter.clusterLevelFor(z);
+                if (clusterLevel >= 0 || candidates == null) {
+                    // Cluster links shift between levels, so only single-node levels prune
+                    candidates = null;
+                    candidateCount = 1 << (2 * z);
+                }
+                TileLevel level = exporter.new TileLevel(z, clusterLevel, candidates, candidateCount,
+                    ProgressMonitor.step(monitor, z, maxLevel + 1));
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    if (renderers[t] == null) {
+                        renderers[t] = exporter.new TileRenderer();
+                    }
+                    TileRenderer renderer = renderers[t];
+                    futures.add(pool.submit(() -> {
+                        renderer.renderLevel(level, directory, bytes);
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    await(future);
+                }
+
+                // Children of this level's non-empty tiles are the next level's candidates
+                long tiles = 0;
+                for (TileRenderer renderer : renderers) {
+                    tiles += renderer.hitCount;
+                }
+                long[] children = new long[Math.toIntExact(tiles * 4)];
+                int childCount = 0;
+                for (TileRenderer renderer : renderers) {
+                    for (int k = 0; k < renderer.hitCount; k++) {
+                        long x = renderer.hits[k] >>> 32;
+                        long y = renderer.hits[k] & 0xffffffffL;
+                        children[childCount++] = (2 * x) << 32 | (2 * y);
+                        children[childCount++] = (2 * x + 1) << 32 | (2 * y);
+                        children[childCount++] = (2 * x) << 32 | (2 * y + 1);
+                        children[childCount++] = (2 * x + 1) << 32 | (2 * y + 1);
+                    }
+                    renderer.hitCount = 0;
+                }
+                Arrays.sort(children, 0, childCount);
+                candidates = clusterLevel >= 0 ? null : children;
+                candidateCount = childCount;
+                written += tiles;
+                levelLines.append("  Level ").append(z).append(": ").append(tiles).append(" tiles")
+                    .append(clusterLevel >= 0 ? " (clusters)" : level.detailed ? " (labels)" : "")
+                    .append("\n");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        StringBuilder details = new StringBuilder();
+        details.append("Map Tile Export:\n");
+        details.append("Directory: ").append(directory).append("\n");
+        details.append("Nodes: ").append(exporter.nodeCount).append(" | Workers: ").append(threads).append("\n");
+        details.append(levelLines);
+        details.append("Tiles written: ").append(written).append(" (")
+            .append(bytes.get() / 1024).append(" KB) in ").append(elapsed).append(" ms");
+        return new ExportResult(maxLevel + 1, written, bytes.get(), elapsed, details.toString());
+    }
+
+    /** First level at which labels are drawn, i.e. the deepest level worth exporting. */
+    public static int defaultMaxLevel(DroneNetwork network) {
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        int count = 0;
+        for (int i = 0; i < network.getIndexBound(); i++) {
+            Node node = network.getNode(i);
+            if (node != null) {
+                x0 = Math.min(x0, node.getX());
+                y0 = Math.min(y0, node.getY());
+                x1 = Math.max(x1, node.getX());
+                y1 = Math.max(y1, node.getY());
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        // Same extent and label zoom as the exporter computes from its cluster pyramid
+        double extent = Math.max(Math.max(x1 - x0, y1 - y0), 1);
+        double labelScale = NetworkStyle.labelScale(extent, count);
+        int z = 0;
+        while (z < MAX_LEVEL && TILE_SIZE * (double) (1 << z) / (extent * (1 + 2 * BORDER)) < labelScale) {
+            z++;
+        }
+        return z;
+    }
+
+    private static void await(Future<?> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Tile export interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** Screen pixels per world unit at level z. */
+    private double scale(int z) {
+        return TILE_SIZE * (double) (1 << z) / span;
+    }
+
+    /**
+     * Cluster level drawn at tile level z, or -1 for single nodes. Like the
+     * interactive view: clusters while the busiest tile-sized cell holds more
+     * than the budget, using the finest level whose cells are still
+     * NetworkStyle.CLUSTER_CELL_PX wide.
+     */
+    private int clusterLevelFor(int z) {
+        if (nodeCount <= TILE_NODE_BUDGET || z > pyramid.finestLevel()
+                || pyramid.levels[z].maxCount <= TILE_NODE_BUDGET) {
+            return -1;
+        }
+        double scale = scale(z);
+        int level = 0;
+        while (level < pyramid.finestLevel()
+                && pyramid.cellSize(level + 1) * scale >= NetworkStyle.CLUSTER_CELL_PX) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Fewest corridors a bundled link of cluster level l needs to be drawn at
+     * tile level z. Where many long corridors cross the map their links would
+     * cover every tile many times over, so the weakest links are left out until
+     * the total length fits LINK_PX_PER_TILE per tile. Whether a link is drawn
+     * depends only on the link, so tiles still meet at their seams.
+     */
+    private int minLinkCount(int l, double scale, int z) {
+        ClusterPyramid.Level level = pyramid.levels[l];
+        double[] lengthByCount = new double[level.maxLinkCount + 1];
+        for (int cell = 0; cell < level.cellCount; cell++) {
+            for (int k = level.linkFirst[cell]; k < level.linkFirst[cell + 1]; k++) {
+                int other = level.linkTarget[k];
+                if (other <= cell) continue;
+                lengthByCount[level.linkCount[k]] += scale * Math.hypot(level.centroidX[other] - level.centroidX[cell],
+                    level.centroidY[other] - level.centroidY[cell]);
+            }
+        }
+        double budget = LINK_PX_PER_TILE * (1L << (2 * z));
+        double total = 0;
+        for (int count = level.maxLinkCount; count > 0; count--) {
+            total += lengthByCount[count];
+            if (total > budget) {
+                return count + 1;
+            }
+        }
+        return 1;
+    }
+
+    /** Index of the links of a cluster level; each link once, from its lower cell. */
+    private synchronized PackedRTree linkTree(int l) {
+        if (linkTrees[l] != null) {
+            return linkTrees[l];
+        }
+        ClusterPyramid.Level level = pyramid.levels[l];
+        int links = 0;
+        for (int cell = 0; cell < level.cellCount; cell++) {
+            for (int k = level.linkFirst[cell]; k < level.linkFirst[cell + 1]; k++) {
+                if (level.linkTarget[k] > cell) links++;
+            }
+        }
+        int[] cells = new int[links];
+        int[] ids = new int[links];
+        double[] x0 = new double[links];
+        double[] y0 = new double[links];
+        double[] x1 = new double[links];
+        double[] y1 = new double[links];
+        int m = 0;
+        for (int cell = 0; cell < level.cellCount; cell++) {
+            for (int k = level.linkFirst[cell]; k < level.linkFirst[cell + 1]; k++) {
+                int other = level.linkTarget[k];
+                if (other <= cell) continue;
+                cells[m] = cell;
+                ids[m] = k;
+                x0[m] = Math.min(level.centroidX[cell], level.centroidX[other]);
+                y0[m] = Math.min(level.centroidY[cell], level.centroidY[other]);
+                x1[m] = Math.max(level.centroidX[cell], level.centroidX[other]);
+                y1[m] = Math.max(level.centroidY[cell], level.centroidY[other]);
+                m++;
+            }
+        }
+        linkCellOf[l] = cells;
+        linkIdOf[l] = ids;
+        linkTrees[l] = new PackedRTree(x0, y0, x1, y1, links);
+        return linkTrees[l];
+    }
+
+    private static java.awt.Color awt(javafx.scene.paint.Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(),
+            (float) color.getBlue(), (float) color.getOpacity());
+    }
+
+    /** One tile level as handed to the workers, which take tiles from it in turn. */
+    private final class TileLevel {
+        final int z;
+        final int clusterLevel;
+        final boolean detailed;
+        final double scale;
+        final int minLinkCount;
+        final long[] candidates;
+        final int candidateCount;
+        final ProgressMonitor monitor;
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+
+        TileLevel(int z, int clusterLevel, long[] candidates, int candidateCount, ProgressMonitor monitor) {
+            this.z = z;
+            this.clusterLevel = clusterLevel;
+            this.scale = scale(z);
+            this.detailed = clusterLevel < 0 && scale >= labelScale;
+            this.minLinkCount = clusterLevel < 0 ? 0 : minLinkCount(clusterLevel, scale, z);
+            this.candidates = candidates;
+            this.candidateCount = candidateCount;
+            this.monitor = monitor;
+        }
+    }
+
+    // ===== Rendering =====
+
+    /**
+     * A worker's tile image and scratch buffers, reused for every tile it
+     * draws. screen = (world - origin) * scale - tile offset.
+     */
+    private final class TileRenderer {
+        private final BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+        private final Graphics2D g = image.createGraphics();
+        private final Line2D.Double line = new Line2D.Double();
+        private final Ellipse2D.Double circle = new Ellipse2D.Double();
+        private final Rectangle2D.Double rect = new Rectangle2D.Double();
+        private final Path2D.Double arrow = new Path2D.Double();
+        // Writes through a buffered stream: ImageIO.write(image, file) makes many small unbuffered writes
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        private final ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        private final Font nodeFont = new Font(Font.SANS_SERIF, Font.PLAIN, (int) NetworkStyle.NODE_LABEL_SIZE);
+        private final Font edgeFont = new Font(Font.SANS_SERIF, Font.PLAIN, (int) NetworkStyle.EDGE_LABEL_SIZE);
+        private final Stroke[] strokes = new Stroke[2];
+        private final Stroke[] detailedStrokes = new Stroke[2];
+        private final Stroke thinBorder = new BasicStroke((float) NetworkStyle.borderWidth(false));
+        private final Stroke border = new BasicStroke((float) NetworkStyle.borderWidth(true));
+        private Stroke[] linkStrokes = new Stroke[4 * LINK_STROKE_STEPS + 1];
+        private final float[] dashes = new float[NetworkStyle.RESTRICTED_DASHES.length];
+        private float dashPeriod;
+
+        // Own handles on the shared trees, whose queries are single-threaded
+        private final PackedRTree nodeView = nodeTree.view();
+        private final PackedRTree edgeView = edgeTree.view();
+        private final PackedRTree[] linkViews = new PackedRTree[linkTrees.length];
+
+        private int[] nodes = new int[256];
+        private int nodeHits;
+        private int[] edges = new int[256];
+        private int edgeHits;
+        private int[] links = new int[64];
+        private int linkHits;
+        // Non-empty tiles of the current level, (x << 32) | y
+        private long[] hits = new long[64];
+        private int hitCount;
+
+        private double scale;
+        private double shiftX;
+        private double shiftY;
+        // Visible part of the line being clipped, as parameters along it
+        private double clipFrom;
+        private double clipTo;
+
+        TileRenderer() {
+            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            writeParam.setCompressionQuality(PNG_QUALITY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            for (int i = 0; i < dashes.length; i++) {
+                dashes[i] = (float) NetworkStyle.RESTRICTED_DASHES[i];
+                dashPeriod += dashes[i];
+            }
+            strokes[0] = new BasicStroke((float) NetworkStyle.edgeWidth(false, false));
+            strokes[1] = new BasicStroke((float) NetworkStyle.edgeWidth(true, false));
+            detailedStrokes[0] = new BasicStroke((float) NetworkStyle.edgeWidth(false, true));
+            detailedStrokes[1] = new BasicStroke((float) NetworkStyle.edgeWidth(true, true),
+                BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, dashes, 0);
+        }
+
+        /** Takes tiles from the level until none are left, writing the non-empty ones. */
+        void renderLevel(TileLevel level, File directory, AtomicLong bytes) throws IOException {
+            int side = 1 << level.z;
+            for (int k = level.next.getAndIncrement(); k < level.candidateCount; k = level.next.getAndIncrement()) {
+                int x;
+                int y;
+                if (level.candidates == null) {
+                    x = k / side;
+                    y = k % side;
+                } else {
+                    x = (int) (level.candidates[k] >>> 32);
+                    y = (int) level.candidates[k];
+                }
+                if (render(level, x, y)) {
+                    File column = new File(directory, level.z + File.separator + x);
+                    Files.createDirectories(column.toPath());
+                    File file = new File(column, y + ".png");
+                    try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+                         ImageOutputStream out = new MemoryCacheImageOutputStream(stream)) {
+                        writer.setOutput(out);
+                        writer.write(null, new IIOImage(image, null, null), writeParam);
+                    }
+                    bytes.addAndGet(file.length());
+                    if (hitCount == hits.length) {
+                        hits = Arrays.copyOf(hits, hitCount * 2);
+                    }
+                    hits[hitCount++] = (long) x << 32 | y;
+                }
+                level.monitor.checkpoint(level.done.incrementAndGet(), level.candidateCount);
+            }
+        }
+
+        /** Draws tile (x, y) of the level; false if nothing falls on it. */
+        private boolean render(TileLevel level, int x, int y) {
+            scale = level.scale;
+            shiftX = originX * scale + (double) x * TILE_SIZE;
+            shiftY = originY * scale + (double) y * TILE_SIZE;
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+            if (level.clusterLevel >= 0) {
+                return drawClusters(pyramid.levels[level.clusterLevel], level.clusterLevel, level.minLinkCount);
+            }
+            double marginPx = level.detailed ? DETAIL_MARGIN_PX : MARGIN_PX;
+            query(marginPx);
+            if (nodeHits == 0 && edgeHits == 0) {
+                return false;
+            }
+            drawEdges(level.detailed);
+            drawNodes(level.detailed);
+            if (level.detailed) {
+                drawLabels();
+            }
+            return true;
+        }
+
+        private double screenX(double worldX) {
+            return worldX * scale - shiftX;
+        }
+
+        private double screenY(double worldY) {
+            return worldY * scale - shiftY;
+        }
+
+        private double worldX(double screenX) {
+            return (screenX + shiftX) / scale;
+        }
+
+        private double worldY(double screenY) {
+            return (screenY + shiftY) / scale;
+        }
+
+        private void query(double marginPx) {
+            double x0 = worldX(-marginPx);
+            double y0 = worldY(-marginPx);
+            double x1 = worldX(TILE_SIZE + marginPx);
+            double y1 = worldY(TILE_SIZE + marginPx);
+            nodeHits = 0;
+            edgeHits = 0;
+            nodeView.search(x0, y0, x1, y1, item -> {
+                if (nodeHits == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, nodeHits * 2);
+                }
+                nodes[nodeHits++] = nodeIndexOf[item];
+            });
+            edgeView.search(x0, y0, x1, y1, item -> {
+                if (edgeHits == edges.length) {
+                    edges = Arrays.copyOf(edges, edgeHits * 2);
+                }
+                edges[edgeHits++] = edgeIdOf[item];
+            });
+        }
+
+        /** Plain corridors, then restricted ones, then arrows, as GraphVisualizer.drawEdges(). */
+        private void drawEdges(boolean detailed) {
+            Stroke[] byKind = detailed ? detailedStrokes : strokes;
+            g.setColor(EDGE_COLOR);
+            g.setStroke(byKind[0]);
+            for (int k = 0; k < edgeHits; k++) {
+                if (!store.isRestricted(edges[k])) {
+                    strokeEdge(edges[k], false);
+                }
+            }
+            g.setColor(RESTRICTED_COLOR);
+            g.setStroke(byKind[1]);
+            for (int k = 0; k < edgeHits; k++) {
+                if (store.isRestricted(edges[k])) {
+                    strokeEdge(edges[k], detailed);
+                }
+            }
+            if (!detailed) {
+                return;
+            }
+            for (int k = 0; k < edgeHits; k++) {
+                int id = edges[k];
+                if (!store.isBidirectional(id) && !store.isMirror(id)) {
+                    drawArrowHead(screenX(worldX[store.from(id)]), screenY(worldY[store.from(id)]),
+                        screenX(worldX[store.to(id)]), screenY(worldY[store.to(id)]), store.isRestricted(id));
+                }
+            }
+        }
+
+        /**
+         * Strokes the part of a corridor near the tile. Long corridors would
+         * otherwise be rasterized, and dashed, over their whole length for
+         * every tile they cross. A dashed corridor starts its pattern where
+         * the full line would have it, so dashes still meet at tile seams.
+         */
+        private void strokeEdge(int id, boolean dashed) {
+            strokeClipped(screenX(worldX[store.from(id)]), screenY(worldY[store.from(id)]),
+                screenX(worldX[store.to(id)]), screenY(worldY[store.to(id)]), dashed);
+        }
+
+        private void strokeClipped(double x1, double y1, double x2, double y2, boolean dashed) {
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            clipFrom = 0;
+            clipTo = 1;
+            double low = -CLIP_MARGIN_PX;
+            double high = TILE_SIZE + CLIP_MARGIN_PX;
+            if (!clip(-dx, x1 - low) || !clip(dx, high - x1) || !clip(-dy, y1 - low) || !clip(dy, high - y1)) {
+                return;
+            }
+            if (dashed) {
+                float phase = (float) ((clipFrom * Math.hypot(dx, dy)) % dashPeriod);
+                g.setStroke(new BasicStroke((float) NetworkStyle.edgeWidth(true, true),
+                    BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, dashes, phase));
+            }
+            line.setLine(x1 + clipFrom * dx, y1 + clipFrom * dy, x1 + clipTo * dx, y1 + clipTo * dy);
+            g.draw(line);
+        }
+
+        /** Liang-Barsky step: narrows clipFrom..clipTo to where p * t <= q; false once it is empty. */
+        private boolean clip(double p, double q) {
+            if (p == 0) {
+                return q >= 0;
+            }
+            double t = q / p;
+            if (p < 0) {
+                clipFrom = Math.max(clipFrom, t);
+            } else {
+                clipTo = Math.min(clipTo, t);
+            }
+            return clipFrom <= clipTo;
+        }
+
+        private void drawArrowHead(double x1, double y1, double x2, double y2, boolean restricted) {
+            double size = NetworkStyle.ARROW_SIZE;
+            double angle = Math.atan2(y2 - y1, x2 - x1);
+            double x = x2 - size * Math.cos(angle);
+            double y = y2 - size * Math.sin(angle);
+            arrow.reset();
+            arrow.moveTo(x2, y2);
+            arrow.lineTo(x - size * Math.cos(angle - Math.PI / 6), y - size * Math.sin(angle - Math.PI / 6));
+            arrow.lineTo(x - size * Math.cos(angle + Math.PI / 6), y - size * Math.sin(angle + Math.PI / 6));
+            arrow.closePath();
+            g.setColor(restricted ? RESTRICTED_COLOR : EDGE_COLOR);
+            g.fill(arrow);
+        }
+
+        private void drawNodes(boolean detailed) {
+            double r = detailed ? NetworkStyle.NODE_RADIUS : NetworkStyle.SMALL_NODE_RADIUS;
+            g.setStroke(detailed ? border : thinBorder);
+            for (int k = 0; k < nodeHits; k++) {
+                int i = nodes[k];
+                circle.setFrame(screenX(worldX[i]) - r, screenY(worldY[i]) - r, 2 * r, 2 * r);
+                g.setColor(NODE_COLORS[nodeType[i]]);
+                g.fill(circle);
+                g.setColor(BORDER_COLOR);
+                g.draw(circle);
+            }
+        }
+
+        /**
+         * Node labels, then energy/capacity labels of long corridors. Unlike
+         * the interactive view there is no collision test: whether a label is
+         * drawn must not depend on the tile, or labels would break at tile seams.
+         */
+        private void drawLabels() {
+            g.setFont(nodeFont);
+            g.setColor(NODE_LABEL_COLOR);
+            for (int k = 0; k < nodeHits; k++) {
+                int i = nodes[k];
+                g.drawString(network.getNode(i).getId(), (float) screenX(worldX[i]), (float) screenY(worldY[i]) + 4);
+            }
+            g.setFont(edgeFont);
+            g.setColor(EDGE_LABEL_COLOR);
+            for (int k = 0; k < edgeHits; k++) {
+                int id = edges[k];
+                double x1 = screenX(worldX[store.from(id)]);
+                double y1 = screenY(worldY[store.from(id)]);
+                double x2 = screenX(worldX[store.to(id)]);
+                double y2 = screenY(worldY[store.to(id)]);
+                if (Math.hypot(x2 - x1, y2 - y1) < EDGE_LABEL_MIN_PX) continue;
+                g.drawString("E:" + store.energy(id) + " C:" + store.capacity(id),
+                    (float) ((x1 + x2) / 2 + 5), (float) ((y1 + y2) / 2 - 5));
+            }
+        }
+
+        /** Heat cells, bundled links and cluster circles, as GraphVisualizer.drawClusters(). */
+        private boolean drawClusters(ClusterPyramid.Level level, int l, int minLinkCount) {
+            double cellSize = level.cellSize;
+            double cellPx = cellSize * scale;
+            // One ring of cells around the tile for circles reaching in
+            int column0 = cellIndex(worldX(0), pyramid.originX, cellSize, level.side) - 1;
+            int column1 = cellIndex(worldX(TILE_SIZE), pyramid.originX, cellSize, level.side) + 1;
+            int row0 = cellIndex(worldY(0), pyramid.originY, cellSize, level.side) - 1;
+            int row1 = cellIndex(worldY(TILE_SIZE), pyramid.originY, cellSize, level.side) + 1;
+            column0 = Math.max(0, column0);
+            row0 = Math.max(0, row0);
+            column1 = Math.min(level.side - 1, column1);
+            row1 = Math.min(level.side - 1, row1);
+
+            if (linkViews[l] == null) {
+                linkViews[l] = linkTree(l).view();
+            }
+            PackedRTree tree = linkViews[l];
+            int[] cellOf = linkCellOf[l];
+            int[] linkOf = linkIdOf[l];
+            double linkMargin = 4 / scale;
+            linkHits = 0;
+            tree.search(worldX(0) - linkMargin, worldY(0) - linkMargin,
+                worldX(TILE_SIZE) + linkMargin, worldY(TILE_SIZE) + linkMargin, item -> {
+                    if (linkHits == links.length) {
+                        links = Arrays.copyOf(links, linkHits * 2);
+                    }
+                    links[linkHits++] = item;
+                });
+
+            double logMax = Math.log(1 + level.maxCount);
+            boolean any = linkHits > 0;
+            for (int gx = column0; gx <= column1; gx++) {
+                for (int gy = row0; gy <= row1; gy++) {
+                    int cell = level.cellAt(gx, gy);
+                    if (cell < 0) continue;
+                    any = true;
+                    g.setColor(HEAT[NetworkStyle.heatShade(level.count[cell], logMax)]);
+                    rect.setRect(screenX(pyramid.originX + level.cellX[cell] * cellSize),
+                        screenY(pyramid.originY + level.cellY[cell] * cellSize), cellPx, cellPx);
+                    g.fill(rect);
+                }
+            }
+            if (!any) {
+                return false;
+            }
+
+            double logMaxLink = Math.log(1 + level.maxLinkCount);
+            for (int k = 0; k < linkHits; k++) {
+                int cell = cellOf[links[k]];
+                int link = linkOf[links[k]];
+                int other = level.linkTarget[link];
+                if (level.linkCount[link] < minLinkCount) continue;
+                g.setColor(level.linkRestricted[link] ? RESTRICTED_COLOR : EDGE_COLOR);
+                int step = (int) Math.round(NetworkStyle.linkWidth(level.linkCount[link], logMaxLink) * LINK_STROKE_STEPS);
+                if (step >= linkStrokes.length) {
+                    linkStrokes = Arrays.copyOf(linkStrokes, step + 1);
+                }
+                if (linkStrokes[step] == null) {
+                    linkStrokes[step] = new BasicStroke((float) step / LINK_STROKE_STEPS);
+                }
+                g.setStroke(linkStrokes[step]);
+                strokeClipped(screenX(level.centroidX[cell]), screenY(level.centroidY[cell]),
+                    screenX(level.centroidX[other]), screenY(level.centroidY[other]), false);
+            }
+
+            g.setStroke(thinBorder);
+            for (int gx = column0; gx <= column1; gx++) {
+                for (int gy = row0; gy <= row1; gy++) {
+                    int cell = level.cellAt(gx, gy);
+                    if (cell < 0) continue;
+                    double r = NetworkStyle.clusterRadius(level.count[cell], logMax, cellPx);
+                    circle.setFrame(screenX(level.centroidX[cell]) - r, screenY(level.centroidY[cell]) - r,
+                        2 * r, 2 * r);
+                    g.setColor(NODE_COLORS[level.dominantType[cell]]);
+                    g.fill(circle);
+                    g.setColor(BORDER_COLOR);
+                    g.draw(circle);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static int cellIndex(double world, double origin, double cellSize, int side) {
+        int index = (int) Math.floor((world - origin) / cellSize);
+        return Math.max(-1, Math.min(side, index));
+    }
+
+    // ===== Command line =====
+
+    /** Nightly export: TileExporter network.json output-dir [max-level] [threads] */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: TileExporter <network.json> <output-dir> [max-level] [threads]");
+            return;
+        }
+        System.setProperty("java.awt.headless", "true");
+        DroneNetwork network = new JsonHandler().loadNetwork(args[0]);
+        if (network == null) {
+            System.out.println("✗ Could not load " + args[0]);
+            return;
+        }
+        int maxLevel = args.length > 2 ? Integer.parseInt(args[2]) : defaultMaxLevel(network);
+        int threads = args.length > 3 ? Integer.parseInt(args[3])
+            : Math.max(1, Runtime.getRuntime().availableProcessors());
+        ExportResult result = export(network, new File(args[1]), maxLevel, threads);
+        System.out.println(result.details);
+        System.out.println("✓ Map tiles exported to " + args[1]);
+    }
+}